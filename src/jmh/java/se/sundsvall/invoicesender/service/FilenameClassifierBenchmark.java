@@ -0,0 +1,53 @@
+package se.sundsvall.invoicesender.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link FilenameClassifier} with the passes it replaced: lower-casing the filename to tell PDF files apart,
+ * streaming over the invoice filename prefixes and matching the recipient pattern. Run with
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.benchmarks=FilenameClassifierBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilenameClassifierBenchmark {
+
+	private static final Pattern RECIPIENT_PATTERN = Pattern.compile("\\w+_\\d+_to_(\\d+)\\.pdf$");
+	private static final List<String> PREFIXES = List.of("Faktura", "Fakturakopia", "Kreditfaktura", "Betalningspaminnelse");
+
+	@Param({
+		"Faktura_00000001_to_9001011234.pdf", "Betalningspaminnelse_00000001_to_9001011234.pdf", "Kopia_00000001_to_9001011234.pdf", "ArchiveIndex.xml"
+	})
+	public String filename;
+
+	private final FilenameClassifier classifier = new FilenameClassifier(PREFIXES);
+
+	@Benchmark
+	public String classifyLegacy() {
+		if (!filename.toLowerCase().endsWith(".pdf") || PREFIXES.stream().noneMatch(filename::startsWith)) {
+			return null;
+		}
+		final var matcher = RECIPIENT_PATTERN.matcher(filename);
+		return matcher.matches() ? matcher.group(1) : null;
+	}
+
+	@Benchmark
+	public String classify() {
+		return classifier.classify(filename).recipientLegalId();
+	}
+}
@@ -0,0 +1,70 @@
+package se.sundsvall.invoicesender.util;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@link LegalIdValidator} with the implementation it replaced. Run with
+ * {@code mvn -Pjmh test-compile exec:exec}, and add {@code -prof gc} to the benchmark arguments to see the allocation
+ * rates.
+ * <p>
+ * The setup fails if the two implementations disagree on any of the legal ids.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LegalIdValidatorBenchmark {
+
+	@Param({
+		"8701162383", "950211-2387", "8701162382", "5513071770", "12345"
+	})
+	public String legalId;
+
+	private final char[] normalized = new char[LegalIdValidator.NORMALIZED_LENGTH];
+
+	@Setup(Level.Trial)
+	public void checkEquivalence() {
+		final var valid = LegalIdValidator.validate(legalId) == LegalIdValidator.Reason.VALID;
+		if (valid != LegacyLegalIdUtil.isValidLegalId(legalId)) {
+			throw new IllegalStateException("Implementations disagree on " + legalId);
+		}
+		if (valid && !LegalIdValidator.normalize(legalId).equals(LegacyLegalIdUtil.normalize(legalId))) {
+			throw new IllegalStateException("Implementations normalise " + legalId + " differently");
+		}
+	}
+
+	@Benchmark
+	public boolean validateLegacy() {
+		return LegacyLegalIdUtil.isValidLegalId(legalId);
+	}
+
+	@Benchmark
+	public LegalIdValidator.Reason validate() {
+		return LegalIdValidator.validate(legalId);
+	}
+
+	@Benchmark
+	public String normalizeLegacy() {
+		return LegacyLegalIdUtil.isValidLegalId(legalId) ? LegacyLegalIdUtil.normalize(legalId) : null;
+	}
+
+	@Benchmark
+	public char[] normalize() {
+		LegalIdValidator.normalize(legalId, normalized);
+		return normalized;
+	}
+}
@@ -6,12 +6,19 @@ import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import java.io.IOException;
 import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -20,13 +27,24 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import se.sundsvall.dept44.common.validators.annotation.ValidMunicipalityId;
 import se.sundsvall.dept44.problem.Problem;
+import se.sundsvall.invoicesender.api.model.BatchPlanDto;
 import se.sundsvall.invoicesender.api.model.BatchesResponse;
+import se.sundsvall.invoicesender.api.model.DryRunDto;
+import se.sundsvall.invoicesender.api.model.ItemExportFormat;
+import se.sundsvall.invoicesender.api.model.ItemsResponse;
+import se.sundsvall.invoicesender.api.model.StatisticsDto;
+import se.sundsvall.invoicesender.api.model.StatisticsGranularity;
 import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
 import se.sundsvall.invoicesender.service.InvoiceProcessor;
 
+import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
 import static org.springframework.http.HttpHeaders.CONTENT_TYPE;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static org.springframework.http.MediaType.ALL_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.ResponseEntity.noContent;
@@ -46,9 +64,12 @@ class BatchResources {
 
 	private final InvoiceProcessor invoiceProcessor;
 
-	BatchResources(final DbIntegration dbIntegration, final InvoiceProcessor invoiceProcessor) {
+	private final ItemExportWriter itemExportWriter;
+
+	BatchResources(final DbIntegration dbIntegration, final InvoiceProcessor invoiceProcessor, final ItemExportWriter itemExportWriter) {
 		this.dbIntegration = dbIntegration;
 		this.invoiceProcessor = invoiceProcessor;
+		this.itemExportWriter = itemExportWriter;
 	}
 
 	@Operation(
@@ -68,6 +89,93 @@ class BatchResources {
 		return ok().build();
 	}
 
+	@Operation(
+		summary = "Replays a stored batch",
+		description = "Rehydrates the batch from its stored data, without reading from the shares, and processes it again. Only items in the given statuses are replayed - by default all items that failed",
+		responses = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Successful operation",
+				useReturnTypeSchema = true),
+			@ApiResponse(
+				responseCode = "404",
+				description = "Not found",
+				content = @Content(schema = @Schema(implementation = Problem.class))),
+			@ApiResponse(
+				responseCode = "409",
+				description = "Conflict",
+				content = @Content(schema = @Schema(implementation = Problem.class)))
+		})
+	@PostMapping(value = "/{batchId}/replay")
+	ResponseEntity<Void> replayBatch(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable(name = "municipalityId") final String municipalityId,
+		@Parameter(name = "batchId", description = "Batch id", example = "123") @PathVariable(name = "batchId") final Integer batchId,
+
+		@Parameter(description = "Statuses of the items to replay") @RequestParam(name = "status", required = false) final Set<ItemStatus> statuses) throws IOException {
+		invoiceProcessor.replay(municipalityId, batchId, statuses);
+
+		return ok().build();
+	}
+
+	@Operation(
+		summary = "Plans the batches for a given date, without processing them",
+		description = "Reads and plans the batches like when they are processed, and estimates the remote calls and bytes needed to process them",
+		responses = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Successful operation",
+				useReturnTypeSchema = true)
+		})
+	@GetMapping(value = "/plan/{date}", produces = APPLICATION_JSON_VALUE)
+	ResponseEntity<List<BatchPlanDto>> planBatch(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable(name = "municipalityId") final String municipalityId,
+		@PathVariable("date") final LocalDate date) throws IOException {
+		return ok(invoiceProcessor.plan(date, municipalityId));
+	}
+
+	@Operation(
+		summary = "Dry runs the batches for a given date",
+		description = "Reads and plans the batches like when they are processed, and optionally looks up the recipients, but sends and stores nothing. The duration of the stages that aren't run is projected from recorded latencies",
+		responses = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Successful operation",
+				useReturnTypeSchema = true)
+		})
+	@PostMapping(value = "/dry-run/{date}", produces = APPLICATION_JSON_VALUE)
+	ResponseEntity<List<DryRunDto>> dryRunBatch(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable(name = "municipalityId") final String municipalityId,
+		@PathVariable("date") final LocalDate date,
+
+		@Parameter(description = "Whether to look up the recipients in Party and Citizen") @RequestParam(defaultValue = "false") final boolean lookUpRecipients) throws IOException {
+		return ok(invoiceProcessor.dryRun(date, municipalityId, lookUpRecipients));
+	}
+
+	@Operation(
+		summary = "Returns item statistics for a range of dates",
+		description = "Returns the number of items in each status, per batch prefix and day or month, for the batches completed within the range. The statistics are rolled up as batches complete, so the items themselves aren't read",
+		responses = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Successful operation",
+				useReturnTypeSchema = true)
+		})
+	@GetMapping(value = "/statistics", produces = APPLICATION_JSON_VALUE)
+	ResponseEntity<List<StatisticsDto>> getStatistics(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable(name = "municipalityId") final String municipalityId,
+
+		@Parameter(description = "From-date (inclusive). Format: yyyy-MM-dd") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam final LocalDate from,
+
+		@Parameter(description = "To-date (inclusive). Format: yyyy-MM-dd") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) @RequestParam final LocalDate to,
+
+		@Parameter(description = "Whether to sum the statistics per day or per month (default: DAY)") @RequestParam(defaultValue = "DAY") final StatisticsGranularity granularity) {
+		if (from.isAfter(to)) {
+			throw Problem.valueOf(BAD_REQUEST, "The from-date must not be after the to-date");
+		}
+
+		return ok(dbIntegration.getStatistics(municipalityId, from, to, granularity));
+	}
+
 	@Operation(
 		summary = "Returns all batches matching the given filters",
 		responses = {
@@ -101,6 +209,85 @@ class BatchResources {
 		return ok(new BatchesResponse(batches.getContent(), mapPaginationInfo(batches)));
 	}
 
+	@Operation(
+		summary = "Returns the items of a batch",
+		description = "Returns a page of the items of the batch, ordered by id. The next page is requested with the nextAfterId of the response as afterId",
+		responses = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Successful operation",
+				useReturnTypeSchema = true),
+			@ApiResponse(
+				responseCode = "404",
+				description = "Not found",
+				content = @Content(schema = @Schema(implementation = Problem.class)))
+		})
+	@GetMapping(value = "/{batchId}/items", produces = APPLICATION_JSON_VALUE)
+	ResponseEntity<ItemsResponse> getItems(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable(name = "municipalityId") final String municipalityId,
+		@Parameter(name = "batchId", description = "Batch id", example = "123") @PathVariable(name = "batchId") final Integer batchId,
+
+		@Parameter(description = "Statuses of the items to return (default: all)") @RequestParam(name = "status", required = false) final Set<ItemStatus> statuses,
+
+		@Parameter(description = "Id of the item to return items after (default: 0)") @PositiveOrZero @RequestParam(defaultValue = "0") final int afterId,
+
+		@Parameter(description = "Page size (default: 100)") @Positive @Max(1000) @RequestParam(defaultValue = "100") final int pageSize) {
+		verifyBatchExists(municipalityId, batchId);
+
+		// Get one item more than requested, to know whether there is a next page
+		final var items = dbIntegration.getItems(municipalityId, batchId, statuses, afterId, pageSize + 1);
+		if (items.size() > pageSize) {
+			final var page = items.subList(0, pageSize);
+			return ok(new ItemsResponse(page, page.getLast().id()));
+		}
+
+		return ok(new ItemsResponse(items, null));
+	}
+
+	@Operation(
+		summary = "Exports the items of a batch",
+		description = "Streams the items of the batch, ordered by id, as newline delimited JSON or CSV without reading them all into memory",
+		responses = {
+			@ApiResponse(
+				responseCode = "200",
+				description = "Successful operation",
+				content = {
+					@Content(mediaType = "application/x-ndjson", schema = @Schema(type = "string", format = "binary")),
+					@Content(mediaType = "text/csv", schema = @Schema(type = "string", format = "binary"))
+				}),
+			@ApiResponse(
+				responseCode = "404",
+				description = "Not found",
+				content = @Content(schema = @Schema(implementation = Problem.class)))
+		})
+	@GetMapping(value = "/{batchId}/items/export")
+	ResponseEntity<StreamingResponseBody> exportItems(
+		@Parameter(name = "municipalityId", description = "Municipality id", example = "2281") @ValidMunicipalityId @PathVariable(name = "municipalityId") final String municipalityId,
+		@Parameter(name = "batchId", description = "Batch id", example = "123") @PathVariable(name = "batchId") final Integer batchId,
+
+		@Parameter(description = "Statuses of the items to export (default: all)") @RequestParam(name = "status", required = false) final Set<ItemStatus> statuses,
+
+		@Parameter(description = "Export format (default: NDJSON)") @RequestParam(defaultValue = "NDJSON") final ItemExportFormat format) {
+		verifyBatchExists(municipalityId, batchId);
+
+		final StreamingResponseBody body = outputStream -> itemExportWriter.write(format, outputStream,
+			consumer -> dbIntegration.streamItems(municipalityId, batchId, statuses, consumer));
+
+		return ok()
+			.contentType(MediaType.parseMediaType(format.getMediaType()))
+			.header(CONTENT_DISPOSITION, ContentDisposition.attachment()
+				.filename("batch-%d-items.%s".formatted(batchId, format.getExtension()))
+				.build()
+				.toString())
+			.body(body);
+	}
+
+	private void verifyBatchExists(final String municipalityId, final Integer batchId) {
+		if (!dbIntegration.existsBatch(municipalityId, batchId)) {
+			throw Problem.valueOf(NOT_FOUND, "Batch %s not found".formatted(batchId));
+		}
+	}
+
 	BatchesResponse.PaginationInfo mapPaginationInfo(final Page<?> batchPage) {
 		return new BatchesResponse.PaginationInfo(
 			batchPage.getNumber() + 1,
@@ -0,0 +1,79 @@
+package se.sundsvall.invoicesender.api;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.api.model.ItemDto;
+import se.sundsvall.invoicesender.api.model.ItemExportFormat;
+import tools.jackson.databind.ObjectMapper;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static se.sundsvall.invoicesender.api.model.ItemExportFormat.CSV;
+
+/**
+ * Writes exported items as newline delimited JSON or CSV. Each item is written as soon as it is read, so that an export
+ * never holds more than a single item in memory.
+ */
+@Component
+class ItemExportWriter {
+
+	static final String CSV_HEADER = "id,filename,type,status,invoiceNumber,dueDate,totalAmount,recipientPartyId";
+
+	private final ObjectMapper objectMapper;
+
+	ItemExportWriter(final ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+
+	/**
+	 * Writes items to the given output stream.
+	 *
+	 * @param  format       the export format
+	 * @param  outputStream the output stream
+	 * @param  items        the source of the items, which passes each item to the given consumer
+	 * @throws IOException  if the items can't be written
+	 */
+	void write(final ItemExportFormat format, final OutputStream outputStream, final Consumer<Consumer<ItemDto>> items) throws IOException {
+		final var writer = new BufferedWriter(new OutputStreamWriter(outputStream, UTF_8));
+		if (format == CSV) {
+			writer.write(CSV_HEADER);
+			writer.write('\n');
+		}
+
+		try {
+			items.accept(item -> {
+				try {
+					writer.write(format == CSV ? toCsv(item) : objectMapper.writeValueAsString(item));
+					writer.write('\n');
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		}
+
+		writer.flush();
+	}
+
+	static String toCsv(final ItemDto item) {
+		return Stream.of(item.id(), item.filename(), item.type(), item.status(), item.invoiceNumber(), item.dueDate(), item.totalAmount(), item.recipientPartyId())
+			.map(value -> escapeCsv(Objects.toString(value, "")))
+			.collect(Collectors.joining(","));
+	}
+
+	static String escapeCsv(final String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+
+		return '"' + value.replace("\"", "\"\"") + '"';
+	}
+}
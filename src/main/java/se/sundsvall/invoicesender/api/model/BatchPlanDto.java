@@ -0,0 +1,36 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.util.List;
+
+public record BatchPlanDto(
+
+	String basename,
+	boolean processingEnabled,
+	int totalItems,
+	int skippedItems,
+	int recipientLookups,
+	int readyToSend,
+	RemoteCalls remoteCalls,
+	long bytesToSend,
+	List<PlannedItem> items) {
+
+	/**
+	 * Estimated number of remote calls, by integration.
+	 */
+	public record RemoteCalls(
+		int party,
+		int citizen,
+		int messaging) {
+	}
+
+	public record PlannedItem(
+		String filename,
+		Action action) {
+	}
+
+	public enum Action {
+		SKIP,
+		LOOK_UP_RECIPIENT,
+		SEND
+	}
+}
@@ -0,0 +1,22 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.util.List;
+
+public record DryRunDto(
+
+	BatchPlanDto plan,
+	boolean recipientsLookedUp,
+	List<Stage> stages,
+	long estimatedDurationMillis) {
+
+	/**
+	 * A stage of processing the batch. The duration is null if no latency has been recorded for the stage yet, and such
+	 * stages are left out of the estimated duration.
+	 */
+	public record Stage(
+		String name,
+		int calls,
+		Long durationMillis,
+		boolean measured) {
+	}
+}
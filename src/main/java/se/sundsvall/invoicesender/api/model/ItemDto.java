@@ -0,0 +1,18 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+import se.sundsvall.invoicesender.integration.db.entity.ItemType;
+
+public record ItemDto(
+
+	Integer id,
+	String filename,
+	ItemType type,
+	ItemStatus status,
+	String invoiceNumber,
+	LocalDate dueDate,
+	BigDecimal totalAmount,
+	String recipientPartyId) {
+}
@@ -0,0 +1,22 @@
+package se.sundsvall.invoicesender.api.model;
+
+public enum ItemExportFormat {
+	NDJSON("application/x-ndjson", "ndjson"),
+	CSV("text/csv", "csv");
+
+	private final String mediaType;
+	private final String extension;
+
+	ItemExportFormat(final String mediaType, final String extension) {
+		this.mediaType = mediaType;
+		this.extension = extension;
+	}
+
+	public String getMediaType() {
+		return mediaType;
+	}
+
+	public String getExtension() {
+		return extension;
+	}
+}
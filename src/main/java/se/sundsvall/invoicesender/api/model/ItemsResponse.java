@@ -0,0 +1,13 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.util.List;
+
+/**
+ * A page of the items of a batch. The next page is requested with {@code nextAfterId} as {@code afterId}, and it is
+ * null on the last page.
+ */
+public record ItemsResponse(
+
+	List<ItemDto> items,
+	Integer nextAfterId) {
+}
@@ -0,0 +1,16 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.time.LocalDate;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+
+/**
+ * The number of items in a given status in the batches with a given prefix, per day or per month. Monthly statistics
+ * are dated the first day of the month.
+ */
+public record StatisticsDto(
+
+	LocalDate date,
+	String batchPrefix,
+	ItemStatus status,
+	long count) {
+}
@@ -0,0 +1,6 @@
+package se.sundsvall.invoicesender.api.model;
+
+public enum StatisticsGranularity {
+	DAY,
+	MONTH
+}
@@ -1,8 +1,8 @@
 package se.sundsvall.invoicesender.configuration;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
@@ -10,10 +10,16 @@ import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 @EnableScheduling
 class SchedulingConfiguration {
 
+	/**
+	 * Fixed-delay tasks (lease renewals, SMB health checks, send queue drains, notification dispatches and lease
+	 * takeovers) run on the scheduler threads until they complete, so there are enough threads for a slow drain or a hung
+	 * health check not to hold up the lease renewals. Batch runs are dispatched further to the batch dispatcher, so no
+	 * run holds up the scheduler.
+	 */
 	@Bean
-	TaskScheduler taskScheduler() {
-		var scheduler = new ThreadPoolTaskScheduler();
-		scheduler.setPoolSize(25);
+	ThreadPoolTaskScheduler taskScheduler(@Value("${invoice-processor.scheduler.pool-size:25}") final int poolSize) {
+		final var scheduler = new ThreadPoolTaskScheduler();
+		scheduler.setPoolSize(poolSize);
 		scheduler.setThreadNamePrefix("invoice-processor-");
 		scheduler.setWaitForTasksToCompleteOnShutdown(true);
 		return scheduler;
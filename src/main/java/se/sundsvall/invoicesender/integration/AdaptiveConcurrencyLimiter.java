@@ -0,0 +1,177 @@
+package se.sundsvall.invoicesender.integration;
+
+import feign.Capability;
+import feign.Client;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Arrays;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+/**
+ * AIMD (additive increase, multiplicative decrease) limit of the number of concurrent calls to an integration. The
+ * limit grows slowly while calls succeed and the limit is in use, and is cut on 429 and 5xx responses, on I/O errors
+ * and when the p99 latency of a window of calls rises too far above its baseline. Calls beyond the limit wait for a
+ * slot, and are rejected if none frees up in time.
+ * <p>
+ * Registered as a Feign capability, so that it wraps the HTTP client of the integration.
+ */
+public class AdaptiveConcurrencyLimiter implements Capability {
+
+	private static final Logger LOG = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+	private static final String METRIC_PREFIX = "integration.concurrency.";
+	private static final String TAG_INTEGRATION = "integration";
+
+	// Weight of each window's p99 latency in the baseline
+	private static final double BASELINE_SMOOTHING = 0.1;
+
+	private final String integrationName;
+	private final ConcurrencyLimit settings;
+	private final LongSupplier nanoTime;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition slotAvailable = lock.newCondition();
+	private final long[] window;
+	private final Counter rejections;
+
+	private volatile double limit;
+	private volatile int inFlight;
+	private int windowCount;
+	private double baselineP99;
+
+	public AdaptiveConcurrencyLimiter(final String integrationName, final ConcurrencyLimit settings, final MeterRegistry meterRegistry) {
+		this(integrationName, settings, meterRegistry, System::nanoTime);
+	}
+
+	AdaptiveConcurrencyLimiter(final String integrationName, final ConcurrencyLimit settings, final MeterRegistry meterRegistry, final LongSupplier nanoTime) {
+		this.integrationName = integrationName;
+		this.settings = settings;
+		this.nanoTime = nanoTime;
+
+		window = new long[settings.windowSize()];
+		limit = Math.clamp(settings.initialLimit(), settings.minLimit(), settings.maxLimit());
+
+		Gauge.builder(METRIC_PREFIX + "limit", this, AdaptiveConcurrencyLimiter::getLimit)
+			.tag(TAG_INTEGRATION, integrationName)
+			.register(meterRegistry);
+		Gauge.builder(METRIC_PREFIX + "in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+			.tag(TAG_INTEGRATION, integrationName)
+			.register(meterRegistry);
+		rejections = Counter.builder(METRIC_PREFIX + "rejections")
+			.tag(TAG_INTEGRATION, integrationName)
+			.register(meterRegistry);
+	}
+
+	@Override
+	public Client enrich(final Client client) {
+		if (!settings.enabled()) {
+			return client;
+		}
+
+		return (request, options) -> {
+			acquire();
+
+			final var start = nanoTime.getAsLong();
+			// Anything but a response - i.e. an I/O error or a timeout - counts as overload
+			var overloaded = true;
+			try {
+				final var response = client.execute(request, options);
+				overloaded = response.status() == TOO_MANY_REQUESTS.value() || response.status() >= 500;
+				return response;
+			} finally {
+				release(nanoTime.getAsLong() - start, overloaded);
+			}
+		};
+	}
+
+	/**
+	 * Gets the current limit.
+	 *
+	 * @return the number of concurrent calls currently allowed
+	 */
+	public int getLimit() {
+		return (int) limit;
+	}
+
+	/**
+	 * Gets the number of calls in flight.
+	 *
+	 * @return the number of calls in flight
+	 */
+	public int getInFlight() {
+		return inFlight;
+	}
+
+	void acquire() {
+		lock.lock();
+		try {
+			var remainingNanos = settings.maxWait().toNanos();
+			while (inFlight >= getLimit()) {
+				if (remainingNanos <= 0) {
+					rejections.increment();
+					throw new RejectedExecutionException("Concurrency limit of %d reached for integration %s".formatted(getLimit(), integrationName));
+				}
+				remainingNanos = slotAvailable.awaitNanos(remainingNanos);
+			}
+			inFlight++;
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RejectedExecutionException("Interrupted while waiting for a call slot for integration " + integrationName, e);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void release(final long latencyNanos, final boolean overloaded) {
+		lock.lock();
+		try {
+			// Only grow the limit when it is actually in use, or it would grow without bounds on light load
+			final var saturated = inFlight * 2 >= limit;
+			inFlight--;
+
+			if (isLatencyRising(latencyNanos) || overloaded) {
+				limit = Math.max(settings.minLimit(), limit * settings.backoffRatio());
+				LOG.debug("Concurrency limit for integration {} decreased to {}", integrationName, getLimit());
+			} else if (saturated) {
+				limit = Math.min(settings.maxLimit(), limit + 1 / limit);
+			}
+
+			slotAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the latency to the current window, and compares the p99 latency of the window against the baseline once the
+	 * window is full.
+	 */
+	private boolean isLatencyRising(final long latencyNanos) {
+		window[windowCount++] = latencyNanos;
+		if (windowCount < window.length) {
+			return false;
+		}
+		windowCount = 0;
+
+		final var sorted = window.clone();
+		Arrays.sort(sorted);
+		final var p99 = (double) sorted[(int) Math.ceil(0.99 * sorted.length) - 1];
+
+		if (baselineP99 == 0) {
+			baselineP99 = p99;
+			return false;
+		}
+
+		final var rising = p99 > baselineP99 * settings.latencyTolerance();
+		// Let the baseline follow slowly, so that a lasting change in latency doesn't keep the limit down forever
+		baselineP99 += BASELINE_SMOOTHING * (p99 - baselineP99);
+		return rising;
+	}
+}
@@ -0,0 +1,39 @@
+package se.sundsvall.invoicesender.integration;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Settings for the adaptive concurrency limit of an integration.
+ *
+ * @param enabled          whether concurrent calls are limited at all
+ * @param initialLimit     the number of concurrent calls allowed to begin with
+ * @param minLimit         the lower bound of the limit
+ * @param maxLimit         the upper bound of the limit
+ * @param backoffRatio     the factor that the limit is multiplied by on overload
+ * @param latencyTolerance how many times the baseline p99 latency that a window's p99 latency may be, before it counts
+ *                         as overload
+ * @param windowSize       the number of calls in each latency window
+ * @param maxWait          how long a call may wait for the limit, before it's rejected
+ */
+public record ConcurrencyLimit(
+
+	@DefaultValue("true") boolean enabled,
+
+	@DefaultValue("10") @Positive int initialLimit,
+
+	@DefaultValue("1") @Positive int minLimit,
+
+	@DefaultValue("50") @Positive int maxLimit,
+
+	@DefaultValue("0.9") @DecimalMin("0.1") @DecimalMax("0.99") double backoffRatio,
+
+	@DefaultValue("2.0") @DecimalMin("1.0") double latencyTolerance,
+
+	@DefaultValue("100") @Positive int windowSize,
+
+	@DefaultValue("PT1M") @NotNull Duration maxWait) {}
@@ -6,6 +6,7 @@ import jakarta.validation.constraints.NotNull;
 import java.time.Duration;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
+import se.sundsvall.invoicesender.integration.ConcurrencyLimit;
 import se.sundsvall.invoicesender.integration.Oauth2;
 
 @ConfigurationProperties(prefix = "integration.citizen")
@@ -17,4 +18,6 @@ record CitizenIntegrationProperties(
 
 	@DefaultValue("PT30S") Duration readTimeout,
 
-	@Valid @NotNull Oauth2 oauth2) {}
+	@Valid @NotNull Oauth2 oauth2,
+
+	@Valid @DefaultValue ConcurrencyLimit concurrencyLimit) {}
@@ -0,0 +1,123 @@
+package se.sundsvall.invoicesender.integration.db;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+import se.sundsvall.invoicesender.integration.db.entity.BatchLeaseEntity;
+
+@CircuitBreaker(name = "BatchLeaseRepository")
+interface BatchLeaseRepository extends JpaRepository<BatchLeaseEntity, Integer> {
+
+	/**
+	 * Takes over (or extends) a lease, if it is owned by the given owner or has expired.
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("""
+			UPDATE BatchLeaseEntity l SET
+			l.owner = :owner,
+			l.acquiredAt = CASE WHEN l.owner = :owner THEN l.acquiredAt ELSE :now END,
+			l.expiresAt = :expiresAt
+			WHERE l.municipalityId = :municipalityId AND
+			l.batchPrefix = :batchPrefix AND
+			l.date = :date AND
+			(l.owner = :owner OR l.expiresAt < :now)
+		""")
+	int takeOver(
+		@Param("municipalityId") String municipalityId,
+		@Param("batchPrefix") String batchPrefix,
+		@Param("date") LocalDate date,
+		@Param("owner") String owner,
+		@Param("now") LocalDateTime now,
+		@Param("expiresAt") LocalDateTime expiresAt);
+
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("""
+			UPDATE BatchLeaseEntity l SET
+			l.expiresAt = :expiresAt
+			WHERE l.municipalityId = :municipalityId AND
+			l.batchPrefix = :batchPrefix AND
+			l.date = :date AND
+			l.owner = :owner
+		""")
+	int renew(
+		@Param("municipalityId") String municipalityId,
+		@Param("batchPrefix") String batchPrefix,
+		@Param("date") LocalDate date,
+		@Param("owner") String owner,
+		@Param("expiresAt") LocalDateTime expiresAt);
+
+	/**
+	 * Marks a lease as completed, i.e. that the run it covers has completed. The lease is kept as a marker, so that
+	 * another node doesn't run the same batches again.
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("""
+			UPDATE BatchLeaseEntity l SET
+			l.completedAt = :now
+			WHERE l.municipalityId = :municipalityId AND
+			l.batchPrefix = :batchPrefix AND
+			l.date = :date AND
+			l.owner = :owner
+		""")
+	int complete(
+		@Param("municipalityId") String municipalityId,
+		@Param("batchPrefix") String batchPrefix,
+		@Param("date") LocalDate date,
+		@Param("owner") String owner,
+		@Param("now") LocalDateTime now);
+
+	/**
+	 * Releases a lease that hasn't been completed.
+	 */
+	@Transactional
+	@Modifying
+	@Query("""
+			DELETE FROM BatchLeaseEntity l
+			WHERE l.municipalityId = :municipalityId AND
+			l.batchPrefix = :batchPrefix AND
+			l.date = :date AND
+			l.owner = :owner AND
+			l.completedAt IS NULL
+		""")
+	int release(
+		@Param("municipalityId") String municipalityId,
+		@Param("batchPrefix") String batchPrefix,
+		@Param("date") LocalDate date,
+		@Param("owner") String owner);
+
+	/**
+	 * Releases a completed lease, by letting it expire - the completion marker is kept.
+	 */
+	@Transactional
+	@Modifying(clearAutomatically = true)
+	@Query("""
+			UPDATE BatchLeaseEntity l SET
+			l.expiresAt = :now
+			WHERE l.municipalityId = :municipalityId AND
+			l.batchPrefix = :batchPrefix AND
+			l.date = :date AND
+			l.owner = :owner AND
+			l.completedAt IS NOT NULL
+		""")
+	int expire(
+		@Param("municipalityId") String municipalityId,
+		@Param("batchPrefix") String batchPrefix,
+		@Param("date") LocalDate date,
+		@Param("owner") String owner,
+		@Param("now") LocalDateTime now);
+
+	boolean existsByMunicipalityIdAndBatchPrefixAndDate(String municipalityId, String batchPrefix, LocalDate date);
+
+	boolean existsByMunicipalityIdAndBatchPrefixAndDateAndCompletedAtIsNotNull(String municipalityId, String batchPrefix, LocalDate date);
+
+	List<BatchLeaseEntity> findByCompletedAtIsNullAndExpiresAtBefore(LocalDateTime now);
+}
@@ -2,9 +2,14 @@ package se.sundsvall.invoicesender.integration.db;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
@@ -24,4 +29,68 @@ interface BatchRepository extends JpaRepository<BatchEntity, Integer> {
 		@Param("municipalityId") String municipalityId,
 		Pageable pageRequest);
 
+	@Query("""
+			SELECT DISTINCT b FROM BatchEntity b LEFT JOIN FETCH b.items WHERE
+			b.completed = false AND
+			b.startedAt >= :startedAfter
+			ORDER BY b.startedAt
+		""")
+	List<BatchEntity> findIncomplete(@Param("startedAfter") LocalDateTime startedAfter);
+
+	@Query("""
+			SELECT DISTINCT b FROM BatchEntity b LEFT JOIN FETCH b.items WHERE
+			b.completed = false AND
+			b.startedAt >= :startedAfter AND
+			b.municipalityId = :municipalityId AND
+			b.basename = :basename
+			ORDER BY b.startedAt DESC
+		""")
+	List<BatchEntity> findIncompleteByMunicipalityIdAndBasename(
+		@Param("municipalityId") String municipalityId,
+		@Param("basename") String basename,
+		@Param("startedAfter") LocalDateTime startedAfter);
+
+	@Query("""
+			SELECT b FROM BatchEntity b LEFT JOIN FETCH b.items WHERE
+			b.id = :id AND
+			b.municipalityId = :municipalityId
+		""")
+	Optional<BatchEntity> findWithItemsByIdAndMunicipalityId(
+		@Param("id") Integer id,
+		@Param("municipalityId") String municipalityId);
+
+	boolean existsByIdAndMunicipalityId(Integer id, String municipalityId);
+
+	@Query("""
+			SELECT b.id FROM BatchEntity b WHERE
+			b.startedAt < :startedBefore AND
+			b.data IS NOT NULL AND
+			b.id > :afterId
+			ORDER BY b.id
+		""")
+	List<Integer> findIdsWithDataStartedBefore(
+		@Param("startedBefore") LocalDateTime startedBefore,
+		@Param("afterId") int afterId,
+		Limit limit);
+
+	@Modifying
+	@Query("UPDATE BatchEntity b SET b.data = NULL WHERE b.id IN :ids")
+	int clearData(@Param("ids") Collection<Integer> ids);
+
+	@Query("""
+			SELECT b.id FROM BatchEntity b WHERE
+			b.startedAt < :startedBefore AND
+			b.id > :afterId
+			ORDER BY b.id
+		""")
+	List<Integer> findIdsStartedBefore(
+		@Param("startedBefore") LocalDateTime startedBefore,
+		@Param("afterId") int afterId,
+		Limit limit);
+
+	long countByStartedAtBefore(LocalDateTime startedBefore);
+
+	@Modifying
+	@Query("DELETE FROM BatchEntity b WHERE b.id = :id")
+	void deleteBatch(@Param("id") Integer id);
 }
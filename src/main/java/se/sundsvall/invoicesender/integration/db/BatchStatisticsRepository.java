@@ -0,0 +1,33 @@
+package se.sundsvall.invoicesender.integration.db;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import java.time.LocalDate;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import se.sundsvall.invoicesender.api.model.StatisticsDto;
+import se.sundsvall.invoicesender.integration.db.entity.BatchStatisticsEntity;
+
+@CircuitBreaker(name = "BatchStatisticsRepository")
+interface BatchStatisticsRepository extends JpaRepository<BatchStatisticsEntity, Integer> {
+
+	@Modifying
+	@Query("DELETE FROM BatchStatisticsEntity s WHERE s.batchId = :batchId")
+	void deleteByBatchId(@Param("batchId") Integer batchId);
+
+	@Query("""
+			SELECT new se.sundsvall.invoicesender.api.model.StatisticsDto(s.date, s.batchPrefix, s.status, SUM(s.itemCount))
+			FROM BatchStatisticsEntity s WHERE
+			s.municipalityId = :municipalityId AND
+			s.date >= :from AND
+			s.date <= :to
+			GROUP BY s.date, s.batchPrefix, s.status
+			ORDER BY s.date, s.batchPrefix, s.status
+		""")
+	List<StatisticsDto> sumByDate(
+		@Param("municipalityId") String municipalityId,
+		@Param("from") LocalDate from,
+		@Param("to") LocalDate to);
+}
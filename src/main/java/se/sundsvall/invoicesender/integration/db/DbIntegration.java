@@ -1,18 +1,50 @@
 package se.sundsvall.invoicesender.integration.db;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 import se.sundsvall.invoicesender.api.model.BatchDto;
+import se.sundsvall.invoicesender.api.model.ItemDto;
+import se.sundsvall.invoicesender.api.model.StatisticsDto;
+import se.sundsvall.invoicesender.api.model.StatisticsGranularity;
 import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
+import se.sundsvall.invoicesender.integration.db.entity.BatchLeaseEntity;
+import se.sundsvall.invoicesender.integration.db.entity.BatchStatisticsEntity;
 import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemSendEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationEntity;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationStatus;
+import se.sundsvall.invoicesender.integration.db.entity.SentInvoiceEntity;
 
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsFirst;
 import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.counting;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.summingLong;
+import static org.springframework.transaction.annotation.Propagation.NOT_SUPPORTED;
+import static se.sundsvall.invoicesender.api.model.StatisticsGranularity.DAY;
+import static se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus.CLAIMED;
+import static se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus.COMPLETED;
+import static se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus.PENDING;
 
 @Component
 @Transactional
@@ -20,10 +52,22 @@ public class DbIntegration {
 
 	private final BatchRepository batchRepository;
 	private final ItemRepository itemRepository;
+	private final BatchLeaseRepository batchLeaseRepository;
+	private final ItemSendQueueRepository itemSendQueueRepository;
+	private final NotificationOutboxRepository notificationOutboxRepository;
+	private final SentInvoiceRepository sentInvoiceRepository;
+	private final BatchStatisticsRepository batchStatisticsRepository;
 
-	DbIntegration(final BatchRepository batchRepository, ItemRepository itemRepository) {
+	DbIntegration(final BatchRepository batchRepository, ItemRepository itemRepository, final BatchLeaseRepository batchLeaseRepository,
+		final ItemSendQueueRepository itemSendQueueRepository, final NotificationOutboxRepository notificationOutboxRepository,
+		final SentInvoiceRepository sentInvoiceRepository, final BatchStatisticsRepository batchStatisticsRepository) {
 		this.batchRepository = batchRepository;
 		this.itemRepository = itemRepository;
+		this.batchLeaseRepository = batchLeaseRepository;
+		this.itemSendQueueRepository = itemSendQueueRepository;
+		this.notificationOutboxRepository = notificationOutboxRepository;
+		this.sentInvoiceRepository = sentInvoiceRepository;
+		this.batchStatisticsRepository = batchStatisticsRepository;
 	}
 
 	public Page<BatchDto> getBatches(final LocalDate from, final LocalDate to, final Pageable pageRequest, final String municipalityId) {
@@ -49,6 +93,422 @@ public class DbIntegration {
 		return batchRepository.saveAll(batches);
 	}
 
+	/**
+	 * Gets all incomplete batches started after the given point in time, with their items.
+	 *
+	 * @param  startedAfter the point in time
+	 * @return              the incomplete batches, oldest first
+	 */
+	@Transactional(readOnly = true)
+	public List<BatchEntity> getIncompleteBatches(final LocalDateTime startedAfter) {
+		return batchRepository.findIncomplete(startedAfter);
+	}
+
+	/**
+	 * Gets the latest incomplete batch with the given basename, started after the given point in time, with its items.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  basename       the batch basename
+	 * @param  startedAfter   the point in time
+	 * @return                the incomplete batch, if any
+	 */
+	@Transactional(readOnly = true)
+	public Optional<BatchEntity> getIncompleteBatch(final String municipalityId, final String basename, final LocalDateTime startedAfter) {
+		return batchRepository.findIncompleteByMunicipalityIdAndBasename(municipalityId, basename, startedAfter).stream()
+			.findFirst();
+	}
+
+	/**
+	 * Gets a batch, with its items.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  id             the batch id
+	 * @return                the batch, if any
+	 */
+	@Transactional(readOnly = true)
+	public Optional<BatchEntity> getBatch(final String municipalityId, final Integer id) {
+		return batchRepository.findWithItemsByIdAndMunicipalityId(id, municipalityId);
+	}
+
+	@Transactional(readOnly = true)
+	public boolean existsBatch(final String municipalityId, final Integer id) {
+		return batchRepository.existsByIdAndMunicipalityId(id, municipalityId);
+	}
+
+	/**
+	 * Gets items of a batch, ordered by id. Pages are read with keyset pagination, i.e. from the last item id of the
+	 * previous page, so that reading a page costs the same regardless of how far into the batch it is.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  batchId        the batch id
+	 * @param  statuses       the statuses of the items to get, or {@code null} or empty for all items
+	 * @param  afterId        the id to get items after
+	 * @param  maxCount       the maximum number of items to get
+	 * @return                the items
+	 */
+	@Transactional(readOnly = true)
+	public List<ItemDto> getItems(final String municipalityId, final Integer batchId, final Set<ItemStatus> statuses, final int afterId, final int maxCount) {
+		return itemRepository.findItems(municipalityId, batchId, statusesOrAll(statuses), afterId, Limit.of(maxCount));
+	}
+
+	/**
+	 * Streams the items of a batch, ordered by id, to the given consumer. The items are read from a database cursor
+	 * within a single transaction, so that they are never all held in memory at once.
+	 *
+	 * @param municipalityId the municipality id
+	 * @param batchId        the batch id
+	 * @param statuses       the statuses of the items to stream, or {@code null} or empty for all items
+	 * @param consumer       the consumer of the items
+	 */
+	@Transactional(readOnly = true)
+	public void streamItems(final String municipalityId, final Integer batchId, final Set<ItemStatus> statuses, final Consumer<ItemDto> consumer) {
+		try (final var items = itemRepository.streamItems(municipalityId, batchId, statusesOrAll(statuses))) {
+			items.forEach(consumer);
+		}
+	}
+
+	/**
+	 * Tries to acquire the lease for the given municipality id, batch prefix and date. The lease is acquired if it doesn't
+	 * exist, has expired or is already owned by the given owner.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  batchPrefix    the batch prefix
+	 * @param  date           the date
+	 * @param  owner          the (node) owner
+	 * @param  ttl            the time to live of the lease
+	 * @return                true if the lease was acquired, otherwise false
+	 */
+	@Transactional(propagation = NOT_SUPPORTED)
+	public boolean acquireLease(final String municipalityId, final String batchPrefix, final LocalDate date, final String owner, final Duration ttl) {
+		final var now = LocalDateTime.now(ZoneId.systemDefault());
+		if (batchLeaseRepository.takeOver(municipalityId, batchPrefix, date, owner, now, now.plus(ttl)) > 0) {
+			return true;
+		}
+		if (batchLeaseRepository.existsByMunicipalityIdAndBatchPrefixAndDate(municipalityId, batchPrefix, date)) {
+			return false;
+		}
+
+		try {
+			batchLeaseRepository.saveAndFlush(new BatchLeaseEntity()
+				.withMunicipalityId(municipalityId)
+				.withBatchPrefix(batchPrefix)
+				.withDate(date)
+				.withOwner(owner)
+				.withAcquiredAt(now)
+				.withExpiresAt(now.plus(ttl)));
+			return true;
+		} catch (final DataIntegrityViolationException e) {
+			// Another node acquired the lease first
+			return false;
+		}
+	}
+
+	/**
+	 * Extends a lease held by the given owner.
+	 *
+	 * @return true if the lease was extended, false if it is no longer held by the given owner
+	 */
+	@Transactional(propagation = NOT_SUPPORTED)
+	public boolean renewLease(final String municipalityId, final String batchPrefix, final LocalDate date, final String owner, final Duration ttl) {
+		return batchLeaseRepository.renew(municipalityId, batchPrefix, date, owner, LocalDateTime.now(ZoneId.systemDefault()).plus(ttl)) > 0;
+	}
+
+	/**
+	 * Marks a lease held by the given owner as completed. The lease is kept as a marker once released, so that the same
+	 * batches aren't run again by another node.
+	 *
+	 * @return true if the lease was marked as completed, false if it is no longer held by the given owner
+	 */
+	@Transactional(propagation = NOT_SUPPORTED)
+	public boolean completeLease(final String municipalityId, final String batchPrefix, final LocalDate date, final String owner) {
+		return batchLeaseRepository.complete(municipalityId, batchPrefix, date, owner, LocalDateTime.now(ZoneId.systemDefault())) > 0;
+	}
+
+	/**
+	 * Releases a lease held by the given owner. A lease that hasn't been completed is removed, while a completed one is
+	 * only let to expire.
+	 */
+	@Transactional(propagation = NOT_SUPPORTED)
+	public void releaseLease(final String municipalityId, final String batchPrefix, final LocalDate date, final String owner) {
+		if (batchLeaseRepository.release(municipalityId, batchPrefix, date, owner) == 0) {
+			batchLeaseRepository.expire(municipalityId, batchPrefix, date, owner, LocalDateTime.now(ZoneId.systemDefault()));
+		}
+	}
+
+	/**
+	 * Checks whether the lease for the given municipality id, batch prefix and date has been completed.
+	 *
+	 * @return true if a run of the batches has completed, otherwise false
+	 */
+	@Transactional(readOnly = true)
+	public boolean isLeaseCompleted(final String municipalityId, final String batchPrefix, final LocalDate date) {
+		return batchLeaseRepository.existsByMunicipalityIdAndBatchPrefixAndDateAndCompletedAtIsNotNull(municipalityId, batchPrefix, date);
+	}
+
+	/**
+	 * Gets all leases that have expired without being completed, i.e. whose owner has stopped renewing them.
+	 *
+	 * @return the expired leases
+	 */
+	@Transactional(readOnly = true)
+	public List<BatchLeaseEntity> getExpiredLeases() {
+		return batchLeaseRepository.findByCompletedAtIsNullAndExpiresAtBefore(LocalDateTime.now(ZoneId.systemDefault()));
+	}
+
+	/**
+	 * Publishes an item send to the send queue. Publishing is idempotent - an item that is already queued isn't queued
+	 * again, so that a resumed batch picks up the result of an earlier send instead of sending the item twice.
+	 *
+	 * @param itemSend the item send
+	 */
+	public void enqueueSend(final ItemSendEntity itemSend) {
+		if (itemSendQueueRepository.findByItemId(itemSend.getItemId()).isPresent()) {
+			return;
+		}
+
+		itemSendQueueRepository.save(itemSend
+			.withStatus(PENDING)
+			.withCreatedAt(LocalDateTime.now(ZoneId.systemDefault())));
+	}
+
+	/**
+	 * Claims queued sends for the given owner. Pending sends are claimed, as well as sends whose claim has timed out
+	 * since their claimer has died. Sends that are being claimed by another node are skipped.
+	 *
+	 * @param  owner        the claiming (node) owner
+	 * @param  maxCount     the maximum number of sends to claim
+	 * @param  claimTimeout the time after which a claim is considered abandoned
+	 * @return              the claimed sends
+	 */
+	public List<ItemSendEntity> claimSends(final String owner, final int maxCount, final Duration claimTimeout) {
+		final var now = LocalDateTime.now(ZoneId.systemDefault());
+		final var claimable = itemSendQueueRepository.findClaimable(PENDING, CLAIMED, now.minus(claimTimeout), Limit.of(maxCount));
+		claimable.forEach(itemSend -> itemSend
+			.withStatus(CLAIMED)
+			.withClaimedBy(owner)
+			.withClaimedAt(now));
+
+		return itemSendQueueRepository.saveAll(claimable);
+	}
+
+	/**
+	 * Completes a queued send claimed by the given owner.
+	 *
+	 * @param  id     the id of the queued send
+	 * @param  owner  the claiming (node) owner
+	 * @param  result the result of the send
+	 * @return        true if the send was completed, false if it is no longer claimed by the given owner
+	 */
+	public boolean completeSend(final Integer id, final String owner, final ItemStatus result) {
+		return itemSendQueueRepository.complete(id, owner, result, CLAIMED, COMPLETED) > 0;
+	}
+
+	@Transactional(readOnly = true)
+	public long countIncompleteSends(final Integer batchId) {
+		return itemSendQueueRepository.countByBatchIdAndStatusNot(batchId, COMPLETED);
+	}
+
+	@Transactional(readOnly = true)
+	public List<ItemSendEntity> getCompletedSends(final Integer batchId) {
+		return itemSendQueueRepository.findByBatchIdAndStatus(batchId, COMPLETED);
+	}
+
+	public void deleteSends(final Integer batchId) {
+		itemSendQueueRepository.deleteByBatchId(batchId);
+	}
+
+	public NotificationEntity persistNotification(final NotificationEntity notification) {
+		return notificationOutboxRepository.save(notification);
+	}
+
+	/**
+	 * Claims notifications that are due for a delivery attempt. A claimed notification isn't due again until the claim
+	 * timeout has passed, so that it is picked up by another node if the claiming node dies before the attempt completes.
+	 *
+	 * @param  maxCount     the maximum number of notifications to claim
+	 * @param  claimTimeout the claim timeout
+	 * @return              the claimed notifications
+	 */
+	public List<NotificationEntity> claimNotifications(final int maxCount, final Duration claimTimeout) {
+		final var now = LocalDateTime.now(ZoneId.systemDefault());
+		final var due = notificationOutboxRepository.findDue(NotificationStatus.PENDING, now, Limit.of(maxCount));
+		due.forEach(notification -> notification.setNextAttemptAt(now.plus(claimTimeout)));
+
+		return notificationOutboxRepository.saveAll(due);
+	}
+
+	@Transactional(readOnly = true)
+	public boolean isInvoiceSent(final String municipalityId, final String invoiceNumber, final String paymentReference) {
+		return sentInvoiceRepository.existsByMunicipalityIdAndInvoiceNumberAndPaymentReference(municipalityId, invoiceNumber, paymentReference);
+	}
+
+	/**
+	 * Gets sent invoices recorded after the one with the given id, so that the sent invoices can be loaded in chunks.
+	 *
+	 * @param  id       the id to get sent invoices after
+	 * @param  maxCount the maximum number of sent invoices to get
+	 * @return          the sent invoices, ordered by id
+	 */
+	@Transactional(readOnly = true)
+	public List<SentInvoiceEntity> getSentInvoicesAfter(final int id, final int maxCount) {
+		return sentInvoiceRepository.findByIdGreaterThanOrderById(id, Limit.of(maxCount));
+	}
+
+	/**
+	 * Records a sent invoice.
+	 *
+	 * @param  sentInvoice the sent invoice
+	 * @return             true if the sent invoice was recorded, false if it had already been recorded
+	 */
+	@Transactional(propagation = NOT_SUPPORTED)
+	public boolean recordSentInvoice(final SentInvoiceEntity sentInvoice) {
+		try {
+			sentInvoiceRepository.saveAndFlush(sentInvoice);
+			return true;
+		} catch (final DataIntegrityViolationException e) {
+			// The invoice has already been recorded, possibly by another node
+			return false;
+		}
+	}
+
+	/**
+	 * Stores a completed batch, rolls up its statistics and adds its notification to the outbox, all in one
+	 * transaction - so that a batch is never completed without its notification, nor notified without being completed.
+	 *
+	 * @param batchEntity  the completed batch
+	 * @param notification the notification to add to the outbox, or {@code null} if there is none
+	 */
+	public void completeBatch(final BatchEntity batchEntity, final NotificationEntity notification) {
+		persistBatch(batchEntity);
+		persistBatchStatistics(batchEntity);
+		if (notification != null) {
+			persistNotification(notification);
+		}
+	}
+
+	/**
+	 * Rolls up the statistics of a completed batch, i.e. the number of items in each status. Any earlier statistics of
+	 * the batch are replaced, so that a batch that is completed again after a resume or a replay is only counted once.
+	 *
+	 * @param batchEntity the completed batch
+	 */
+	public void persistBatchStatistics(final BatchEntity batchEntity) {
+		batchStatisticsRepository.deleteByBatchId(batchEntity.getId());
+
+		final var date = ofNullable(batchEntity.getDate()).orElseGet(() -> batchEntity.getStartedAt().toLocalDate());
+		final var statistics = batchEntity.getItems().stream()
+			.map(ItemEntity::getStatus)
+			.filter(Objects::nonNull)
+			.collect(groupingBy(status -> status, () -> new EnumMap<>(ItemStatus.class), counting()))
+			.entrySet().stream()
+			.map(entry -> new BatchStatisticsEntity()
+				.withBatchId(batchEntity.getId())
+				.withDate(date)
+				.withMunicipalityId(batchEntity.getMunicipalityId())
+				.withBatchPrefix(batchEntity.getBatchPrefix())
+				.withStatus(entry.getKey())
+				.withItemCount(entry.getValue()))
+			.toList();
+
+		batchStatisticsRepository.saveAll(statistics);
+	}
+
+	/**
+	 * Gets the number of items in each status, per batch prefix and day or month, from the rolled up statistics of the
+	 * batches completed within the given range of dates.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  from           the first date (inclusive)
+	 * @param  to             the last date (inclusive)
+	 * @param  granularity    whether to sum the statistics per day or per month
+	 * @return                the statistics, ordered by date, batch prefix and status name
+	 */
+	@Transactional(readOnly = true)
+	public List<StatisticsDto> getStatistics(final String municipalityId, final LocalDate from, final LocalDate to, final StatisticsGranularity granularity) {
+		final var statistics = batchStatisticsRepository.sumByDate(municipalityId, from, to);
+		if (granularity == DAY) {
+			return statistics;
+		}
+
+		// Sum the days of each month - there are only a handful of rows per day, so this is cheap
+		return statistics.stream()
+			.collect(groupingBy(dto -> new StatisticsDto(dto.date().withDayOfMonth(1), dto.batchPrefix(), dto.status(), 0),
+				LinkedHashMap::new, summingLong(StatisticsDto::count)))
+			.entrySet().stream()
+			.map(entry -> new StatisticsDto(entry.getKey().date(), entry.getKey().batchPrefix(), entry.getKey().status(), entry.getValue()))
+			.sorted(Comparator.comparing(StatisticsDto::date)
+				.thenComparing(StatisticsDto::batchPrefix, nullsFirst(naturalOrder()))
+				.thenComparing(dto -> dto.status().name()))
+			.toList();
+	}
+
+	/**
+	 * Gets the ids of batches started before the given point in time that still have stored data.
+	 *
+	 * @param  startedBefore the point in time
+	 * @param  afterId       the id to get batch ids after
+	 * @param  maxCount      the maximum number of batch ids to get
+	 * @return               the batch ids, in order
+	 */
+	@Transactional(readOnly = true)
+	public List<Integer> getBatchIdsWithDataStartedBefore(final LocalDateTime startedBefore, final int afterId, final int maxCount) {
+		return batchRepository.findIdsWithDataStartedBefore(startedBefore, afterId, Limit.of(maxCount));
+	}
+
+	/**
+	 * Clears the stored data of the given batches.
+	 *
+	 * @param  batchIds the batch ids
+	 * @return          the number of batches that were cleared
+	 */
+	public int purgeBatchData(final List<Integer> batchIds) {
+		return batchRepository.clearData(batchIds);
+	}
+
+	@Transactional(readOnly = true)
+	public long countBatchesStartedBefore(final LocalDateTime startedBefore) {
+		return batchRepository.countByStartedAtBefore(startedBefore);
+	}
+
+	/**
+	 * Gets the ids of batches started before the given point in time.
+	 *
+	 * @param  startedBefore the point in time
+	 * @param  afterId       the id to get batch ids after
+	 * @param  maxCount      the maximum number of batch ids to get
+	 * @return               the batch ids, in order
+	 */
+	@Transactional(readOnly = true)
+	public List<Integer> getBatchIdsStartedBefore(final LocalDateTime startedBefore, final int afterId, final int maxCount) {
+		return batchRepository.findIdsStartedBefore(startedBefore, afterId, Limit.of(maxCount));
+	}
+
+	/**
+	 * Deletes a chunk of the items of a batch.
+	 *
+	 * @param  batchId  the batch id
+	 * @param  maxCount the maximum number of items to delete
+	 * @return          the number of items that were deleted, zero once the batch has no items left
+	 */
+	public int deleteItems(final Integer batchId, final int maxCount) {
+		final var itemIds = itemRepository.findIdsByBatchId(batchId, Limit.of(maxCount));
+		return itemIds.isEmpty() ? 0 : itemRepository.deleteByIds(itemIds);
+	}
+
+	/**
+	 * Deletes a batch whose items have been deleted, along with anything left of it in the send queue.
+	 *
+	 * @param batchId the batch id
+	 */
+	public void deleteBatch(final Integer batchId) {
+		itemSendQueueRepository.deleteByBatchId(batchId);
+		batchRepository.deleteBatch(batchId);
+	}
+
+	private static Set<ItemStatus> statusesOrAll(final Set<ItemStatus> statuses) {
+		return statuses == null || statuses.isEmpty() ? EnumSet.allOf(ItemStatus.class) : statuses;
+	}
+
 	BatchDto mapToBatchDto(final BatchEntity batchEntity) {
 		return Optional.ofNullable(batchEntity).map(batch -> new BatchDto(
 			batch.getId(),
@@ -1,11 +1,67 @@
 package se.sundsvall.invoicesender.integration.db;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import jakarta.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import se.sundsvall.invoicesender.api.model.ItemDto;
 import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.HibernateHints.HINT_READ_ONLY;
 
 @CircuitBreaker(name = "ItemRepository")
 @Repository
 public interface ItemRepository extends JpaRepository<ItemEntity, Integer> {
+
+	@Query("""
+			SELECT new se.sundsvall.invoicesender.api.model.ItemDto(
+				i.id, i.filename, i.type, i.status, i.invoiceNumber, i.dueDate, i.totalAmount, i.recipientPartyId)
+			FROM BatchEntity b JOIN b.items i WHERE
+			b.id = :batchId AND
+			b.municipalityId = :municipalityId AND
+			i.status IN :statuses AND
+			i.id > :afterId
+			ORDER BY i.id
+		""")
+	List<ItemDto> findItems(
+		@Param("municipalityId") String municipalityId,
+		@Param("batchId") Integer batchId,
+		@Param("statuses") Collection<ItemStatus> statuses,
+		@Param("afterId") int afterId,
+		Limit limit);
+
+	@QueryHints({
+		@QueryHint(name = HINT_FETCH_SIZE, value = "500"),
+		@QueryHint(name = HINT_READ_ONLY, value = "true")
+	})
+	@Query("""
+			SELECT new se.sundsvall.invoicesender.api.model.ItemDto(
+				i.id, i.filename, i.type, i.status, i.invoiceNumber, i.dueDate, i.totalAmount, i.recipientPartyId)
+			FROM BatchEntity b JOIN b.items i WHERE
+			b.id = :batchId AND
+			b.municipalityId = :municipalityId AND
+			i.status IN :statuses
+			ORDER BY i.id
+		""")
+	Stream<ItemDto> streamItems(
+		@Param("municipalityId") String municipalityId,
+		@Param("batchId") Integer batchId,
+		@Param("statuses") Collection<ItemStatus> statuses);
+
+	@Query("SELECT i.id FROM BatchEntity b JOIN b.items i WHERE b.id = :batchId ORDER BY i.id")
+	List<Integer> findIdsByBatchId(@Param("batchId") Integer batchId, Limit limit);
+
+	@Modifying
+	@Query("DELETE FROM ItemEntity i WHERE i.id IN :ids")
+	int deleteByIds(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,69 @@
+package se.sundsvall.invoicesender.integration.db;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import se.sundsvall.invoicesender.integration.db.entity.ItemSendEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+import se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus;
+
+@CircuitBreaker(name = "ItemSendQueueRepository")
+interface ItemSendQueueRepository extends JpaRepository<ItemSendEntity, Integer> {
+
+	/**
+	 * Finds and locks queued sends that are pending, or whose claim has timed out. Rows locked by other nodes are skipped
+	 * (SELECT ... FOR UPDATE SKIP LOCKED), so that concurrent claimers never block each other.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+	@Query("""
+			SELECT s FROM ItemSendEntity s
+			WHERE s.status = :pending OR (s.status = :claimed AND s.claimedAt < :claimedBefore)
+			ORDER BY s.id
+		""")
+	List<ItemSendEntity> findClaimable(
+		@Param("pending") QueuedSendStatus pending,
+		@Param("claimed") QueuedSendStatus claimed,
+		@Param("claimedBefore") LocalDateTime claimedBefore,
+		Limit limit);
+
+	/**
+	 * Completes a queued send, provided that it is still claimed by the given owner - a claim that has timed out may have
+	 * been taken over by another node.
+	 */
+	@Modifying(clearAutomatically = true)
+	@Query("""
+			UPDATE ItemSendEntity s SET
+			s.status = :completed,
+			s.result = :result
+			WHERE s.id = :id AND
+			s.claimedBy = :owner AND
+			s.status = :claimed
+		""")
+	int complete(
+		@Param("id") Integer id,
+		@Param("owner") String owner,
+		@Param("result") ItemStatus result,
+		@Param("claimed") QueuedSendStatus claimed,
+		@Param("completed") QueuedSendStatus completed);
+
+	Optional<ItemSendEntity> findByItemId(Integer itemId);
+
+	List<ItemSendEntity> findByBatchIdAndStatus(Integer batchId, QueuedSendStatus status);
+
+	long countByBatchIdAndStatusNot(Integer batchId, QueuedSendStatus status);
+
+	@Modifying
+	@Query("DELETE FROM ItemSendEntity s WHERE s.batchId = :batchId")
+	void deleteByBatchId(@Param("batchId") Integer batchId);
+}
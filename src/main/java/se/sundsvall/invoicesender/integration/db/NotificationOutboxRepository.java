@@ -0,0 +1,34 @@
+package se.sundsvall.invoicesender.integration.db;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationEntity;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationStatus;
+
+@CircuitBreaker(name = "NotificationOutboxRepository")
+interface NotificationOutboxRepository extends JpaRepository<NotificationEntity, Integer> {
+
+	/**
+	 * Finds and locks notifications that are due for a (new) delivery attempt, skipping rows locked by other nodes.
+	 */
+	@Lock(LockModeType.PESSIMISTIC_WRITE)
+	@QueryHints(@QueryHint(name = "jakarta.persistence.lock.timeout", value = "-2"))
+	@Query("""
+			SELECT n FROM NotificationEntity n
+			WHERE n.status = :status AND n.nextAttemptAt <= :now
+			ORDER BY n.id
+		""")
+	List<NotificationEntity> findDue(
+		@Param("status") NotificationStatus status,
+		@Param("now") LocalDateTime now,
+		Limit limit);
+}
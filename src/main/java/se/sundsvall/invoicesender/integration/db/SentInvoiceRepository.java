@@ -0,0 +1,15 @@
+package se.sundsvall.invoicesender.integration.db;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import se.sundsvall.invoicesender.integration.db.entity.SentInvoiceEntity;
+
+@CircuitBreaker(name = "SentInvoiceRepository")
+interface SentInvoiceRepository extends JpaRepository<SentInvoiceEntity, Integer> {
+
+	boolean existsByMunicipalityIdAndInvoiceNumberAndPaymentReference(String municipalityId, String invoiceNumber, String paymentReference);
+
+	List<SentInvoiceEntity> findByIdGreaterThanOrderById(Integer id, Limit limit);
+}
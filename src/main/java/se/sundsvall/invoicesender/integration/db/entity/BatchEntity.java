@@ -24,7 +24,8 @@ import static jakarta.persistence.FetchType.LAZY;
 @Entity
 @Table(name = "batch_executions",
 	indexes = {
-		@Index(name = "idx_batch_executions_municipality_id", columnList = "municipality_id")
+		@Index(name = "idx_batch_executions_municipality_id", columnList = "municipality_id"),
+		@Index(name = "idx_batch_executions_completed_started_at", columnList = "completed, started_at")
 	})
 public class BatchEntity {
 
@@ -38,6 +39,9 @@ public class BatchEntity {
 	@Column(name = "municipality_id")
 	private String municipalityId;
 
+	@Column(name = "batch_prefix")
+	private String batchPrefix;
+
 	@Column(name = "local_path")
 	private String localPath;
 
@@ -75,6 +79,9 @@ public class BatchEntity {
 	@Column(name = "completed", nullable = false)
 	private boolean completed;
 
+	@Column(name = "file_size")
+	private Long fileSize;
+
 	@Lob
 	@Basic(fetch = LAZY)
 	@Column(name = "data", columnDefinition = "LONGBLOB")
@@ -110,6 +117,19 @@ public class BatchEntity {
 		return this;
 	}
 
+	public Long getFileSize() {
+		return fileSize;
+	}
+
+	public void setFileSize(final Long fileSize) {
+		this.fileSize = fileSize;
+	}
+
+	public BatchEntity withFileSize(final Long fileSize) {
+		this.fileSize = fileSize;
+		return this;
+	}
+
 	public byte[] getData() {
 		return data;
 	}
@@ -162,6 +182,19 @@ public class BatchEntity {
 		return this;
 	}
 
+	public String getBatchPrefix() {
+		return batchPrefix;
+	}
+
+	public void setBatchPrefix(final String batchPrefix) {
+		this.batchPrefix = batchPrefix;
+	}
+
+	public BatchEntity withBatchPrefix(final String batchPrefix) {
+		this.batchPrefix = batchPrefix;
+		return this;
+	}
+
 	public String getArchivePath() {
 		return archivePath;
 	}
@@ -298,6 +331,7 @@ public class BatchEntity {
 			"id=" + id +
 			", basename='" + basename + '\'' +
 			", municipalityId='" + municipalityId + '\'' +
+			", batchPrefix='" + batchPrefix + '\'' +
 			", localPath='" + localPath + '\'' +
 			", archivePath='" + archivePath + '\'' +
 			", targetPath='" + targetPath + '\'' +
@@ -309,6 +343,7 @@ public class BatchEntity {
 			", sentItems=" + sentItems +
 			", processingEnabled=" + processingEnabled +
 			", completed=" + completed +
+			", fileSize=" + fileSize +
 			", data=" + Arrays.toString(data) +
 			'}';
 	}
@@ -0,0 +1,181 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "batch_leases",
+	uniqueConstraints = {
+		@UniqueConstraint(name = "uq_batch_leases_municipality_id_batch_prefix_date", columnNames = {
+			"municipality_id", "batch_prefix", "date"
+		})
+	})
+public class BatchLeaseEntity {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Integer id;
+
+	@Column(name = "municipality_id", nullable = false)
+	private String municipalityId;
+
+	@Column(name = "batch_prefix", nullable = false)
+	private String batchPrefix;
+
+	@Column(name = "date", nullable = false)
+	private LocalDate date;
+
+	@Column(name = "owner", nullable = false)
+	private String owner;
+
+	@Column(name = "acquired_at", nullable = false)
+	private LocalDateTime acquiredAt;
+
+	@Column(name = "expires_at", nullable = false)
+	private LocalDateTime expiresAt;
+
+	@Column(name = "completed_at")
+	private LocalDateTime completedAt;
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(final Integer id) {
+		this.id = id;
+	}
+
+	public BatchLeaseEntity withId(final Integer id) {
+		this.id = id;
+		return this;
+	}
+
+	public String getMunicipalityId() {
+		return municipalityId;
+	}
+
+	public void setMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+	}
+
+	public BatchLeaseEntity withMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+		return this;
+	}
+
+	public String getBatchPrefix() {
+		return batchPrefix;
+	}
+
+	public void setBatchPrefix(final String batchPrefix) {
+		this.batchPrefix = batchPrefix;
+	}
+
+	public BatchLeaseEntity withBatchPrefix(final String batchPrefix) {
+		this.batchPrefix = batchPrefix;
+		return this;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public void setDate(final LocalDate date) {
+		this.date = date;
+	}
+
+	public BatchLeaseEntity withDate(final LocalDate date) {
+		this.date = date;
+		return this;
+	}
+
+	public String getOwner() {
+		return owner;
+	}
+
+	public void setOwner(final String owner) {
+		this.owner = owner;
+	}
+
+	public BatchLeaseEntity withOwner(final String owner) {
+		this.owner = owner;
+		return this;
+	}
+
+	public LocalDateTime getAcquiredAt() {
+		return acquiredAt;
+	}
+
+	public void setAcquiredAt(final LocalDateTime acquiredAt) {
+		this.acquiredAt = acquiredAt;
+	}
+
+	public BatchLeaseEntity withAcquiredAt(final LocalDateTime acquiredAt) {
+		this.acquiredAt = acquiredAt;
+		return this;
+	}
+
+	public LocalDateTime getExpiresAt() {
+		return expiresAt;
+	}
+
+	public void setExpiresAt(final LocalDateTime expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+	public BatchLeaseEntity withExpiresAt(final LocalDateTime expiresAt) {
+		this.expiresAt = expiresAt;
+		return this;
+	}
+
+	public LocalDateTime getCompletedAt() {
+		return completedAt;
+	}
+
+	public void setCompletedAt(final LocalDateTime completedAt) {
+		this.completedAt = completedAt;
+	}
+
+	public BatchLeaseEntity withCompletedAt(final LocalDateTime completedAt) {
+		this.completedAt = completedAt;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchLeaseEntity{" +
+			"id=" + id +
+			", municipalityId='" + municipalityId + '\'' +
+			", batchPrefix='" + batchPrefix + '\'' +
+			", date=" + date +
+			", owner='" + owner + '\'' +
+			", acquiredAt=" + acquiredAt +
+			", expiresAt=" + expiresAt +
+			", completedAt=" + completedAt +
+			'}';
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof final BatchLeaseEntity other) {
+			return id != null && id.equals(other.id);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+}
@@ -0,0 +1,176 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDate;
+
+import static jakarta.persistence.EnumType.STRING;
+
+/**
+ * The number of items in a given status in a completed batch. The statistics of a batch are replaced whenever the
+ * batch is completed, e.g. after a replay, so that statistics can be aggregated over any range of dates without
+ * scanning the items themselves.
+ */
+@Entity
+@Table(name = "batch_statistics",
+	uniqueConstraints = {
+		@UniqueConstraint(name = "uq_batch_statistics_batch_id_status", columnNames = {
+			"batch_id", "status"
+		})
+	},
+	indexes = {
+		@Index(name = "idx_batch_statistics_municipality_id_date", columnList = "municipality_id, date")
+	})
+public class BatchStatisticsEntity {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Integer id;
+
+	@Column(name = "batch_id", nullable = false)
+	private Integer batchId;
+
+	@Column(name = "date", nullable = false)
+	private LocalDate date;
+
+	@Column(name = "municipality_id")
+	private String municipalityId;
+
+	@Column(name = "batch_prefix")
+	private String batchPrefix;
+
+	@Enumerated(STRING)
+	@Column(name = "status", nullable = false)
+	private ItemStatus status;
+
+	@Column(name = "item_count", nullable = false)
+	private Long itemCount;
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(final Integer id) {
+		this.id = id;
+	}
+
+	public BatchStatisticsEntity withId(final Integer id) {
+		this.id = id;
+		return this;
+	}
+
+	public Integer getBatchId() {
+		return batchId;
+	}
+
+	public void setBatchId(final Integer batchId) {
+		this.batchId = batchId;
+	}
+
+	public BatchStatisticsEntity withBatchId(final Integer batchId) {
+		this.batchId = batchId;
+		return this;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public void setDate(final LocalDate date) {
+		this.date = date;
+	}
+
+	public BatchStatisticsEntity withDate(final LocalDate date) {
+		this.date = date;
+		return this;
+	}
+
+	public String getMunicipalityId() {
+		return municipalityId;
+	}
+
+	public void setMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+	}
+
+	public BatchStatisticsEntity withMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+		return this;
+	}
+
+	public String getBatchPrefix() {
+		return batchPrefix;
+	}
+
+	public void setBatchPrefix(final String batchPrefix) {
+		this.batchPrefix = batchPrefix;
+	}
+
+	public BatchStatisticsEntity withBatchPrefix(final String batchPrefix) {
+		this.batchPrefix = batchPrefix;
+		return this;
+	}
+
+	public ItemStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(final ItemStatus status) {
+		this.status = status;
+	}
+
+	public BatchStatisticsEntity withStatus(final ItemStatus status) {
+		this.status = status;
+		return this;
+	}
+
+	public Long getItemCount() {
+		return itemCount;
+	}
+
+	public void setItemCount(final Long itemCount) {
+		this.itemCount = itemCount;
+	}
+
+	public BatchStatisticsEntity withItemCount(final Long itemCount) {
+		this.itemCount = itemCount;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "BatchStatisticsEntity{" +
+			"id=" + id +
+			", batchId=" + batchId +
+			", date=" + date +
+			", municipalityId='" + municipalityId + '\'' +
+			", batchPrefix='" + batchPrefix + '\'' +
+			", status=" + status +
+			", itemCount=" + itemCount +
+			'}';
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof final BatchStatisticsEntity other) {
+			return id != null && id.equals(other.id);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+}
@@ -8,6 +8,9 @@ import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.Table;
 import jakarta.persistence.Transient;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import se.sundsvall.invoicesender.service.model.Metadata;
 
 import static jakarta.persistence.EnumType.STRING;
@@ -34,12 +37,25 @@ public class ItemEntity {
 	@Transient
 	private Metadata metadata;
 
-	@Transient
+	@Column(name = "recipient_party_id")
 	private String recipientPartyId;
 
 	@Transient
 	private String recipientLegalId;
 
+	// Derived from the metadata and the recipient legal id, which are not persisted themselves
+	@Column(name = "invoice_number")
+	private String invoiceNumber;
+
+	@Column(name = "due_date")
+	private LocalDate dueDate;
+
+	@Column(name = "total_amount", precision = 15, scale = 2)
+	private BigDecimal totalAmount;
+
+	@Column(name = "recipient_legal_id_hash", length = 64)
+	private String recipientLegalIdHash;
+
 	public Integer getId() {
 		return id;
 	}
@@ -75,7 +91,20 @@ public class ItemEntity {
 	}
 
 	public ItemEntity withRecipientLegalId(String recipientLegalId) {
-		this.recipientLegalId = recipientLegalId;
+		setRecipientLegalId(recipientLegalId);
+		return this;
+	}
+
+	public String getRecipientLegalIdHash() {
+		return recipientLegalIdHash;
+	}
+
+	public void setRecipientLegalIdHash(String recipientLegalIdHash) {
+		this.recipientLegalIdHash = recipientLegalIdHash;
+	}
+
+	public ItemEntity withRecipientLegalIdHash(String recipientLegalIdHash) {
+		this.recipientLegalIdHash = recipientLegalIdHash;
 		return this;
 	}
 
@@ -85,13 +114,28 @@ public class ItemEntity {
 
 	public void setMetadata(Metadata metadata) {
 		this.metadata = metadata;
+		this.invoiceNumber = metadata != null ? metadata.getInvoiceNumber() : null;
+		this.dueDate = metadata != null ? parseDueDate(metadata.getDueDate()) : null;
+		this.totalAmount = metadata != null ? parseTotalAmount(metadata.getTotalAmount()) : null;
 	}
 
 	public ItemEntity withMetadata(Metadata metadata) {
-		this.metadata = metadata;
+		setMetadata(metadata);
 		return this;
 	}
 
+	public String getInvoiceNumber() {
+		return invoiceNumber;
+	}
+
+	public LocalDate getDueDate() {
+		return dueDate;
+	}
+
+	public BigDecimal getTotalAmount() {
+		return totalAmount;
+	}
+
 	public ItemType getType() {
 		return type;
 	}
@@ -131,6 +175,34 @@ public class ItemEntity {
 		this.status = status;
 	}
 
+	/**
+	 * Parses the due date of the metadata, which is expected in ISO format (yyyy-MM-dd).
+	 *
+	 * @param  dueDate the due date, may be {@code null}
+	 * @return         the due date, or {@code null} if it is missing or can't be parsed
+	 */
+	static LocalDate parseDueDate(final String dueDate) {
+		try {
+			return dueDate != null ? LocalDate.parse(dueDate.strip()) : null;
+		} catch (final DateTimeParseException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Parses the total amount of the metadata, which is expected with a dot as decimal separator.
+	 *
+	 * @param  totalAmount the total amount, may be {@code null}
+	 * @return             the total amount, or {@code null} if it is missing or can't be parsed
+	 */
+	static BigDecimal parseTotalAmount(final String totalAmount) {
+		try {
+			return totalAmount != null ? new BigDecimal(totalAmount.strip()) : null;
+		} catch (final NumberFormatException e) {
+			return null;
+		}
+	}
+
 	@Override
 	public boolean equals(final Object o) {
 		if (this == o) {
@@ -158,6 +230,10 @@ public class ItemEntity {
 			", metadata=" + metadata +
 			", recipientPartyId='" + recipientPartyId + '\'' +
 			", recipientLegalId='" + recipientLegalId + '\'' +
+			", invoiceNumber='" + invoiceNumber + '\'' +
+			", dueDate=" + dueDate +
+			", totalAmount=" + totalAmount +
+			", recipientLegalIdHash='" + recipientLegalIdHash + '\'' +
 			'}';
 	}
 }
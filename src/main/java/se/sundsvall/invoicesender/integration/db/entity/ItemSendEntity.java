@@ -0,0 +1,283 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import jakarta.persistence.Basic;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDateTime;
+import se.sundsvall.invoicesender.service.model.Metadata;
+
+import static jakarta.persistence.EnumType.STRING;
+import static jakarta.persistence.FetchType.LAZY;
+
+/**
+ * An item send that has been published to the cluster-wide send queue. The entry carries everything needed to send
+ * the item, so that it can be claimed and sent by any node.
+ */
+@Entity
+@Table(name = "item_send_queue",
+	uniqueConstraints = {
+		@UniqueConstraint(name = "uq_item_send_queue_item_id", columnNames = "item_id")
+	},
+	indexes = {
+		@Index(name = "idx_item_send_queue_status", columnList = "status"),
+		@Index(name = "idx_item_send_queue_batch_id", columnList = "batch_id")
+	})
+public class ItemSendEntity {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Integer id;
+
+	@Column(name = "batch_id", nullable = false)
+	private Integer batchId;
+
+	@Column(name = "item_id", nullable = false)
+	private Integer itemId;
+
+	@Column(name = "municipality_id", nullable = false)
+	private String municipalityId;
+
+	@Column(name = "filename", nullable = false)
+	private String filename;
+
+	@Column(name = "recipient_party_id", nullable = false)
+	private String recipientPartyId;
+
+	@Embedded
+	private Metadata metadata;
+
+	@Lob
+	@Basic(fetch = LAZY)
+	@Column(name = "content", columnDefinition = "LONGBLOB", nullable = false)
+	private byte[] content;
+
+	@Enumerated(STRING)
+	@Column(name = "status", nullable = false)
+	private QueuedSendStatus status;
+
+	@Enumerated(STRING)
+	@Column(name = "result")
+	private ItemStatus result;
+
+	@Column(name = "claimed_by")
+	private String claimedBy;
+
+	@Column(name = "claimed_at")
+	private LocalDateTime claimedAt;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(final Integer id) {
+		this.id = id;
+	}
+
+	public ItemSendEntity withId(final Integer id) {
+		this.id = id;
+		return this;
+	}
+
+	public Integer getBatchId() {
+		return batchId;
+	}
+
+	public void setBatchId(final Integer batchId) {
+		this.batchId = batchId;
+	}
+
+	public ItemSendEntity withBatchId(final Integer batchId) {
+		this.batchId = batchId;
+		return this;
+	}
+
+	public Integer getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(final Integer itemId) {
+		this.itemId = itemId;
+	}
+
+	public ItemSendEntity withItemId(final Integer itemId) {
+		this.itemId = itemId;
+		return this;
+	}
+
+	public String getMunicipalityId() {
+		return municipalityId;
+	}
+
+	public void setMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+	}
+
+	public ItemSendEntity withMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+		return this;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public void setFilename(final String filename) {
+		this.filename = filename;
+	}
+
+	public ItemSendEntity withFilename(final String filename) {
+		this.filename = filename;
+		return this;
+	}
+
+	public String getRecipientPartyId() {
+		return recipientPartyId;
+	}
+
+	public void setRecipientPartyId(final String recipientPartyId) {
+		this.recipientPartyId = recipientPartyId;
+	}
+
+	public ItemSendEntity withRecipientPartyId(final String recipientPartyId) {
+		this.recipientPartyId = recipientPartyId;
+		return this;
+	}
+
+	public Metadata getMetadata() {
+		return metadata;
+	}
+
+	public void setMetadata(final Metadata metadata) {
+		this.metadata = metadata;
+	}
+
+	public ItemSendEntity withMetadata(final Metadata metadata) {
+		this.metadata = metadata;
+		return this;
+	}
+
+	public byte[] getContent() {
+		return content;
+	}
+
+	public void setContent(final byte[] content) {
+		this.content = content;
+	}
+
+	public ItemSendEntity withContent(final byte[] content) {
+		this.content = content;
+		return this;
+	}
+
+	public QueuedSendStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(final QueuedSendStatus status) {
+		this.status = status;
+	}
+
+	public ItemSendEntity withStatus(final QueuedSendStatus status) {
+		this.status = status;
+		return this;
+	}
+
+	public ItemStatus getResult() {
+		return result;
+	}
+
+	public void setResult(final ItemStatus result) {
+		this.result = result;
+	}
+
+	public ItemSendEntity withResult(final ItemStatus result) {
+		this.result = result;
+		return this;
+	}
+
+	public String getClaimedBy() {
+		return claimedBy;
+	}
+
+	public void setClaimedBy(final String claimedBy) {
+		this.claimedBy = claimedBy;
+	}
+
+	public ItemSendEntity withClaimedBy(final String claimedBy) {
+		this.claimedBy = claimedBy;
+		return this;
+	}
+
+	public LocalDateTime getClaimedAt() {
+		return claimedAt;
+	}
+
+	public void setClaimedAt(final LocalDateTime claimedAt) {
+		this.claimedAt = claimedAt;
+	}
+
+	public ItemSendEntity withClaimedAt(final LocalDateTime claimedAt) {
+		this.claimedAt = claimedAt;
+		return this;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(final LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public ItemSendEntity withCreatedAt(final LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "ItemSendEntity{" +
+			"id=" + id +
+			", batchId=" + batchId +
+			", itemId=" + itemId +
+			", municipalityId='" + municipalityId + '\'' +
+			", filename='" + filename + '\'' +
+			", recipientPartyId='" + recipientPartyId + '\'' +
+			", metadata=" + metadata +
+			", status=" + status +
+			", result=" + result +
+			", claimedBy='" + claimedBy + '\'' +
+			", claimedAt=" + claimedAt +
+			", createdAt=" + createdAt +
+			'}';
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof final ItemSendEntity other) {
+			return id != null && id.equals(other.id);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+}
@@ -19,6 +19,10 @@ public enum ItemStatus {
 	SENT,
 	/** Indicates that the item/invoice was not sent */
 	NOT_SENT,
+	/** Indicates that the item/invoice could not be sent due to a transient error, and may be retried */
+	NOT_SENT_RETRYABLE,
+	/** Indicates that the item/invoice has already been sent in an earlier batch, and was skipped */
+	ALREADY_SENT,
 	/** Indicates that the item/invoice is being processed */
 	IN_PROGRESS
 }
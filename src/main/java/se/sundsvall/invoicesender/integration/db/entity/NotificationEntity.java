@@ -0,0 +1,238 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import static jakarta.persistence.EnumType.STRING;
+
+/**
+ * A notification (Slack message, status report or error report) in the notification outbox. The message is rendered
+ * when the notification is created, and sent later by the outbox dispatcher.
+ */
+@Entity
+@Table(name = "notification_outbox",
+	indexes = {
+		@Index(name = "idx_notification_outbox_status_next_attempt_at", columnList = "status, next_attempt_at")
+	})
+public class NotificationEntity {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Integer id;
+
+	@Column(name = "municipality_id", nullable = false)
+	private String municipalityId;
+
+	@Enumerated(STRING)
+	@Column(name = "type", nullable = false)
+	private NotificationType type;
+
+	@Column(name = "date")
+	private LocalDate date;
+
+	@Column(name = "message", nullable = false, columnDefinition = "LONGTEXT")
+	private String message;
+
+	@Enumerated(STRING)
+	@Column(name = "status", nullable = false)
+	private NotificationStatus status;
+
+	@Column(name = "attempts", nullable = false)
+	private int attempts;
+
+	@Column(name = "next_attempt_at")
+	private LocalDateTime nextAttemptAt;
+
+	@Column(name = "last_error", length = 1024)
+	private String lastError;
+
+	@Column(name = "created_at", nullable = false)
+	private LocalDateTime createdAt;
+
+	@Column(name = "sent_at")
+	private LocalDateTime sentAt;
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(final Integer id) {
+		this.id = id;
+	}
+
+	public NotificationEntity withId(final Integer id) {
+		this.id = id;
+		return this;
+	}
+
+	public String getMunicipalityId() {
+		return municipalityId;
+	}
+
+	public void setMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+	}
+
+	public NotificationEntity withMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+		return this;
+	}
+
+	public NotificationType getType() {
+		return type;
+	}
+
+	public void setType(final NotificationType type) {
+		this.type = type;
+	}
+
+	public NotificationEntity withType(final NotificationType type) {
+		this.type = type;
+		return this;
+	}
+
+	public LocalDate getDate() {
+		return date;
+	}
+
+	public void setDate(final LocalDate date) {
+		this.date = date;
+	}
+
+	public NotificationEntity withDate(final LocalDate date) {
+		this.date = date;
+		return this;
+	}
+
+	public String getMessage() {
+		return message;
+	}
+
+	public void setMessage(final String message) {
+		this.message = message;
+	}
+
+	public NotificationEntity withMessage(final String message) {
+		this.message = message;
+		return this;
+	}
+
+	public NotificationStatus getStatus() {
+		return status;
+	}
+
+	public void setStatus(final NotificationStatus status) {
+		this.status = status;
+	}
+
+	public NotificationEntity withStatus(final NotificationStatus status) {
+		this.status = status;
+		return this;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public void setAttempts(final int attempts) {
+		this.attempts = attempts;
+	}
+
+	public NotificationEntity withAttempts(final int attempts) {
+		this.attempts = attempts;
+		return this;
+	}
+
+	public LocalDateTime getNextAttemptAt() {
+		return nextAttemptAt;
+	}
+
+	public void setNextAttemptAt(final LocalDateTime nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+	}
+
+	public NotificationEntity withNextAttemptAt(final LocalDateTime nextAttemptAt) {
+		this.nextAttemptAt = nextAttemptAt;
+		return this;
+	}
+
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void setLastError(final String lastError) {
+		this.lastError = lastError;
+	}
+
+	public NotificationEntity withLastError(final String lastError) {
+		this.lastError = lastError;
+		return this;
+	}
+
+	public LocalDateTime getCreatedAt() {
+		return createdAt;
+	}
+
+	public void setCreatedAt(final LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+	}
+
+	public NotificationEntity withCreatedAt(final LocalDateTime createdAt) {
+		this.createdAt = createdAt;
+		return this;
+	}
+
+	public LocalDateTime getSentAt() {
+		return sentAt;
+	}
+
+	public void setSentAt(final LocalDateTime sentAt) {
+		this.sentAt = sentAt;
+	}
+
+	public NotificationEntity withSentAt(final LocalDateTime sentAt) {
+		this.sentAt = sentAt;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "NotificationEntity{" +
+			"id=" + id +
+			", municipalityId='" + municipalityId + '\'' +
+			", type=" + type +
+			", date=" + date +
+			", status=" + status +
+			", attempts=" + attempts +
+			", nextAttemptAt=" + nextAttemptAt +
+			", lastError='" + lastError + '\'' +
+			", createdAt=" + createdAt +
+			", sentAt=" + sentAt +
+			'}';
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof final NotificationEntity other) {
+			return id != null && id.equals(other.id);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+}
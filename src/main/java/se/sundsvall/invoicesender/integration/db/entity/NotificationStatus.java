@@ -0,0 +1,7 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+public enum NotificationStatus {
+	PENDING,
+	SENT,
+	FAILED
+}
@@ -0,0 +1,7 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+public enum NotificationType {
+	SLACK,
+	STATUS_REPORT,
+	ERROR_REPORT
+}
@@ -0,0 +1,7 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+public enum QueuedSendStatus {
+	PENDING,
+	CLAIMED,
+	COMPLETED
+}
@@ -0,0 +1,167 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import jakarta.persistence.UniqueConstraint;
+import java.time.LocalDateTime;
+
+/**
+ * The fingerprint of an invoice that has been sent digitally - its municipality id, invoice number and payment
+ * reference - so that the same invoice isn't sent twice, should it appear in another batch.
+ */
+@Entity
+@Table(name = "sent_invoices",
+	uniqueConstraints = {
+		@UniqueConstraint(name = "uq_sent_invoices_municipality_id_invoice_number_payment_reference", columnNames = {
+			"municipality_id", "invoice_number", "payment_reference"
+		})
+	})
+public class SentInvoiceEntity {
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	private Integer id;
+
+	@Column(name = "municipality_id", nullable = false)
+	private String municipalityId;
+
+	@Column(name = "invoice_number", nullable = false)
+	private String invoiceNumber;
+
+	@Column(name = "payment_reference", nullable = false)
+	private String paymentReference;
+
+	@Column(name = "item_id")
+	private Integer itemId;
+
+	@Column(name = "filename")
+	private String filename;
+
+	@Column(name = "sent_at", nullable = false)
+	private LocalDateTime sentAt;
+
+	public Integer getId() {
+		return id;
+	}
+
+	public void setId(final Integer id) {
+		this.id = id;
+	}
+
+	public SentInvoiceEntity withId(final Integer id) {
+		this.id = id;
+		return this;
+	}
+
+	public String getMunicipalityId() {
+		return municipalityId;
+	}
+
+	public void setMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+	}
+
+	public SentInvoiceEntity withMunicipalityId(final String municipalityId) {
+		this.municipalityId = municipalityId;
+		return this;
+	}
+
+	public String getInvoiceNumber() {
+		return invoiceNumber;
+	}
+
+	public void setInvoiceNumber(final String invoiceNumber) {
+		this.invoiceNumber = invoiceNumber;
+	}
+
+	public SentInvoiceEntity withInvoiceNumber(final String invoiceNumber) {
+		this.invoiceNumber = invoiceNumber;
+		return this;
+	}
+
+	public String getPaymentReference() {
+		return paymentReference;
+	}
+
+	public void setPaymentReference(final String paymentReference) {
+		this.paymentReference = paymentReference;
+	}
+
+	public SentInvoiceEntity withPaymentReference(final String paymentReference) {
+		this.paymentReference = paymentReference;
+		return this;
+	}
+
+	public Integer getItemId() {
+		return itemId;
+	}
+
+	public void setItemId(final Integer itemId) {
+		this.itemId = itemId;
+	}
+
+	public SentInvoiceEntity withItemId(final Integer itemId) {
+		this.itemId = itemId;
+		return this;
+	}
+
+	public String getFilename() {
+		return filename;
+	}
+
+	public void setFilename(final String filename) {
+		this.filename = filename;
+	}
+
+	public SentInvoiceEntity withFilename(final String filename) {
+		this.filename = filename;
+		return this;
+	}
+
+	public LocalDateTime getSentAt() {
+		return sentAt;
+	}
+
+	public void setSentAt(final LocalDateTime sentAt) {
+		this.sentAt = sentAt;
+	}
+
+	public SentInvoiceEntity withSentAt(final LocalDateTime sentAt) {
+		this.sentAt = sentAt;
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "SentInvoiceEntity{" +
+			"id=" + id +
+			", municipalityId='" + municipalityId + '\'' +
+			", invoiceNumber='" + invoiceNumber + '\'' +
+			", paymentReference='" + paymentReference + '\'' +
+			", itemId=" + itemId +
+			", filename='" + filename + '\'' +
+			", sentAt=" + sentAt +
+			'}';
+	}
+
+	@Override
+	public boolean equals(final Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (o instanceof final SentInvoiceEntity other) {
+			return id != null && id.equals(other.id);
+		}
+
+		return false;
+	}
+
+	@Override
+	public int hashCode() {
+		return getClass().hashCode();
+	}
+}
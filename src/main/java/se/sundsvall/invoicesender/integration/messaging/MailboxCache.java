@@ -0,0 +1,88 @@
+package se.sundsvall.invoicesender.integration.messaging;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.stereotype.Component;
+
+/**
+ * Time-bounded cache of the recipients, by party id, that have no reachable digital mailbox - so that invoices to them
+ * go straight to paper mail instead of being uploaded to Messaging only to be rejected. Recipients expire from the
+ * cache after a while, so that new mailbox sign-ups are picked up.
+ */
+@Component
+class MailboxCache {
+
+	private final boolean enabled;
+	private final Duration ttl;
+	private final int maxEntries;
+	private final Map<String, Instant> unreachableRecipients = new ConcurrentHashMap<>();
+
+	private Clock clock = Clock.systemUTC();
+
+	MailboxCache(final MessagingIntegrationProperties properties) {
+		enabled = properties.mailboxCache().enabled();
+		ttl = properties.mailboxCache().ttl();
+		maxEntries = properties.mailboxCache().maxEntries();
+	}
+
+	/**
+	 * Checks whether the given recipient is cached as having no reachable digital mailbox.
+	 *
+	 * @param  partyId the party id of the recipient
+	 * @return         true if the recipient is cached, otherwise false
+	 */
+	boolean isUnreachable(final String partyId) {
+		if (!enabled || partyId == null) {
+			return false;
+		}
+
+		final var expiresAt = unreachableRecipients.get(partyId);
+		if (expiresAt == null) {
+			return false;
+		}
+		if (!clock.instant().isBefore(expiresAt)) {
+			unreachableRecipients.remove(partyId, expiresAt);
+			return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Caches a recipient as having no reachable digital mailbox.
+	 *
+	 * @param partyId the party id of the recipient
+	 */
+	void putUnreachable(final String partyId) {
+		if (!enabled || partyId == null) {
+			return;
+		}
+
+		final var now = clock.instant();
+		if (unreachableRecipients.size() >= maxEntries) {
+			unreachableRecipients.values().removeIf(expiresAt -> !now.isBefore(expiresAt));
+			if (unreachableRecipients.size() >= maxEntries) {
+				// Rather miss out on the cache than let it grow without bounds
+				return;
+			}
+		}
+		unreachableRecipients.put(partyId, now.plus(ttl));
+	}
+
+	/**
+	 * Removes a recipient from the cache, e.g. since it has been found to have a reachable mailbox.
+	 *
+	 * @param partyId the party id of the recipient
+	 */
+	void remove(final String partyId) {
+		if (partyId != null) {
+			unreachableRecipients.remove(partyId);
+		}
+	}
+
+	int size() {
+		return unreachableRecipients.size();
+	}
+}
@@ -1,10 +1,13 @@
 package se.sundsvall.invoicesender.integration.messaging;
 
 import generated.se.sundsvall.messaging.DigitalInvoiceRequest;
-import generated.se.sundsvall.messaging.EmailRequest;
+import generated.se.sundsvall.messaging.EmailBatchRequest;
+import generated.se.sundsvall.messaging.Mailbox;
+import generated.se.sundsvall.messaging.MessageBatchResult;
 import generated.se.sundsvall.messaging.MessageResult;
 import generated.se.sundsvall.messaging.SlackRequest;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import java.util.List;
 import org.springframework.cloud.openfeign.FeignClient;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -22,8 +25,11 @@ interface MessagingClient {
 	@PostMapping("/{municipalityId}/digital-invoice")
 	MessageResult sendDigitalInvoice(@PathVariable("municipalityId") String municipalityId, @RequestBody DigitalInvoiceRequest request);
 
-	@PostMapping("/{municipalityId}/email")
-	MessageResult sendEmail(@PathVariable("municipalityId") String municipalityId, @RequestBody EmailRequest request);
+	@PostMapping("/{municipalityId}/email/batch")
+	MessageBatchResult sendEmailBatch(@PathVariable("municipalityId") String municipalityId, @RequestBody EmailBatchRequest request);
+
+	@PostMapping("/{municipalityId}/{organizationNumber}/mailboxes")
+	List<Mailbox> getMailboxes(@PathVariable("municipalityId") String municipalityId, @PathVariable("organizationNumber") String organizationNumber, @RequestBody List<String> partyIds);
 
 	@PostMapping("/{municipalityId}/slack")
 	MessageResult sendSlackMessage(@PathVariable("municipalityId") String municipalityId, @RequestBody SlackRequest slackRequest);
@@ -1,12 +1,20 @@
 package se.sundsvall.invoicesender.integration.messaging;
 
+import feign.RetryableException;
+import generated.se.sundsvall.messaging.Mailbox;
 import generated.se.sundsvall.messaging.MessageStatus;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import java.time.LocalDate;
 import java.util.Base64;
+import java.util.Collection;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.RejectedExecutionException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Component;
+import org.springframework.web.ErrorResponse;
 import org.thymeleaf.ITemplateEngine;
 import org.thymeleaf.context.Context;
 import se.sundsvall.dept44.problem.ThrowableProblem;
@@ -17,7 +25,12 @@ import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.toSet;
+import static org.apache.commons.lang3.StringUtils.isBlank;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.ALREADY_SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT_RETRYABLE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
 
@@ -33,29 +46,39 @@ public class MessagingIntegration {
 	private final MessagingIntegrationProperties properties;
 	private final MessagingClient client;
 	private final MessagingMapper messagingMapper;
+	private final MailboxCache mailboxCache;
 
 	private final ITemplateEngine templateEngine;
 
 	MessagingIntegration(final MessagingIntegrationProperties properties,
 		final MessagingClient client,
 		final MessagingMapper messagingMapper,
+		final MailboxCache mailboxCache,
 		final ITemplateEngine templateEngine) {
 		this.client = client;
 		this.messagingMapper = messagingMapper;
+		this.mailboxCache = mailboxCache;
 		this.templateEngine = templateEngine;
 		this.properties = properties;
 	}
 
-	public ItemStatus sendInvoice(final String path, final ItemEntity invoice, final String municipalityId) {
+	public ItemStatus sendInvoice(final byte[] content, final ItemEntity invoice, final String municipalityId) {
 		try {
-			final var request = messagingMapper.toDigitalInvoiceRequest(invoice, path);
+			final var request = messagingMapper.toDigitalInvoiceRequest(invoice, content);
 
 			final var response = client.sendDigitalInvoice(municipalityId, request);
 
 			// We know that we have a single message with a single delivery - extract the status
 			final var status = response.getDeliveries().getFirst().getStatus();
-
-			return status == MessageStatus.SENT ? SENT : NOT_SENT;
+			return switch (status) {
+				case SENT -> SENT;
+				case NOT_SENT, NO_CONTACT_SETTINGS_FOUND, NO_CONTACT_WANTED -> {
+					// The recipient has no reachable digital mailbox
+					mailboxCache.putUnreachable(invoice.getRecipientPartyId());
+					yield NOT_SENT;
+				}
+				case null, default -> NOT_SENT;
+			};
 		} catch (final ThrowableProblem e) {
 			if (nonNull(e.getMessage()) && e.getMessage().contains("[invalid_token_response]")) {
 				LOG.error("Messaging indicates that the certificate to the external digital mail provider in digital-mail-sender-service is invalid");
@@ -69,44 +92,123 @@ public class MessagingIntegration {
 	}
 
 	private ItemStatus handleNotSent(Exception e) {
+		if (isTransient(e)) {
+			LOG.warn("Unable to send invoice due to a transient error: {}", e.getMessage());
+			return NOT_SENT_RETRYABLE;
+		}
 		LOG.warn("Unable to send invoice", e);
 
 		return NOT_SENT;
 	}
 
-	public void sendErrorReport(final LocalDate date, final String municipalityId, String batchName, String message) {
-		LOG.info("Sending error report");
-		final var request = messagingMapper.toErrorEmailRequest(generateErrorReportMessage(municipalityId, batchName, message), date);
+	/**
+	 * Timeouts and I/O errors, 429 and 5xx responses, an open circuit breaker and a full concurrency limit are transient
+	 * errors - anything else, e.g. a rejected request, is permanent.
+	 */
+	static boolean isTransient(final Exception e) {
+		return switch (e) {
+			case RetryableException _, CallNotPermittedException _, RejectedExecutionException _ -> true;
+			case ThrowableProblem problem -> isTransient(problem.getStatus());
+			case ErrorResponse errorResponse -> isTransient(errorResponse.getStatusCode());
+			default -> false;
+		};
+	}
 
-		for (final var recipientEmailAddress : properties.errorReport().recipientEmailAddresses()) {
-			try {
-				request.setEmailAddress(recipientEmailAddress);
-				client.sendEmail(municipalityId, request);
-				LOG.info("Error report sent to {}", recipientEmailAddress);
-			} catch (final Exception e) {
-				LOG.warn("Unable to send error report to {}", recipientEmailAddress, e);
-			}
-		}
+	private static boolean isTransient(final HttpStatusCode status) {
+		return nonNull(status) && (status.is5xxServerError() || status.isSameCodeAs(TOO_MANY_REQUESTS));
+	}
 
+	/**
+	 * Checks whether a recipient is known to have no reachable digital mailbox, from an earlier send or mailbox check.
+	 *
+	 * @param  partyId the party id of the recipient
+	 * @return         true if the recipient is known to have no reachable digital mailbox, otherwise false
+	 */
+	public boolean hasUnreachableMailbox(final String partyId) {
+		return mailboxCache.isUnreachable(partyId);
 	}
 
-	public void sendStatusReport(final List<BatchEntity> batches, final LocalDate date, final String municipalityId) {
-		LOG.info("Sending status report");
-		final var request = messagingMapper.toStatusEmailRequest(generateStatusReportMessage(batches), date);
+	/**
+	 * Checks the digital mailboxes of the given recipients in bulk, and caches the ones without a reachable mailbox.
+	 * Recipients that are already cached aren't checked again. Does nothing unless an organization number is configured
+	 * for the mailbox cache.
+	 *
+	 * @param municipalityId the municipality id
+	 * @param partyIds       the party ids of the recipients
+	 */
+	public void checkMailboxes(final String municipalityId, final Collection<String> partyIds) {
+		final var settings = properties.mailboxCache();
+		if (!settings.enabled() || isBlank(settings.organizationNumber())) {
+			return;
+		}
 
-		for (final var recipientEmailAddress : properties.statusReport().recipientEmailAddresses()) {
-			try {
-				request.setEmailAddress(recipientEmailAddress);
+		final var uncheckedPartyIds = partyIds.stream()
+			.filter(Objects::nonNull)
+			.distinct()
+			.filter(partyId -> !mailboxCache.isUnreachable(partyId))
+			.toList();
 
-				client.sendEmail(municipalityId, request);
-				LOG.info(LOG_MESSAGE_STATUS_REPORT, recipientEmailAddress);
+		var unreachableCount = 0;
+		for (var i = 0; i < uncheckedPartyIds.size(); i += settings.checkChunkSize()) {
+			final var chunk = uncheckedPartyIds.subList(i, Math.min(i + settings.checkChunkSize(), uncheckedPartyIds.size()));
+			try {
+				final var unreachablePartyIds = client.getMailboxes(municipalityId, settings.organizationNumber(), chunk).stream()
+					.filter(mailbox -> Boolean.FALSE.equals(mailbox.getReachable()))
+					.map(Mailbox::getPartyId)
+					.collect(toSet());
+				unreachablePartyIds.forEach(mailboxCache::putUnreachable);
+				unreachableCount += unreachablePartyIds.size();
 			} catch (final Exception e) {
-				LOG.warn("Unable to send status report to {}", recipientEmailAddress, e);
+				// The invoices are sent without the check - recipients without a mailbox are found out then
+				LOG.warn("Unable to check digital mailboxes: {}", e.getMessage());
+				return;
 			}
 		}
+		LOG.info("Checked {} digital mailbox(es) - {} unreachable", uncheckedPartyIds.size(), unreachableCount);
 	}
 
-	String generateErrorReportMessage(final String municipalityId, final String batchName, final String message) {
+	/**
+	 * Estimates the number of calls that {@link #checkMailboxes(String, Collection)} makes for the given number of
+	 * recipients, assuming that none of them are cached.
+	 *
+	 * @param  recipientCount the number of recipients
+	 * @return                the number of calls
+	 */
+	public int estimateMailboxCheckCalls(final int recipientCount) {
+		final var settings = properties.mailboxCache();
+		if (!settings.enabled() || isBlank(settings.organizationNumber())) {
+			return 0;
+		}
+		return (recipientCount + settings.checkChunkSize() - 1) / settings.checkChunkSize();
+	}
+
+	/**
+	 * Sends an error report to all recipients, in a single call.
+	 *
+	 * @param municipalityId the municipality id
+	 * @param date           the date of the report
+	 * @param htmlMessage    the BASE64-encoded report, as generated by {@link #generateErrorReportMessage}
+	 */
+	public void sendErrorReport(final String municipalityId, final LocalDate date, final String htmlMessage) {
+		LOG.info("Sending error report");
+		client.sendEmailBatch(municipalityId, messagingMapper.toErrorEmailBatchRequest(htmlMessage, date));
+		LOG.info("Error report sent to {}", properties.errorReport().recipientEmailAddresses());
+	}
+
+	/**
+	 * Sends a status report to all recipients, in a single call.
+	 *
+	 * @param municipalityId the municipality id
+	 * @param date           the date of the report
+	 * @param htmlMessage    the BASE64-encoded report, as generated by {@link #generateStatusReportMessage}
+	 */
+	public void sendStatusReport(final String municipalityId, final LocalDate date, final String htmlMessage) {
+		LOG.info("Sending status report");
+		client.sendEmailBatch(municipalityId, messagingMapper.toStatusEmailBatchRequest(htmlMessage, date));
+		LOG.info(LOG_MESSAGE_STATUS_REPORT, properties.statusReport().recipientEmailAddresses());
+	}
+
+	public String generateErrorReportMessage(final String municipalityId, final String batchName, final String message) {
 		final var context = new Context();
 		context.setVariable("requestId", RequestId.get());
 		context.setVariable("municipalityId", municipalityId);
@@ -116,7 +218,7 @@ public class MessagingIntegration {
 		return Base64.getEncoder().encodeToString(htmlMessage.getBytes(UTF_8));
 	}
 
-	String generateStatusReportMessage(final List<BatchEntity> batches) {
+	public String generateStatusReportMessage(final List<BatchEntity> batches) {
 		final var context = new Context();
 		context.setVariable("batches", batches);
 		final var htmlMessage = templateEngine.process(STATUS_TEMPLATE_NAME, context);
@@ -127,20 +229,11 @@ public class MessagingIntegration {
 		LOG.info("Sending '{}' as slack message", message);
 
 		final var request = messagingMapper.toSlackRequest(message);
-
-		try {
-			client.sendSlackMessage(municipalityId, request);
-			LOG.info(LOG_MESSAGE_STATUS_REPORT, request.getChannel());
-		} catch (final Exception e) {
-			LOG.warn("Unable to send slack message to {}", request.getChannel());
-		}
+		client.sendSlackMessage(municipalityId, request);
+		LOG.info("Slack message sent to {}", request.getChannel());
 	}
 
-	public void sendSlackMessage(final BatchEntity batch, final LocalDate date, final String municipalityId) {
-		sendSlackMessage(municipalityId, generateSlackMessage(batch, date));
-	}
-
-	String generateSlackMessage(final BatchEntity batch, LocalDate date) {
+	public String generateSlackMessage(final BatchEntity batch, LocalDate date) {
 
 		if (!batch.isProcessingEnabled()) {
 			return """
@@ -153,22 +246,31 @@ public class MessagingIntegration {
 		final var numberOfSentInvoices = batch.getSentItems();
 		final var numberOfNotSentInvoices = batch.getItems().stream()
 			.filter(invoices -> invoices.getType() == INVOICE)
-			.filter(invoices -> invoices.getStatus() != SENT)
+			.filter(invoices -> invoices.getStatus() != SENT && invoices.getStatus() != ALREADY_SENT)
+			.count();
+		final var numberOfDuplicateInvoices = batch.getItems().stream()
+			.filter(invoices -> invoices.getType() == INVOICE)
+			.filter(invoices -> invoices.getStatus() == ALREADY_SENT)
 			.count();
 
-		if (numberOfSentInvoices == 0 && numberOfNotSentInvoices == 0) {
+		if (numberOfSentInvoices == 0 && numberOfNotSentInvoices == 0 && numberOfDuplicateInvoices == 0) {
 			return """
 				Batch: %s
 				Date: %s
 				No invoices to send
 				""".formatted(batch.getBasename(), date);
-		} else {
-			return """
-				Batch: %s
-				Date: %s
-				Invoices sent digitally via Kivra: %s
-				Invoices sent via regular mail: %s
-				""".formatted(batch.getBasename(), date, numberOfSentInvoices, numberOfNotSentInvoices);
 		}
+
+		final var message = """
+			Batch: %s
+			Date: %s
+			Invoices sent digitally via Kivra: %s
+			Invoices sent via regular mail: %s
+			""".formatted(batch.getBasename(), date, numberOfSentInvoices, numberOfNotSentInvoices);
+		if (numberOfDuplicateInvoices == 0) {
+			return message;
+		}
+		// Only mention duplicates when there are any, to keep the usual message as it is
+		return message + "Invoices already sent in an earlier batch (skipped): %s\n".formatted(numberOfDuplicateInvoices);
 	}
 }
@@ -1,6 +1,7 @@
 package se.sundsvall.invoicesender.integration.messaging;
 
 import feign.Request;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.openfeign.FeignBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
@@ -10,6 +11,7 @@ import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import se.sundsvall.dept44.configuration.feign.FeignConfiguration;
 import se.sundsvall.dept44.configuration.feign.FeignMultiCustomizer;
 import se.sundsvall.dept44.configuration.feign.decoder.ProblemErrorDecoder;
+import se.sundsvall.invoicesender.integration.AdaptiveConcurrencyLimiter;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
@@ -36,4 +38,10 @@ class MessagingIntegrationConfiguration {
 				true))
 			.composeCustomizersToOne();
 	}
+
+	// Picked up as a Feign capability, wrapping the HTTP client of the integration
+	@Bean
+	AdaptiveConcurrencyLimiter concurrencyLimiter(final MessagingIntegrationProperties properties, final MeterRegistry meterRegistry) {
+		return new AdaptiveConcurrencyLimiter(INTEGRATION_NAME, properties.concurrencyLimit(), meterRegistry);
+	}
 }
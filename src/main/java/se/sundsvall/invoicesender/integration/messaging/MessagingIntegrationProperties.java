@@ -5,11 +5,13 @@ import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import java.time.Duration;
 import java.util.List;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 import org.springframework.validation.annotation.Validated;
+import se.sundsvall.invoicesender.integration.ConcurrencyLimit;
 import se.sundsvall.invoicesender.integration.Oauth2;
 
 @Validated
@@ -28,6 +30,10 @@ record MessagingIntegrationProperties(
 
 	@Valid @NotNull Oauth2 oauth2,
 
+	@Valid @DefaultValue ConcurrencyLimit concurrencyLimit,
+
+	@Valid @DefaultValue MailboxCache mailboxCache,
+
 	@Valid @NotNull Invoice invoice,
 
 	@Valid @NotNull ErrorReport errorReport,
@@ -41,6 +47,29 @@ record MessagingIntegrationProperties(
 		@DefaultValue("Faktura #") String referencePrefix) {
 	}
 
+	/**
+	 * Settings for the cache of recipients without a reachable digital mailbox.
+	 *
+	 * @param enabled            whether recipients are cached at all
+	 * @param ttl                how long a recipient is cached, before a new mailbox is looked for
+	 * @param maxEntries         the maximum number of cached recipients
+	 * @param organizationNumber the organization number that invoices are sent on behalf of - mailboxes are only checked
+	 *                           up front when it is set
+	 * @param checkChunkSize     the maximum number of recipients to check in a single call
+	 */
+	record MailboxCache(
+
+		@DefaultValue("true") boolean enabled,
+
+		@DefaultValue("P7D") @NotNull Duration ttl,
+
+		@DefaultValue("100000") @Positive int maxEntries,
+
+		String organizationNumber,
+
+		@DefaultValue("100") @Positive int checkChunkSize) {
+	}
+
 	record StatusReport(
 
 		@NotBlank String senderName,
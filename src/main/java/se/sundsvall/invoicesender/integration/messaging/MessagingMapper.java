@@ -4,12 +4,10 @@ import generated.se.sundsvall.messaging.Details;
 import generated.se.sundsvall.messaging.DigitalInvoiceFile;
 import generated.se.sundsvall.messaging.DigitalInvoiceParty;
 import generated.se.sundsvall.messaging.DigitalInvoiceRequest;
-import generated.se.sundsvall.messaging.EmailRequest;
+import generated.se.sundsvall.messaging.EmailBatchRequest;
 import generated.se.sundsvall.messaging.EmailSender;
+import generated.se.sundsvall.messaging.Party;
 import generated.se.sundsvall.messaging.SlackRequest;
-import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.Files;
 import java.time.LocalDate;
 import java.util.Base64;
 import java.util.List;
@@ -29,15 +27,12 @@ import static java.util.Optional.ofNullable;
 public class MessagingMapper {
 
 	private final MessagingIntegrationProperties properties;
-	private final FileSystem fileSystem;
 
-	MessagingMapper(final MessagingIntegrationProperties properties, final FileSystem fileSystem) {
+	MessagingMapper(final MessagingIntegrationProperties properties) {
 		this.properties = properties;
-		this.fileSystem = fileSystem;
 	}
 
-	public DigitalInvoiceRequest toDigitalInvoiceRequest(final ItemEntity invoice, final String path) throws IOException {
-		final var invoiceContent = Files.readAllBytes(fileSystem.getPath(path).resolve(invoice.getFilename()));
+	public DigitalInvoiceRequest toDigitalInvoiceRequest(final ItemEntity invoice, final byte[] invoiceContent) {
 		final var encodedInvoiceContent = new String(Base64.getEncoder().encode(invoiceContent), UTF_8);
 
 		return new DigitalInvoiceRequest()
@@ -59,16 +54,22 @@ public class MessagingMapper {
 				.content(encodedInvoiceContent)));
 	}
 
-	public EmailRequest toStatusEmailRequest(final String htmlMessage, final LocalDate date) {
-		return toEmailRequest(htmlMessage, properties.statusReport().subjectPrefix(), date, properties.statusReport().senderName(), properties.statusReport().senderEmailAddress());
+	public EmailBatchRequest toStatusEmailBatchRequest(final String htmlMessage, final LocalDate date) {
+		return toEmailBatchRequest(htmlMessage, properties.statusReport().subjectPrefix(), date, properties.statusReport().senderName(), properties.statusReport().senderEmailAddress(),
+			properties.statusReport().recipientEmailAddresses());
 	}
 
-	public EmailRequest toErrorEmailRequest(final String htmlMessage, final LocalDate date) {
-		return toEmailRequest(htmlMessage, properties.errorReport().subjectPrefix(), date, properties.errorReport().senderName(), properties.errorReport().senderEmailAddress());
+	public EmailBatchRequest toErrorEmailBatchRequest(final String htmlMessage, final LocalDate date) {
+		return toEmailBatchRequest(htmlMessage, properties.errorReport().subjectPrefix(), date, properties.errorReport().senderName(), properties.errorReport().senderEmailAddress(),
+			properties.errorReport().recipientEmailAddresses());
 	}
 
-	private EmailRequest toEmailRequest(final String htmlMessage, final String subjectPrefix, final LocalDate date, final String senderName, final String senderEmailAddress) {
-		return new EmailRequest()
+	private EmailBatchRequest toEmailBatchRequest(final String htmlMessage, final String subjectPrefix, final LocalDate date, final String senderName, final String senderEmailAddress,
+		final List<String> recipientEmailAddresses) {
+		return new EmailBatchRequest()
+			.parties(recipientEmailAddresses.stream()
+				.map(recipientEmailAddress -> new Party().emailAddress(recipientEmailAddress))
+				.toList())
 			.sender(new EmailSender()
 				.name(senderName)
 				.address(senderEmailAddress))
@@ -4,9 +4,12 @@ import java.util.Optional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.util.LegalIdValidator;
 
 import static generated.se.sundsvall.party.PartyType.PRIVATE;
-import static se.sundsvall.invoicesender.util.LegalIdUtil.guessLegalIdCenturyDigits;
+import static se.sundsvall.invoicesender.util.LegalIdValidator.NORMALIZED_LENGTH;
+import static se.sundsvall.invoicesender.util.LegalIdValidator.Reason.MISSING;
+import static se.sundsvall.invoicesender.util.LegalIdValidator.Reason.WRONG_LENGTH;
 
 @Component
 public class PartyIntegration {
@@ -29,16 +32,19 @@ public class PartyIntegration {
 	 * @return                Optional of LegalIdAndPartyId which is a key-value pair of legal id and party id.
 	 */
 	public Optional<LegalIdAndPartyId> getPartyId(final String legalId, final String municipalityId) {
-		// Strip everything but digits from the legal id
-		var legalIdWithDigitsOnly = legalId.replaceAll("\\D", "");
-		String legalIdWithCentury = "";
+		// The legal id is normalised as long as it has the right number of digits, even if it isn't valid
+		final var normalized = new char[NORMALIZED_LENGTH];
+		final var reason = LegalIdValidator.normalize(legalId, normalized);
+		if (reason == MISSING || reason == WRONG_LENGTH) {
+			LOG.info("Unable to get party id for legal id: {}, {}", legalId, reason);
+			return Optional.empty();
+		}
 
+		final var legalIdWithCentury = new String(normalized);
 		try {
-			legalIdWithCentury = guessLegalIdCenturyDigits(legalIdWithDigitsOnly);
-			var finalLegalId = legalIdWithCentury;
-			return partyClient.getPartyId(municipalityId, PRIVATE, legalIdWithCentury).map(partyId -> new LegalIdAndPartyId(finalLegalId, partyId));
+			return partyClient.getPartyId(municipalityId, PRIVATE, legalIdWithCentury).map(partyId -> new LegalIdAndPartyId(legalIdWithCentury, partyId));
 		} catch (final Exception e) {
-			LOG.info("Unable to get party id for legal id: {} (calculated to {}), {}", legalIdWithDigitsOnly, legalIdWithCentury, e.getMessage());
+			LOG.info("Unable to get party id for legal id: {} (calculated to {}), {}", legalId, legalIdWithCentury, e.getMessage());
 			return Optional.empty();
 		}
 	}
@@ -1,6 +1,7 @@
 package se.sundsvall.invoicesender.integration.party;
 
 import feign.Request;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.util.List;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.cloud.openfeign.FeignBuilderCustomizer;
@@ -11,6 +12,7 @@ import org.springframework.security.oauth2.core.AuthorizationGrantType;
 import se.sundsvall.dept44.configuration.feign.FeignConfiguration;
 import se.sundsvall.dept44.configuration.feign.FeignMultiCustomizer;
 import se.sundsvall.dept44.configuration.feign.decoder.ProblemErrorDecoder;
+import se.sundsvall.invoicesender.integration.AdaptiveConcurrencyLimiter;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.springframework.http.HttpStatus.NOT_FOUND;
@@ -37,4 +39,10 @@ class PartyIntegrationConfiguration {
 				true))
 			.composeCustomizersToOne();
 	}
+
+	// Picked up as a Feign capability, wrapping the HTTP client of the integration
+	@Bean
+	AdaptiveConcurrencyLimiter concurrencyLimiter(final PartyIntegrationProperties properties, final MeterRegistry meterRegistry) {
+		return new AdaptiveConcurrencyLimiter(INTEGRATION_NAME, properties.concurrencyLimit(), meterRegistry);
+	}
 }
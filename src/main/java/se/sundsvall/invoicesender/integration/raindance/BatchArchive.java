@@ -0,0 +1,234 @@
+package se.sundsvall.invoicesender.integration.raindance;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static java.nio.channels.FileChannel.MapMode.READ_ONLY;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Random-access view of a decompressed batch ZIP file. Entries are resolved from the central directory, so only the
+ * entries that are actually needed are ever read.
+ */
+public final class BatchArchive implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchArchive.class);
+
+	private final ZipFile zipFile;
+
+	private BatchArchive(final ZipFile zipFile) {
+		this.zipFile = zipFile;
+	}
+
+	/**
+	 * Opens the given ZIP file. The file is memory-mapped when the underlying file system supports it, otherwise it is
+	 * read through a regular seekable channel. Either way, the file is released when the archive is closed.
+	 *
+	 * @param  zipFilePath the path to the ZIP file
+	 * @return             the opened archive
+	 * @throws IOException if the ZIP file can't be opened
+	 */
+	public static BatchArchive open(final Path zipFilePath) throws IOException {
+		final var channel = openChannel(zipFilePath);
+		try {
+			return new BatchArchive(ZipFile.builder()
+				.setSeekableByteChannel(channel)
+				.get());
+		} catch (final IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the names of all entries in the archive, in central directory order.
+	 *
+	 * @return the entry names
+	 */
+	public List<String> getEntryNames() {
+		return Collections.list(zipFile.getEntries()).stream()
+			.map(ZipArchiveEntry::getName)
+			.toList();
+	}
+
+	/**
+	 * Reads the (uncompressed) content of a single entry.
+	 *
+	 * @param  entryName   the entry name
+	 * @return             the entry content
+	 * @throws IOException if the entry doesn't exist or can't be read
+	 */
+	public byte[] read(final String entryName) throws IOException {
+		try (var in = zipFile.getInputStream(getEntry(entryName))) {
+			return in.readAllBytes();
+		}
+	}
+
+	/**
+	 * Gets the uncompressed size of a single entry, as recorded in the central directory.
+	 *
+	 * @param  entryName   the entry name
+	 * @return             the uncompressed size in bytes, or -1 if it isn't known
+	 * @throws IOException if the entry doesn't exist
+	 */
+	public long getSize(final String entryName) throws IOException {
+		return getEntry(entryName).getSize();
+	}
+
+	/**
+	 * Extracts a single entry to the given target path, replacing any existing file.
+	 *
+	 * @param  entryName   the entry name
+	 * @param  target      the target path
+	 * @throws IOException if the entry doesn't exist or can't be extracted
+	 */
+	public void extract(final String entryName, final Path target) throws IOException {
+		try (var in = zipFile.getInputStream(getEntry(entryName))) {
+			Files.copy(in, target, REPLACE_EXISTING);
+		}
+	}
+
+	/**
+	 * Copies a single entry, as-is and without re-compressing it, to the given ZIP output stream.
+	 *
+	 * @param  entryName   the entry name
+	 * @param  out         the ZIP output stream
+	 * @throws IOException if the entry doesn't exist or can't be copied
+	 */
+	public void copyRawEntry(final String entryName, final ZipArchiveOutputStream out) throws IOException {
+		final var entry = getEntry(entryName);
+		try (var rawIn = zipFile.getRawInputStream(entry)) {
+			out.addRawArchiveEntry(entry, rawIn);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		zipFile.close();
+	}
+
+	private ZipArchiveEntry getEntry(final String entryName) throws NoSuchFileException {
+		final var entry = zipFile.getEntry(entryName);
+		if (entry == null) {
+			throw new NoSuchFileException(entryName);
+		}
+		return entry;
+	}
+
+	private static SeekableByteChannel openChannel(final Path zipFilePath) throws IOException {
+		final var channel = Files.newByteChannel(zipFilePath, READ);
+
+		if (channel instanceof final FileChannel fileChannel) {
+			final var arena = Arena.ofShared();
+			try {
+				final var segment = fileChannel.map(READ_ONLY, 0, fileChannel.size(), arena);
+				// The mapping stays valid after the channel has been closed, until the arena is closed
+				fileChannel.close();
+				return new MemorySegmentChannel(segment, arena);
+			} catch (final UnsupportedOperationException e) {
+				arena.close();
+				LOG.debug("Memory-mapping not supported for '{}' - using a regular channel", zipFilePath);
+			} catch (final IOException e) {
+				arena.close();
+				channel.close();
+				throw e;
+			}
+		}
+		return channel;
+	}
+
+	/**
+	 * Read-only seekable channel over a (memory-mapped) memory segment. Closing the channel closes the arena of the
+	 * segment, which unmaps the file right away rather than whenever the garbage collector gets to it.
+	 */
+	static final class MemorySegmentChannel implements SeekableByteChannel {
+
+		private final MemorySegment segment;
+		private final Arena arena;
+		private long position;
+		private boolean open = true;
+
+		MemorySegmentChannel(final MemorySegment segment, final Arena arena) {
+			this.segment = segment;
+			this.arena = arena;
+		}
+
+		@Override
+		public synchronized int read(final ByteBuffer dst) throws IOException {
+			ensureOpen();
+			if (position >= segment.byteSize()) {
+				return -1;
+			}
+			final var length = (int) Math.min(dst.remaining(), segment.byteSize() - position);
+			dst.put(segment.asSlice(position, length).asByteBuffer());
+			position += length;
+			return length;
+		}
+
+		@Override
+		public int write(final ByteBuffer src) {
+			throw new NonWritableChannelException();
+		}
+
+		@Override
+		public synchronized long position() throws IOException {
+			ensureOpen();
+			return position;
+		}
+
+		@Override
+		public synchronized SeekableByteChannel position(final long newPosition) throws IOException {
+			ensureOpen();
+			position = Math.min(newPosition, segment.byteSize());
+			return this;
+		}
+
+		@Override
+		public synchronized long size() throws IOException {
+			ensureOpen();
+			return segment.byteSize();
+		}
+
+		@Override
+		public SeekableByteChannel truncate(final long size) {
+			throw new NonWritableChannelException();
+		}
+
+		@Override
+		public synchronized boolean isOpen() {
+			return open;
+		}
+
+		@Override
+		public synchronized void close() {
+			if (open) {
+				open = false;
+				arena.close();
+			}
+		}
+
+		private void ensureOpen() throws ClosedChannelException {
+			if (!open) {
+				throw new ClosedChannelException();
+			}
+		}
+	}
+}
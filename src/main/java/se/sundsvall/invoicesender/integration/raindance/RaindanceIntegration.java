@@ -1,8 +1,11 @@
 package se.sundsvall.invoicesender.integration.raindance;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -14,14 +17,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.zip.Deflater;
-import jcifs.CIFSContext;
-import jcifs.config.PropertyConfiguration;
-import jcifs.context.BaseContext;
-import jcifs.smb.NtlmPasswordAuthenticator;
-import jcifs.smb.SmbFile;
 import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
-import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
 import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
 import org.apache.commons.compress.compressors.lzma.LZMACompressorInputStream;
 import org.apache.commons.compress.compressors.lzma.LZMACompressorOutputStream;
@@ -36,9 +34,12 @@ import static java.nio.file.StandardOpenOption.WRITE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.UNHANDLED;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.UNKNOWN;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.UNSENT_ITEMS;
+import static se.sundsvall.invoicesender.util.Constants.ARCHIVE_INDEX_FILENAME;
 import static se.sundsvall.invoicesender.util.Constants.BATCH_FILE_SUFFIX;
+import static se.sundsvall.invoicesender.util.Constants.SOURCE_ARCHIVE_FILENAME;
+import static se.sundsvall.invoicesender.util.Constants.SOURCE_BATCH_FILENAME;
 
-public class RaindanceIntegration {
+public class RaindanceIntegration implements Closeable {
 
 	private static final Logger LOG = LoggerFactory.getLogger(RaindanceIntegration.class);
 
@@ -51,11 +52,16 @@ public class RaindanceIntegration {
 	private final Path localWorkDirectory;
 	private final Map<String, RaindanceIntegrationProperties.RaindanceEnvironment.BatchSetup> batchSetup;
 	private final String outputFileExtraSuffix;
-	private final CIFSContext context;
+	private final SmbConnectionPool connectionPool;
 	private final String incomingShareUrl;
+	private final Map<String, BatchArchive> openArchives = new ConcurrentHashMap<>();
+	private final ShareListingCache listingCache;
 
-	public RaindanceIntegration(final RaindanceIntegrationProperties.RaindanceEnvironment environment, final FileSystem fileSystem) {
+	public RaindanceIntegration(final RaindanceIntegrationProperties.RaindanceEnvironment environment, final FileSystem fileSystem,
+		final SmbConnectionPool connectionPool) {
 		this.fileSystem = fileSystem;
+		this.connectionPool = connectionPool;
+		this.listingCache = new ShareListingCache(environment.listingCacheTtl());
 
 		try {
 			host = environment.host();
@@ -69,13 +75,6 @@ public class RaindanceIntegration {
 			batchSetup = environment.batchSetup();
 			outputFileExtraSuffix = environment.outputFileExtraSuffix();
 
-			// Initialize the JCIFS context
-			var config = new PropertyConfiguration(environment.jcifsProperties());
-
-			context = new BaseContext(config)
-				.withCredentials(new NtlmPasswordAuthenticator(
-					environment.domain(), environment.username(), environment.password()));
-
 			incomingShareUrl = String.format("smb://%s:%d/%s", host, port, appendTrailingSlashIfMissing(environment.share()));
 
 			LOG.info("Raindance will be reading from {}", incomingShareUrl);
@@ -84,110 +83,194 @@ public class RaindanceIntegration {
 		}
 	}
 
-	public List<BatchEntity> readBatches(final LocalDate date, final String batchName, final String municipalityId) throws IOException {
-		LOG.info("Reading batch(es) for {}", date);
+	/**
+	 * Lists the batch files on the incoming share for the given date and batch name.
+	 *
+	 * @param  date        the date
+	 * @param  batchName   the batch name (prefix)
+	 * @return             the matching batch files
+	 * @throws IOException if the share can't be listed
+	 */
+	public List<RemoteBatchFile> listBatchFiles(final LocalDate date, final String batchName) throws IOException {
 		var datePart = date.format(DATE_FORMATTER);
-		try (var share = new SmbFile(incomingShareUrl, context)) {
-			var batches = new ArrayList<BatchEntity>();
-
-			for (var file : share.listFiles()) {
-				var filename = file.getName();
-
-				// Filter manually - match on batch name
 
-				// filename starts with batchName parameter
-				// filename contains "-" + datePart + "_"
-				// filename lower-case ends with BATCH_FILE_SUFFIX
-
-				// if not - skip file, close and continue as below
+		// The listing is filtered on date server-side, and shared between batch prefixes running at the same time
+		var batchFiles = listingCache.get(datePart, () -> {
+			try (var share = connectionPool.resolve(incomingShareUrl)) {
+				var files = new ArrayList<RemoteBatchFile>();
+				for (var file : share.listFiles("*-" + datePart + "_*" + BATCH_FILE_SUFFIX)) {
+					try (file) {
+						// Double-check the suffix, in case the server matches wildcards loosely
+						if (file.getName().toLowerCase().endsWith(BATCH_FILE_SUFFIX)) {
+							files.add(new RemoteBatchFile(file.getName(), file.length()));
+						}
+					}
+				}
+				LOG.info("Found {} batch file(s) for {} on the incoming share", files.size(), datePart);
+				return files;
+			}
+		}).stream()
+			.filter(batchFile -> batchFile.name().startsWith(batchName))
+			.toList();
 
-				if (!filename.startsWith(batchName) || !filename.contains("-" + datePart + "_") || !filename.toLowerCase().endsWith(BATCH_FILE_SUFFIX)) {
-					LOG.info("Skipping file '{}'", filename);
+		LOG.info("Found {} batch(es) with prefix {} for {}", batchFiles.size(), batchName, date);
 
-					file.close();
+		return batchFiles;
+	}
 
-					continue;
+	/**
+	 * Reads a single batch file from the incoming share, and stages it in a local work directory. In streaming mode the
+	 * original batch file is kept on disk only, and the batch data isn't set.
+	 *
+	 * @param  date           the date
+	 * @param  batchName      the batch name (prefix)
+	 * @param  municipalityId the municipality id
+	 * @param  batchFile      the batch file, as listed
+	 * @param  streaming      whether to stream the batch file to disk instead of reading it into memory
+	 * @return                the (unsaved) batch
+	 * @throws IOException    if the batch can't be read or staged
+	 */
+	public BatchEntity readBatch(final LocalDate date, final String batchName, final String municipalityId, final RemoteBatchFile batchFile,
+		final boolean streaming) throws IOException {
+		var filename = batchFile.name();
+
+		try (var file = connectionPool.resolve(incomingShareUrl + filename)) {
+			// Get the matching batch setup
+			var matchingBatchSetup = batchSetup.get(batchName);
+
+			// Use a random sub-work-directory for the batch
+			var localBatchWorkDirectory = localWorkDirectory.resolve(UUID.randomUUID().toString());
+			Files.createDirectories(localBatchWorkDirectory);
+
+			// Create a batch
+			var batchEntity = new BatchEntity()
+				.withDate(date)
+				.withMunicipalityId(municipalityId)
+				.withLocalPath(localBatchWorkDirectory.toString())
+				.withBatchPrefix(batchName)
+				.withBasename(batchFile.basename())
+				.withFileSize(batchFile.size())
+				.withTargetPath(matchingBatchSetup.targetPath())
+				.withArchivePath(matchingBatchSetup.archivePath())
+				.withProcessingEnabled(matchingBatchSetup.process());
+			// Read/copy the file data
+			if (streaming) {
+				LOG.info("Streaming 7z file '{}' to disk", filename);
+				try (var in = file.getInputStream()) {
+					Files.copy(in, localBatchWorkDirectory.resolve(SOURCE_BATCH_FILENAME), StandardCopyOption.REPLACE_EXISTING);
 				}
-
-				// Get the matching batch setup
-				var matchingBatchSetup = batchSetup.get(batchName);
-
-				// Use a random sub-work-directory for the batch
-				var localBatchWorkDirectory = localWorkDirectory.resolve(UUID.randomUUID().toString());
-				Files.createDirectories(localBatchWorkDirectory);
-
-				// Create a batch
-				var batchEntity = new BatchEntity()
-					.withDate(date)
-					.withMunicipalityId(municipalityId)
-					.withLocalPath(localBatchWorkDirectory.toString())
-					.withBasename(filename.replaceAll("\\.zip\\.7z$", ""))
-					.withTargetPath(matchingBatchSetup.targetPath())
-					.withArchivePath(matchingBatchSetup.archivePath())
-					.withProcessingEnabled(matchingBatchSetup.process());
-				// Read/copy the file data
-				try (var in = file.getInputStream(); var baos = new ByteArrayOutputStream()) {
+			} else {
+				try (var in = file.getInputStream(); var baos = new ByteArrayOutputStream((int) Math.min(batchFile.size(), Integer.MAX_VALUE - 8))) {
 					IOUtils.copy(in, baos);
 					batchEntity.setData(baos.toByteArray());
 				}
-				file.close();
+			}
 
-				// Store the 7z file locally
-				var sevenZipFile = localBatchWorkDirectory.resolve(filename);
-				try (var out = Files.newOutputStream(sevenZipFile)) {
-					IOUtils.copy(new ByteArrayInputStream(batchEntity.getData()), out);
-				}
+			LOG.info("Processing 7z file '{}' using work directory '{}'", filename, localBatchWorkDirectory.toAbsolutePath());
 
-				LOG.info("Processing 7z file '{}' using work directory '{}'", filename, localBatchWorkDirectory.toAbsolutePath());
+			// Add the items to the batch
+			for (var zipEntryName : stageBatch(batchEntity)) {
+				batchEntity.getItems().add(new ItemEntity()
+					.withFilename(zipEntryName)
+					.withStatus(UNHANDLED)
+					.withType(UNKNOWN));
+			}
+			batchEntity.setTotalItems(batchEntity.getItems().size());
 
-				// Decompress the 7z (LZMA) file to a single ZIP file
-				var zipFilename = filename.replaceAll("\\.7z$", "");
-				var zipFile = localBatchWorkDirectory.resolve(zipFilename);
-				try (var fileInputStream = Files.newInputStream(sevenZipFile);
-					var lzmaInputStream = new LZMACompressorInputStream(fileInputStream)) {
-					Files.copy(lzmaInputStream, zipFile, StandardCopyOption.REPLACE_EXISTING);
-				}
+			return batchEntity;
+		}
+	}
 
-				// Process the ZIP file
-				try (var zipFileInputStream = Files.newInputStream(zipFile);
-					var zipArchiveInputStream = new ZipArchiveInputStream(zipFileInputStream)) {
+	/**
+	 * Restores the local work directory of an incomplete batch, so that it can be resumed. A work directory that is still
+	 * in place is re-used as-is - otherwise the batch is staged again in a new work directory, from the batch data or, if
+	 * the batch was processed in streaming mode, from the original batch file on the incoming share.
+	 *
+	 * @param  batch       the batch
+	 * @throws IOException if the batch can't be restored
+	 */
+	public void restoreBatch(final BatchEntity batch) throws IOException {
+		if (batch.getLocalPath() != null) {
+			var existingWorkDirectory = fileSystem.getPath(batch.getLocalPath());
+			if (Files.exists(existingWorkDirectory.resolve(SOURCE_ARCHIVE_FILENAME)) && Files.exists(existingWorkDirectory.resolve(ARCHIVE_INDEX_FILENAME))) {
+				LOG.info("Resuming batch '{}' using existing work directory '{}'", batch.getBasename(), existingWorkDirectory);
+				return;
+			}
+		}
 
-					var zipEntry = zipArchiveInputStream.getNextEntry();
-					while (zipEntry != null) {
-						var zipEntryName = zipEntry.getName();
+		var localBatchWorkDirectory = localWorkDirectory.resolve(UUID.randomUUID().toString());
+		Files.createDirectories(localBatchWorkDirectory);
+		batch.setLocalPath(localBatchWorkDirectory.toString());
 
-						// Mitigate potential "zip-slip"
-						if (localBatchWorkDirectory.resolve(zipEntryName).normalize().startsWith("..")) {
-							LOG.info("  Skipping file '{}'", zipEntryName);
+		if (batch.getData() == null) {
+			var sourcePath = incomingShareUrl + batch.getBasename() + BATCH_FILE_SUFFIX;
+			LOG.info("Re-reading 7z file '{}' from the incoming share", sourcePath);
+			try (var file = connectionPool.resolve(sourcePath); var in = file.getInputStream()) {
+				Files.copy(in, localBatchWorkDirectory.resolve(SOURCE_BATCH_FILENAME), StandardCopyOption.REPLACE_EXISTING);
+			}
+		}
 
-							continue;
-						}
+		LOG.info("Resuming batch '{}' using work directory '{}'", batch.getBasename(), localBatchWorkDirectory.toAbsolutePath());
 
-						LOG.info("Found file '{}'", zipEntryName);
+		stageBatch(batch);
+	}
 
-						// Store the file locally
-						var zipEntryOutFile = localBatchWorkDirectory.resolve(zipEntryName);
-						try (var zipEntryOutputStream = Files.newOutputStream(zipEntryOutFile)) {
-							IOUtils.copy(zipArchiveInputStream, zipEntryOutputStream);
-						}
+	/**
+	 * Rehydrates a stored batch into a new local work directory, from the batch data only, so that it can be replayed
+	 * without reading anything from the shares.
+	 *
+	 * @param  batch       the batch
+	 * @throws IOException if the batch has no stored data, or can't be staged
+	 */
+	public void rehydrateBatch(final BatchEntity batch) throws IOException {
+		if (batch.getData() == null) {
+			throw new IOException("Batch '%s' has no stored data to rehydrate from".formatted(batch.getBasename()));
+		}
 
-						// Add the item to the current batch
-						batchEntity.getItems().add(new ItemEntity()
-							.withFilename(zipEntryName)
-							.withStatus(UNHANDLED)
-							.withType(UNKNOWN));
+		var localBatchWorkDirectory = localWorkDirectory.resolve(UUID.randomUUID().toString());
+		Files.createDirectories(localBatchWorkDirectory);
+		batch.setLocalPath(localBatchWorkDirectory.toString());
 
-						zipEntry = zipArchiveInputStream.getNextEntry();
-					}
-				}
-				batchEntity.setTotalItems(batchEntity.getItems().size());
-				batches.add(batchEntity);
+		LOG.info("Rehydrating batch '{}' using work directory '{}'", batch.getBasename(), localBatchWorkDirectory.toAbsolutePath());
+
+		stageBatch(batch);
+	}
+
+	/**
+	 * Decompresses the original batch file into the local work directory of the batch, and extracts the archive index.
+	 *
+	 * @return the names of the entries in the batch
+	 */
+	private List<String> stageBatch(final BatchEntity batch) throws IOException {
+		var localBatchWorkDirectory = fileSystem.getPath(batch.getLocalPath());
+
+		// Decompress the 7z (LZMA) data to a single ZIP file
+		var zipFile = localBatchWorkDirectory.resolve(SOURCE_ARCHIVE_FILENAME);
+		try (var lzmaInputStream = new LZMACompressorInputStream(openOriginalBatch(batch))) {
+			Files.copy(lzmaInputStream, zipFile, StandardCopyOption.REPLACE_EXISTING);
+		}
+
+		// Work from the ZIP central directory - only the archive index is extracted up front, the
+		// remaining entries are read on demand
+		var entryNames = new ArrayList<String>();
+		var archive = getArchive(localBatchWorkDirectory.toString());
+		for (var zipEntryName : archive.getEntryNames()) {
+			// Mitigate potential "zip-slip"
+			if (!localBatchWorkDirectory.resolve(zipEntryName).normalize().startsWith(localBatchWorkDirectory.normalize())) {
+				LOG.info("  Skipping file '{}'", zipEntryName);
+
+				continue;
 			}
 
-			LOG.info("Read {} batch(es)", batches.size());
+			LOG.info("Found file '{}'", zipEntryName);
+
+			if (ARCHIVE_INDEX_FILENAME.equals(zipEntryName)) {
+				archive.extract(zipEntryName, localBatchWorkDirectory.resolve(zipEntryName));
+			}
 
-			return batches;
+			entryNames.add(zipEntryName);
 		}
+		return entryNames;
 	}
 
 	public void writeBatch(final BatchEntity batch) throws IOException {
@@ -203,14 +286,14 @@ public class RaindanceIntegration {
 
 			recreateSevenZipFile(batch);
 
-			try (var file = new SmbFile(targetPath, context)) {
+			try (var file = connectionPool.resolve(targetPath)) {
 				try (var out = file.getOutputStream(); var in = Files.newInputStream(batchSevenZipPath)) {
 					IOUtils.copy(in, out);
 				}
 			}
 		} else {
-			try (var file = new SmbFile(targetPath, context)) {
-				try (var out = file.getOutputStream(); var in = new ByteArrayInputStream(batch.getData())) {
+			try (var file = connectionPool.resolve(targetPath)) {
+				try (var out = file.getOutputStream(); var in = openOriginalBatch(batch)) {
 					IOUtils.copy(in, out);
 				}
 			}
@@ -223,21 +306,33 @@ public class RaindanceIntegration {
 			appendTrailingSlashIfMissing(batch.getArchivePath()),
 			batch.getBasename() + BATCH_FILE_SUFFIX + outputFileExtraSuffix);
 
-		try (var archiveFile = new SmbFile(targetPath, context)) {
+		try (var archiveFile = connectionPool.resolve(targetPath)) {
 			LOG.info("Archiving batch '{}' to '{}", sourcePath, targetPath);
 
-			try (var out = archiveFile.getOutputStream(); var in = new ByteArrayInputStream(batch.getData())) {
+			try (var out = archiveFile.getOutputStream(); var in = openOriginalBatch(batch)) {
 				IOUtils.copy(in, out);
 			}
 		}
 
-		try (var sourceFile = new SmbFile(sourcePath, context)) {
+		try (var sourceFile = connectionPool.resolve(sourcePath)) {
 			sourceFile.delete();
 		} catch (Exception e) {
 			LOG.warn("Unable to delete source file: {}", e.getMessage());
+		} finally {
+			listingCache.invalidate();
 		}
 	}
 
+	/**
+	 * Opens the original batch file - from memory if the batch data is set, otherwise from the local work directory.
+	 */
+	private InputStream openOriginalBatch(final BatchEntity batch) throws IOException {
+		if (batch.getData() != null) {
+			return new ByteArrayInputStream(batch.getData());
+		}
+		return new BufferedInputStream(Files.newInputStream(fileSystem.getPath(batch.getLocalPath()).resolve(SOURCE_BATCH_FILENAME)));
+	}
+
 	private void recreateSevenZipFile(final BatchEntity batch) throws IOException {
 		var batchPath = fileSystem.getPath(batch.getLocalPath());
 
@@ -256,6 +351,12 @@ public class RaindanceIntegration {
 				LOG.info(" Adding file '{}'", item.getFilename());
 
 				var itemPath = batchPath.resolve(item.getFilename());
+				if (!Files.exists(itemPath)) {
+					// Not materialized locally (i.e. unmodified) - copy the entry as-is from the original ZIP file
+					getArchive(batch.getLocalPath()).copyRawEntry(item.getFilename(), zipOutputStream);
+					continue;
+				}
+
 				var itemEntry = new ZipArchiveEntry(itemPath, item.getFilename());
 
 				zipOutputStream.putArchiveEntry(itemEntry);
@@ -276,6 +377,74 @@ public class RaindanceIntegration {
 		}
 	}
 
+	/**
+	 * Reads the content of a single item from the batch ZIP file, without extracting it to disk.
+	 *
+	 * @param  localPath   the local work directory of the batch
+	 * @param  filename    the item filename
+	 * @return             the item content
+	 * @throws IOException if the item can't be read
+	 */
+	public byte[] readItem(final String localPath, final String filename) throws IOException {
+		return getArchive(localPath).read(filename);
+	}
+
+	/**
+	 * Gets the uncompressed size of a single item in the batch in the given local work directory, without reading it.
+	 *
+	 * @param  localPath   the local work directory of the batch
+	 * @param  filename    the item filename
+	 * @return             the item size in bytes, or -1 if it isn't known
+	 * @throws IOException if the item doesn't exist
+	 */
+	public long getItemSize(final String localPath, final String filename) throws IOException {
+		return getArchive(localPath).getSize(filename);
+	}
+
+	/**
+	 * Releases any resources held for the given batch.
+	 *
+	 * @param batch the batch
+	 */
+	public void closeBatch(final BatchEntity batch) {
+		var archive = openArchives.remove(batch.getLocalPath());
+		if (archive != null) {
+			try {
+				archive.close();
+			} catch (IOException e) {
+				LOG.warn("Unable to close ZIP file for batch '{}': {}", batch.getBasename(), e.getMessage());
+			}
+		}
+	}
+
+	private BatchArchive getArchive(final String localPath) throws IOException {
+		var archive = openArchives.get(localPath);
+		if (archive == null) {
+			archive = BatchArchive.open(fileSystem.getPath(localPath).resolve(SOURCE_ARCHIVE_FILENAME));
+
+			var existingArchive = openArchives.putIfAbsent(localPath, archive);
+			if (existingArchive != null) {
+				archive.close();
+				archive = existingArchive;
+			}
+		}
+		return archive;
+	}
+
+	@Override
+	public void close() {
+		openArchives.values().forEach(archive -> {
+			try {
+				archive.close();
+			} catch (IOException e) {
+				LOG.warn("Unable to close ZIP file: {}", e.getMessage());
+			}
+		});
+		openArchives.clear();
+
+		connectionPool.close();
+	}
+
 	String appendTrailingSlashIfMissing(final String string) {
 		return string.endsWith("/") ? string : string + "/";
 	}
@@ -8,6 +8,7 @@ import java.time.Duration;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import jcifs.DialectVersion;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.bind.DefaultValue;
 
@@ -30,14 +31,20 @@ public record RaindanceIntegrationProperties(Map<String, RaindanceEnvironment> e
 
 		List<String> invoiceFilenamePrefixes,
 
+		List<String> reminderFilenamePrefixes,
+
 		@NotEmpty Map<@NotBlank String, @Valid BatchSetup> batchSetup,
 
 		@DefaultValue("PT30S") Duration connectTimeout,
 		@DefaultValue("PT30S") Duration responseTimeout,
 
+		@DefaultValue("PT30S") Duration listingCacheTtl,
+
 		@NotBlank String localWorkDirectory,
 
-		@DefaultValue("") String outputFileExtraSuffix) {
+		@DefaultValue("") String outputFileExtraSuffix,
+
+		@Valid @DefaultValue Smb smb) {
 
 		public record BatchSetup(
 
@@ -53,13 +60,46 @@ public record RaindanceIntegrationProperties(Map<String, RaindanceEnvironment> e
 			}
 		}
 
+		/**
+		 * SMB client settings. The dialects are pinned to SMB 3.x unless configured otherwise, while the buffer sizes that
+		 * aren't configured are left at their jcifs defaults.
+		 *
+		 * @param minVersion          the lowest SMB dialect to negotiate - jcifs would otherwise allow SMB1
+		 * @param maxVersion          the highest SMB dialect to negotiate - jcifs would otherwise stop at SMB 2.1
+		 * @param idleTimeout         how long the connections to the shares are kept without being used, before they are
+		 *                            evicted - they are kept warm as long as they are health-checked, if not configured
+		 * @param healthCheckInterval how often the connections to the shares are health-checked
+		 */
+		public record Smb(
+
+			@DefaultValue("SMB300") DialectVersion minVersion,
+			@DefaultValue("SMB311") DialectVersion maxVersion,
+
+			Integer sendBufferSize,
+			Integer receiveBufferSize,
+			Integer transactionBufferSize,
+
+			Duration idleTimeout,
+
+			@DefaultValue("PT1M") Duration healthCheckInterval) {
+		}
+
 		public Properties jcifsProperties() {
 			var jcifsProperties = new Properties();
 			jcifsProperties.setProperty("jcifs.smb.client.connTimeout", Long.toString(connectTimeout().toMillis()));
 			jcifsProperties.setProperty("jcifs.smb.client.responseTimeout", Long.toString(responseTimeout().toMillis()));
-			jcifsProperties.setProperty("jcifs.smb.client.minVersion", "SMB300");
-			jcifsProperties.setProperty("jcifs.smb.client.maxVersion", "SMB311");
+			jcifsProperties.setProperty("jcifs.smb.client.minVersion", smb().minVersion().name());
+			jcifsProperties.setProperty("jcifs.smb.client.maxVersion", smb().maxVersion().name());
+			setIfConfigured(jcifsProperties, "jcifs.smb.client.snd_buf_size", smb().sendBufferSize());
+			setIfConfigured(jcifsProperties, "jcifs.smb.client.rcv_buf_size", smb().receiveBufferSize());
+			setIfConfigured(jcifsProperties, "jcifs.smb.client.transaction_buf_size", smb().transactionBufferSize());
 			return jcifsProperties;
 		}
+
+		private static void setIfConfigured(final Properties jcifsProperties, final String key, final Object value) {
+			if (value != null) {
+				jcifsProperties.setProperty(key, value.toString());
+			}
+		}
 	}
 }
@@ -0,0 +1,19 @@
+package se.sundsvall.invoicesender.integration.raindance;
+
+/**
+ * A batch file on the incoming Raindance share, as listed.
+ *
+ * @param name the filename
+ * @param size the file size, in bytes
+ */
+public record RemoteBatchFile(String name, long size) {
+
+	/**
+	 * Returns the name of the batch file, without the batch file suffix.
+	 *
+	 * @return the basename
+	 */
+	public String basename() {
+		return name.replaceAll("\\.zip\\.7z$", "");
+	}
+}
@@ -0,0 +1,107 @@
+package se.sundsvall.invoicesender.integration.raindance;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Short-lived cache of (filtered) directory listings of the incoming share, so that batch prefixes that are scheduled
+ * at the same moment share a single listing instead of each querying the share.
+ */
+final class ShareListingCache {
+
+	@FunctionalInterface
+	interface Loader {
+
+		List<RemoteBatchFile> load() throws IOException;
+	}
+
+	private record Listing(CompletableFuture<List<RemoteBatchFile>> files, Instant expiresAt) {
+
+		boolean isFresh(final Instant now) {
+			// A listing that is still being loaded is fresh, however long the load takes
+			return !files.isDone() || now.isBefore(expiresAt);
+		}
+	}
+
+	private final Duration ttl;
+	private final Clock clock;
+	private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+
+	ShareListingCache(final Duration ttl) {
+		this(ttl, Clock.systemUTC());
+	}
+
+	ShareListingCache(final Duration ttl, final Clock clock) {
+		this.ttl = ttl;
+		this.clock = clock;
+	}
+
+	/**
+	 * Gets the listing for the given key, loading it if it isn't cached or has expired. Concurrent callers for the same
+	 * key wait for a single load. The load is made by the caller that misses, outside of the map operation, so that slow
+	 * loads don't block the map.
+	 *
+	 * @param  key         the cache key
+	 * @param  loader      the loader to use on a cache miss
+	 * @return             the listing
+	 * @throws IOException if the listing can't be loaded
+	 */
+	List<RemoteBatchFile> get(final String key, final Loader loader) throws IOException {
+		if (!ttl.isPositive()) {
+			return List.copyOf(loader.load());
+		}
+
+		while (true) {
+			final var now = clock.instant();
+			final var candidate = new Listing(new CompletableFuture<>(), now.plus(ttl));
+			final var listing = listings.computeIfAbsent(key, _ -> candidate);
+			if (listing == candidate) {
+				load(key, candidate, loader);
+				return await(candidate);
+			}
+			if (listing.isFresh(now)) {
+				return await(listing);
+			}
+			// Expired - drop it, unless another caller has replaced it already, and try again
+			listings.remove(key, listing);
+		}
+	}
+
+	/**
+	 * Discards all cached listings.
+	 */
+	void invalidate() {
+		listings.clear();
+	}
+
+	private void load(final String key, final Listing listing, final Loader loader) {
+		try {
+			listing.files().complete(List.copyOf(loader.load()));
+		} catch (final IOException | RuntimeException e) {
+			// Failures are not cached
+			listings.remove(key, listing);
+			listing.files().completeExceptionally(e);
+		}
+	}
+
+	private static List<RemoteBatchFile> await(final Listing listing) throws IOException {
+		try {
+			return listing.files().join();
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof final IOException ioException) {
+				throw ioException;
+			}
+			if (e.getCause() instanceof final RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package se.sundsvall.invoicesender.integration.raindance;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import jcifs.CIFSContext;
+import jcifs.config.PropertyConfiguration;
+import jcifs.context.BaseContext;
+import jcifs.smb.NtlmPasswordAuthenticator;
+import jcifs.smb.SmbFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+
+import static java.util.Objects.nonNull;
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.apache.commons.lang3.StringUtils.substringBefore;
+
+/**
+ * Managed SMB connections for a single Raindance environment. All files are resolved through a single, shared JCIFS
+ * context, and a handle to the root of each configured share is kept open so that the transport, session and tree
+ * connect survive between batch runs. The share roots are health-checked periodically and re-connected on failure.
+ * <p>
+ * If an idle timeout is configured, the share roots are evicted once nothing has been resolved through the pool for
+ * that long, and aren't health-checked again until the pool is used - JCIFS then closes the idle transports on its
+ * own.
+ */
+public class SmbConnectionPool implements Closeable {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SmbConnectionPool.class);
+
+	private static final String METRIC_PREFIX = "raindance.smb.";
+	private static final String TAG_MUNICIPALITY_ID = "municipalityId";
+
+	private final String municipalityId;
+	private final CIFSContext context;
+	private final Set<String> shareRootUrls;
+	private final Map<String, SmbFile> shareRoots = new ConcurrentHashMap<>();
+	private final AtomicInteger healthyShares = new AtomicInteger();
+	private final Counter successfulHealthChecks;
+	private final Counter failedHealthChecks;
+	private final Counter reconnects;
+	private final Counter evictions;
+	private final Duration idleTimeout;
+	private final ScheduledFuture<?> healthCheckTask;
+	private volatile Instant lastUsed = Instant.now();
+
+	public SmbConnectionPool(final String municipalityId, final RaindanceIntegrationProperties.RaindanceEnvironment environment,
+		final TaskScheduler taskScheduler, final MeterRegistry meterRegistry) {
+		this.municipalityId = municipalityId;
+		this.idleTimeout = environment.smb().idleTimeout();
+
+		try {
+			context = new BaseContext(new PropertyConfiguration(environment.jcifsProperties()))
+				.withCredentials(new NtlmPasswordAuthenticator(
+					environment.domain(), environment.username(), environment.password()));
+		} catch (IOException e) {
+			throw new IllegalStateException("Unable to initialize JCIFS context", e);
+		}
+
+		// Collect the roots of all shares that we read from or write to
+		shareRootUrls = new LinkedHashSet<>();
+		Stream.concat(Stream.of(environment.share()), environment.batchSetup().values().stream()
+			.flatMap(batchSetup -> Stream.of(batchSetup.targetPath(), batchSetup.archivePath())))
+			.filter(path -> isNotBlank(path))
+			.map(path -> "smb://%s:%d/%s/".formatted(environment.host(), environment.port(), substringBefore(path.replaceAll("^/+", ""), "/")))
+			.forEach(shareRootUrls::add);
+
+		successfulHealthChecks = Counter.builder(METRIC_PREFIX + "health-checks")
+			.tag(TAG_MUNICIPALITY_ID, municipalityId)
+			.tag("outcome", "success")
+			.register(meterRegistry);
+		failedHealthChecks = Counter.builder(METRIC_PREFIX + "health-checks")
+			.tag(TAG_MUNICIPALITY_ID, municipalityId)
+			.tag("outcome", "failure")
+			.register(meterRegistry);
+		reconnects = Counter.builder(METRIC_PREFIX + "reconnects")
+			.tag(TAG_MUNICIPALITY_ID, municipalityId)
+			.register(meterRegistry);
+		evictions = Counter.builder(METRIC_PREFIX + "evictions")
+			.tag(TAG_MUNICIPALITY_ID, municipalityId)
+			.register(meterRegistry);
+		Gauge.builder(METRIC_PREFIX + "shares.connected", shareRoots, Map::size)
+			.tag(TAG_MUNICIPALITY_ID, municipalityId)
+			.register(meterRegistry);
+		Gauge.builder(METRIC_PREFIX + "shares.healthy", healthyShares, AtomicInteger::get)
+			.tag(TAG_MUNICIPALITY_ID, municipalityId)
+			.register(meterRegistry);
+
+		// Warm up the connections right away, and keep checking them periodically
+		var healthCheckInterval = environment.smb().healthCheckInterval();
+		if (nonNull(healthCheckInterval) && healthCheckInterval.isPositive()) {
+			healthCheckTask = taskScheduler.scheduleWithFixedDelay(this::checkHealth, Instant.now(), healthCheckInterval);
+		} else {
+			healthCheckTask = null;
+		}
+	}
+
+	/**
+	 * Resolves an SMB file using the shared JCIFS context, re-using any existing transport, session and tree connect.
+	 *
+	 * @param  url                   the SMB URL
+	 * @return                       the SMB file
+	 * @throws MalformedURLException if the URL is malformed
+	 */
+	public SmbFile resolve(final String url) throws MalformedURLException {
+		lastUsed = Instant.now();
+		return new SmbFile(url, context);
+	}
+
+	/**
+	 * Checks the health of the connection to each share, and re-connects to any share that fails the check. The
+	 * connections are evicted instead, if the pool has been idle for longer than the idle timeout.
+	 */
+	void checkHealth() {
+		if (isIdle()) {
+			evictIdleShareRoots();
+			return;
+		}
+
+		var healthy = 0;
+
+		for (var shareRootUrl : shareRootUrls) {
+			if (isHealthy(shareRootUrl)) {
+				healthy++;
+				continue;
+			}
+
+			// Drop the stale handle and try again with a fresh connection
+			LOG.info("Re-connecting to share '{}' for municipality {}", shareRootUrl, municipalityId);
+			reconnects.increment();
+			closeQuietly(shareRoots.remove(shareRootUrl));
+			if (isHealthy(shareRootUrl)) {
+				healthy++;
+			}
+		}
+
+		healthyShares.set(healthy);
+	}
+
+	private boolean isIdle() {
+		return nonNull(idleTimeout) && idleTimeout.isPositive() && Instant.now().isAfter(lastUsed.plus(idleTimeout));
+	}
+
+	private void evictIdleShareRoots() {
+		if (!shareRoots.isEmpty()) {
+			LOG.info("Evicting the idle connections to the shares for municipality {}", municipalityId);
+			evictions.increment();
+			shareRoots.values().forEach(this::closeQuietly);
+			shareRoots.clear();
+		}
+		healthyShares.set(0);
+	}
+
+	private boolean isHealthy(final String shareRootUrl) {
+		try {
+			var shareRoot = shareRoots.get(shareRootUrl);
+			if (shareRoot == null) {
+				// Not through resolve, as health checks don't count as use of the pool
+				shareRoot = new SmbFile(shareRootUrl, context);
+				shareRoots.put(shareRootUrl, shareRoot);
+			}
+			if (shareRoot.exists()) {
+				successfulHealthChecks.increment();
+				return true;
+			}
+			LOG.warn("Share '{}' for municipality {} doesn't exist", shareRootUrl, municipalityId);
+		} catch (Exception e) {
+			LOG.warn("Health check of share '{}' for municipality {} failed: {}", shareRootUrl, municipalityId, e.getMessage());
+		}
+		failedHealthChecks.increment();
+		return false;
+	}
+
+	@Override
+	public void close() {
+		if (healthCheckTask != null) {
+			healthCheckTask.cancel(false);
+		}
+		shareRoots.values().forEach(this::closeQuietly);
+		shareRoots.clear();
+
+		try {
+			context.close();
+		} catch (IOException e) {
+			LOG.warn("Unable to close JCIFS context for municipality {}: {}", municipalityId, e.getMessage());
+		}
+	}
+
+	private void closeQuietly(final SmbFile smbFile) {
+		if (smbFile != null) {
+			smbFile.close();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package se.sundsvall.invoicesender.service;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A budget of bytes that may be in flight at the same time. Requests that exceed the budget are queued until enough of
+ * the budget has been released, and are served in order of arrival - a large request isn't starved by smaller ones
+ * that keep slipping past it. A single request that is larger than the entire budget is admitted once nothing else is
+ * in flight, rather than never.
+ */
+class AdmissionBudget {
+
+	private final long capacity;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Deque<Condition> waiters = new ArrayDeque<>();
+	private long available;
+
+	AdmissionBudget(final long capacity) {
+		this.capacity = capacity;
+		this.available = capacity;
+	}
+
+	/**
+	 * Acquires the given amount of bytes from the budget, waiting until they are available.
+	 *
+	 * @param  bytes                  the amount of bytes to acquire
+	 * @return                        a permit that releases the bytes when closed
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	Permit acquire(final long bytes) throws InterruptedIOException {
+		return tryAcquire(bytes, null);
+	}
+
+	/**
+	 * Tries to acquire the given amount of bytes from the budget, waiting at most the given time for them to become
+	 * available.
+	 *
+	 * @param  bytes                  the amount of bytes to acquire
+	 * @param  timeout                the maximum time to wait, or {@code null} to wait until the bytes are available
+	 * @return                        a permit that releases the bytes when closed, or {@code null} if the bytes didn't
+	 *                                become available in time
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	Permit tryAcquire(final long bytes, final Duration timeout) throws InterruptedIOException {
+		final var amount = Math.clamp(bytes, 0, capacity);
+
+		lock.lock();
+		try {
+			if (waiters.isEmpty() && available >= amount) {
+				available -= amount;
+				return new Permit(amount);
+			}
+
+			final var waiter = lock.newCondition();
+			waiters.addLast(waiter);
+			try {
+				var remaining = timeout == null ? Long.MAX_VALUE : timeout.toNanos();
+				// Only the first waiter in line may take from the budget
+				while (waiters.peekFirst() != waiter || available < amount) {
+					if (remaining <= 0) {
+						return null;
+					}
+					if (timeout == null) {
+						waiter.await();
+					} else {
+						remaining = waiter.awaitNanos(remaining);
+					}
+				}
+				available -= amount;
+				return new Permit(amount);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted while waiting for admission");
+			} finally {
+				waiters.remove(waiter);
+				// Let the next waiter in line check whether what is left is enough
+				signalFirst();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getAvailable() {
+		lock.lock();
+		try {
+			return available;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	long getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Gets the number of requests that are waiting for the budget.
+	 *
+	 * @return the number of waiting requests
+	 */
+	int getQueued() {
+		lock.lock();
+		try {
+			return waiters.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void release(final long amount) {
+		lock.lock();
+		try {
+			available += amount;
+			signalFirst();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void signalFirst() {
+		final var first = waiters.peekFirst();
+		if (first != null) {
+			first.signal();
+		}
+	}
+
+	final class Permit implements AutoCloseable {
+
+		private final long amount;
+		private boolean released;
+
+		private Permit(final long amount) {
+			this.amount = amount;
+		}
+
+		long getAmount() {
+			return amount;
+		}
+
+		@Override
+		public void close() {
+			synchronized (this) {
+				if (released) {
+					return;
+				}
+				released = true;
+			}
+			release(amount);
+		}
+	}
+}
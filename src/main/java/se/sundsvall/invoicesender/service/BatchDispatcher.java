@@ -0,0 +1,172 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs batches on virtual threads, so that the scheduler threads (and the request threads of ad-hoc triggers) only
+ * dispatch them. The batch files of each municipality are processed behind a bulkhead of their own, which bounds how
+ * many of them are processed at the same time - a municipality with a slow share only holds up its own batches.
+ * <p>
+ * The logging context of the dispatching thread is carried over to the virtual threads.
+ */
+@Component
+class BatchDispatcher {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchDispatcher.class);
+
+	private static final String METRIC_PREFIX = "invoice-processor.batch.";
+
+	/**
+	 * The bulkhead of a municipality, with the number of batches waiting for and holding a permit.
+	 */
+	record Bulkhead(Semaphore permits, AtomicInteger queued, AtomicInteger running) {}
+
+	private final ExecutorService executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("batch-processor-", 0).factory());
+	private final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+	private final int parallelism;
+	private final Duration shutdownGracePeriod;
+	private final MeterRegistry meterRegistry;
+
+	BatchDispatcher(final BatchProcessingProperties properties, final MeterRegistry meterRegistry) {
+		this.parallelism = properties.parallelism();
+		this.shutdownGracePeriod = properties.shutdownGracePeriod();
+		this.meterRegistry = meterRegistry;
+	}
+
+	/**
+	 * Stops taking new runs and batches, and waits for those in flight to finish - at most the shutdown grace period,
+	 * after which they are interrupted. The virtual threads would otherwise be killed along with the JVM.
+	 */
+	@PreDestroy
+	void close() {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(shutdownGracePeriod.toMillis(), TimeUnit.MILLISECONDS)) {
+				LOG.warn("Batches still in flight after {} - interrupting them", shutdownGracePeriod);
+				executor.shutdownNow();
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Dispatches a run, e.g. of the batches with a given prefix. Runs aren't bounded by the bulkheads, as they mostly wait
+	 * for the batch files they submit.
+	 *
+	 * @param task the run
+	 */
+	void dispatch(final Runnable task) {
+		final var contextMap = MDC.getCopyOfContextMap();
+		executor.execute(() -> {
+			try {
+				runWithContext(contextMap, Executors.callable(task));
+			} catch (final Exception e) {
+				LOG.error("Failed to run batches in the background", e);
+			}
+		});
+	}
+
+	/**
+	 * Submits a batch of the given municipality, to be processed once a permit of its bulkhead is available.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  task           the batch
+	 * @return                a future that is completed with the result of the batch, or with what it threw
+	 */
+	<T> CompletableFuture<T> submit(final String municipalityId, final Callable<T> task) {
+		final var bulkhead = getBulkhead(municipalityId);
+		final var contextMap = MDC.getCopyOfContextMap();
+		final var future = new CompletableFuture<T>();
+
+		bulkhead.queued().incrementAndGet();
+		executor.execute(() -> {
+			try {
+				acquire(bulkhead);
+			} catch (final InterruptedIOException e) {
+				future.completeExceptionally(e);
+				return;
+			}
+
+			bulkhead.running().incrementAndGet();
+			try {
+				future.complete(runWithContext(contextMap, task));
+			} catch (final Exception e) {
+				future.completeExceptionally(e);
+			} finally {
+				bulkhead.running().decrementAndGet();
+				bulkhead.permits().release();
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Submits a batch of the given municipality in the background, logging it if it fails.
+	 *
+	 * @param municipalityId the municipality id
+	 * @param task           the batch
+	 */
+	void execute(final String municipalityId, final Runnable task) {
+		submit(municipalityId, Executors.callable(task)).exceptionally(e -> {
+			LOG.error("Failed to process batch in the background for municipality {}", municipalityId, e);
+			return null;
+		});
+	}
+
+	Bulkhead getBulkhead(final String municipalityId) {
+		return bulkheads.computeIfAbsent(municipalityId, this::createBulkhead);
+	}
+
+	private Bulkhead createBulkhead(final String municipalityId) {
+		final var bulkhead = new Bulkhead(new Semaphore(parallelism, true), new AtomicInteger(), new AtomicInteger());
+
+		Gauge.builder(METRIC_PREFIX + "queued", bulkhead.queued(), AtomicInteger::get)
+			.tag("municipalityId", municipalityId)
+			.register(meterRegistry);
+		Gauge.builder(METRIC_PREFIX + "running", bulkhead.running(), AtomicInteger::get)
+			.tag("municipalityId", municipalityId)
+			.register(meterRegistry);
+		return bulkhead;
+	}
+
+	private static void acquire(final Bulkhead bulkhead) throws InterruptedIOException {
+		try {
+			bulkhead.permits().acquire();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for a batch permit");
+		} finally {
+			bulkhead.queued().decrementAndGet();
+		}
+	}
+
+	private static <T> T runWithContext(final Map<String, String> contextMap, final Callable<T> task) throws Exception {
+		if (contextMap != null) {
+			MDC.setContextMap(contextMap);
+		}
+		try {
+			return task.call();
+		} finally {
+			MDC.clear();
+		}
+	}
+}
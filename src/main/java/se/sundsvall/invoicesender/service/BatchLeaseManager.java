@@ -0,0 +1,224 @@
+package se.sundsvall.invoicesender.service;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Leases on (municipality id, batch prefix, date), so that multiple nodes can share the scheduled load without
+ * processing the same batches twice. A lease is held for the duration of a run, and renewed periodically while held. A
+ * lease that isn't renewed - since its owner has crashed or lost its database connection - expires, and may then be
+ * taken over by another node. A node that fails to renew its lease must therefore stop sending and writing back batches
+ * - see {@link #checkHeld(LeaseKey)}.
+ * <p>
+ * The lease of a completed run is kept as a marker once released, so that a run of the same batches on another node,
+ * e.g. one that was scheduled a moment later, is skipped.
+ */
+@Component
+class BatchLeaseManager {
+
+	private static final Logger LOG = LoggerFactory.getLogger(BatchLeaseManager.class);
+
+	/**
+	 * A held lease. Closing it releases the lease.
+	 */
+	@FunctionalInterface
+	interface Lease extends AutoCloseable {
+
+		/**
+		 * Marks the run covered by the lease as completed, before the lease is released.
+		 */
+		default void complete() {}
+
+		@Override
+		void close();
+	}
+
+	record LeaseKey(String municipalityId, String batchPrefix, LocalDate date) {}
+
+	private final DbIntegration dbIntegration;
+	private final TaskScheduler taskScheduler;
+	private final CoordinationProperties properties;
+	private final String owner;
+	private final Map<LeaseKey, HeldLease> heldLeases = new ConcurrentHashMap<>();
+
+	/**
+	 * The local view of a held lease: until when it is known to be held, and whether it has been lost to another node.
+	 */
+	private static final class HeldLease {
+
+		private volatile Instant validUntil;
+		private volatile boolean lost;
+
+		private HeldLease(final Instant validUntil) {
+			this.validUntil = validUntil;
+		}
+	}
+
+	BatchLeaseManager(final DbIntegration dbIntegration, final TaskScheduler taskScheduler, final CoordinationProperties properties) {
+		this.dbIntegration = dbIntegration;
+		this.taskScheduler = taskScheduler;
+		this.properties = properties;
+
+		owner = isNotBlank(properties.owner()) ? properties.owner() : defaultOwner();
+		LOG.info("Batch leases are {} (owner '{}')", properties.enabled() ? "enabled" : "disabled", owner);
+	}
+
+	/**
+	 * Tries to acquire the lease for the given municipality id, batch prefix and date. Leases are not re-entrant - a lease
+	 * that is already held by this node can't be acquired again until it is released.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  batchPrefix    the batch prefix
+	 * @param  date           the date
+	 * @return                the lease, or an empty optional if the lease is held by this or another node
+	 */
+	Optional<Lease> tryAcquire(final String municipalityId, final String batchPrefix, final LocalDate date) {
+		final var key = new LeaseKey(municipalityId, batchPrefix, date);
+		final var heldLease = new HeldLease(Instant.now().plus(properties.leaseTtl()));
+		if (heldLeases.putIfAbsent(key, heldLease) != null) {
+			return Optional.empty();
+		}
+		if (!properties.enabled()) {
+			return Optional.of(() -> heldLeases.remove(key));
+		}
+
+		try {
+			if (!dbIntegration.acquireLease(municipalityId, batchPrefix, date, owner, properties.leaseTtl())) {
+				heldLeases.remove(key);
+				return Optional.empty();
+			}
+		} catch (final RuntimeException e) {
+			heldLeases.remove(key);
+			throw e;
+		}
+
+		final var renewInterval = properties.renewInterval();
+		final var renewal = taskScheduler.scheduleWithFixedDelay(() -> renew(key), Instant.now().plus(renewInterval), renewInterval);
+
+		return Optional.of(new Lease() {
+
+			@Override
+			public void complete() {
+				if (!dbIntegration.completeLease(municipalityId, batchPrefix, date, owner)) {
+					LOG.warn("Lease on {} was lost to another node before the run completed", key);
+				}
+			}
+
+			@Override
+			public void close() {
+				renewal.cancel(false);
+				try {
+					dbIntegration.releaseLease(municipalityId, batchPrefix, date, owner);
+				} catch (final RuntimeException e) {
+					// The lease will expire on its own
+					LOG.warn("Unable to release lease on {}: {}", key, e.getMessage());
+				} finally {
+					heldLeases.remove(key);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Checks whether a run of the batches with the given municipality id, batch prefix and date has completed, on this or
+	 * another node.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  batchPrefix    the batch prefix
+	 * @param  date           the date
+	 * @return                true if the run has completed, otherwise false
+	 */
+	boolean isCompleted(final String municipalityId, final String batchPrefix, final LocalDate date) {
+		return properties.enabled() && dbIntegration.isLeaseCompleted(municipalityId, batchPrefix, date);
+	}
+
+	/**
+	 * Checks that a lease held by this node is still held - i.e. that it hasn't been lost to another node, and that it has
+	 * been renewed within its time to live. Runs check their lease before each send and write-back, so that a node that
+	 * has lost its lease stops before it duplicates the work of the node that took it over.
+	 *
+	 * @param  key         the key of the lease
+	 * @throws IOException if the lease has been lost, or may have been taken over
+	 */
+	void checkHeld(final LeaseKey key) throws IOException {
+		final var heldLease = heldLeases.get(key);
+		if (heldLease == null || !properties.enabled()) {
+			return;
+		}
+		if (heldLease.lost) {
+			throw new IOException("Lease on batches with prefix %s for municipality %s and date %s has been lost to another node"
+				.formatted(key.batchPrefix(), key.municipalityId(), key.date()));
+		}
+		if (Instant.now().isAfter(heldLease.validUntil)) {
+			throw new IOException("Lease on batches with prefix %s for municipality %s and date %s could not be renewed in time"
+				.formatted(key.batchPrefix(), key.municipalityId(), key.date()));
+		}
+	}
+
+	/**
+	 * Gets the keys of all leases that have expired, i.e. that are candidates for takeover.
+	 *
+	 * @return the lease keys
+	 */
+	List<LeaseKey> getExpiredLeases() {
+		if (!properties.enabled()) {
+			return List.of();
+		}
+
+		return dbIntegration.getExpiredLeases().stream()
+			.map(lease -> new LeaseKey(lease.getMunicipalityId(), lease.getBatchPrefix(), lease.getDate()))
+			.filter(key -> !heldLeases.containsKey(key))
+			.toList();
+	}
+
+	String getOwner() {
+		return owner;
+	}
+
+	/**
+	 * Renews a held lease. A lease that turns out to be lost is marked as such, so that its run stops at its next check.
+	 *
+	 * @param key the key of the lease
+	 */
+	void renew(final LeaseKey key) {
+		final var heldLease = heldLeases.get(key);
+		if (heldLease == null || heldLease.lost) {
+			return;
+		}
+
+		try {
+			final var validUntil = Instant.now().plus(properties.leaseTtl());
+			if (dbIntegration.renewLease(key.municipalityId(), key.batchPrefix(), key.date(), owner, properties.leaseTtl())) {
+				heldLease.validUntil = validUntil;
+			} else {
+				heldLease.lost = true;
+				LOG.warn("Lease on {} has been lost to another node - stopping its run", key);
+			}
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to renew lease on {}: {}", key, e.getMessage());
+		}
+	}
+
+	private static String defaultOwner() {
+		try {
+			return InetAddress.getLocalHost().getHostName();
+		} catch (final UnknownHostException e) {
+			return UUID.randomUUID().toString();
+		}
+	}
+}
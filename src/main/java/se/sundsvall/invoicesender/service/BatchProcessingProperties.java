@@ -0,0 +1,31 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.util.unit.DataSize;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.batch")
+record BatchProcessingProperties(
+
+	@DefaultValue("2") @Positive int parallelism,
+
+	@DefaultValue("256MB") @NotNull DataSize heapBudget,
+
+	@DefaultValue("4GB") @NotNull DataSize diskBudget,
+
+	@DefaultValue("3") @Positive int diskFootprintFactor,
+
+	@DefaultValue("PT30S") @NotNull Duration heapWait,
+
+	@DefaultValue("true") boolean resumeOnStartup,
+
+	@DefaultValue("P2D") @NotNull Duration resumeWindow,
+
+	@DefaultValue("8") @Positive int lookupParallelism,
+
+	@DefaultValue("PT1M") @NotNull Duration shutdownGracePeriod) {}
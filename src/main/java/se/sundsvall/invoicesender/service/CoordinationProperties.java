@@ -0,0 +1,32 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotNull;
+import java.time.Duration;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.coordination")
+record CoordinationProperties(
+
+	@DefaultValue("true") boolean enabled,
+
+	@DefaultValue("") String owner,
+
+	@DefaultValue("PT5M") @NotNull Duration leaseTtl,
+
+	@DefaultValue("PT1M") @NotNull Duration renewInterval,
+
+	@DefaultValue("PT5M") @NotNull Duration takeoverInterval,
+
+	@DefaultValue List<String> batchPrefixes) {
+
+	/**
+	 * Whether this node should schedule runs for the given batch prefix. All prefixes are owned if none are configured.
+	 */
+	boolean ownsBatchPrefix(final String batchPrefix) {
+		return batchPrefixes == null || batchPrefixes.isEmpty() || batchPrefixes.contains(batchPrefix);
+	}
+}
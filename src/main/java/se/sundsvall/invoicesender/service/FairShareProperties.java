@@ -0,0 +1,39 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import java.util.Map;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.fair-share")
+record FairShareProperties(
+
+	@DefaultValue("true") boolean enabled,
+
+	@DefaultValue("16") @Positive int capacity,
+
+	@DefaultValue Map<String, @Positive Integer> municipalityWeights,
+
+	@DefaultValue Map<String, @Positive Integer> batchPrefixWeights,
+
+	@DefaultValue("PT0S") @NotNull Duration startJitter) {
+
+	/**
+	 * The weight of the batches with the given municipality id and batch prefix - the product of their configured weights,
+	 * each of which defaults to 1.
+	 */
+	int weight(final String municipalityId, final String batchPrefix) {
+		return weightOf(municipalityWeights, municipalityId) * weightOf(batchPrefixWeights, batchPrefix);
+	}
+
+	private static int weightOf(final Map<String, Integer> weights, final String key) {
+		if (weights == null || key == null) {
+			return 1;
+		}
+		return weights.getOrDefault(key, 1);
+	}
+}
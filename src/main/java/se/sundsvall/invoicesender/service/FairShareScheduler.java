@@ -0,0 +1,223 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Shares the downstream capacity (Party, Citizen and Messaging calls) between the batches in flight, weighted by
+ * municipality id and batch prefix. At most a configured number of calls are made at the same time, and when more are
+ * waiting, the capacity is handed out by start-time fair queueing:
+ *
+ * <ul>
+ * <li>Each call is tagged with a start time, which is the finish time of the previous call of its flow - or the current
+ * virtual time, if that is later. Each call advances the finish time of its flow by 1/weight.</li>
+ * <li>Waiting calls are admitted in order of their start time, and the virtual time follows the start time of the latest
+ * admitted call.</li>
+ * </ul>
+ *
+ * A flow with twice the weight of another thereby gets twice the calls when both are waiting, and a flow that arrives
+ * while a huge batch is queued starts at the current virtual time - it doesn't wait behind the whole batch.
+ */
+@Component
+class FairShareScheduler {
+
+	private static final Logger LOG = LoggerFactory.getLogger(FairShareScheduler.class);
+
+	private static final String METRIC_PREFIX = "invoice-processor.fair-share.";
+
+	/**
+	 * The calls of the batches with a given municipality id and batch prefix.
+	 */
+	record Flow(String municipalityId, String batchPrefix) {
+
+		static Flow of(final BatchEntity batchEntity) {
+			return new Flow(batchEntity.getMunicipalityId(), ofNullable(batchEntity.getBatchPrefix()).orElse(batchEntity.getBasename()));
+		}
+	}
+
+	/**
+	 * The state of a flow is kept while the flow is idle, so that a flow that sends one call at a time still has its
+	 * weight. There is one flow per municipality id and batch prefix, so the flows are few.
+	 */
+	private static final class FlowState {
+
+		private double finishTime;
+	}
+
+	private static final class Waiter {
+
+		private final double startTime;
+		private final long sequence;
+		private final Condition condition;
+		private boolean admitted;
+
+		private Waiter(final double startTime, final long sequence, final Condition condition) {
+			this.startTime = startTime;
+			this.sequence = sequence;
+			this.condition = condition;
+		}
+	}
+
+	private final FairShareProperties properties;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Map<Flow, FlowState> flows = new HashMap<>();
+	private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(Comparator.<Waiter>comparingDouble(waiter -> waiter.startTime)
+		.thenComparingLong(waiter -> waiter.sequence));
+	private int available;
+	private int inUse;
+	private double virtualTime;
+	private long sequence;
+
+	FairShareScheduler(final FairShareProperties properties, final MeterRegistry meterRegistry) {
+		this.properties = properties;
+		available = properties.capacity();
+
+		Gauge.builder(METRIC_PREFIX + "in-use", this, FairShareScheduler::getInUse)
+			.register(meterRegistry);
+		Gauge.builder(METRIC_PREFIX + "queued", this, FairShareScheduler::getQueued)
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Runs a downstream call of the given flow, once it is admitted.
+	 *
+	 * @param flow   the flow
+	 * @param action the call
+	 */
+	void run(final Flow flow, final Runnable action) {
+		call(flow, () -> {
+			action.run();
+			return null;
+		});
+	}
+
+	/**
+	 * Makes a downstream call of the given flow, once it is admitted.
+	 *
+	 * @param  flow                 the flow
+	 * @param  action               the call
+	 * @return                      the result of the call
+	 * @throws UncheckedIOException if interrupted while waiting to be admitted
+	 */
+	<T> T call(final Flow flow, final Supplier<T> action) {
+		if (!properties.enabled()) {
+			return action.get();
+		}
+
+		acquire(flow);
+		try {
+			return action.get();
+		} finally {
+			release();
+		}
+	}
+
+	/**
+	 * Waits for a random part of the configured start jitter, so that runs scheduled at the same time don't all start at
+	 * once.
+	 *
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	void awaitStartJitter() throws InterruptedIOException {
+		final var startJitter = properties.startJitter();
+		if (!startJitter.isPositive()) {
+			return;
+		}
+
+		final var delay = Duration.ofMillis(ThreadLocalRandom.current().nextLong(startJitter.toMillis() + 1));
+		LOG.info("Delaying start by {}", delay);
+		try {
+			Thread.sleep(delay);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while delaying start");
+		}
+	}
+
+	private void acquire(final Flow flow) {
+		lock.lock();
+		try {
+			final var flowState = flows.computeIfAbsent(flow, _ -> new FlowState());
+			final var startTime = Math.max(virtualTime, flowState.finishTime);
+			flowState.finishTime = startTime + 1.0 / properties.weight(flow.municipalityId(), flow.batchPrefix());
+
+			if (available > 0 && waiters.isEmpty()) {
+				available--;
+				inUse++;
+				virtualTime = Math.max(virtualTime, startTime);
+				return;
+			}
+
+			final var waiter = new Waiter(startTime, sequence++, lock.newCondition());
+			waiters.add(waiter);
+			while (!waiter.admitted) {
+				try {
+					waiter.condition.await();
+				} catch (final InterruptedException e) {
+					Thread.currentThread().interrupt();
+					if (waiter.admitted) {
+						// Admitted at the same time - hand the capacity on
+						release();
+					} else {
+						waiters.remove(waiter);
+					}
+					throw new UncheckedIOException(new InterruptedIOException("Interrupted while waiting for downstream capacity"));
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void release() {
+		lock.lock();
+		try {
+			final var waiter = waiters.poll();
+			if (waiter != null) {
+				waiter.admitted = true;
+				virtualTime = Math.max(virtualTime, waiter.startTime);
+				waiter.condition.signal();
+			} else {
+				available++;
+				inUse--;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int getInUse() {
+		lock.lock();
+		try {
+			return inUse;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int getQueued() {
+		lock.lock();
+		try {
+			return waiters.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+}
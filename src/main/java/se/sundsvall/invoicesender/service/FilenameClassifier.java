@@ -0,0 +1,216 @@
+package se.sundsvall.invoicesender.service;
+
+import java.util.Arrays;
+import java.util.Collection;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+import se.sundsvall.invoicesender.integration.db.entity.ItemType;
+import se.sundsvall.invoicesender.integration.raindance.RaindanceIntegrationProperties.RaindanceEnvironment;
+
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IN_PROGRESS;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.OTHER;
+
+/**
+ * Classifies the files of a batch by their filenames, in a single scan of each filename. PDF files are invoices, and
+ * are processed if their filenames start with one of the invoice filename prefixes of the municipality (or if there are
+ * no such prefixes). The recipient legal id is taken from filenames that follow the {@code <prefix>_<n>_to_<legalId>.pdf}
+ * convention, and invoices whose filenames start with one of the reminder filename prefixes are payment reminders.
+ */
+final class FilenameClassifier {
+
+	/**
+	 * The classification of a file.
+	 *
+	 * @param type             the item type
+	 * @param status           the item status, IN_PROGRESS if the item should be processed and IGNORED otherwise
+	 * @param recipientLegalId the recipient legal id, or {@code null} if the filename doesn't contain one or the item is
+	 *                         ignored
+	 * @param reminder         true if the item is a payment reminder that should be processed
+	 */
+	record Classification(ItemType type, ItemStatus status, String recipientLegalId, boolean reminder) {
+	}
+
+	private static final Classification NOT_AN_INVOICE = new Classification(OTHER, IGNORED, null, false);
+	private static final Classification IGNORED_INVOICE = new Classification(INVOICE, IGNORED, null, false);
+	private static final Classification INVOICE_WITHOUT_LEGAL_ID = new Classification(INVOICE, IN_PROGRESS, null, false);
+	private static final Classification REMINDER_WITHOUT_LEGAL_ID = new Classification(INVOICE, IN_PROGRESS, null, true);
+
+	private static final String PDF_SUFFIX = ".pdf";
+	private static final String RECIPIENT_SEPARATOR = "_to_";
+
+	// Null if there are no prefixes, i.e. if all invoices should be processed
+	private final Node prefixes;
+	// Null if there are no reminder prefixes, i.e. if no invoices are reminders
+	private final Node reminderPrefixes;
+
+	FilenameClassifier(final Collection<String> invoiceFilenamePrefixes) {
+		this(invoiceFilenamePrefixes, null);
+	}
+
+	FilenameClassifier(final Collection<String> invoiceFilenamePrefixes, final Collection<String> reminderFilenamePrefixes) {
+		prefixes = toTrie(invoiceFilenamePrefixes);
+		reminderPrefixes = toTrie(reminderFilenamePrefixes);
+	}
+
+	/**
+	 * Creates a classifier for the invoice and reminder filename prefixes of a Raindance environment.
+	 *
+	 * @param  environment the Raindance environment
+	 * @return             the classifier
+	 */
+	static FilenameClassifier of(final RaindanceEnvironment environment) {
+		return new FilenameClassifier(environment.invoiceFilenamePrefixes(), environment.reminderFilenamePrefixes());
+	}
+
+	/**
+	 * Classifies a file.
+	 *
+	 * @param  filename the filename
+	 * @return          the classification
+	 */
+	Classification classify(final String filename) {
+		if (!filename.regionMatches(true, filename.length() - PDF_SUFFIX.length(), PDF_SUFFIX, 0, PDF_SUFFIX.length())) {
+			return NOT_AN_INVOICE;
+		}
+		if (prefixes != null && !prefixes.matchesPrefixOf(filename)) {
+			return IGNORED_INVOICE;
+		}
+
+		final var reminder = reminderPrefixes != null && reminderPrefixes.matchesPrefixOf(filename);
+		final var legalId = extractRecipientLegalId(filename);
+		if (legalId == null) {
+			return reminder ? REMINDER_WITHOUT_LEGAL_ID : INVOICE_WITHOUT_LEGAL_ID;
+		}
+		return new Classification(INVOICE, IN_PROGRESS, legalId, reminder);
+	}
+
+	private static Node toTrie(final Collection<String> prefixes) {
+		if (prefixes == null || prefixes.isEmpty()) {
+			return null;
+		}
+
+		final var root = new Node();
+		prefixes.forEach(root::add);
+		return root;
+	}
+
+	/**
+	 * Extracts the recipient legal id from a filename that follows the {@code <prefix>_<n>_to_<legalId>.pdf} convention,
+	 * where the prefix consists of word characters ({@code [a-zA-Z0-9_]}). The filename is tokenized from the end.
+	 *
+	 * @param  filename the filename
+	 * @return          the legal id, or {@code null} if the filename doesn't follow the convention
+	 */
+	static String extractRecipientLegalId(final String filename) {
+		// The suffix is case sensitive here, unlike when telling PDF files apart
+		if (!filename.endsWith(PDF_SUFFIX)) {
+			return null;
+		}
+
+		// <legalId>
+		final var legalIdEnd = filename.length() - PDF_SUFFIX.length();
+		final var legalIdStart = skipDigitsBackwards(filename, legalIdEnd);
+		if (legalIdStart == legalIdEnd) {
+			return null;
+		}
+
+		// _to_
+		final var separatorStart = legalIdStart - RECIPIENT_SEPARATOR.length();
+		if (separatorStart < 0 || !filename.startsWith(RECIPIENT_SEPARATOR, separatorStart)) {
+			return null;
+		}
+
+		// _<n>
+		final var numberStart = skipDigitsBackwards(filename, separatorStart);
+		if (numberStart == separatorStart || numberStart < 2 || filename.charAt(numberStart - 1) != '_') {
+			return null;
+		}
+
+		// <prefix>
+		for (var i = 0; i < numberStart - 1; i++) {
+			if (!isWordCharacter(filename.charAt(i))) {
+				return null;
+			}
+		}
+
+		return filename.substring(legalIdStart, legalIdEnd);
+	}
+
+	private static int skipDigitsBackwards(final String filename, final int end) {
+		var start = end;
+		while (start > 0 && isDigit(filename.charAt(start - 1))) {
+			start--;
+		}
+		return start;
+	}
+
+	private static boolean isDigit(final char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	private static boolean isWordCharacter(final char c) {
+		return isDigit(c) || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '_';
+	}
+
+	/**
+	 * Node of the prefix trie. The children are kept in arrays sorted by their chars, as there are only a handful of
+	 * prefixes.
+	 */
+	private static final class Node {
+
+		private char[] chars = new char[0];
+		private Node[] children = new Node[0];
+		private boolean terminal;
+
+		void add(final String prefix) {
+			var node = this;
+			for (var i = 0; i < prefix.length(); i++) {
+				node = node.getOrAddChild(prefix.charAt(i));
+			}
+			node.terminal = true;
+		}
+
+		boolean matchesPrefixOf(final String filename) {
+			var node = this;
+			for (var i = 0; !node.terminal; i++) {
+				if (i == filename.length()) {
+					return false;
+				}
+				final var index = Arrays.binarySearch(node.chars, filename.charAt(i));
+				if (index < 0) {
+					return false;
+				}
+				node = node.children[index];
+			}
+			return true;
+		}
+
+		private Node getOrAddChild(final char c) {
+			var index = Arrays.binarySearch(chars, c);
+			if (index >= 0) {
+				return children[index];
+			}
+
+			index = -index - 1;
+			final var child = new Node();
+			chars = insert(chars, index, c);
+			children = insert(children, index, child);
+			return child;
+		}
+
+		private static char[] insert(final char[] array, final int index, final char c) {
+			final var result = Arrays.copyOf(array, array.length + 1);
+			System.arraycopy(array, index, result, index + 1, array.length - index);
+			result[index] = c;
+			return result;
+		}
+
+		private static Node[] insert(final Node[] array, final int index, final Node node) {
+			final var result = Arrays.copyOf(array, array.length + 1);
+			System.arraycopy(array, index, result, index + 1, array.length - index);
+			result[index] = node;
+			return result;
+		}
+	}
+}
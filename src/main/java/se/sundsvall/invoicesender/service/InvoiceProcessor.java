@@ -1,56 +1,99 @@
 package se.sundsvall.invoicesender.service;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.FileSystem;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.support.CronTrigger;
 import org.springframework.stereotype.Service;
 import org.springframework.util.FileSystemUtils;
+import se.sundsvall.dept44.problem.Problem;
 import se.sundsvall.dept44.requestid.RequestId;
+import se.sundsvall.invoicesender.api.model.BatchPlanDto;
+import se.sundsvall.invoicesender.api.model.DryRunDto;
 import se.sundsvall.invoicesender.integration.citizen.CitizenIntegration;
 import se.sundsvall.invoicesender.integration.db.DbIntegration;
 import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
 import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
 import se.sundsvall.invoicesender.integration.messaging.MessagingIntegration;
 import se.sundsvall.invoicesender.integration.party.PartyIntegration;
 import se.sundsvall.invoicesender.integration.raindance.RaindanceIntegration;
 import se.sundsvall.invoicesender.integration.raindance.RaindanceIntegrationProperties;
+import se.sundsvall.invoicesender.integration.raindance.RemoteBatchFile;
+import se.sundsvall.invoicesender.integration.raindance.SmbConnectionPool;
+import se.sundsvall.invoicesender.service.FilenameClassifier.Classification;
+import se.sundsvall.invoicesender.service.StageLatencies.Stage;
+import se.sundsvall.invoicesender.service.model.BatchPlan;
 import se.sundsvall.invoicesender.service.model.Metadata;
 import se.sundsvall.invoicesender.service.util.XmlUtil;
 
 import static java.nio.charset.StandardCharsets.ISO_8859_1;
-import static org.apache.commons.collections4.CollectionUtils.isNotEmpty;
+import static java.util.Optional.ofNullable;
+import static java.util.stream.Collectors.groupingBy;
+import static java.util.stream.Collectors.toList;
 import static org.apache.commons.lang3.StringUtils.isAnyBlank;
 import static org.apache.commons.lang3.StringUtils.isNotBlank;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static se.sundsvall.dept44.util.LogUtils.sanitizeForLogging;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.ALREADY_SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
-import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IN_PROGRESS;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.METADATA_INCOMPLETE;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT_RETRYABLE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_LEGAL_ID_FOUND;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_PARTY_ID_FOUND;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_PARTY_ID_NOT_FOUND;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
-import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
-import static se.sundsvall.invoicesender.integration.db.entity.ItemType.OTHER;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.UNHANDLED;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.INVOICE_COULD_NOT_BE_SENT;
-import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_A_PDF;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.INVOICE_IS_ALREADY_SENT;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.INVOICE_SEND_IS_RETRYABLE;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_HANDLED;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_NOT_PROCESSABLE;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_SENT;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.RECIPIENT_HAS_INVALID_LEGAL_ID;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.RECIPIENT_HAS_INVALID_PARTY_ID;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.RECIPIENT_IS_VERIFIED;
+import static se.sundsvall.invoicesender.service.model.ItemPriority.MOST_URGENT_FIRST;
 import static se.sundsvall.invoicesender.service.util.CronUtil.parseCronExpression;
+import static se.sundsvall.invoicesender.util.Constants.ARCHIVE_INDEX_FILENAME;
 import static se.sundsvall.invoicesender.util.Constants.BATCH_FILE_SUFFIX;
 import static se.sundsvall.invoicesender.util.Constants.DISABLED_CRON;
-import static se.sundsvall.invoicesender.util.Constants.RECIPIENT_PATTERN;
 import static se.sundsvall.invoicesender.util.Constants.X_PATH_FILENAME_EXPRESSION;
 import static se.sundsvall.invoicesender.util.LegalIdUtil.isValidLegalId;
 
@@ -59,8 +102,12 @@ public class InvoiceProcessor {
 
 	private static final Logger LOG = LoggerFactory.getLogger(InvoiceProcessor.class);
 	private static final String SLACK_ERROR_MESSAGE = "Fatal error occured when processing invoices. Error message: '%s'. Search ELK with log id %s for more information.";
-	private static final String ARCHIVE_INDEX = "ArchiveIndex.xml";
 	private static final String XML_DECLARATION = "<?xml version=\"1.0\" encoding=\"iso-8859-1\"?>";
+	// Processes all invoices, for municipalities without invoice filename prefixes
+	private static final FilenameClassifier DEFAULT_FILENAME_CLASSIFIER = new FilenameClassifier(List.of());
+	// The statuses of the items that are replayed, unless other statuses are given
+	private static final Set<ItemStatus> REPLAYABLE_STATUSES = EnumSet.of(METADATA_INCOMPLETE, RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID,
+		RECIPIENT_PARTY_ID_NOT_FOUND, NOT_SENT, NOT_SENT_RETRYABLE);
 
 	private final FileSystem fileSystem;
 	private final CitizenIntegration citizenIntegration;
@@ -69,26 +116,74 @@ public class InvoiceProcessor {
 	private final DbIntegration dbIntegration;
 
 	private final Map<String, RaindanceIntegration> raindanceIntegrations = new HashMap<>();
-	private final Map<String, List<String>> invoiceFilenamePrefixes = new HashMap<>();
+	private final Map<String, FilenameClassifier> filenameClassifiers = new HashMap<>();
+
+	private final BatchDispatcher batchDispatcher;
+	private final FairShareScheduler fairShareScheduler;
+	private final ExecutorService lookupExecutor;
+	private final int lookupParallelism;
+	private final ResourceGovernor resourceGovernor;
+	private final StageLatencies stageLatencies;
+	private final boolean resumeOnStartup;
+	private final Duration resumeWindow;
+	private final Set<Integer> resumingBatchIds = ConcurrentHashMap.newKeySet();
+	private final BatchLeaseManager batchLeaseManager;
+	private final SendQueue sendQueue;
+	private final NotificationOutbox notificationOutbox;
+	private final SendRetryProperties sendRetryProperties;
+	private final SentInvoiceIndex sentInvoiceIndex;
+	private final LegalIdHasher legalIdHasher;
 
 	public InvoiceProcessor(final FileSystem fileSystem, final TaskScheduler taskScheduler,
 		final RaindanceIntegrationProperties properties,
 		final CitizenIntegration citizenIntegration,
 		final PartyIntegration partyIntegration,
 		final MessagingIntegration messagingIntegration,
-		final DbIntegration dbIntegration) {
+		final DbIntegration dbIntegration,
+		final MeterRegistry meterRegistry,
+		final BatchProcessingProperties batchProcessingProperties,
+		final BatchDispatcher batchDispatcher,
+		final FairShareScheduler fairShareScheduler,
+		final ResourceGovernor resourceGovernor,
+		final StageLatencies stageLatencies,
+		final CoordinationProperties coordinationProperties,
+		final BatchLeaseManager batchLeaseManager,
+		final SendQueue sendQueue,
+		final NotificationOutbox notificationOutbox,
+		final SendRetryProperties sendRetryProperties,
+		final SentInvoiceIndex sentInvoiceIndex,
+		final LegalIdHasher legalIdHasher) {
 		this.fileSystem = fileSystem;
 		this.citizenIntegration = citizenIntegration;
 		this.partyIntegration = partyIntegration;
 		this.messagingIntegration = messagingIntegration;
 		this.dbIntegration = dbIntegration;
 
+		this.batchDispatcher = batchDispatcher;
+		this.fairShareScheduler = fairShareScheduler;
+		this.resourceGovernor = resourceGovernor;
+		this.stageLatencies = stageLatencies;
+		this.batchLeaseManager = batchLeaseManager;
+		this.sendQueue = sendQueue;
+		this.notificationOutbox = notificationOutbox;
+		this.sendRetryProperties = sendRetryProperties;
+		this.sentInvoiceIndex = sentInvoiceIndex;
+		this.legalIdHasher = legalIdHasher;
+		resumeOnStartup = batchProcessingProperties.resumeOnStartup();
+		resumeWindow = batchProcessingProperties.resumeWindow();
+
+		// The recipient lookups of a batch are made in parallel - the threads mostly wait for responses. The lookups in
+		// flight are bounded per batch, and shared between the batches by the fair-share scheduler
+		lookupParallelism = batchProcessingProperties.lookupParallelism();
+		lookupExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("recipient-lookup-", 0).factory());
+
 		properties.environments().forEach((municipalityId, raindanceEnvironment) -> {
 			// Create a Raindance integration for the given municipality id
-			raindanceIntegrations.put(municipalityId, new RaindanceIntegration(raindanceEnvironment, fileSystem));
+			final var connectionPool = new SmbConnectionPool(municipalityId, raindanceEnvironment, taskScheduler, meterRegistry);
+			raindanceIntegrations.put(municipalityId, new RaindanceIntegration(raindanceEnvironment, fileSystem, connectionPool));
 
-			// Get the invoice filename prefixes
-			invoiceFilenamePrefixes.put(municipalityId, raindanceEnvironment.invoiceFilenamePrefixes());
+			// Compile the filename classifier from the invoice filename prefixes
+			filenameClassifiers.put(municipalityId, FilenameClassifier.of(raindanceEnvironment));
 
 			raindanceEnvironment.batchSetup().forEach((batchName, batchSetup) -> {
 				final var cronExpression = batchSetup.scheduling().cronExpression();
@@ -98,6 +193,11 @@ public class InvoiceProcessor {
 					LOG.info("Batch with prefix {} is disabled", batchName);
 					return;
 				}
+				// Check if the batch is scheduled by other nodes
+				if (!coordinationProperties.ownsBatchPrefix(batchName)) {
+					LOG.info("Batch with prefix {} is scheduled by other nodes", batchName);
+					return;
+				}
 
 				final var parsedCronExpression = parseCronExpression(cronExpression);
 				LOG.info("Scheduling run for batches with prefix {} {}", batchName, parsedCronExpression);
@@ -105,21 +205,199 @@ public class InvoiceProcessor {
 				// Create the cron trigger
 				final var cronTrigger = new CronTrigger(cronExpression);
 
-				// Schedule it
-				taskScheduler.schedule(() -> executeBatch(LocalDate.now(ZoneId.systemDefault()), municipalityId, batchName), cronTrigger);
+				// Schedule it - the scheduler thread only dispatches the run
+				taskScheduler.schedule(() -> batchDispatcher.dispatch(() -> executeScheduledBatch(LocalDate.now(ZoneId.systemDefault()), municipalityId, batchName)), cronTrigger);
 			});
 		});
+
+		// Periodically take over the batches of nodes that have stopped renewing their leases
+		final var takeoverInterval = coordinationProperties.takeoverInterval();
+		if (coordinationProperties.enabled() && takeoverInterval.isPositive()) {
+			taskScheduler.scheduleWithFixedDelay(this::takeOverExpiredLeases, Instant.now().plus(takeoverInterval), takeoverInterval);
+		}
 	}
 
 	/**
-	 * Runs the invoice processor for the given date, municipality id and each configured batch-setup.
+	 * Waits for the batches in flight, then stops the lookup executor and releases the SMB connections held by the
+	 * Raindance integrations. The batch dispatcher is closed here, as its own shutdown hook only runs after this one.
+	 */
+	@PreDestroy
+	void close() {
+		batchDispatcher.close();
+		lookupExecutor.shutdown();
+		raindanceIntegrations.values().forEach(RaindanceIntegration::close);
+	}
+
+	/**
+	 * Runs the invoice processor for the given date, municipality id and each configured batch-setup. The runs are
+	 * dispatched to the background, and this method returns without waiting for them.
 	 *
 	 * @param date           the date.
 	 * @param municipalityId the municipality id.
 	 */
 	public void run(final LocalDate date, final String municipalityId) {
 		raindanceIntegrations.get(municipalityId).getBatchSetups()
-			.forEach(batchName -> executeBatch(date, municipalityId, batchName));
+			.forEach(batchName -> batchDispatcher.dispatch(() -> executeBatch(date, municipalityId, batchName)));
+	}
+
+	/**
+	 * Plans the batches for the given date and municipality id, without processing them. The batches are read and planned
+	 * like when they are processed, but no remote calls are made other than reading them, and nothing is stored.
+	 *
+	 * @param  date           the date
+	 * @param  municipalityId the municipality id
+	 * @return                the plans, with an estimate of the remote calls and bytes needed to process the batches
+	 * @throws IOException    if a batch can't be read
+	 */
+	public List<BatchPlanDto> plan(final LocalDate date, final String municipalityId) throws IOException {
+		return readBatchesLocally(date, municipalityId, (batchEntity, raindanceIntegration, _) -> mapToBatchPlanDto(planLocally(batchEntity, municipalityId), raindanceIntegration));
+	}
+
+	/**
+	 * Dry runs the batches for the given date and municipality id. The batches are read and planned like when they are
+	 * processed, and the recipients are optionally looked up, but nothing is sent, stored or written back to Raindance.
+	 * The duration of the stages that aren't run is projected from the latencies recorded while processing batches.
+	 *
+	 * @param  date             the date
+	 * @param  municipalityId   the municipality id
+	 * @param  lookUpRecipients whether to look up the recipients in Party and Citizen
+	 * @return                  the dry runs, with the call count and duration of each stage
+	 * @throws IOException      if a batch can't be read
+	 */
+	public List<DryRunDto> dryRun(final LocalDate date, final String municipalityId, final boolean lookUpRecipients) throws IOException {
+		return readBatchesLocally(date, municipalityId, (batchEntity, raindanceIntegration, downloadDuration) -> {
+			final var stages = new ArrayList<DryRunDto.Stage>();
+			stages.add(new DryRunDto.Stage(Stage.DOWNLOAD.getTag(), 1, downloadDuration.toMillis(), true));
+
+			final var planStart = System.nanoTime();
+			final var plan = planLocally(batchEntity, municipalityId);
+			stages.add(new DryRunDto.Stage(Stage.PLAN.getTag(), 1, millisSince(planStart), true));
+
+			final var lookupCount = plan.recipientLookups().size();
+			final int sendableItemCount;
+			if (lookUpRecipients) {
+				final var partyLookupStart = System.nanoTime();
+				forEachInParallel(plan.recipientLookups(), item -> fetchInvoiceRecipientPartyIds(item, municipalityId));
+				stages.add(new DryRunDto.Stage(Stage.PARTY_LOOKUP.getTag(), lookupCount, millisSince(partyLookupStart), true));
+
+				final var itemsWithPartyId = plan.recipientLookups().stream()
+					.filter(RECIPIENT_HAS_INVALID_PARTY_ID.negate())
+					.toList();
+				final var citizenLookupStart = System.nanoTime();
+				forEachInParallel(itemsWithPartyId, item -> markProtectedIdentityItems(item, municipalityId));
+				stages.add(new DryRunDto.Stage(Stage.CITIZEN_LOOKUP.getTag(), itemsWithPartyId.size(), millisSince(citizenLookupStart), true));
+
+				sendableItemCount = plan.readyToSend().size() + (int) itemsWithPartyId.stream()
+					.filter(RECIPIENT_HAS_INVALID_LEGAL_ID.negate())
+					.count();
+			} else {
+				stages.add(projectStage(Stage.PARTY_LOOKUP, lookupCount, lookupParallelism));
+				stages.add(projectStage(Stage.CITIZEN_LOOKUP, lookupCount, lookupParallelism));
+				sendableItemCount = plan.sendableItemCount();
+			}
+
+			stages.add(projectStage(Stage.MAILBOX_CHECK, messagingIntegration.estimateMailboxCheckCalls(sendableItemCount), 1));
+			stages.add(projectStage(Stage.SEND, sendableItemCount, 1));
+
+			final var estimatedDurationMillis = stages.stream()
+				.map(DryRunDto.Stage::durationMillis)
+				.filter(Objects::nonNull)
+				.mapToLong(Long::longValue)
+				.sum();
+			return new DryRunDto(mapToBatchPlanDto(plan, raindanceIntegration), lookUpRecipients, stages, estimatedDurationMillis);
+		});
+	}
+
+	private DryRunDto.Stage projectStage(final Stage stage, final int calls, final int parallelism) {
+		return new DryRunDto.Stage(stage.getTag(), calls, stageLatencies.project(stage, calls, parallelism).map(Duration::toMillis).orElse(null), false);
+	}
+
+	private static long millisSince(final long startNanos) {
+		return Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+	}
+
+	/**
+	 * Plans a batch that has been read locally, without storing anything. The items of a batch with processing disabled
+	 * are all skipped.
+	 */
+	private BatchPlan planLocally(final BatchEntity batchEntity, final String municipalityId) throws IOException {
+		return batchEntity.isProcessingEnabled()
+			? planBatch(batchEntity, mapXmlFileToString(batchEntity.getLocalPath()), municipalityId)
+			: new BatchPlan(batchEntity, batchEntity.getItems(), List.of(), List.of());
+	}
+
+	/**
+	 * Reads each batch for the given date and municipality id into a local work directory, hands it to the handler and
+	 * cleans up. Nothing is stored, and nothing is written back to Raindance.
+	 */
+	private <T> List<T> readBatchesLocally(final LocalDate date, final String municipalityId, final LocalBatchHandler<T> handler) throws IOException {
+		final var raindanceIntegration = raindanceIntegrations.get(municipalityId);
+		final var results = new ArrayList<T>();
+
+		for (final var batchName : raindanceIntegration.getBatchSetups()) {
+			for (final var batchFile : raindanceIntegration.listBatchFiles(date, batchName)) {
+				try (var admission = resourceGovernor.admit(batchFile.name(), batchFile.size())) {
+					final var downloadStart = System.nanoTime();
+					final var batchEntity = raindanceIntegration.readBatch(date, batchName, municipalityId, batchFile, admission.streaming());
+					final var downloadDuration = Duration.ofNanos(System.nanoTime() - downloadStart);
+					try {
+						results.add(handler.handle(batchEntity, raindanceIntegration, downloadDuration));
+					} finally {
+						raindanceIntegration.closeBatch(batchEntity);
+						FileSystemUtils.deleteRecursively(fileSystem.getPath(batchEntity.getLocalPath()));
+					}
+				}
+			}
+		}
+		return results;
+	}
+
+	@FunctionalInterface
+	private interface LocalBatchHandler<T> {
+
+		T handle(BatchEntity batchEntity, RaindanceIntegration raindanceIntegration, Duration downloadDuration) throws IOException;
+	}
+
+	/**
+	 * Maps a plan to its API representation, and estimates the remote calls and the bytes needed to carry it out. Every
+	 * sendable item is assumed to get sent, so the estimates are upper bounds.
+	 */
+	BatchPlanDto mapToBatchPlanDto(final BatchPlan plan, final RaindanceIntegration raindanceIntegration) throws IOException {
+		final var batchEntity = plan.batch();
+		final var lookupCount = plan.recipientLookups().size();
+		final var sendableItemCount = plan.sendableItemCount();
+		final var remoteCalls = new BatchPlanDto.RemoteCalls(lookupCount, lookupCount,
+			messagingIntegration.estimateMailboxCheckCalls(sendableItemCount) + sendableItemCount);
+
+		var bytesToSend = 0L;
+		for (final var item : plan.recipientLookups()) {
+			bytesToSend += Math.max(0, raindanceIntegration.getItemSize(batchEntity.getLocalPath(), item.getFilename()));
+		}
+		for (final var item : plan.readyToSend()) {
+			bytesToSend += Math.max(0, raindanceIntegration.getItemSize(batchEntity.getLocalPath(), item.getFilename()));
+		}
+
+		final var items = new ArrayList<BatchPlanDto.PlannedItem>();
+		plan.skippedItems().forEach(item -> items.add(new BatchPlanDto.PlannedItem(item.getFilename(), BatchPlanDto.Action.SKIP)));
+		plan.recipientLookups().forEach(item -> items.add(new BatchPlanDto.PlannedItem(item.getFilename(), BatchPlanDto.Action.LOOK_UP_RECIPIENT)));
+		plan.readyToSend().forEach(item -> items.add(new BatchPlanDto.PlannedItem(item.getFilename(), BatchPlanDto.Action.SEND)));
+
+		return new BatchPlanDto(batchEntity.getBasename(), batchEntity.isProcessingEnabled(), batchEntity.getItems().size(),
+			plan.skippedItems().size(), lookupCount, plan.readyToSend().size(), remoteCalls, bytesToSend, items);
+	}
+
+	/**
+	 * Executes a scheduled run, after a random part of the start jitter - runs of several municipalities and batch
+	 * prefixes are often scheduled at the same time.
+	 */
+	void executeScheduledBatch(final LocalDate date, final String municipalityId, final String batchName) {
+		try {
+			fairShareScheduler.awaitStartJitter();
+		} catch (final InterruptedIOException e) {
+			LOG.warn("Interrupted before starting batch with prefix {} for municipality {}", sanitizeForLogging(batchName), sanitizeForLogging(municipalityId));
+			return;
+		}
+		executeBatch(date, municipalityId, batchName);
 	}
 
 	private void executeBatch(LocalDate date, String municipalityId, String batchName) {
@@ -135,82 +413,352 @@ public class InvoiceProcessor {
 			LOG.error("Failed to process batch with prefix {} for municipality {}", batchName, municipalityId, e);
 
 			// Display error on slack and send error report to mail
-			messagingIntegration.sendSlackMessage(municipalityId, SLACK_ERROR_MESSAGE.formatted(e.getMessage(), RequestId.get()));
-			messagingIntegration.sendErrorReport(date, municipalityId, batchName, e.getMessage());
+			notificationOutbox.sendSlackMessage(municipalityId, SLACK_ERROR_MESSAGE.formatted(e.getMessage(), RequestId.get()));
+			notificationOutbox.sendErrorReport(date, municipalityId, batchName, e.getMessage());
 		}
 	}
 
 	void run(final LocalDate date, final String municipalityId, final String batchName) throws IOException {
+		// Make sure that no other node is processing the same batches
+		final var lease = batchLeaseManager.tryAcquire(municipalityId, batchName, date);
+		if (lease.isEmpty()) {
+			LOG.info("Batches with prefix {} for municipality {} are already being processed", batchName, municipalityId);
+			return;
+		}
+
+		try (var heldLease = lease.get()) {
+			// Skip the run if another node has completed it already, e.g. one whose schedule fired a moment earlier
+			if (batchLeaseManager.isCompleted(municipalityId, batchName, date)) {
+				LOG.info("Batches with prefix {} for municipality {} have already been processed", batchName, municipalityId);
+				return;
+			}
+
+			runLeased(date, municipalityId, batchName);
+			heldLease.complete();
+		}
+	}
+
+	private void runLeased(final LocalDate date, final String municipalityId, final String batchName) throws IOException {
 		// Get the Raindance integration
 		final var raindanceIntegration = raindanceIntegrations.get(municipalityId);
-		// Get the batches from Raindance
-		final var batches = raindanceIntegration.readBatches(date, batchName, municipalityId);
+		// List the batches in Raindance
+		final var batchFiles = raindanceIntegration.listBatchFiles(date, batchName);
+
+		// Ingest and process each batch file in parallel, behind the bulkhead of the municipality
+		final var futures = batchFiles.stream()
+			.map(batchFile -> batchDispatcher.submit(municipalityId, () -> ingestAndProcessBatch(raindanceIntegration, batchFile, date, municipalityId, batchName)))
+			.toList();
+
+		// Wait for all batches, and collect any failures
+		final var batchEntities = new ArrayList<BatchEntity>();
+		IOException failure = null;
+		for (final var future : futures) {
+			try {
+				batchEntities.add(future.join());
+			} catch (final CompletionException e) {
+				final var cause = e.getCause() instanceof final IOException ioException ? ioException : new IOException(e.getCause());
+				if (failure == null) {
+					failure = cause;
+				} else {
+					failure.addSuppressed(cause);
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+
+		// Send a status report
+		notificationOutbox.sendStatusReport(batchEntities, date, municipalityId);
+	}
+
+	/**
+	 * Reads, persists and processes a single batch file, once it has been admitted by the resource governor.
+	 */
+	private BatchEntity ingestAndProcessBatch(final RaindanceIntegration raindanceIntegration, final RemoteBatchFile batchFile,
+		final LocalDate date, final String municipalityId, final String batchName) throws IOException {
+		// Resume the batch if it has been read before, but was interrupted
+		final var leaseKey = new BatchLeaseManager.LeaseKey(municipalityId, batchName, date);
+		final var incompleteBatch = dbIntegration.getIncompleteBatch(municipalityId, batchFile.basename(), resumeWindowStart());
+		if (incompleteBatch.isPresent()) {
+			LOG.info("Batch {} has been read before, but is incomplete - resuming it", batchFile.name());
+			return resumeBatch(raindanceIntegration, incompleteBatch.get(), leaseKey);
+		}
+
+		try (var admission = resourceGovernor.admit(batchFile.name(), batchFile.size())) {
+			final var downloadStart = System.nanoTime();
+			final var batch = raindanceIntegration.readBatch(date, batchName, municipalityId, batchFile, admission.streaming());
+			stageLatencies.record(Stage.DOWNLOAD, Duration.ofNanos(System.nanoTime() - downloadStart));
+			final var batchEntities = dbIntegration.persistBatches(List.of(batch));
+
+			try {
+				processBatches(batchEntities, raindanceIntegration, date, leaseKey);
+			} finally {
+				batchEntities.forEach(raindanceIntegration::closeBatch);
+			}
+			return batchEntities.getFirst();
+		}
+	}
+
+	/**
+	 * Resumes all incomplete batches within the resume window, e.g. after a restart in the middle of a batch. The batches
+	 * are resumed in the background, unless they are leased by another node.
+	 */
+	@EventListener(ApplicationReadyEvent.class)
+	void resumeIncompleteBatches() {
+		if (!resumeOnStartup) {
+			return;
+		}
+
+		final var incompleteBatches = dbIntegration.getIncompleteBatches(resumeWindowStart());
+		LOG.info("Found {} incomplete batch(es) to resume", incompleteBatches.size());
+
+		incompleteBatches.stream()
+			.collect(groupingBy(this::getLeaseKey, LinkedHashMap::new, toList()))
+			.forEach((leaseKey, batches) -> batchDispatcher.execute(leaseKey.municipalityId(), () -> resumeLeasedBatches(leaseKey, batches)));
+	}
+
+	/**
+	 * Takes over expired leases, i.e. leases of nodes that have crashed or lost their database connection, and resumes
+	 * the incomplete batches covered by them in the background. A lease that covers no incomplete batches - its node
+	 * crashed before it persisted any - is taken over by running its batches from the start.
+	 */
+	void takeOverExpiredLeases() {
+		final var expiredLeases = batchLeaseManager.getExpiredLeases();
+		if (expiredLeases.isEmpty()) {
+			return;
+		}
+
+		final var incompleteBatches = dbIntegration.getIncompleteBatches(resumeWindowStart()).stream()
+			.collect(groupingBy(this::getLeaseKey));
+
+		expiredLeases.forEach(leaseKey -> {
+			LOG.info("Taking over expired lease on batches with prefix {} for municipality {} and date {}",
+				leaseKey.batchPrefix(), leaseKey.municipalityId(), leaseKey.date());
+			final var batches = incompleteBatches.get(leaseKey);
+			if (batches != null) {
+				batchDispatcher.execute(leaseKey.municipalityId(), () -> resumeLeasedBatches(leaseKey, batches));
+			} else if (raindanceIntegrations.containsKey(leaseKey.municipalityId())) {
+				batchDispatcher.dispatch(() -> executeBatch(leaseKey.date(), leaseKey.municipalityId(), leaseKey.batchPrefix()));
+			} else {
+				LOG.warn("No Raindance integration for municipality {} - unable to run batches with prefix {}", leaseKey.municipalityId(), leaseKey.batchPrefix());
+			}
+		});
+	}
+
+	private void resumeLeasedBatches(final BatchLeaseManager.LeaseKey leaseKey, final List<BatchEntity> batches) {
+		final var municipalityId = leaseKey.municipalityId();
+		final var lease = batchLeaseManager.tryAcquire(municipalityId, leaseKey.batchPrefix(), leaseKey.date());
+		if (lease.isEmpty()) {
+			LOG.info("Batches with prefix {} for municipality {} are already being processed", leaseKey.batchPrefix(), municipalityId);
+			return;
+		}
+
+		try (var _ = lease.get()) {
+			final var raindanceIntegration = raindanceIntegrations.get(municipalityId);
+			if (raindanceIntegration == null && !batches.isEmpty()) {
+				LOG.warn("No Raindance integration for municipality {} - unable to resume batches with prefix {}", municipalityId, leaseKey.batchPrefix());
+				return;
+			}
+
+			final var resumedBatches = new ArrayList<BatchEntity>();
+			for (final var batch : batches) {
+				try {
+					resumedBatches.add(resumeBatch(raindanceIntegration, batch, leaseKey));
+				} catch (final Exception e) {
+					LOG.error("Failed to resume batch {} for municipality {}", batch.getBasename(), municipalityId, e);
+
+					notificationOutbox.sendSlackMessage(municipalityId, SLACK_ERROR_MESSAGE.formatted(e.getMessage(), RequestId.get()));
+					notificationOutbox.sendErrorReport(leaseKey.date(), municipalityId, batch.getBasename(), e.getMessage());
+				}
+			}
+			if (!resumedBatches.isEmpty()) {
+				notificationOutbox.sendStatusReport(resumedBatches, leaseKey.date(), municipalityId);
+			}
+		}
+	}
+
+	/**
+	 * Gets the key of the lease that covers the given batch. Batches read before batch prefixes were recorded are matched
+	 * against the configured batch setups by their basename.
+	 */
+	private BatchLeaseManager.LeaseKey getLeaseKey(final BatchEntity batch) {
+		final var batchPrefix = ofNullable(batch.getBatchPrefix())
+			.or(() -> ofNullable(raindanceIntegrations.get(batch.getMunicipalityId()))
+				.flatMap(raindanceIntegration -> raindanceIntegration.getBatchSetups().stream()
+					.filter(batchName -> batch.getBasename().startsWith(batchName))
+					.max(Comparator.comparingInt(String::length))))
+			.orElse(batch.getBasename());
+		final var date = ofNullable(batch.getDate()).orElseGet(() -> batch.getStartedAt().toLocalDate());
+
+		return new BatchLeaseManager.LeaseKey(batch.getMunicipalityId(), batchPrefix, date);
+	}
+
+	/**
+	 * Resumes an incomplete batch from its last checkpoint. Items that were already handled are skipped, and items with a
+	 * verified recipient go straight to sending.
+	 */
+	private BatchEntity resumeBatch(final RaindanceIntegration raindanceIntegration, final BatchEntity batch, final BatchLeaseManager.LeaseKey leaseKey) throws IOException {
+		if (!resumingBatchIds.add(batch.getId())) {
+			throw new IOException("Batch %s is already being resumed".formatted(batch.getBasename()));
+		}
+
+		// Admit the batch by the size of its 7z file, as a streamed batch has no stored data to go by
+		final long fileSize = ofNullable(batch.getFileSize())
+			.orElseGet(() -> ofNullable(batch.getData()).map(data -> (long) data.length).orElse(0L));
+		try (var _ = resourceGovernor.admit(batch.getBasename(), fileSize)) {
+			raindanceIntegration.restoreBatch(batch);
+			// The batch may have been restored to a new work directory
+			dbIntegration.persistBatch(batch);
+
+			final var date = ofNullable(batch.getDate()).orElseGet(() -> batch.getStartedAt().toLocalDate());
+			try {
+				processBatches(List.of(batch), raindanceIntegration, date, leaseKey);
+			} finally {
+				raindanceIntegration.closeBatch(batch);
+			}
+			return batch;
+		} finally {
+			resumingBatchIds.remove(batch.getId());
+		}
+	}
+
+	/**
+	 * Replays a stored batch from its stored data, e.g. after a failed or partial run. The batch is rehydrated into a new
+	 * work directory, without reading anything from the shares, and processed again. The items in the given statuses are
+	 * reset and run through the whole pipeline again, items that haven't been handled yet are resumed and all other items
+	 * are left as they are. Sent invoices are never replayed.
+	 *
+	 * @param  municipalityId the municipality id
+	 * @param  batchId        the batch id
+	 * @param  statuses       the statuses of the items to replay, or empty to replay all items that failed
+	 * @throws IOException    if the batch can't be rehydrated or processed
+	 */
+	public void replay(final String municipalityId, final Integer batchId, final Set<ItemStatus> statuses) throws IOException {
+		final var replayStatuses = statuses == null || statuses.isEmpty() ? REPLAYABLE_STATUSES : statuses;
+		if (replayStatuses.contains(SENT) || replayStatuses.contains(ALREADY_SENT)) {
+			throw Problem.valueOf(BAD_REQUEST, "Sent invoices can't be replayed");
+		}
+
+		final var batch = dbIntegration.getBatch(municipalityId, batchId)
+			.orElseThrow(() -> Problem.valueOf(NOT_FOUND, "Batch %s not found".formatted(batchId)));
+		if (batch.getData() == null) {
+			throw Problem.valueOf(CONFLICT, "Batch %s has no stored data to replay from, as it was read in streaming mode or its data has been purged".formatted(batchId));
+		}
+
+		// Make sure that the batch isn't being processed or resumed at the same time
+		final var leaseKey = getLeaseKey(batch);
+		final var lease = batchLeaseManager.tryAcquire(municipalityId, leaseKey.batchPrefix(), leaseKey.date());
+		if (lease.isEmpty()) {
+			throw Problem.valueOf(CONFLICT, "Batches with prefix %s are being processed".formatted(leaseKey.batchPrefix()));
+		}
+
+		try (var _ = lease.get()) {
+			if (!resumingBatchIds.add(batch.getId())) {
+				throw Problem.valueOf(CONFLICT, "Batch %s is being resumed".formatted(batchId));
+			}
+
+			try (var _ = resourceGovernor.admit(batch.getBasename(), batch.getData().length)) {
+				LOG.info("Replaying items in status {} of batch {}", replayStatuses, batch.getBasename());
+				for (final var item : batch.getItems()) {
+					if (replayStatuses.contains(item.getStatus())) {
+						item.setStatus(UNHANDLED);
+						dbIntegration.persistItem(item);
+					}
+				}
+
+				final var raindanceIntegration = raindanceIntegrations.get(municipalityId);
+				raindanceIntegration.rehydrateBatch(batch);
+				// Until the replay is done the batch is incomplete, so that it is resumed if the replay is interrupted
+				batch.setCompleted(false);
+				dbIntegration.persistBatch(batch);
+
+				try {
+					processBatches(List.of(batch), raindanceIntegration, leaseKey.date(), leaseKey);
+				} finally {
+					raindanceIntegration.closeBatch(batch);
+				}
+			} finally {
+				resumingBatchIds.remove(batch.getId());
+			}
+		}
 
-		final var batchEntities = dbIntegration.persistBatches(batches);
+		notificationOutbox.sendStatusReport(List.of(batch), leaseKey.date(), municipalityId);
+	}
 
+	private LocalDateTime resumeWindowStart() {
+		return LocalDateTime.now(ZoneId.systemDefault()).minus(resumeWindow);
+	}
+
+	private static void setContextMap(final Map<String, String> contextMap) {
+		if (contextMap != null) {
+			MDC.setContextMap(contextMap);
+		}
+	}
+
+	/**
+	 * Processes batches under the given lease. Sends and write-backs are only made while the lease is held, so that a run
+	 * that has lost its lease stops before it duplicates the work of the node that took it over.
+	 */
+	private void processBatches(final List<BatchEntity> batchEntities, final RaindanceIntegration raindanceIntegration, final LocalDate date,
+		final BatchLeaseManager.LeaseKey leaseKey) throws IOException {
+		final var municipalityId = leaseKey.municipalityId();
 		for (final var batchEntity : batchEntities) {
 			if (batchEntity.isProcessingEnabled()) {
 				LOG.info("Processing batch {}", batchEntity.getBasename() + BATCH_FILE_SUFFIX);
+				final var flow = FairShareScheduler.Flow.of(batchEntity);
 				final var localPath = batchEntity.getLocalPath();
 				var archiveIndex = mapXmlFileToString(localPath);
-				for (final var item : batchEntity.getItems()) {
-
-					// Mark invoice items
-					markItems(item, municipalityId);
-					if (ITEM_IS_NOT_PROCESSABLE.test(item)) {
-						// Stop processing item if it is not processable.
-						LOG.info("Item not processable - skipping item {}", item.getFilename());
-						dbIntegration.persistItem(item);
-						continue;
-					}
+				// Catch up with invoices sent by other nodes since the last batch
+				sentInvoiceIndex.refresh();
 
-					// Extract the item metadata
-					extractItemMetadata(item, archiveIndex);
-					if (ITEM_IS_NOT_PROCESSABLE.test(item)) {
-						// Stop processing item if it is not processable.
-						LOG.info("Item not processable after extracting metadata - skipping item {}", item.getFilename());
-						dbIntegration.persistItem(item);
-						continue;
+				// Items that were sent before the batch was interrupted may still be in the archive index
+				for (final var item : batchEntity.getItems()) {
+					if (ITEM_IS_SENT.or(INVOICE_IS_ALREADY_SENT).test(item)) {
+						archiveIndex = removeItemFromArchiveIndex(item, archiveIndex, localPath);
 					}
+				}
 
-					// Extract recipient legal id:s if possible
-					extractInvoiceRecipientLegalId(item);
-					if (RECIPIENT_HAS_INVALID_LEGAL_ID.test(item)) {
-						// Stop processing item if it does not have a legal id.
-						LOG.info("Item has an invalid legal id - skipping item {}", item.getFilename());
-						dbIntegration.persistItem(item);
-						continue;
-					}
+				// Plan the batch locally, and then do the remote work grouped by integration
+				final var planStart = System.nanoTime();
+				final var plan = planBatch(batchEntity, archiveIndex, municipalityId);
+				stageLatencies.record(Stage.PLAN, Duration.ofNanos(System.nanoTime() - planStart));
+				plan.skippedItems().forEach(dbIntegration::persistItem);
+				final var verifiedItems = lookUpRecipients(plan, municipalityId, dbIntegration::persistItem);
 
-					// Remove any items that have invalid recipient legal ids
-					validateLegalId(item);
-					if (RECIPIENT_HAS_INVALID_LEGAL_ID.test(item)) {
-						// Stop processing item if it has an invalid legal id.
-						LOG.info("Invalid recipient legal id - skipping item {}", item.getFilename());
-						dbIntegration.persistItem(item);
-						continue;
-					}
+				// Check the mailboxes of all recipients up front, so that invoices to recipients without one aren't uploaded
+				if (!verifiedItems.isEmpty()) {
+					fairShareScheduler.run(flow, () -> stageLatencies.record(Stage.MAILBOX_CHECK, () -> messagingIntegration.checkMailboxes(municipalityId, verifiedItems.stream()
+						.map(ItemEntity::getRecipientPartyId)
+						.toList())));
+				}
 
-					// Get the recipient party id from the invoices that are left and where the recipient legal id is set
-					fetchInvoiceRecipientPartyIds(item, municipalityId);
-					if (RECIPIENT_HAS_INVALID_PARTY_ID.test(item)) {
-						// Stop processing item if the recipient party id is invalid.
-						LOG.info("Invalid recipient party id - skipping item {}", item.getFilename());
-						dbIntegration.persistItem(item);
+				final var queuedItems = new ArrayList<ItemEntity>();
+				final var retryItems = new ArrayList<ItemEntity>();
+				for (final var item : verifiedItems) {
+					batchLeaseManager.checkHeld(leaseKey);
+					// Publish the item to the send queue, if enabled - the results are collected once all items are published
+					if (sendQueue.isEnabled()) {
+						if (enqueueDigitalInvoice(batchEntity, item, localPath, municipalityId)) {
+							queuedItems.add(item);
+						} else {
+							dbIntegration.persistItem(item);
+							if (INVOICE_IS_ALREADY_SENT.test(item)) {
+								archiveIndex = removeItemFromArchiveIndex(item, archiveIndex, localPath);
+							}
+						}
 						continue;
 					}
 
-					// Remove any items where the recipient has a protected identity
-					markProtectedIdentityItems(item, municipalityId);
-					if (RECIPIENT_HAS_INVALID_LEGAL_ID.test(item)) {
-						// Stop processing item if the recipient has a protected identity.
-						LOG.info("Recipient has protected identity - skipping item {}", item.getFilename());
+					// Send digital mail for the invoices where the recipient party id is set
+					fairShareScheduler.run(flow, () -> stageLatencies.record(Stage.SEND, () -> sendDigitalInvoices(item, localPath, municipalityId)));
+					if (INVOICE_SEND_IS_RETRYABLE.test(item)) {
+						// Retry once the rest of the batch has been sent, so that a Messaging hiccup doesn't hold up the batch
+						LOG.info("Invoice could not be sent due to a transient error - deferring item {}", item.getFilename());
 						dbIntegration.persistItem(item);
+						retryItems.add(item);
 						continue;
 					}
-
-					// Send digital mail for the invoices where the recipient party id is set
-					sendDigitalInvoices(item, localPath, municipalityId);
 					if (INVOICE_COULD_NOT_BE_SENT.test(item)) {
 						// Stop processing item if the invoice could not be sent.
 						LOG.info("Invoice could not be sent - skipping item {}", item.getFilename());
@@ -222,14 +770,27 @@ public class InvoiceProcessor {
 					// Update the archive index - ArchiveIndex.xml
 					archiveIndex = removeItemFromArchiveIndex(item, archiveIndex, localPath);
 				}
+
+				if (!queuedItems.isEmpty()) {
+					archiveIndex = collectQueuedInvoices(batchEntity, queuedItems, archiveIndex, localPath);
+					queuedItems.stream()
+						.filter(INVOICE_SEND_IS_RETRYABLE)
+						.forEach(retryItems::add);
+				}
+
+				if (!retryItems.isEmpty()) {
+					batchLeaseManager.checkHeld(leaseKey);
+					retryDigitalInvoices(retryItems, archiveIndex, localPath, municipalityId, flow);
+				}
 			} else {
 				LOG.info("Batch processing is disabled for {}", batchEntity.getBasename() + BATCH_FILE_SUFFIX);
 			}
 
 			// Write the batch back to Raindance
+			batchLeaseManager.checkHeld(leaseKey);
 			raindanceIntegration.writeBatch(batchEntity);
-			// Mark the batch as completed and store it
-			updateAndPersistBatch(batchEntity);
+			// Mark the batch as completed and store it, along with its Slack message
+			updateAndPersistBatch(batchEntity, date, municipalityId);
 
 			// Archive the batch
 			if (isNotBlank(batchEntity.getArchivePath())) {
@@ -237,36 +798,205 @@ public class InvoiceProcessor {
 				raindanceIntegration.archiveOriginalBatch(batchEntity);
 			}
 			// Clean up
+			raindanceIntegration.closeBatch(batchEntity);
 			FileSystemUtils.deleteRecursively(fileSystem.getPath(batchEntity.getLocalPath()));
-			messagingIntegration.sendSlackMessage(batchEntity, date, municipalityId);
 		}
-		// Send a status report
-		messagingIntegration.sendStatusReport(batchEntities, date, municipalityId);
 	}
 
 	/**
-	 * Mark items as either INVOICE or OTHER and set the status to IN_PROGRESS or IGNORED.
+	 * Plans a batch, without any remote calls: items are classified, their metadata is extracted from the archive index
+	 * and their recipient legal ids are validated. Items that were already handled before the batch was interrupted are
+	 * left out of the plan.
 	 *
-	 * @param item           the item to mark
-	 * @param municipalityId the municipality id
+	 * @param  batchEntity    the batch
+	 * @param  archiveIndex   the archive index XML file as a string
+	 * @param  municipalityId the municipality id
+	 * @return                the plan
 	 */
-	void markItems(final ItemEntity item, final String municipalityId) {
-		if (ITEM_IS_A_PDF.test(item)) {
-			LOG.info("Setting item {} type to INVOICE", item.getFilename());
-			item.setType(INVOICE);
-			item.setStatus(IN_PROGRESS);
+	BatchPlan planBatch(final BatchEntity batchEntity, final String archiveIndex, final String municipalityId) {
+		final var skippedItems = new ArrayList<ItemEntity>();
+		final var recipientLookups = new ArrayList<ItemEntity>();
+		final var readyToSend = new ArrayList<ItemEntity>();
 
-			final var invoiceFilenamePrefixesForMunicipality = invoiceFilenamePrefixes.get(municipalityId);
+		for (final var item : batchEntity.getItems()) {
+			// Skip items that were already handled before the batch was interrupted
+			if (ITEM_IS_HANDLED.test(item)) {
+				continue;
+			}
 
-			if (isNotEmpty(invoiceFilenamePrefixesForMunicipality) && invoiceFilenamePrefixesForMunicipality.stream().noneMatch(prefix -> item.getFilename().startsWith(prefix))) {
-				LOG.info("Setting item {} status to IGNORED", item.getFilename());
-				item.setStatus(IGNORED);
+			if (RECIPIENT_IS_VERIFIED.test(item)) {
+				// The recipient was verified before the batch was interrupted - only the metadata needs to be restored
+				LOG.info("Resuming item {}", item.getFilename());
+				extractItemMetadata(item, archiveIndex);
+				markReminder(item, classify(item, municipalityId));
+				if (ITEM_IS_NOT_PROCESSABLE.test(item)) {
+					LOG.info("Item not processable after extracting metadata - skipping item {}", item.getFilename());
+					skippedItems.add(item);
+				} else {
+					readyToSend.add(item);
+				}
+			} else if (planItem(item, archiveIndex, municipalityId)) {
+				recipientLookups.add(item);
+			} else {
+				skippedItems.add(item);
 			}
-		} else {
-			LOG.info("Setting item {} type to OTHER and status to IGNORED", item.getFilename());
-			item.setType(OTHER);
-			item.setStatus(IGNORED);
 		}
+
+		return new BatchPlan(batchEntity, skippedItems, recipientLookups, readyToSend);
+	}
+
+	/**
+	 * Runs the local checks that precede the recipient lookup of an item: classification, metadata and legal id
+	 * validation.
+	 *
+	 * @param  item           the item to check
+	 * @param  archiveIndex   the archive index XML file as a string
+	 * @param  municipalityId the municipality id
+	 * @return                true if the recipient of the item should be looked up, otherwise false
+	 */
+	private boolean planItem(final ItemEntity item, final String archiveIndex, final String municipalityId) {
+		// Mark invoice items, the filename is scanned once for both the type and the recipient legal id
+		final var classification = classify(item, municipalityId);
+		markItems(item, classification);
+		if (ITEM_IS_NOT_PROCESSABLE.test(item)) {
+			// Stop processing item if it is not processable.
+			LOG.info("Item not processable - skipping item {}", item.getFilename());
+			return false;
+		}
+
+		// Extract the item metadata
+		extractItemMetadata(item, archiveIndex);
+		if (ITEM_IS_NOT_PROCESSABLE.test(item)) {
+			// Stop processing item if it is not processable.
+			LOG.info("Item not processable after extracting metadata - skipping item {}", item.getFilename());
+			return false;
+		}
+		markReminder(item, classification);
+
+		// Extract recipient legal id:s if possible
+		extractInvoiceRecipientLegalId(item, classification);
+		if (RECIPIENT_HAS_INVALID_LEGAL_ID.test(item)) {
+			// Stop processing item if it does not have a legal id.
+			LOG.info("Item has an invalid legal id - skipping item {}", item.getFilename());
+			return false;
+		}
+
+		// Remove any items that have invalid recipient legal ids
+		validateLegalId(item);
+		if (RECIPIENT_HAS_INVALID_LEGAL_ID.test(item)) {
+			// Stop processing item if it has an invalid legal id.
+			LOG.info("Invalid recipient legal id - skipping item {}", item.getFilename());
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Executes the recipient lookups of a plan, grouped by integration: first the party ids of all recipients are fetched,
+	 * and then the recipients with a party id are checked for protected identities. The lookups of each integration are
+	 * made in parallel. Once an item has passed all checks it is checkpointed, so that a resumed batch doesn't have to
+	 * verify the recipient again.
+	 *
+	 * @param  plan           the plan
+	 * @param  municipalityId the municipality id
+	 * @param  checkpoint     stores an item once its recipient lookups are done
+	 * @return                the items that are ready to be sent, most urgent first
+	 */
+	private List<ItemEntity> lookUpRecipients(final BatchPlan plan, final String municipalityId, final Consumer<ItemEntity> checkpoint) {
+		final var flow = FairShareScheduler.Flow.of(plan.batch());
+		// Look up the recipients of the most urgent invoices first, so that they are sent first if the run is slow
+		final var recipientLookups = plan.recipientLookups().stream()
+			.sorted(MOST_URGENT_FIRST)
+			.toList();
+
+		// Get the recipient party ids
+		forEachInParallel(recipientLookups, item -> fairShareScheduler.run(flow,
+			() -> stageLatencies.record(Stage.PARTY_LOOKUP, () -> fetchInvoiceRecipientPartyIds(item, municipalityId))));
+		final var itemsWithPartyId = new ArrayList<ItemEntity>();
+		for (final var item : recipientLookups) {
+			if (RECIPIENT_HAS_INVALID_PARTY_ID.test(item)) {
+				// Stop processing item if the recipient party id is invalid.
+				LOG.info("Invalid recipient party id - skipping item {}", item.getFilename());
+				checkpoint.accept(item);
+			} else {
+				itemsWithPartyId.add(item);
+			}
+		}
+
+		// Remove any items where the recipient has a protected identity
+		forEachInParallel(itemsWithPartyId, item -> fairShareScheduler.run(flow,
+			() -> stageLatencies.record(Stage.CITIZEN_LOOKUP, () -> markProtectedIdentityItems(item, municipalityId))));
+		final var verifiedItems = Collections.newSetFromMap(new IdentityHashMap<ItemEntity, Boolean>());
+		verifiedItems.addAll(plan.readyToSend());
+		for (final var item : itemsWithPartyId) {
+			if (RECIPIENT_HAS_INVALID_LEGAL_ID.test(item)) {
+				// Stop processing item if the recipient has a protected identity.
+				LOG.info("Recipient has protected identity - skipping item {}", item.getFilename());
+			} else {
+				verifiedItems.add(item);
+			}
+			// Checkpoint - the recipient is verified and the item is ready to be sent
+			checkpoint.accept(item);
+		}
+
+		return plan.batch().getItems().stream()
+			.filter(verifiedItems::contains)
+			.sorted(MOST_URGENT_FIRST)
+			.toList();
+	}
+
+	/**
+	 * Applies the action to the items in parallel, on the lookup executor, and waits for all of them. At most
+	 * lookup-parallelism actions are applied at the same time, started roughly in the order of the items.
+	 */
+	private void forEachInParallel(final List<ItemEntity> items, final Consumer<ItemEntity> action) {
+		final var contextMap = MDC.getCopyOfContextMap();
+		final var permits = new Semaphore(lookupParallelism, true);
+		final var futures = items.stream()
+			.map(item -> CompletableFuture.runAsync(() -> {
+				setContextMap(contextMap);
+				permits.acquireUninterruptibly();
+				try {
+					action.accept(item);
+				} finally {
+					permits.release();
+					MDC.clear();
+				}
+			}, lookupExecutor))
+			.toList();
+
+		try {
+			futures.forEach(CompletableFuture::join);
+		} catch (final CompletionException e) {
+			if (e.getCause() instanceof final RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Classifies the item by its filename, using the filename classifier of the municipality.
+	 *
+	 * @param  item           the item to classify
+	 * @param  municipalityId the municipality id
+	 * @return                the classification
+	 */
+	Classification classify(final ItemEntity item, final String municipalityId) {
+		return filenameClassifiers.getOrDefault(municipalityId, DEFAULT_FILENAME_CLASSIFIER).classify(item.getFilename());
+	}
+
+	/**
+	 * Mark items as either INVOICE or OTHER and set the status to IN_PROGRESS or IGNORED.
+	 *
+	 * @param item           the item to mark
+	 * @param classification the classification of the item
+	 */
+	void markItems(final ItemEntity item, final Classification classification) {
+		LOG.info("Setting item {} type to {} and status to {}", item.getFilename(), classification.type(), classification.status());
+		item.setType(classification.type());
+		item.setStatus(classification.status());
 	}
 
 	/**
@@ -277,7 +1007,7 @@ public class InvoiceProcessor {
 	 * @throws IOException if an I/O error occurs
 	 */
 	String mapXmlFileToString(final String localPath) throws IOException {
-		final var path = fileSystem.getPath(localPath).resolve(ARCHIVE_INDEX);
+		final var path = fileSystem.getPath(localPath).resolve(ARCHIVE_INDEX_FILENAME);
 
 		var stringBuilder = new StringBuilder();
 
@@ -292,18 +1022,17 @@ public class InvoiceProcessor {
 	}
 
 	/**
-	 * Extracts the recipient legal id from the invoice PDF filename and updates the invoice accordingly.
+	 * Applies the recipient legal id from the invoice PDF filename, as picked up when the item was classified, and updates
+	 * the invoice accordingly.
 	 *
-	 * @param item the item to extract the legal id from
+	 * @param item           the item to extract the legal id from
+	 * @param classification the classification of the item
 	 */
-	void extractInvoiceRecipientLegalId(final ItemEntity item) {
-		// Try to extract the recipient's legal id from the invoice PDF filename and update
-		// the invoice accordingly
-		final var matcher = RECIPIENT_PATTERN.matcher(item.getFilename());
-		if (matcher.matches()) {
+	void extractInvoiceRecipientLegalId(final ItemEntity item, final Classification classification) {
+		if (classification.recipientLegalId() != null) {
 			LOG.info("Extracted recipient legal id for item {}", item.getFilename());
 			item.setStatus(RECIPIENT_LEGAL_ID_FOUND);
-			item.setRecipientLegalId(matcher.group(1));
+			legalIdHasher.setRecipientLegalId(item, classification.recipientLegalId());
 		} else {
 			LOG.info("Failed to extract recipient legal id for item {}", item.getFilename());
 			item.setStatus(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID);
@@ -321,7 +1050,7 @@ public class InvoiceProcessor {
 	 */
 	String removeItemFromArchiveIndex(final ItemEntity item, final String archiveIndexXml, final String localPath) throws IOException {
 		final var newXml = XmlUtil.remove(archiveIndexXml, X_PATH_FILENAME_EXPRESSION.formatted(item.getFilename()));
-		final var path = fileSystem.getPath(localPath).resolve(ARCHIVE_INDEX);
+		final var path = fileSystem.getPath(localPath).resolve(ARCHIVE_INDEX_FILENAME);
 		Files.writeString(path, XML_DECLARATION.concat("\n").concat(newXml), ISO_8859_1);
 		LOG.info("Removed item {} from ArchiveIndex.xml", item.getFilename());
 		return newXml;
@@ -369,6 +1098,19 @@ public class InvoiceProcessor {
 			.withTotalAmount(totalAmount));
 	}
 
+	/**
+	 * Marks the metadata of payment reminders, as told by the filename prefix of the item, so that they are sent before
+	 * the invoices of the batch.
+	 *
+	 * @param item           the item to mark
+	 * @param classification the classification of the item
+	 */
+	void markReminder(final ItemEntity item, final Classification classification) {
+		if (item.getMetadata() != null) {
+			item.getMetadata().setReminder(classification.reminder());
+		}
+	}
+
 	/**
 	 * Validates that the legal id is 10 digits and also validates that the check digit is correct. If the validation fails,
 	 * we set a status to indicate the failure.
@@ -405,7 +1147,7 @@ public class InvoiceProcessor {
 			.ifPresentOrElse(legalIdAndPartyId -> {
 				LOG.info("Fetched recipient party id for item {}", item.getFilename());
 
-				item.setRecipientLegalId(legalIdAndPartyId.legalId());
+				legalIdHasher.setRecipientLegalId(item, legalIdAndPartyId.legalId());
 				item.setRecipientPartyId(legalIdAndPartyId.partyId());
 				item.setStatus(RECIPIENT_PARTY_ID_FOUND);
 			}, () -> {
@@ -416,20 +1158,155 @@ public class InvoiceProcessor {
 	}
 
 	/**
-	 * Tries to send the invoice with messaging. Sets a status which indicates success or failure.
+	 * Tries to send the invoice with messaging. The invoice PDF is read on demand from the batch ZIP file. Sets a status
+	 * which indicates success or failure. Invoices that have already been sent in an earlier batch, and invoices to
+	 * recipients known to have no reachable digital mailbox, are skipped.
 	 *
 	 * @param item           the item to send
 	 * @param localPath      the local path to the file
 	 * @param municipalityId the municipality id
 	 */
 	void sendDigitalInvoices(final ItemEntity item, final String localPath, final String municipalityId) {
-		final var status = messagingIntegration.sendInvoice(localPath, item, municipalityId);
+		if (sentInvoiceIndex.isSent(item, municipalityId)) {
+			LOG.warn("Invoice {} has already been sent in an earlier batch - skipping item", item.getFilename());
+			item.setStatus(ALREADY_SENT);
+			return;
+		}
+		if (messagingIntegration.hasUnreachableMailbox(item.getRecipientPartyId())) {
+			LOG.info("Recipient of invoice {} has no reachable digital mailbox - skipping upload", item.getFilename());
+			item.setStatus(NOT_SENT);
+			return;
+		}
+
+		final byte[] content;
+		try {
+			content = raindanceIntegrations.get(municipalityId).readItem(localPath, item.getFilename());
+		} catch (final IOException e) {
+			LOG.warn("Unable to read invoice {} from batch", item.getFilename(), e);
+			item.setStatus(NOT_SENT);
+			return;
+		}
+
+		final var status = messagingIntegration.sendInvoice(content, item, municipalityId);
 		item.setStatus(status);
 		LOG.info("{} invoice {}", status == SENT ? "Sent" : "Couldn't send", item.getFilename());
+		if (status == SENT) {
+			sentInvoiceIndex.add(item, municipalityId);
+		}
+	}
 
+	/**
+	 * Publishes an invoice to the send queue.
+	 *
+	 * @return true if the invoice was published, false if it has already been sent in an earlier batch, its recipient has
+	 *         no reachable digital mailbox or it couldn't be read from the batch
+	 */
+	boolean enqueueDigitalInvoice(final BatchEntity batchEntity, final ItemEntity item, final String localPath, final String municipalityId) {
+		if (sentInvoiceIndex.isSent(item, municipalityId)) {
+			LOG.warn("Invoice {} has already been sent in an earlier batch - skipping item", item.getFilename());
+			item.setStatus(ALREADY_SENT);
+			return false;
+		}
+		if (messagingIntegration.hasUnreachableMailbox(item.getRecipientPartyId())) {
+			LOG.info("Recipient of invoice {} has no reachable digital mailbox - skipping upload", item.getFilename());
+			item.setStatus(NOT_SENT);
+			return false;
+		}
+
+		try {
+			sendQueue.enqueue(batchEntity, item, raindanceIntegrations.get(municipalityId).readItem(localPath, item.getFilename()));
+			return true;
+		} catch (final IOException e) {
+			LOG.warn("Unable to read invoice {} from batch", item.getFilename(), e);
+			item.setStatus(NOT_SENT);
+			return false;
+		}
+	}
+
+	/**
+	 * Waits for the queued invoices of a batch to be sent, by any node, and applies the results to the items.
+	 *
+	 * @return the updated archive index
+	 */
+	String collectQueuedInvoices(final BatchEntity batchEntity, final List<ItemEntity> queuedItems, final String archiveIndex, final String localPath) throws IOException {
+		final var results = sendQueue.awaitResults(batchEntity);
+
+		var updatedArchiveIndex = archiveIndex;
+		for (final var item : queuedItems) {
+			item.setStatus(ofNullable(results.get(item.getId())).orElse(NOT_SENT));
+			LOG.info("{} invoice {}", item.getStatus() == SENT ? "Sent" : "Couldn't send", item.getFilename());
+			dbIntegration.persistItem(item);
+
+			if (ITEM_IS_SENT.test(item)) {
+				sentInvoiceIndex.add(item, batchEntity.getMunicipalityId());
+				updatedArchiveIndex = removeItemFromArchiveIndex(item, updatedArchiveIndex, localPath);
+			}
+		}
+
+		sendQueue.purge(batchEntity);
+		return updatedArchiveIndex;
+	}
+
+	/**
+	 * Retries sending invoices that failed with a transient error, with exponential backoff, until they are sent, fail
+	 * permanently or the retry deadline of the batch has passed. Invoices that still haven't been sent by then are
+	 * written back to Raindance, for paper mail. Sent invoices are removed from the archive index on disk, which is what
+	 * is written back.
+	 *
+	 * @param  items          the items to retry
+	 * @param  archiveIndex   the archive index XML file as a string
+	 * @param  localPath      the local path to the batch
+	 * @param  municipalityId the municipality id
+	 * @param  flow           the flow of the batch, for the fair-share scheduler
+	 * @throws IOException    if the archive index can't be updated
+	 */
+	void retryDigitalInvoices(final List<ItemEntity> items, final String archiveIndex, final String localPath, final String municipalityId,
+		final FairShareScheduler.Flow flow) throws IOException {
+		final var deadline = Instant.now().plus(sendRetryProperties.deadline());
+		final var remainingItems = new ArrayList<>(items);
+
+		var updatedArchiveIndex = archiveIndex;
+		for (var attempt = 1; attempt <= sendRetryProperties.maxAttempts() && !remainingItems.isEmpty(); attempt++) {
+			final var backoff = sendRetryProperties.backoff(attempt);
+			if (Instant.now().plus(backoff).isAfter(deadline)) {
+				break;
+			}
+
+			LOG.info("Retrying {} invoice(s) in {} (attempt {} of {})", remainingItems.size(), backoff, attempt, sendRetryProperties.maxAttempts());
+			sleep(backoff);
+
+			for (final var iterator = remainingItems.iterator(); iterator.hasNext() && Instant.now().isBefore(deadline);) {
+				final var item = iterator.next();
+				fairShareScheduler.run(flow, () -> sendDigitalInvoices(item, localPath, municipalityId));
+				if (INVOICE_SEND_IS_RETRYABLE.test(item)) {
+					continue;
+				}
+
+				iterator.remove();
+				dbIntegration.persistItem(item);
+				if (ITEM_IS_SENT.or(INVOICE_IS_ALREADY_SENT).test(item)) {
+					updatedArchiveIndex = removeItemFromArchiveIndex(item, updatedArchiveIndex, localPath);
+				}
+			}
+		}
+
+		for (final var item : remainingItems) {
+			LOG.info("Invoice could not be sent before the retry deadline - leaving item {} for paper mail", item.getFilename());
+			item.setStatus(NOT_SENT);
+			dbIntegration.persistItem(item);
+		}
+	}
+
+	private static void sleep(final Duration duration) throws InterruptedIOException {
+		try {
+			Thread.sleep(duration);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting to retry sends");
+		}
 	}
 
-	void updateAndPersistBatch(final BatchEntity batchEntity) {
+	void updateAndPersistBatch(final BatchEntity batchEntity, final LocalDate date, final String municipalityId) {
 		batchEntity.setCompleted(true);
 		batchEntity.setCompletedAt(LocalDateTime.now(ZoneId.systemDefault()));
 
@@ -440,7 +1317,7 @@ public class InvoiceProcessor {
 			.filter(item -> item.getStatus() == SENT)
 			.count());
 
-		dbIntegration.persistBatch(batchEntity);
+		notificationOutbox.completeBatch(batchEntity, date, municipalityId);
 	}
 
 }
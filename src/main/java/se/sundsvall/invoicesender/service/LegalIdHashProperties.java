@@ -0,0 +1,11 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotBlank;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.legal-id-hash")
+record LegalIdHashProperties(
+
+	@NotBlank String secret) {}
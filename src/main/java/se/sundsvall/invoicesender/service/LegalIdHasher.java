@@ -0,0 +1,34 @@
+package se.sundsvall.invoicesender.service;
+
+import java.nio.charset.StandardCharsets;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+
+import static se.sundsvall.invoicesender.util.LegalIdUtil.hashLegalId;
+
+/**
+ * Sets the recipient legal id of items, along with its keyed hash. The key is a configured secret, so that the stored
+ * hashes can't be reversed by hashing every possible legal id.
+ */
+@Component
+class LegalIdHasher {
+
+	private static final String ALGORITHM = "HmacSHA256";
+
+	private final SecretKey key;
+
+	LegalIdHasher(final LegalIdHashProperties properties) {
+		key = new SecretKeySpec(properties.secret().getBytes(StandardCharsets.UTF_8), ALGORITHM);
+	}
+
+	String hash(final String legalId) {
+		return hashLegalId(legalId, key);
+	}
+
+	void setRecipientLegalId(final ItemEntity item, final String legalId) {
+		item.setRecipientLegalId(legalId);
+		item.setRecipientLegalIdHash(hash(legalId));
+	}
+}
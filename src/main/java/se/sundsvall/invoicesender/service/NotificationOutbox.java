@@ -0,0 +1,190 @@
+package se.sundsvall.invoicesender.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationEntity;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationType;
+import se.sundsvall.invoicesender.integration.messaging.MessagingIntegration;
+
+import static org.apache.commons.lang3.StringUtils.abbreviate;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationStatus.FAILED;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationStatus.PENDING;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationType.ERROR_REPORT;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationType.SLACK;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationType.STATUS_REPORT;
+
+/**
+ * Transactional outbox for Slack messages, status reports and error reports. Notifications are rendered and persisted
+ * on the batch thread, and delivered by a background dispatcher that retries failed deliveries with exponential
+ * backoff - so that a slow or unavailable Messaging service never stalls batch completion.
+ */
+@Component
+class NotificationOutbox {
+
+	private static final Logger LOG = LoggerFactory.getLogger(NotificationOutbox.class);
+
+	private final DbIntegration dbIntegration;
+	private final MessagingIntegration messagingIntegration;
+	private final TaskScheduler taskScheduler;
+	private final NotificationOutboxProperties properties;
+	private final AtomicBoolean dispatching = new AtomicBoolean();
+
+	NotificationOutbox(final DbIntegration dbIntegration, final MessagingIntegration messagingIntegration, final TaskScheduler taskScheduler,
+		final NotificationOutboxProperties properties) {
+		this.dbIntegration = dbIntegration;
+		this.messagingIntegration = messagingIntegration;
+		this.taskScheduler = taskScheduler;
+		this.properties = properties;
+
+		if (properties.outboxEnabled()) {
+			taskScheduler.scheduleWithFixedDelay(this::dispatch, properties.dispatchInterval());
+		}
+	}
+
+	void sendSlackMessage(final String municipalityId, final String message) {
+		enqueue(SLACK, municipalityId, null, message);
+	}
+
+	/**
+	 * Stores the completed batch and adds its Slack message to the outbox in the same transaction. Without the outbox, the
+	 * batch is stored first and the message is delivered right away.
+	 */
+	void completeBatch(final BatchEntity batch, final LocalDate date, final String municipalityId) {
+		final var notification = createNotification(SLACK, municipalityId, date, messagingIntegration.generateSlackMessage(batch, date));
+
+		if (properties.outboxEnabled()) {
+			dbIntegration.completeBatch(batch, notification);
+			// Don't wait for the next scheduled dispatch
+			taskScheduler.schedule(this::dispatch, Instant.now());
+			return;
+		}
+
+		dbIntegration.completeBatch(batch, null);
+		deliverNow(notification);
+	}
+
+	void sendStatusReport(final List<BatchEntity> batches, final LocalDate date, final String municipalityId) {
+		enqueue(STATUS_REPORT, municipalityId, date, messagingIntegration.generateStatusReportMessage(batches));
+	}
+
+	void sendErrorReport(final LocalDate date, final String municipalityId, final String batchName, final String message) {
+		enqueue(ERROR_REPORT, municipalityId, date, messagingIntegration.generateErrorReportMessage(municipalityId, batchName, message));
+	}
+
+	private void enqueue(final NotificationType type, final String municipalityId, final LocalDate date, final String message) {
+		final var notification = createNotification(type, municipalityId, date, message);
+
+		if (properties.outboxEnabled()) {
+			try {
+				dbIntegration.persistNotification(notification);
+				// Don't wait for the next scheduled dispatch
+				taskScheduler.schedule(this::dispatch, Instant.now());
+				return;
+			} catch (final RuntimeException e) {
+				// The notification may well be an error report about the database - deliver it right away instead
+				LOG.warn("Unable to add {} notification for municipality {} to the outbox: {}", type, municipalityId, e.getMessage());
+			}
+		}
+
+		// Without the outbox, notifications are delivered right away, with no retries
+		deliverNow(notification);
+	}
+
+	private NotificationEntity createNotification(final NotificationType type, final String municipalityId, final LocalDate date, final String message) {
+		final var now = LocalDateTime.now(ZoneId.systemDefault());
+		return new NotificationEntity()
+			.withType(type)
+			.withMunicipalityId(municipalityId)
+			.withDate(date)
+			.withMessage(message)
+			.withStatus(PENDING)
+			.withNextAttemptAt(now)
+			.withCreatedAt(now);
+	}
+
+	private void deliverNow(final NotificationEntity notification) {
+		try {
+			deliver(notification);
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to deliver {} notification for municipality {}", notification.getType(), notification.getMunicipalityId(), e);
+		}
+	}
+
+	/**
+	 * Delivers all notifications that are due.
+	 */
+	void dispatch() {
+		// One dispatcher per node at a time is enough, as notifications are claimed in chunks
+		if (!dispatching.compareAndSet(false, true)) {
+			return;
+		}
+
+		try {
+			for (var claimed = claim(); !claimed.isEmpty(); claimed = claim()) {
+				claimed.forEach(this::attempt);
+			}
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to dispatch notifications: {}", e.getMessage());
+		} finally {
+			dispatching.set(false);
+		}
+	}
+
+	private List<NotificationEntity> claim() {
+		return dbIntegration.claimNotifications(properties.dispatchSize(), properties.claimTimeout());
+	}
+
+	private void attempt(final NotificationEntity notification) {
+		final var now = LocalDateTime.now(ZoneId.systemDefault());
+		notification.setAttempts(notification.getAttempts() + 1);
+
+		try {
+			deliver(notification);
+			notification.setStatus(SENT);
+			notification.setSentAt(now);
+			notification.setNextAttemptAt(null);
+		} catch (final RuntimeException e) {
+			notification.setLastError(abbreviate(e.getMessage(), 1024));
+			if (notification.getAttempts() >= properties.maxAttempts()) {
+				LOG.error("Giving up on {} notification {} for municipality {} after {} attempts", notification.getType(), notification.getId(),
+					notification.getMunicipalityId(), notification.getAttempts(), e);
+				notification.setStatus(FAILED);
+				notification.setNextAttemptAt(null);
+			} else {
+				final var backoff = backoff(notification.getAttempts());
+				LOG.warn("Unable to deliver {} notification {} - retrying in {}: {}", notification.getType(), notification.getId(), backoff, e.getMessage());
+				notification.setNextAttemptAt(now.plus(backoff));
+			}
+		}
+
+		dbIntegration.persistNotification(notification);
+	}
+
+	private void deliver(final NotificationEntity notification) {
+		switch (notification.getType()) {
+			case SLACK -> messagingIntegration.sendSlackMessage(notification.getMunicipalityId(), notification.getMessage());
+			case STATUS_REPORT -> messagingIntegration.sendStatusReport(notification.getMunicipalityId(), notification.getDate(), notification.getMessage());
+			case ERROR_REPORT -> messagingIntegration.sendErrorReport(notification.getMunicipalityId(), notification.getDate(), notification.getMessage());
+		}
+	}
+
+	/**
+	 * Exponential backoff - the initial backoff doubled for each failed attempt, capped at the max backoff.
+	 */
+	Duration backoff(final int attempts) {
+		final var backoff = properties.initialBackoff().multipliedBy(1L << Math.min(attempts - 1, 30));
+		return backoff.compareTo(properties.maxBackoff()) > 0 ? properties.maxBackoff() : backoff;
+	}
+}
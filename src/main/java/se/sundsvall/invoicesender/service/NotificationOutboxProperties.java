@@ -0,0 +1,26 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.notifications")
+record NotificationOutboxProperties(
+
+	@DefaultValue("true") boolean outboxEnabled,
+
+	@DefaultValue("PT10S") @NotNull Duration dispatchInterval,
+
+	@DefaultValue("20") @Positive int dispatchSize,
+
+	@DefaultValue("10") @Positive int maxAttempts,
+
+	@DefaultValue("PT30S") @NotNull Duration initialBackoff,
+
+	@DefaultValue("PT30M") @NotNull Duration maxBackoff,
+
+	@DefaultValue("PT5M") @NotNull Duration claimTimeout) {}
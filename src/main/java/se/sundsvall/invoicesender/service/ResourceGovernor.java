@@ -0,0 +1,109 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.List;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Global admission control for batches, shared by all municipalities and batch prefixes. The footprint of each batch is
+ * estimated from the size of the batch file on the share, and checked against a heap budget (the in-memory copy of the
+ * batch file) and a disk budget (the staged and re-created files in the local work directory).
+ *
+ * <ul>
+ * <li>A batch that fits both budgets is admitted right away, and read into memory.</li>
+ * <li>A batch that doesn't fit the disk budget is queued until enough batches in flight have finished.</li>
+ * <li>A batch that doesn't fit the heap budget within the configured wait - or not at all - is degraded to streaming
+ * mode, where the batch file is kept on disk only.</li>
+ * </ul>
+ */
+@Component
+class ResourceGovernor {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ResourceGovernor.class);
+
+	private static final String METRIC_PREFIX = "invoice-processor.admission.";
+
+	/**
+	 * An admitted batch. Closing it releases its share of the budgets.
+	 *
+	 * @param streaming whether the batch should be processed in streaming mode
+	 * @param permits   the acquired budget permits
+	 */
+	record Admission(boolean streaming, List<AdmissionBudget.Permit> permits) implements AutoCloseable {
+
+		@Override
+		public void close() {
+			permits.forEach(AdmissionBudget.Permit::close);
+		}
+	}
+
+	private final AdmissionBudget heapBudget;
+	private final AdmissionBudget diskBudget;
+	private final int diskFootprintFactor;
+	private final Duration heapWait;
+	private final Counter inMemoryAdmissions;
+	private final Counter streamingAdmissions;
+
+	ResourceGovernor(final BatchProcessingProperties properties, final MeterRegistry meterRegistry) {
+		heapBudget = new AdmissionBudget(properties.heapBudget().toBytes());
+		diskBudget = new AdmissionBudget(properties.diskBudget().toBytes());
+		diskFootprintFactor = properties.diskFootprintFactor();
+		heapWait = properties.heapWait();
+
+		Gauge.builder(METRIC_PREFIX + "heap.in-use", heapBudget, budget -> budget.getCapacity() - budget.getAvailable())
+			.baseUnit("bytes")
+			.register(meterRegistry);
+		Gauge.builder(METRIC_PREFIX + "disk.in-use", diskBudget, budget -> budget.getCapacity() - budget.getAvailable())
+			.baseUnit("bytes")
+			.register(meterRegistry);
+		// A batch waits for one budget at a time, for the disk budget first and then for the heap budget
+		Gauge.builder(METRIC_PREFIX + "queued", this, ResourceGovernor::getQueued)
+			.register(meterRegistry);
+		inMemoryAdmissions = Counter.builder(METRIC_PREFIX + "admissions")
+			.tag("mode", "in-memory")
+			.register(meterRegistry);
+		streamingAdmissions = Counter.builder(METRIC_PREFIX + "admissions")
+			.tag("mode", "streaming")
+			.register(meterRegistry);
+	}
+
+	/**
+	 * Admits a batch, waiting for disk budget if needed.
+	 *
+	 * @param  batchName              the batch name, for logging
+	 * @param  fileSize               the size of the batch file on the share, in bytes
+	 * @return                        the admission
+	 * @throws InterruptedIOException if interrupted while waiting
+	 */
+	Admission admit(final String batchName, final long fileSize) throws InterruptedIOException {
+		final var diskPermit = diskBudget.acquire(fileSize * diskFootprintFactor);
+
+		try {
+			// Batches larger than the entire heap budget are always streamed
+			if (fileSize <= heapBudget.getCapacity()) {
+				final var heapPermit = heapBudget.tryAcquire(fileSize, heapWait);
+				if (heapPermit != null) {
+					inMemoryAdmissions.increment();
+					return new Admission(false, List.of(diskPermit, heapPermit));
+				}
+			}
+		} catch (final InterruptedIOException e) {
+			diskPermit.close();
+			throw e;
+		}
+
+		LOG.info("Heap budget exhausted - processing batch {} ({} bytes) in streaming mode", batchName, fileSize);
+		streamingAdmissions.increment();
+		return new Admission(true, List.of(diskPermit));
+	}
+
+	int getQueued() {
+		return diskBudget.getQueued() + heapBudget.getQueued();
+	}
+}
@@ -0,0 +1,137 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static se.sundsvall.invoicesender.service.util.CronUtil.parseCronExpression;
+
+/**
+ * Purges old batch history. The stored data of batches is cleared once it is older than the data retention, and
+ * batches and their items are deleted once they are older than the history retention. Everything is done in small
+ * chunks keyed on id, each in a transaction of its own and with a pause in between, so that no lock is held for long
+ * and replicas keep up. The rolled up batch statistics are kept.
+ */
+@Component
+class RetentionJob {
+
+	private static final Logger LOG = LoggerFactory.getLogger(RetentionJob.class);
+
+	private static final String METRIC_PREFIX = "invoice-processor.retention.";
+
+	private final DbIntegration dbIntegration;
+	private final RetentionProperties properties;
+	private final AtomicBoolean running = new AtomicBoolean();
+	private final AtomicLong pendingBatches = new AtomicLong();
+	private final Counter purgedData;
+	private final Counter deletedItems;
+	private final Counter deletedBatches;
+	private final Timer runDuration;
+
+	RetentionJob(final DbIntegration dbIntegration, final RetentionProperties properties, final MeterRegistry meterRegistry) {
+		this.dbIntegration = dbIntegration;
+		this.properties = properties;
+
+		Gauge.builder(METRIC_PREFIX + "pending-batches", pendingBatches, AtomicLong::get)
+			.register(meterRegistry);
+		purgedData = Counter.builder(METRIC_PREFIX + "purged")
+			.tag("kind", "batch-data")
+			.register(meterRegistry);
+		deletedItems = Counter.builder(METRIC_PREFIX + "purged")
+			.tag("kind", "items")
+			.register(meterRegistry);
+		deletedBatches = Counter.builder(METRIC_PREFIX + "purged")
+			.tag("kind", "batches")
+			.register(meterRegistry);
+		runDuration = Timer.builder(METRIC_PREFIX + "duration")
+			.register(meterRegistry);
+
+		final var cronExpression = properties.cronExpression();
+		if (properties.enabled() && !"-".equals(cronExpression)) {
+			LOG.info("Retention is ENABLED to run {}", parseCronExpression(cronExpression));
+		} else {
+			LOG.info("Retention is DISABLED");
+		}
+	}
+
+	@Scheduled(cron = "${invoice-processor.retention.cron-expression:-}")
+	void run() {
+		// Runs may take a while - never let them overlap
+		if (!properties.enabled() || !running.compareAndSet(false, true)) {
+			return;
+		}
+
+		final var start = System.nanoTime();
+		try {
+			purgeData();
+			purgeHistory();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			LOG.info("Retention was interrupted, and continues with the next run");
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to purge batch history: {}", e.getMessage());
+		} finally {
+			runDuration.record(System.nanoTime() - start, NANOSECONDS);
+			pendingBatches.set(0);
+			running.set(false);
+		}
+	}
+
+	/**
+	 * Clears the stored data of batches started before the data retention.
+	 */
+	void purgeData() throws InterruptedException {
+		final var startedBefore = LocalDateTime.now(ZoneId.systemDefault()).minus(properties.dataRetention());
+
+		var afterId = 0;
+		for (var batchIds = dbIntegration.getBatchIdsWithDataStartedBefore(startedBefore, afterId, properties.dataChunkSize()); !batchIds.isEmpty();
+			batchIds = dbIntegration.getBatchIdsWithDataStartedBefore(startedBefore, afterId, properties.dataChunkSize())) {
+			purgedData.increment(dbIntegration.purgeBatchData(batchIds));
+			afterId = batchIds.getLast();
+			pause();
+		}
+	}
+
+	/**
+	 * Deletes batches started before the history retention, along with their items. The items of a batch are deleted
+	 * chunk by chunk before the batch itself.
+	 */
+	void purgeHistory() throws InterruptedException {
+		final var startedBefore = LocalDateTime.now(ZoneId.systemDefault()).minus(properties.historyRetention());
+		pendingBatches.set(dbIntegration.countBatchesStartedBefore(startedBefore));
+
+		var afterId = 0;
+		for (var batchIds = dbIntegration.getBatchIdsStartedBefore(startedBefore, afterId, properties.chunkSize()); !batchIds.isEmpty();
+			batchIds = dbIntegration.getBatchIdsStartedBefore(startedBefore, afterId, properties.chunkSize())) {
+			for (final var batchId : batchIds) {
+				for (var deleted = dbIntegration.deleteItems(batchId, properties.chunkSize()); deleted > 0;
+					deleted = dbIntegration.deleteItems(batchId, properties.chunkSize())) {
+					deletedItems.increment(deleted);
+					pause();
+				}
+
+				dbIntegration.deleteBatch(batchId);
+				deletedBatches.increment();
+				pendingBatches.decrementAndGet();
+			}
+			afterId = batchIds.getLast();
+		}
+	}
+
+	private void pause() throws InterruptedException {
+		if (properties.chunkPause().isPositive()) {
+			Thread.sleep(properties.chunkPause());
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.retention")
+record RetentionProperties(
+
+	@DefaultValue("false") boolean enabled,
+
+	@DefaultValue("-") String cronExpression,
+
+	@DefaultValue("P30D") @NotNull Duration dataRetention,
+
+	@DefaultValue("P365D") @NotNull Duration historyRetention,
+
+	@DefaultValue("10") @Positive int dataChunkSize,
+
+	@DefaultValue("500") @Positive int chunkSize,
+
+	@DefaultValue("PT0.1S") @NotNull Duration chunkPause) {}
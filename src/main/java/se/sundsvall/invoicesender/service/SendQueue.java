@@ -0,0 +1,168 @@
+package se.sundsvall.invoicesender.service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemSendEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+import se.sundsvall.invoicesender.integration.messaging.MessagingIntegration;
+
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+
+/**
+ * Cluster-wide, database-backed work queue for item sends. The node that processes a batch publishes the sends of the
+ * batch to the queue, and every node - including the publishing one - claims and sends queued items. The publishing
+ * node then collects the results before it writes the batch back to Raindance.
+ *
+ * <p>
+ * Sends are delivered at least once - a send whose claimer dies mid-send is re-claimed once its claim times out.
+ */
+@Component
+class SendQueue {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SendQueue.class);
+
+	private final DbIntegration dbIntegration;
+	private final MessagingIntegration messagingIntegration;
+	private final SendQueueProperties properties;
+	private final String owner;
+	private final AtomicBoolean draining = new AtomicBoolean();
+
+	SendQueue(final DbIntegration dbIntegration, final MessagingIntegration messagingIntegration, final TaskScheduler taskScheduler,
+		final SendQueueProperties properties, final BatchLeaseManager batchLeaseManager) {
+		this.dbIntegration = dbIntegration;
+		this.messagingIntegration = messagingIntegration;
+		this.properties = properties;
+		owner = batchLeaseManager.getOwner();
+
+		if (properties.enabled()) {
+			taskScheduler.scheduleWithFixedDelay(this::drain, Instant.now().plus(properties.pollInterval()), properties.pollInterval());
+		}
+	}
+
+	boolean isEnabled() {
+		return properties.enabled();
+	}
+
+	/**
+	 * Publishes the send of an item to the queue.
+	 *
+	 * @param batch   the batch that the item belongs to
+	 * @param item    the item, with a verified recipient and extracted metadata
+	 * @param content the item content
+	 */
+	void enqueue(final BatchEntity batch, final ItemEntity item, final byte[] content) {
+		dbIntegration.enqueueSend(new ItemSendEntity()
+			.withBatchId(batch.getId())
+			.withItemId(item.getId())
+			.withMunicipalityId(batch.getMunicipalityId())
+			.withFilename(item.getFilename())
+			.withRecipientPartyId(item.getRecipientPartyId())
+			.withMetadata(item.getMetadata())
+			.withContent(content));
+	}
+
+	/**
+	 * Waits for all queued sends of a batch to complete, helping out by draining the queue while waiting.
+	 *
+	 * @param  batch       the batch
+	 * @return             the send results, keyed by item id
+	 * @throws IOException if the sends don't complete within the result timeout, or if interrupted while waiting
+	 */
+	Map<Integer, ItemStatus> awaitResults(final BatchEntity batch) throws IOException {
+		final var deadline = Instant.now().plus(properties.resultTimeout());
+
+		while (dbIntegration.countIncompleteSends(batch.getId()) > 0) {
+			if (drain() == 0) {
+				if (Instant.now().isAfter(deadline)) {
+					throw new IOException("Timed out waiting for queued sends of batch %s".formatted(batch.getBasename()));
+				}
+				sleep(properties.pollInterval());
+			}
+		}
+
+		return dbIntegration.getCompletedSends(batch.getId()).stream()
+			.collect(Collectors.toMap(ItemSendEntity::getItemId, ItemSendEntity::getResult));
+	}
+
+	/**
+	 * Removes all queued sends of a batch, once their results have been collected.
+	 *
+	 * @param batch the batch
+	 */
+	void purge(final BatchEntity batch) {
+		dbIntegration.deleteSends(batch.getId());
+	}
+
+	/**
+	 * Claims and sends queued items until the queue is empty.
+	 *
+	 * @return the number of sent items
+	 */
+	int drain() {
+		// A single drain per node at a time is enough, as claims are made in chunks
+		if (!draining.compareAndSet(false, true)) {
+			return 0;
+		}
+
+		try {
+			var sent = 0;
+			for (var claimed = claim(); !claimed.isEmpty(); claimed = claim()) {
+				for (final var itemSend : claimed) {
+					if (!dbIntegration.completeSend(itemSend.getId(), owner, send(itemSend))) {
+						LOG.warn("Lost the claim of queued invoice {} - its result is left to the node that took it over", itemSend.getFilename());
+					}
+					sent++;
+				}
+			}
+			return sent;
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to drain the send queue: {}", e.getMessage());
+			return 0;
+		} finally {
+			draining.set(false);
+		}
+	}
+
+	private List<ItemSendEntity> claim() {
+		return dbIntegration.claimSends(owner, properties.claimSize(), properties.claimTimeout());
+	}
+
+	private ItemStatus send(final ItemSendEntity itemSend) {
+		final var item = new ItemEntity()
+			.withFilename(itemSend.getFilename())
+			.withRecipientPartyId(itemSend.getRecipientPartyId())
+			.withMetadata(itemSend.getMetadata());
+
+		try {
+			final var status = messagingIntegration.sendInvoice(itemSend.getContent(), item, itemSend.getMunicipalityId());
+			LOG.info("{} queued invoice {}", status == SENT ? "Sent" : "Couldn't send", itemSend.getFilename());
+			return status;
+		} catch (final RuntimeException e) {
+			LOG.error("Unable to send queued invoice {}", itemSend.getFilename(), e);
+			return NOT_SENT;
+		}
+	}
+
+	private static void sleep(final Duration duration) throws InterruptedIOException {
+		try {
+			Thread.sleep(duration);
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for queued sends");
+		}
+	}
+}
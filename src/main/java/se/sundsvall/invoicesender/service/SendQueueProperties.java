@@ -0,0 +1,22 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.send-queue")
+record SendQueueProperties(
+
+	@DefaultValue("false") boolean enabled,
+
+	@DefaultValue("PT1S") @NotNull Duration pollInterval,
+
+	@DefaultValue("10") @Positive int claimSize,
+
+	@DefaultValue("PT5M") @NotNull Duration claimTimeout,
+
+	@DefaultValue("PT2H") @NotNull Duration resultTimeout) {}
@@ -0,0 +1,32 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
+import java.time.Duration;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.send-retry")
+record SendRetryProperties(
+
+	@DefaultValue("5") @PositiveOrZero int maxAttempts,
+
+	@DefaultValue("PT5S") @NotNull Duration initialBackoff,
+
+	@DefaultValue("PT2M") @NotNull Duration maxBackoff,
+
+	@DefaultValue("PT15M") @NotNull Duration deadline) {
+
+	/**
+	 * Gets the backoff before a retry - the initial backoff doubled for each previous retry, capped at the max backoff.
+	 *
+	 * @param  attempt the retry attempt, starting at 1
+	 * @return         the backoff
+	 */
+	Duration backoff(final int attempt) {
+		final var backoff = initialBackoff.multipliedBy(1L << Math.min(attempt - 1, 30));
+		return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+	}
+}
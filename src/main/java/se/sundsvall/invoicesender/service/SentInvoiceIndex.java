@@ -0,0 +1,151 @@
+package se.sundsvall.invoicesender.service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+import se.sundsvall.invoicesender.integration.db.entity.SentInvoiceEntity;
+import se.sundsvall.invoicesender.service.model.Metadata;
+import se.sundsvall.invoicesender.service.util.BloomFilter;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Index of the invoices that have been sent digitally, keyed by municipality id, invoice number and payment reference,
+ * so that an invoice that shows up in more than one batch is only sent once. The index is a database table, with a
+ * Bloom filter in front of it - most invoices have never been sent, and are cleared by the filter without querying the
+ * database.
+ * <p>
+ * The filter is loaded on startup, and caught up with invoices sent by other nodes before each batch is processed.
+ * Until it has been loaded, every lookup goes to the database.
+ */
+@Component
+class SentInvoiceIndex {
+
+	private static final Logger LOG = LoggerFactory.getLogger(SentInvoiceIndex.class);
+
+	private static final char SEPARATOR = '\u001f';
+
+	private final DbIntegration dbIntegration;
+	private final SentInvoiceIndexProperties properties;
+	private final BloomFilter bloomFilter;
+
+	private volatile boolean loaded;
+	private int lastLoadedId;
+
+	SentInvoiceIndex(final DbIntegration dbIntegration, final SentInvoiceIndexProperties properties) {
+		this.dbIntegration = dbIntegration;
+		this.properties = properties;
+
+		bloomFilter = new BloomFilter(properties.expectedInvoices(), properties.falsePositiveProbability());
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	void load() {
+		refresh();
+	}
+
+	/**
+	 * Adds the invoices that have been recorded since the last refresh, by any node, to the Bloom filter.
+	 */
+	synchronized void refresh() {
+		if (!properties.enabled()) {
+			return;
+		}
+
+		try {
+			var loadedCount = 0;
+			List<SentInvoiceEntity> chunk;
+			do {
+				chunk = dbIntegration.getSentInvoicesAfter(lastLoadedId, properties.loadChunkSize());
+				for (final var sentInvoice : chunk) {
+					bloomFilter.put(fingerprint(sentInvoice.getMunicipalityId(), sentInvoice.getInvoiceNumber(), sentInvoice.getPaymentReference()));
+					lastLoadedId = sentInvoice.getId();
+				}
+				loadedCount += chunk.size();
+			} while (chunk.size() == properties.loadChunkSize());
+
+			if (!loaded) {
+				LOG.info("Loaded {} sent invoice(s) into the duplicate guard", loadedCount);
+			}
+			loaded = true;
+		} catch (final RuntimeException e) {
+			// The filter may be missing invoices sent by other nodes
+			loaded = false;
+			LOG.warn("Unable to refresh the sent invoice index - invoices are checked against the database until it is", e);
+		}
+	}
+
+	/**
+	 * Checks whether an invoice has already been sent digitally. Invoices without an invoice number can't be identified,
+	 * and are never considered sent.
+	 *
+	 * @param  item           the item
+	 * @param  municipalityId the municipality id
+	 * @return                true if the invoice has already been sent, otherwise false
+	 */
+	boolean isSent(final ItemEntity item, final String municipalityId) {
+		final var metadata = item.getMetadata();
+		if (!properties.enabled() || metadata == null || isBlank(metadata.getInvoiceNumber())) {
+			return false;
+		}
+
+		final var paymentReference = paymentReference(metadata);
+		if (loaded && !bloomFilter.mightContain(fingerprint(municipalityId, metadata.getInvoiceNumber(), paymentReference))) {
+			return false;
+		}
+
+		try {
+			return dbIntegration.isInvoiceSent(municipalityId, metadata.getInvoiceNumber(), paymentReference);
+		} catch (final RuntimeException e) {
+			// Rather risk a duplicate than hold up the batch
+			LOG.warn("Unable to check whether invoice {} has already been sent", item.getFilename(), e);
+			return false;
+		}
+	}
+
+	/**
+	 * Records an invoice that has been sent digitally.
+	 *
+	 * @param item           the item
+	 * @param municipalityId the municipality id
+	 */
+	void add(final ItemEntity item, final String municipalityId) {
+		final var metadata = item.getMetadata();
+		if (!properties.enabled() || metadata == null || isBlank(metadata.getInvoiceNumber())) {
+			return;
+		}
+
+		final var paymentReference = paymentReference(metadata);
+		bloomFilter.put(fingerprint(municipalityId, metadata.getInvoiceNumber(), paymentReference));
+
+		try {
+			if (!dbIntegration.recordSentInvoice(new SentInvoiceEntity()
+				.withMunicipalityId(municipalityId)
+				.withInvoiceNumber(metadata.getInvoiceNumber())
+				.withPaymentReference(paymentReference)
+				.withItemId(item.getId())
+				.withFilename(item.getFilename())
+				.withSentAt(LocalDateTime.now(ZoneId.systemDefault())))) {
+				LOG.warn("Invoice {} had already been recorded as sent", item.getFilename());
+			}
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to record invoice {} as sent", item.getFilename(), e);
+		}
+	}
+
+	private static String paymentReference(final Metadata metadata) {
+		return Optional.ofNullable(metadata.getPaymentReference()).orElse("");
+	}
+
+	private static String fingerprint(final String municipalityId, final String invoiceNumber, final String paymentReference) {
+		return municipalityId + SEPARATOR + invoiceNumber + SEPARATOR + paymentReference;
+	}
+}
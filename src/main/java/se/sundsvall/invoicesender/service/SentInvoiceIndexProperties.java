@@ -0,0 +1,20 @@
+package se.sundsvall.invoicesender.service;
+
+import jakarta.validation.constraints.DecimalMax;
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.Positive;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.validation.annotation.Validated;
+
+@Validated
+@ConfigurationProperties(prefix = "invoice-processor.duplicate-guard")
+record SentInvoiceIndexProperties(
+
+	@DefaultValue("true") boolean enabled,
+
+	@DefaultValue("2000000") @Positive long expectedInvoices,
+
+	@DefaultValue("0.01") @DecimalMin("0.0001") @DecimalMax("0.5") double falsePositiveProbability,
+
+	@DefaultValue("10000") @Positive int loadChunkSize) {}
@@ -0,0 +1,86 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Latency of each stage of batch processing, recorded as timers while batches are processed. The timers are used to
+ * project how long a batch will take in a dry run. Download and planning are timed per batch, the other stages per
+ * remote call.
+ */
+@Component
+class StageLatencies {
+
+	private static final String METRIC_NAME = "invoice-processor.stage.duration";
+
+	enum Stage {
+		DOWNLOAD("download"),
+		PLAN("plan"),
+		PARTY_LOOKUP("party-lookup"),
+		CITIZEN_LOOKUP("citizen-lookup"),
+		MAILBOX_CHECK("mailbox-check"),
+		SEND("send");
+
+		private final String tag;
+
+		Stage(final String tag) {
+			this.tag = tag;
+		}
+
+		String getTag() {
+			return tag;
+		}
+	}
+
+	private final Map<Stage, Timer> timers = new EnumMap<>(Stage.class);
+
+	StageLatencies(final MeterRegistry meterRegistry) {
+		for (final var stage : Stage.values()) {
+			timers.put(stage, Timer.builder(METRIC_NAME)
+				.tag("stage", stage.getTag())
+				.register(meterRegistry));
+		}
+	}
+
+	void record(final Stage stage, final Runnable action) {
+		timers.get(stage).record(action);
+	}
+
+	<T> T record(final Stage stage, final Supplier<T> action) {
+		return timers.get(stage).record(action);
+	}
+
+	void record(final Stage stage, final Duration duration) {
+		timers.get(stage).record(duration);
+	}
+
+	/**
+	 * Projects the duration of a number of calls from the mean latency recorded for the stage.
+	 *
+	 * @param  stage       the stage
+	 * @param  calls       the number of calls
+	 * @param  parallelism the number of calls made in parallel
+	 * @return             the projected duration, or empty if nothing has been recorded for the stage yet
+	 */
+	Optional<Duration> project(final Stage stage, final int calls, final int parallelism) {
+		if (calls == 0) {
+			return Optional.of(Duration.ZERO);
+		}
+
+		final var timer = timers.get(stage);
+		if (timer.count() == 0) {
+			return Optional.empty();
+		}
+
+		final var rounds = (calls + parallelism - 1) / parallelism;
+		return Optional.of(Duration.ofNanos((long) (timer.mean(NANOSECONDS) * rounds)));
+	}
+}
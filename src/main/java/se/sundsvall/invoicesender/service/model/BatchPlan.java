@@ -0,0 +1,31 @@
+package se.sundsvall.invoicesender.service.model;
+
+import java.util.List;
+import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+
+/**
+ * The outcome of the local planning phase of a batch: which items are skipped, which need their recipient looked up in
+ * Party and Citizen before they can be sent, and which were verified before the batch was interrupted and can be sent
+ * right away.
+ *
+ * @param batch            the batch
+ * @param skippedItems     the items that are skipped, i.e. ignored or found unprocessable
+ * @param recipientLookups the items whose recipient needs to be looked up
+ * @param readyToSend      the items whose recipient is already verified
+ */
+public record BatchPlan(
+	BatchEntity batch,
+	List<ItemEntity> skippedItems,
+	List<ItemEntity> recipientLookups,
+	List<ItemEntity> readyToSend) {
+
+	/**
+	 * Gets the number of items that may be sent, once their recipients have been looked up.
+	 *
+	 * @return the number of items
+	 */
+	public int sendableItemCount() {
+		return recipientLookups.size() + readyToSend.size();
+	}
+}
@@ -4,10 +4,13 @@ import java.util.function.Predicate;
 import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
 
 import static java.util.function.Predicate.not;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.ALREADY_SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.METADATA_INCOMPLETE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT_RETRYABLE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_PARTY_ID_FOUND;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_PARTY_ID_NOT_FOUND;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
@@ -24,5 +27,11 @@ public final class ItemPredicate {
 	public static final Predicate<ItemEntity> RECIPIENT_HAS_INVALID_LEGAL_ID = item -> item.getStatus() == RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID;
 	public static final Predicate<ItemEntity> RECIPIENT_HAS_INVALID_PARTY_ID = item -> item.getStatus() == RECIPIENT_PARTY_ID_NOT_FOUND;
 	public static final Predicate<ItemEntity> INVOICE_COULD_NOT_BE_SENT = item -> item.getStatus() == NOT_SENT;
-	public static final Predicate<ItemEntity> UNSENT_ITEMS = item -> item.getStatus() != SENT;
+	public static final Predicate<ItemEntity> INVOICE_SEND_IS_RETRYABLE = item -> item.getStatus() == NOT_SENT_RETRYABLE;
+	public static final Predicate<ItemEntity> INVOICE_IS_ALREADY_SENT = item -> item.getStatus() == ALREADY_SENT;
+	public static final Predicate<ItemEntity> UNSENT_ITEMS = item -> item.getStatus() != SENT && item.getStatus() != ALREADY_SENT;
+	public static final Predicate<ItemEntity> ITEM_IS_SENT = item -> item.getStatus() == SENT;
+	public static final Predicate<ItemEntity> ITEM_IS_HANDLED = ITEM_IS_IGNORED.or(ITEM_LACKS_METADATA).or(RECIPIENT_HAS_INVALID_LEGAL_ID)
+		.or(RECIPIENT_HAS_INVALID_PARTY_ID).or(INVOICE_COULD_NOT_BE_SENT).or(ITEM_IS_SENT).or(INVOICE_IS_ALREADY_SENT);
+	public static final Predicate<ItemEntity> RECIPIENT_IS_VERIFIED = item -> item.getStatus() == RECIPIENT_PARTY_ID_FOUND && item.getRecipientPartyId() != null;
 }
@@ -0,0 +1,24 @@
+package se.sundsvall.invoicesender.service.model;
+
+import java.util.Comparator;
+import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+
+import static java.util.Comparator.naturalOrder;
+import static java.util.Comparator.nullsLast;
+import static java.util.Comparator.reverseOrder;
+
+public final class ItemPriority {
+
+	private ItemPriority() {}
+
+	/**
+	 * Orders items by urgency: reminders first, then by due date, earliest first. Items without a due date come last, and
+	 * items that are equally urgent are left in their order - sort with a stable sort.
+	 */
+	public static final Comparator<ItemEntity> MOST_URGENT_FIRST = Comparator.comparing(ItemPriority::isReminder, reverseOrder())
+		.thenComparing(ItemEntity::getDueDate, nullsLast(naturalOrder()));
+
+	private static boolean isReminder(final ItemEntity item) {
+		return item.getMetadata() != null && item.getMetadata().isReminder();
+	}
+}
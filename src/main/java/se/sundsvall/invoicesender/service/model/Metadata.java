@@ -1,7 +1,9 @@
 package se.sundsvall.invoicesender.service.model;
 
+import jakarta.persistence.Embeddable;
 import java.util.Objects;
 
+@Embeddable
 public class Metadata {
 
 	private String invoiceNumber;
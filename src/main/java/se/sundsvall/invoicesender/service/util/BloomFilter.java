@@ -0,0 +1,123 @@
+package se.sundsvall.invoicesender.service.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter of strings. A negative answer from {@link #mightContain(String)} is definite, while a
+ * positive answer is wrong with (roughly) the false positive probability that the filter was sized for, as long as no
+ * more than the expected number of strings have been added.
+ */
+public final class BloomFilter {
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private final AtomicLongArray bits;
+	private final long bitCount;
+	private final int hashCount;
+
+	/**
+	 * Creates a Bloom filter sized for the given number of strings and false positive probability.
+	 *
+	 * @param expectedInsertions       the expected number of strings
+	 * @param falsePositiveProbability the wanted false positive probability, between 0 and 1 (exclusive)
+	 */
+	public BloomFilter(final long expectedInsertions, final double falsePositiveProbability) {
+		if (expectedInsertions <= 0) {
+			throw new IllegalArgumentException("Expected insertions must be positive");
+		}
+		if (falsePositiveProbability <= 0 || falsePositiveProbability >= 1) {
+			throw new IllegalArgumentException("False positive probability must be between 0 and 1");
+		}
+
+		// m = -n * ln(p) / ln(2)^2 and k = m / n * ln(2)
+		final var optimalBitCount = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+		bits = new AtomicLongArray(Math.toIntExact((optimalBitCount + 63) / 64));
+		bitCount = bits.length() * 64L;
+		hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+	}
+
+	/**
+	 * Adds a string to the filter.
+	 *
+	 * @param value the string
+	 */
+	public void put(final String value) {
+		final var hash = hash(value);
+		final var hash1 = (int) hash;
+		final var hash2 = (int) (hash >>> 32);
+
+		for (var i = 1; i <= hashCount; i++) {
+			final var index = index(hash1 + i * hash2);
+			final var mask = 1L << index;
+			final var word = (int) (index >>> 6);
+
+			var current = bits.get(word);
+			while ((current & mask) == 0 && !bits.compareAndSet(word, current, current | mask)) {
+				current = bits.get(word);
+			}
+		}
+	}
+
+	/**
+	 * Checks whether a string might have been added to the filter.
+	 *
+	 * @param  value the string
+	 * @return       false if the string has definitely not been added, true if it probably has
+	 */
+	public boolean mightContain(final String value) {
+		final var hash = hash(value);
+		final var hash1 = (int) hash;
+		final var hash2 = (int) (hash >>> 32);
+
+		for (var i = 1; i <= hashCount; i++) {
+			final var index = index(hash1 + i * hash2);
+			if ((bits.get((int) (index >>> 6)) & (1L << index)) == 0) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the number of bits in the filter.
+	 *
+	 * @return the number of bits
+	 */
+	public long getBitCount() {
+		return bitCount;
+	}
+
+	/**
+	 * Gets the number of bits set per string.
+	 *
+	 * @return the number of hash functions
+	 */
+	public int getHashCount() {
+		return hashCount;
+	}
+
+	private long index(final int combinedHash) {
+		// Flip negative hashes, so that the index is never negative
+		return (combinedHash < 0 ? ~combinedHash : combinedHash) % bitCount;
+	}
+
+	/**
+	 * 64-bit FNV-1a hash of the characters of a string, mixed with the MurmurHash3 finalizer so that both halves of the
+	 * hash are usable on their own.
+	 */
+	private static long hash(final String value) {
+		var hash = FNV_OFFSET_BASIS;
+		for (var i = 0; i < value.length(); i++) {
+			hash ^= value.charAt(i);
+			hash *= FNV_PRIME;
+		}
+
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return hash;
+	}
+}
@@ -1,67 +1,47 @@
 package se.sundsvall.invoicesender.util;
 
-import java.time.LocalDate;
-import java.time.ZoneId;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.stream.Stream;
-import org.apache.commons.validator.routines.checkdigit.CheckDigitException;
-import org.apache.commons.validator.routines.checkdigit.LuhnCheckDigit;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HexFormat;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
 
 public final class LegalIdUtil {
 
-	private static final LuhnCheckDigit LUHN = new LuhnCheckDigit();
-	private static final DateTimeFormatter DATE_PART_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
-
 	private LegalIdUtil() {}
 
 	public static boolean isValidLegalId(final String legalId) {
-		// Strip everything but digits from the legal id
-		var legalIdWithDigitsOnly = legalId.replaceAll("\\D", "");
-
-		// We should have 10 digits
-		if (legalIdWithDigitsOnly.length() != 10) {
-			return false;
-		}
-
-		return Stream.of("19", "20")
-			.map(centuryDigit -> centuryDigit + legalIdWithDigitsOnly)
-			.anyMatch(legalIdWithCenturyDigits -> validateLegalIdDatePart(legalIdWithCenturyDigits) && validateLegalIdCheckDigit(legalIdWithCenturyDigits));
+		return LegalIdValidator.validate(legalId) == LegalIdValidator.Reason.VALID;
 	}
 
-	static boolean validateLegalIdDatePart(final String legalId) {
-		try {
-			// "Validate" the date part (YYYYMMDD) by trying to parse it into a LocalDate
-			DATE_PART_FORMAT.parse(legalId.substring(0, 8));
-
-			return true;
-		} catch (DateTimeParseException e) {
-			return false;
+	/**
+	 * Hashes a legal id, so that it can be stored and compared without storing the legal id itself. The legal id is
+	 * normalised first, so that 10 and 12 digit forms of the same legal id give the same hash. The hash is keyed (HMAC),
+	 * as the few possible legal ids would otherwise make a plain hash trivial to reverse.
+	 *
+	 * @param  legalId the legal id, may be {@code null}
+	 * @param  key     the secret HMAC-SHA256 key
+	 * @return         the HMAC-SHA256 of the normalised legal id as 64 hex characters, or {@code null} if the legal id
+	 *                 contains no digits
+	 */
+	public static String hashLegalId(final String legalId, final SecretKey key) {
+		final var normalized = new char[LegalIdValidator.NORMALIZED_LENGTH];
+		final var value = switch (LegalIdValidator.normalize(legalId, normalized)) {
+			case MISSING -> null;
+			// Already normalised, or not a legal id at all - hash the digits as they are
+			case WRONG_LENGTH -> LegalIdValidator.digitsOf(legalId);
+			default -> new String(normalized);
+		};
+		if (value == null) {
+			return null;
 		}
-	}
 
-	static boolean validateLegalIdCheckDigit(final String legalId) {
 		try {
-			// Calculate and validate the check digit
-			var checkDigit = LUHN.calculate(legalId.substring(2, legalId.length() - 1));
-			return checkDigit.equals(legalId.substring(legalId.length() - 1));
-		} catch (CheckDigitException e) {
-			return false;
-		}
-	}
-
-	static Integer getBirthYear(final String legalIdWithDigitsOnly) {
-		return Integer.parseInt(legalIdWithDigitsOnly.substring(0, 2));
-	}
-
-	public static String guessLegalIdCenturyDigits(final String legalIdWithDigitsOnly) {
-		var currentYear = LocalDate.now(ZoneId.systemDefault()).getYear();
-		var birthYear = getBirthYear(legalIdWithDigitsOnly);
-
-		if (birthYear > currentYear % 100) {
-			return "19".concat(legalIdWithDigitsOnly);
-		} else {
-			return "20".concat(legalIdWithDigitsOnly);
+			final var mac = Mac.getInstance(key.getAlgorithm());
+			mac.init(key);
+			return HexFormat.of().formatHex(mac.doFinal(value.getBytes(StandardCharsets.US_ASCII)));
+		} catch (final GeneralSecurityException e) {
+			throw new IllegalStateException("Unable to hash legal id with " + key.getAlgorithm(), e);
 		}
 	}
 }
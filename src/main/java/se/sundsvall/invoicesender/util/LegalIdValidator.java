@@ -0,0 +1,183 @@
+package se.sundsvall.invoicesender.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/**
+ * Validator and normaliser of Swedish personal numbers, working on the characters of the legal id directly. It uses no
+ * regular expressions, throws no exceptions and allocates nothing, except for {@link #normalize(CharSequence)} that
+ * returns a new string.
+ * <p>
+ * Everything but the digits 0-9 is ignored, and exactly ten digits (YYMMDDNNNC) are expected. Just like the date
+ * parsing it replaces, any day between 1 and 31 is accepted regardless of the month. The century of the normalised
+ * form is guessed from the current year: 19 if the birth year is later in the century than the current year, otherwise
+ * 20.
+ */
+public final class LegalIdValidator {
+
+	/**
+	 * The outcome of validating a legal id.
+	 */
+	public enum Reason {
+		VALID,
+		MISSING,
+		WRONG_LENGTH,
+		INVALID_DATE,
+		INVALID_CHECK_DIGIT
+	}
+
+	/**
+	 * The length of the normalised legal id (YYYYMMDDNNNC).
+	 */
+	public static final int NORMALIZED_LENGTH = 12;
+
+	private static final int DIGIT_COUNT = 10;
+
+	private static volatile CurrentYear currentYear = CurrentYear.at(System.currentTimeMillis());
+
+	private LegalIdValidator() {}
+
+	/**
+	 * Validates a legal id.
+	 *
+	 * @param  legalId the legal id, may be {@code null}
+	 * @return         {@link Reason#VALID} if the legal id is valid, otherwise the reason why it isn't
+	 */
+	public static Reason validate(final CharSequence legalId) {
+		return normalize(legalId, null);
+	}
+
+	/**
+	 * Validates a legal id, and writes its normalised form (YYYYMMDDNNNC) to the given buffer whenever it has the right
+	 * number of digits - i.e. also when the date or the check digit is invalid, so that such legal ids can still be
+	 * looked up.
+	 *
+	 * @param  legalId the legal id, may be {@code null}
+	 * @param  target  buffer of at least {@link #NORMALIZED_LENGTH} chars, or {@code null} to only validate
+	 * @return         {@link Reason#VALID} if the legal id is valid, otherwise the reason why it isn't
+	 */
+	public static Reason normalize(final CharSequence legalId, final char[] target) {
+		if (legalId == null) {
+			return Reason.MISSING;
+		}
+
+		// Pack the digits into a long, ten digits fit with room to spare
+		var digits = 0L;
+		var digitCount = 0;
+		for (var i = 0; i < legalId.length(); i++) {
+			final var c = legalId.charAt(i);
+			if (c >= '0' && c <= '9') {
+				if (++digitCount > DIGIT_COUNT) {
+					return Reason.WRONG_LENGTH;
+				}
+				digits = digits * 10 + (c - '0');
+			}
+		}
+		if (digitCount == 0) {
+			return Reason.MISSING;
+		}
+		if (digitCount != DIGIT_COUNT) {
+			return Reason.WRONG_LENGTH;
+		}
+
+		if (target != null) {
+			writeNormalized(digits, target);
+		}
+
+		final var month = (int) (digits / 1_000_000 % 100);
+		final var day = (int) (digits / 10_000 % 100);
+		if (month < 1 || month > 12 || day < 1 || day > 31) {
+			return Reason.INVALID_DATE;
+		}
+
+		return hasValidCheckDigit(digits) ? Reason.VALID : Reason.INVALID_CHECK_DIGIT;
+	}
+
+	/**
+	 * Normalises a valid legal id.
+	 *
+	 * @param  legalId the legal id, may be {@code null}
+	 * @return         the legal id as YYYYMMDDNNNC, or {@code null} if it isn't valid
+	 */
+	public static String normalize(final CharSequence legalId) {
+		final var normalized = new char[NORMALIZED_LENGTH];
+		return normalize(legalId, normalized) == Reason.VALID ? new String(normalized) : null;
+	}
+
+	/**
+	 * Gets the digits of a legal id, ignoring everything else - like the validation does.
+	 *
+	 * @param  legalId the legal id, may be {@code null}
+	 * @return         the digits, or {@code null} if the legal id is {@code null}
+	 */
+	public static String digitsOf(final CharSequence legalId) {
+		if (legalId == null) {
+			return null;
+		}
+
+		final var digits = new StringBuilder(legalId.length());
+		for (var i = 0; i < legalId.length(); i++) {
+			final var c = legalId.charAt(i);
+			if (c >= '0' && c <= '9') {
+				digits.append(c);
+			}
+		}
+		return digits.toString();
+	}
+
+	/**
+	 * Checks the Luhn check digit. Counting from the check digit, every second digit is doubled.
+	 */
+	private static boolean hasValidCheckDigit(final long digits) {
+		var sum = 0;
+		var remaining = digits;
+		for (var position = 0; position < DIGIT_COUNT; position++) {
+			var digit = (int) (remaining % 10);
+			remaining /= 10;
+			if ((position & 1) == 1) {
+				digit *= 2;
+				if (digit > 9) {
+					digit -= 9;
+				}
+			}
+			sum += digit;
+		}
+		return sum % 10 == 0;
+	}
+
+	private static void writeNormalized(final long digits, final char[] target) {
+		var remaining = digits;
+		for (var i = NORMALIZED_LENGTH - 1; i >= 2; i--) {
+			target[i] = (char) ('0' + remaining % 10);
+			remaining /= 10;
+		}
+
+		final var birthYear = (target[2] - '0') * 10 + (target[3] - '0');
+		final var nineteenth = birthYear > currentYearOfCentury();
+		target[0] = nineteenth ? '1' : '2';
+		target[1] = nineteenth ? '9' : '0';
+	}
+
+	private static int currentYearOfCentury() {
+		final var now = System.currentTimeMillis();
+		var year = currentYear;
+		if (now >= year.validUntil()) {
+			year = CurrentYear.at(now);
+			currentYear = year;
+		}
+		return year.yearOfCentury();
+	}
+
+	/**
+	 * The current year, cached until the turn of the year so that it isn't looked up for every legal id.
+	 */
+	private record CurrentYear(int yearOfCentury, long validUntil) {
+
+		static CurrentYear at(final long epochMillis) {
+			final var zone = ZoneId.systemDefault();
+			final var year = Instant.ofEpochMilli(epochMillis).atZone(zone).getYear();
+			return new CurrentYear(year % 100, LocalDate.of(year + 1, 1, 1).atStartOfDay(zone).toInstant().toEpochMilli());
+		}
+	}
+}
@@ -0,0 +1,16 @@
+CREATE TABLE `batch_leases` (
+    `id` int(11) NOT NULL AUTO_INCREMENT,
+    `municipality_id` varchar(255) NOT NULL,
+    `batch_prefix` varchar(255) NOT NULL,
+    `date` date NOT NULL,
+    `owner` varchar(255) NOT NULL,
+    `acquired_at` datetime(6) NOT NULL,
+    `expires_at` datetime(6) NOT NULL,
+    -- Leases of completed runs are kept as markers, so that a run on another node doesn't process the same batches again
+    `completed_at` datetime(6),
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uq_batch_leases_municipality_id_batch_prefix_date` (`municipality_id`, `batch_prefix`, `date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+ALTER TABLE `batch_executions`
+    ADD COLUMN `batch_prefix` VARCHAR(255);
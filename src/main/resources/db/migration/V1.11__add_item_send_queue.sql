@@ -0,0 +1,26 @@
+CREATE TABLE `item_send_queue` (
+    `id` int(11) NOT NULL AUTO_INCREMENT,
+    `batch_id` int(11) NOT NULL,
+    `item_id` int(11) NOT NULL,
+    `municipality_id` varchar(255) NOT NULL,
+    `filename` varchar(255) NOT NULL,
+    `recipient_party_id` varchar(255) NOT NULL,
+    `invoice_number` varchar(255),
+    `invoice_date` varchar(255),
+    `due_date` varchar(255),
+    `account_number` varchar(255),
+    `payment_reference` varchar(255),
+    `total_amount` varchar(255),
+    `payable` bit(1) NOT NULL,
+    `reminder` bit(1) NOT NULL,
+    `content` longblob NOT NULL,
+    `status` varchar(255) NOT NULL,
+    `result` varchar(255),
+    `claimed_by` varchar(255),
+    `claimed_at` datetime(6),
+    `created_at` datetime(6) NOT NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uq_item_send_queue_item_id` (`item_id`),
+    KEY `idx_item_send_queue_status` (`status`),
+    KEY `idx_item_send_queue_batch_id` (`batch_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
@@ -0,0 +1,15 @@
+CREATE TABLE `notification_outbox` (
+    `id` int(11) NOT NULL AUTO_INCREMENT,
+    `municipality_id` varchar(255) NOT NULL,
+    `type` varchar(255) NOT NULL,
+    `date` date,
+    `message` longtext NOT NULL,
+    `status` varchar(255) NOT NULL,
+    `attempts` int(11) NOT NULL,
+    `next_attempt_at` datetime(6),
+    `last_error` varchar(1024),
+    `created_at` datetime(6) NOT NULL,
+    `sent_at` datetime(6),
+    PRIMARY KEY (`id`),
+    KEY `idx_notification_outbox_status_next_attempt_at` (`status`, `next_attempt_at`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
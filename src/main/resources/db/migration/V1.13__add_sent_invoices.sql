@@ -0,0 +1,11 @@
+CREATE TABLE `sent_invoices` (
+    `id` int(11) NOT NULL AUTO_INCREMENT,
+    `municipality_id` varchar(255) NOT NULL,
+    `invoice_number` varchar(255) NOT NULL,
+    `payment_reference` varchar(255) NOT NULL,
+    `item_id` int(11),
+    `filename` varchar(255),
+    `sent_at` datetime(6) NOT NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uq_sent_invoices_municipality_id_invoice_number_payment_reference` (`municipality_id`, `invoice_number`, `payment_reference`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
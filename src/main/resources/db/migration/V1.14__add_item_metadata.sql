@@ -0,0 +1,14 @@
+ALTER TABLE `batch_items`
+    ADD COLUMN `invoice_number` VARCHAR(255);
+ALTER TABLE `batch_items`
+    ADD COLUMN `due_date` DATE;
+ALTER TABLE `batch_items`
+    ADD COLUMN `total_amount` DECIMAL(15, 2);
+-- HMAC-SHA256 of the recipient legal id, keyed by invoice-processor.legal-id-hash.secret - it is set by the application
+ALTER TABLE `batch_items`
+    ADD COLUMN `recipient_legal_id_hash` CHAR(64);
+
+CREATE INDEX `idx_batch_items_batch_id_status`
+    ON `batch_items` (`batch_id`, `status`);
+CREATE INDEX `idx_batch_items_status`
+    ON `batch_items` (`status`);
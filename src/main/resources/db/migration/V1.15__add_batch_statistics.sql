@@ -0,0 +1,20 @@
+CREATE TABLE `batch_statistics` (
+    `id` int(11) NOT NULL AUTO_INCREMENT,
+    `batch_id` int(11) NOT NULL,
+    `date` date NOT NULL,
+    `municipality_id` varchar(255),
+    `batch_prefix` varchar(255),
+    `status` varchar(255) NOT NULL,
+    `item_count` bigint(20) NOT NULL,
+    PRIMARY KEY (`id`),
+    UNIQUE KEY `uq_batch_statistics_batch_id_status` (`batch_id`, `status`),
+    KEY `idx_batch_statistics_municipality_id_date` (`municipality_id`, `date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+
+-- Roll up the batches that have already been completed
+INSERT INTO `batch_statistics` (`batch_id`, `date`, `municipality_id`, `batch_prefix`, `status`, `item_count`)
+SELECT b.`id`, COALESCE(b.`date`, DATE(b.`started_at`)), b.`municipality_id`, b.`batch_prefix`, i.`status`, COUNT(*)
+FROM `batch_executions` b
+JOIN `batch_items` i ON i.`batch_id` = b.`id`
+WHERE b.`completed` = 1
+GROUP BY b.`id`, COALESCE(b.`date`, DATE(b.`started_at`)), b.`municipality_id`, b.`batch_prefix`, i.`status`;
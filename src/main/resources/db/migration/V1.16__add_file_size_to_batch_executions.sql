@@ -0,0 +1,3 @@
+-- The size of the 7z file, to admit a resumed batch that was streamed to disk and has no stored data
+ALTER TABLE batch_executions
+    ADD COLUMN file_size BIGINT;
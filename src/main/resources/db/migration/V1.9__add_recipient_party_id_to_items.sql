@@ -0,0 +1,5 @@
+ALTER TABLE `batch_items`
+    ADD COLUMN `recipient_party_id` VARCHAR(255);
+
+CREATE INDEX `idx_batch_executions_completed_started_at`
+    ON `batch_executions` (`completed`, `started_at`);
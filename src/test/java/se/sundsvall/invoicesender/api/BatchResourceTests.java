@@ -1,9 +1,13 @@
 package se.sundsvall.invoicesender.api;
 
+import java.io.IOException;
+import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -17,15 +21,23 @@ import se.sundsvall.dept44.problem.violations.ConstraintViolationProblem;
 import se.sundsvall.dept44.problem.violations.Violation;
 import se.sundsvall.invoicesender.Application;
 import se.sundsvall.invoicesender.api.model.BatchDto;
+import se.sundsvall.invoicesender.api.model.BatchPlanDto;
 import se.sundsvall.invoicesender.api.model.BatchesResponse;
+import se.sundsvall.invoicesender.api.model.DryRunDto;
+import se.sundsvall.invoicesender.api.model.ItemDto;
+import se.sundsvall.invoicesender.api.model.ItemsResponse;
+import se.sundsvall.invoicesender.api.model.StatisticsDto;
 import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
 import se.sundsvall.invoicesender.service.InvoiceProcessor;
 
 import static java.time.Month.FEBRUARY;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.nullable;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
@@ -33,6 +45,12 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.boot.test.context.SpringBootTest.WebEnvironment.RANDOM_PORT;
 import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static se.sundsvall.invoicesender.api.model.StatisticsGranularity.DAY;
+import static se.sundsvall.invoicesender.api.model.StatisticsGranularity.MONTH;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_PARTY_ID_NOT_FOUND;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
 
 @ActiveProfiles("junit")
 @SpringBootTest(classes = Application.class, webEnvironment = RANDOM_PORT)
@@ -80,6 +98,293 @@ class BatchResourceTests {
 		verifyNoInteractions(mockDbIntegration);
 	}
 
+	@Test
+	void replayBatch() throws IOException {
+		webTestClient.post()
+			.uri(PATH + "/{batchId}/replay?status=NOT_SENT&status=RECIPIENT_PARTY_ID_NOT_FOUND", "2281", 123)
+			.exchange()
+			.expectStatus().isOk();
+
+		verify(mockInvoiceProcessor).replay("2281", 123, Set.of(NOT_SENT, RECIPIENT_PARTY_ID_NOT_FOUND));
+		verifyNoMoreInteractions(mockInvoiceProcessor);
+		verifyNoInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void replayBatchWithoutStatuses() throws IOException {
+		webTestClient.post()
+			.uri(PATH + "/{batchId}/replay", "2281", 123)
+			.exchange()
+			.expectStatus().isOk();
+
+		verify(mockInvoiceProcessor).replay("2281", 123, null);
+		verifyNoMoreInteractions(mockInvoiceProcessor);
+	}
+
+	@Test
+	void replayBatchWithInvalidStatus() {
+		webTestClient.post()
+			.uri(PATH + "/{batchId}/replay?status=NOT_A_STATUS", "2281", 123)
+			.exchange()
+			.expectStatus().isBadRequest();
+
+		verifyNoInteractions(mockInvoiceProcessor);
+	}
+
+	@Test
+	void planBatch() throws IOException {
+		final var date = LocalDate.of(2019, FEBRUARY, 28);
+		when(mockInvoiceProcessor.plan(date, "2281")).thenReturn(List.of(
+			new BatchPlanDto("Faktura-pdf-190228_123456", true, 3, 1, 1, 1, new BatchPlanDto.RemoteCalls(1, 1, 3), 2048, List.of(
+				new BatchPlanDto.PlannedItem("ArchiveIndex.xml", BatchPlanDto.Action.SKIP),
+				new BatchPlanDto.PlannedItem("Faktura_00000001_to_9001011234.pdf", BatchPlanDto.Action.LOOK_UP_RECIPIENT),
+				new BatchPlanDto.PlannedItem("Faktura_00000002_to_9101011234.pdf", BatchPlanDto.Action.SEND)))));
+
+		final var response = webTestClient.get()
+			.uri(PATH + "/plan/{date}", "2281", date.format(DateTimeFormatter.ISO_DATE))
+			.exchange()
+			.expectStatus().isOk()
+			.expectBodyList(BatchPlanDto.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).hasSize(1).first().satisfies(plan -> {
+			assertThat(plan.basename()).isEqualTo("Faktura-pdf-190228_123456");
+			assertThat(plan.remoteCalls()).isEqualTo(new BatchPlanDto.RemoteCalls(1, 1, 3));
+			assertThat(plan.bytesToSend()).isEqualTo(2048);
+			assertThat(plan.items()).extracting(BatchPlanDto.PlannedItem::action)
+				.containsExactly(BatchPlanDto.Action.SKIP, BatchPlanDto.Action.LOOK_UP_RECIPIENT, BatchPlanDto.Action.SEND);
+		});
+
+		verify(mockInvoiceProcessor).plan(date, "2281");
+		verifyNoMoreInteractions(mockInvoiceProcessor);
+		verifyNoInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void dryRunBatch() throws IOException {
+		final var date = LocalDate.of(2019, FEBRUARY, 28);
+		final var plan = new BatchPlanDto("Faktura-pdf-190228_123456", true, 1, 0, 1, 0, new BatchPlanDto.RemoteCalls(1, 1, 2), 2048, List.of(
+			new BatchPlanDto.PlannedItem("Faktura_00000001_to_9001011234.pdf", BatchPlanDto.Action.LOOK_UP_RECIPIENT)));
+		when(mockInvoiceProcessor.dryRun(date, "2281", true)).thenReturn(List.of(
+			new DryRunDto(plan, true, List.of(
+				new DryRunDto.Stage("party-lookup", 1, 120L, true),
+				new DryRunDto.Stage("send", 1, null, false)), 120)));
+
+		final var response = webTestClient.post()
+			.uri(PATH + "/dry-run/{date}?lookUpRecipients=true", "2281", date.format(DateTimeFormatter.ISO_DATE))
+			.exchange()
+			.expectStatus().isOk()
+			.expectBodyList(DryRunDto.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).hasSize(1).first().satisfies(dryRun -> {
+			assertThat(dryRun.plan()).isEqualTo(plan);
+			assertThat(dryRun.recipientsLookedUp()).isTrue();
+			assertThat(dryRun.stages()).extracting(DryRunDto.Stage::name).containsExactly("party-lookup", "send");
+			assertThat(dryRun.stages().getLast().durationMillis()).isNull();
+			assertThat(dryRun.estimatedDurationMillis()).isEqualTo(120);
+		});
+
+		verify(mockInvoiceProcessor).dryRun(date, "2281", true);
+		verifyNoMoreInteractions(mockInvoiceProcessor);
+		verifyNoInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void dryRunBatchWithoutLookups() throws IOException {
+		final var date = LocalDate.of(2019, FEBRUARY, 28);
+		when(mockInvoiceProcessor.dryRun(date, "2281", false)).thenReturn(List.of());
+
+		webTestClient.post()
+			.uri(PATH + "/dry-run/{date}", "2281", date.format(DateTimeFormatter.ISO_DATE))
+			.exchange()
+			.expectStatus().isOk();
+
+		verify(mockInvoiceProcessor).dryRun(date, "2281", false);
+		verifyNoMoreInteractions(mockInvoiceProcessor);
+	}
+
+	@Test
+	void getItems() {
+		when(mockDbIntegration.existsBatch("2281", 123)).thenReturn(true);
+		when(mockDbIntegration.getItems("2281", 123, Set.of(NOT_SENT), 10, 3)).thenReturn(List.of(
+			createItemDto(11, NOT_SENT), createItemDto(12, NOT_SENT), createItemDto(13, NOT_SENT)));
+
+		final var response = webTestClient.get()
+			.uri(PATH + "/{batchId}/items?status=NOT_SENT&afterId=10&pageSize=2", "2281", 123)
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody(ItemsResponse.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).isNotNull();
+		assertThat(response.items()).extracting(ItemDto::id).containsExactly(11, 12);
+		assertThat(response.items().getFirst()).isEqualTo(createItemDto(11, NOT_SENT));
+		assertThat(response.nextAfterId()).isEqualTo(12);
+
+		verify(mockDbIntegration).existsBatch("2281", 123);
+		verify(mockDbIntegration).getItems("2281", 123, Set.of(NOT_SENT), 10, 3);
+		verifyNoMoreInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void getItemsOnLastPage() {
+		when(mockDbIntegration.existsBatch("2281", 123)).thenReturn(true);
+		when(mockDbIntegration.getItems("2281", 123, null, 0, 101)).thenReturn(List.of(createItemDto(1, SENT)));
+
+		final var response = webTestClient.get()
+			.uri(PATH + "/{batchId}/items", "2281", 123)
+			.exchange()
+			.expectStatus().isOk()
+			.expectBody(ItemsResponse.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).isNotNull();
+		assertThat(response.items()).extracting(ItemDto::id).containsExactly(1);
+		assertThat(response.nextAfterId()).isNull();
+	}
+
+	@Test
+	void getItemsWhenBatchIsNotFound() {
+		when(mockDbIntegration.existsBatch("2281", 123)).thenReturn(false);
+
+		webTestClient.get()
+			.uri(PATH + "/{batchId}/items", "2281", 123)
+			.exchange()
+			.expectStatus().isNotFound();
+
+		verify(mockDbIntegration).existsBatch("2281", 123);
+		verifyNoMoreInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void getItemsWithInvalidPagingData() {
+		final var response = webTestClient.get()
+			.uri(PATH + "/{batchId}/items?afterId={afterId}&pageSize={pageSize}", "2281", 123, -1, 1001)
+			.exchange()
+			.expectStatus().isBadRequest()
+			.expectBody(ConstraintViolationProblem.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).isNotNull();
+		assertThat(response.getViolations()).extracting(Violation::field)
+			.containsExactlyInAnyOrder("getItems.afterId", "getItems.pageSize");
+
+		verifyNoInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void exportItemsAsCsv() {
+		when(mockDbIntegration.existsBatch("2281", 123)).thenReturn(true);
+		doAnswer(invocation -> {
+			final Consumer<ItemDto> consumer = invocation.getArgument(3);
+			consumer.accept(createItemDto(1, SENT));
+			consumer.accept(createItemDto(2, NOT_SENT));
+			return null;
+		}).when(mockDbIntegration).streamItems(eq("2281"), eq(123), eq(Set.of(SENT, NOT_SENT)), any());
+
+		final var response = webTestClient.get()
+			.uri(PATH + "/{batchId}/items/export?status=SENT&status=NOT_SENT&format=CSV", "2281", 123)
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().contentTypeCompatibleWith("text/csv")
+			.expectHeader().valueEquals("Content-Disposition", "attachment; filename=\"batch-123-items.csv\"")
+			.expectBody(String.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).isEqualTo("""
+			%s
+			1,Faktura_00000001_to_9001011234.pdf,INVOICE,SENT,1,2021-01-31,123.45,somePartyId
+			2,Faktura_00000002_to_9001011234.pdf,INVOICE,NOT_SENT,2,2021-01-31,123.45,somePartyId
+			""".formatted(ItemExportWriter.CSV_HEADER));
+	}
+
+	@Test
+	void exportItemsAsNdjson() {
+		when(mockDbIntegration.existsBatch("2281", 123)).thenReturn(true);
+		doAnswer(invocation -> {
+			final Consumer<ItemDto> consumer = invocation.getArgument(3);
+			consumer.accept(createItemDto(1, SENT));
+			return null;
+		}).when(mockDbIntegration).streamItems(eq("2281"), eq(123), eq(null), any());
+
+		final var response = webTestClient.get()
+			.uri(PATH + "/{batchId}/items/export", "2281", 123)
+			.exchange()
+			.expectStatus().isOk()
+			.expectHeader().contentTypeCompatibleWith("application/x-ndjson")
+			.expectBody(String.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).contains("\"id\":1", "\"status\":\"SENT\"", "\"dueDate\":\"2021-01-31\"").endsWith("}\n");
+	}
+
+	@Test
+	void exportItemsWhenBatchIsNotFound() {
+		when(mockDbIntegration.existsBatch("2281", 123)).thenReturn(false);
+
+		webTestClient.get()
+			.uri(PATH + "/{batchId}/items/export?format=CSV", "2281", 123)
+			.exchange()
+			.expectStatus().isNotFound();
+
+		verify(mockDbIntegration).existsBatch("2281", 123);
+		verifyNoMoreInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void getStatistics() {
+		final var from = LocalDate.of(2024, 1, 1);
+		final var to = LocalDate.of(2024, 12, 31);
+		when(mockDbIntegration.getStatistics("2281", from, to, MONTH)).thenReturn(List.of(
+			new StatisticsDto(LocalDate.of(2024, 5, 1), "Faktura-pdf", NOT_SENT, 3),
+			new StatisticsDto(LocalDate.of(2024, 5, 1), "Faktura-pdf", SENT, 7)));
+
+		final var response = webTestClient.get()
+			.uri(PATH + "/statistics?from=2024-01-01&to=2024-12-31&granularity=MONTH", "2281")
+			.exchange()
+			.expectStatus().isOk()
+			.expectBodyList(StatisticsDto.class)
+			.returnResult()
+			.getResponseBody();
+
+		assertThat(response).extracting(StatisticsDto::status, StatisticsDto::count)
+			.containsExactly(tuple(NOT_SENT, 3L), tuple(SENT, 7L));
+
+		verify(mockDbIntegration).getStatistics("2281", from, to, MONTH);
+		verifyNoMoreInteractions(mockDbIntegration);
+	}
+
+	@Test
+	void getStatisticsPerDayByDefault() {
+		final var date = LocalDate.of(2024, 5, 17);
+		when(mockDbIntegration.getStatistics("2281", date, date, DAY)).thenReturn(List.of());
+
+		webTestClient.get()
+			.uri(PATH + "/statistics?from=2024-05-17&to=2024-05-17", "2281")
+			.exchange()
+			.expectStatus().isOk();
+
+		verify(mockDbIntegration).getStatistics("2281", date, date, DAY);
+	}
+
+	@Test
+	void getStatisticsWithInvalidRange() {
+		webTestClient.get()
+			.uri(PATH + "/statistics?from=2024-12-31&to=2024-01-01", "2281")
+			.exchange()
+			.expectStatus().isBadRequest();
+
+		verifyNoInteractions(mockDbIntegration);
+	}
+
 	@Test
 	void getAllWithInvalidPagingData() {
 		final var response = webTestClient.get()
@@ -134,4 +439,7 @@ class BatchResourceTests {
 		verifyNoMoreInteractions(mockDbIntegration);
 	}
 
+	private static ItemDto createItemDto(final int id, final ItemStatus status) {
+		return new ItemDto(id, "Faktura_%08d_to_9001011234.pdf".formatted(id), INVOICE, status, String.valueOf(id), LocalDate.of(2021, 1, 31), new BigDecimal("123.45"), "somePartyId");
+	}
 }
@@ -0,0 +1,99 @@
+package se.sundsvall.invoicesender.api;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import se.sundsvall.invoicesender.api.model.ItemDto;
+import tools.jackson.databind.json.JsonMapper;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static se.sundsvall.invoicesender.api.model.ItemExportFormat.CSV;
+import static se.sundsvall.invoicesender.api.model.ItemExportFormat.NDJSON;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
+
+class ItemExportWriterTests {
+
+	private static final ItemDto ITEM_1 = new ItemDto(1, "Faktura_00000001_to_9001011234.pdf", INVOICE, SENT, "1", LocalDate.of(2021, 1, 31), new BigDecimal("123.45"), "somePartyId");
+	private static final ItemDto ITEM_2 = new ItemDto(2, "Faktura, \"kopia\".pdf", INVOICE, NOT_SENT, null, null, null, null);
+
+	private final ItemExportWriter itemExportWriter = new ItemExportWriter(new JsonMapper());
+
+	@Test
+	void writeCsv() throws IOException {
+		final var outputStream = new ByteArrayOutputStream();
+
+		itemExportWriter.write(CSV, outputStream, consumer -> {
+			consumer.accept(ITEM_1);
+			consumer.accept(ITEM_2);
+		});
+
+		assertThat(outputStream.toString(UTF_8)).isEqualTo("""
+			id,filename,type,status,invoiceNumber,dueDate,totalAmount,recipientPartyId
+			1,Faktura_00000001_to_9001011234.pdf,INVOICE,SENT,1,2021-01-31,123.45,somePartyId
+			2,"Faktura, ""kopia"".pdf",INVOICE,NOT_SENT,,,,
+			""");
+	}
+
+	@Test
+	void writeNdjson() throws IOException {
+		final var outputStream = new ByteArrayOutputStream();
+
+		itemExportWriter.write(NDJSON, outputStream, consumer -> {
+			consumer.accept(ITEM_1);
+			consumer.accept(ITEM_2);
+		});
+
+		final var lines = outputStream.toString(UTF_8).split("\n");
+		assertThat(lines).hasSize(2);
+		assertThat(lines[0]).contains("\"id\":1", "\"status\":\"SENT\"", "\"dueDate\":\"2021-01-31\"", "\"totalAmount\":123.45");
+		assertThat(lines[1]).contains("\"id\":2", "\"filename\":\"Faktura, \\\"kopia\\\".pdf\"");
+	}
+
+	@Test
+	void writeWithoutItems() throws IOException {
+		final var outputStream = new ByteArrayOutputStream();
+
+		itemExportWriter.write(CSV, outputStream, _ -> {});
+
+		assertThat(outputStream.toString(UTF_8)).isEqualTo(ItemExportWriter.CSV_HEADER + "\n");
+	}
+
+	@Test
+	void writeWhenOutputStreamFails() {
+		final var outputStream = new OutputStream() {
+
+			@Override
+			public void write(final int b) throws IOException {
+				throw new IOException("Broken pipe");
+			}
+		};
+
+		// Fill the buffer of the writer, so that it writes to the output stream
+		assertThatThrownBy(() -> itemExportWriter.write(NDJSON, outputStream, consumer -> {
+			for (var i = 0; i < 1_000; i++) {
+				consumer.accept(ITEM_1);
+			}
+		}))
+			.isInstanceOf(IOException.class)
+			.hasMessage("Broken pipe");
+	}
+
+	@ParameterizedTest
+	@CsvSource(delimiter = '|', value = {
+		"plain|plain",
+		"with,comma|\"with,comma\"",
+		"with \"quote\"|\"with \"\"quote\"\"\""
+	})
+	void escapeCsv(final String value, final String expected) {
+		assertThat(ItemExportWriter.escapeCsv(value)).isEqualTo(expected);
+	}
+}
@@ -0,0 +1,30 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchPlanDtoTests {
+
+	@Test
+	void testConstructorAndGetters() {
+		var remoteCalls = new BatchPlanDto.RemoteCalls(2, 2, 4);
+		var items = List.of(new BatchPlanDto.PlannedItem("someFilename.pdf", BatchPlanDto.Action.LOOK_UP_RECIPIENT));
+
+		var batchPlanDto = new BatchPlanDto("someBasename", true, 5, 2, 2, 1, remoteCalls, 4096, items);
+
+		assertThat(batchPlanDto.basename()).isEqualTo("someBasename");
+		assertThat(batchPlanDto.processingEnabled()).isTrue();
+		assertThat(batchPlanDto.totalItems()).isEqualTo(5);
+		assertThat(batchPlanDto.skippedItems()).isEqualTo(2);
+		assertThat(batchPlanDto.recipientLookups()).isEqualTo(2);
+		assertThat(batchPlanDto.readyToSend()).isEqualTo(1);
+		assertThat(batchPlanDto.remoteCalls()).isEqualTo(remoteCalls);
+		assertThat(batchPlanDto.remoteCalls().party()).isEqualTo(2);
+		assertThat(batchPlanDto.remoteCalls().citizen()).isEqualTo(2);
+		assertThat(batchPlanDto.remoteCalls().messaging()).isEqualTo(4);
+		assertThat(batchPlanDto.bytesToSend()).isEqualTo(4096);
+		assertThat(batchPlanDto.items()).isEqualTo(items);
+	}
+}
@@ -0,0 +1,26 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DryRunDtoTests {
+
+	@Test
+	void testConstructorAndGetters() {
+		var plan = new BatchPlanDto("someBasename", true, 1, 0, 1, 0, new BatchPlanDto.RemoteCalls(1, 1, 2), 4096, List.of());
+		var stage = new DryRunDto.Stage("party-lookup", 1, 150L, true);
+
+		var dryRunDto = new DryRunDto(plan, true, List.of(stage), 150);
+
+		assertThat(dryRunDto.plan()).isEqualTo(plan);
+		assertThat(dryRunDto.recipientsLookedUp()).isTrue();
+		assertThat(dryRunDto.stages()).containsExactly(stage);
+		assertThat(dryRunDto.stages().getFirst().name()).isEqualTo("party-lookup");
+		assertThat(dryRunDto.stages().getFirst().calls()).isOne();
+		assertThat(dryRunDto.stages().getFirst().durationMillis()).isEqualTo(150L);
+		assertThat(dryRunDto.stages().getFirst().measured()).isTrue();
+		assertThat(dryRunDto.estimatedDurationMillis()).isEqualTo(150);
+	}
+}
@@ -0,0 +1,26 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
+
+class ItemDtoTests {
+
+	@Test
+	void testConstructorAndGetters() {
+		var itemDto = new ItemDto(123, "someFilename", INVOICE, NOT_SENT, "someInvoiceNumber", LocalDate.of(2021, 1, 31), new BigDecimal("123.45"), "somePartyId");
+
+		assertThat(itemDto.id()).isEqualTo(123);
+		assertThat(itemDto.filename()).isEqualTo("someFilename");
+		assertThat(itemDto.type()).isEqualTo(INVOICE);
+		assertThat(itemDto.status()).isEqualTo(NOT_SENT);
+		assertThat(itemDto.invoiceNumber()).isEqualTo("someInvoiceNumber");
+		assertThat(itemDto.dueDate()).isEqualTo(LocalDate.of(2021, 1, 31));
+		assertThat(itemDto.totalAmount()).isEqualByComparingTo("123.45");
+		assertThat(itemDto.recipientPartyId()).isEqualTo("somePartyId");
+	}
+}
@@ -0,0 +1,21 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
+
+class ItemsResponseTests {
+
+	@Test
+	void testConstructorAndGetters() {
+		var item = new ItemDto(123, "someFilename", INVOICE, SENT, null, null, null, null);
+
+		var itemsResponse = new ItemsResponse(List.of(item), 123);
+
+		assertThat(itemsResponse.items()).containsExactly(item);
+		assertThat(itemsResponse.nextAfterId()).isEqualTo(123);
+	}
+}
@@ -0,0 +1,20 @@
+package se.sundsvall.invoicesender.api.model;
+
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+
+class StatisticsDtoTests {
+
+	@Test
+	void testConstructorAndGetters() {
+		var statisticsDto = new StatisticsDto(LocalDate.of(2024, 5, 1), "Faktura-pdf", SENT, 42);
+
+		assertThat(statisticsDto.date()).isEqualTo(LocalDate.of(2024, 5, 1));
+		assertThat(statisticsDto.batchPrefix()).isEqualTo("Faktura-pdf");
+		assertThat(statisticsDto.status()).isEqualTo(SENT);
+		assertThat(statisticsDto.count()).isEqualTo(42);
+	}
+}
@@ -0,0 +1,51 @@
+package se.sundsvall.invoicesender.configuration;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchedulingConfigurationTests {
+
+	private final CountDownLatch releaseDrain = new CountDownLatch(1);
+
+	private ThreadPoolTaskScheduler taskScheduler;
+
+	@BeforeEach
+	void setUp() {
+		taskScheduler = new SchedulingConfiguration().taskScheduler(4);
+		taskScheduler.initialize();
+	}
+
+	@AfterEach
+	void tearDown() {
+		releaseDrain.countDown();
+		taskScheduler.shutdown();
+	}
+
+	@Test
+	void slowDrainDoesNotHoldUpRenewals() throws InterruptedException {
+		final var drainStarted = new CountDownLatch(1);
+		final var renewals = new CountDownLatch(3);
+
+		// A drain that keeps sending until it is released
+		taskScheduler.scheduleWithFixedDelay(() -> {
+			drainStarted.countDown();
+			try {
+				releaseDrain.await();
+			} catch (final InterruptedException _) {
+				Thread.currentThread().interrupt();
+			}
+		}, Duration.ofMillis(10));
+		assertThat(drainStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+		taskScheduler.scheduleWithFixedDelay(renewals::countDown, Duration.ofMillis(10));
+
+		assertThat(renewals.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+}
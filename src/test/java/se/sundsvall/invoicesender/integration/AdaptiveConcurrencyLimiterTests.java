@@ -0,0 +1,179 @@
+package se.sundsvall.invoicesender.integration;
+
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class AdaptiveConcurrencyLimiterTests {
+
+	private static final String INTEGRATION_NAME = "someIntegration";
+	private static final Request REQUEST = Request.create(Request.HttpMethod.GET, "http://localhost/something", Map.of(), null, UTF_8, null);
+	private static final Request.Options OPTIONS = new Request.Options();
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private final AtomicLong nanoTime = new AtomicLong();
+
+	@Test
+	void enrichWhenDisabled() {
+		final var limiter = createLimiter(new ConcurrencyLimit(false, 10, 1, 50, 0.9, 2.0, 100, Duration.ZERO));
+		final Client client = (request, options) -> respond(200);
+
+		assertThat(limiter.enrich(client)).isSameAs(client);
+	}
+
+	@Test
+	void limitIsExportedAsMetric() {
+		createLimiter(createSettings(10, 100));
+
+		assertThat(meterRegistry.get("integration.concurrency.limit").tag("integration", INTEGRATION_NAME).gauge().value()).isEqualTo(10);
+		assertThat(meterRegistry.get("integration.concurrency.in-flight").tag("integration", INTEGRATION_NAME).gauge().value()).isZero();
+		assertThat(meterRegistry.get("integration.concurrency.rejections").tag("integration", INTEGRATION_NAME).counter().count()).isZero();
+	}
+
+	@Test
+	void limitGrowsWhileHealthyAndInUse() {
+		final var limiter = createLimiter(createSettings(2, 100));
+
+		// Keep the limit in use, with stable latency
+		for (var i = 0; i < 20; i++) {
+			limiter.acquire();
+			limiter.acquire();
+			limiter.release(1_000_000, false);
+			limiter.release(1_000_000, false);
+		}
+
+		assertThat(limiter.getLimit()).isGreaterThan(2);
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	void limitDoesNotGrowWhenNotInUse() throws IOException {
+		final var limiter = createLimiter(createSettings(10, 100));
+		final var client = limiter.enrich((request, options) -> respond(200));
+
+		for (var i = 0; i < 50; i++) {
+			client.execute(REQUEST, OPTIONS);
+		}
+
+		assertThat(limiter.getLimit()).isEqualTo(10);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {
+		429, 500, 502, 503
+	})
+	void limitIsCutOnOverloadResponse(final int status) throws IOException {
+		final var limiter = createLimiter(createSettings(10, 100));
+		final var client = limiter.enrich((request, options) -> respond(status));
+
+		assertThat(client.execute(REQUEST, OPTIONS).status()).isEqualTo(status);
+
+		assertThat(limiter.getLimit()).isEqualTo(9);
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	void limitIsNotCutOnClientError() throws IOException {
+		final var limiter = createLimiter(createSettings(10, 100));
+		final var client = limiter.enrich((request, options) -> respond(404));
+
+		client.execute(REQUEST, OPTIONS);
+
+		assertThat(limiter.getLimit()).isEqualTo(10);
+	}
+
+	@Test
+	void limitIsCutOnIoError() {
+		final var limiter = createLimiter(createSettings(10, 100));
+		final var client = limiter.enrich((request, options) -> {
+			throw new SocketTimeoutException("Read timed out");
+		});
+
+		assertThatExceptionOfType(SocketTimeoutException.class).isThrownBy(() -> client.execute(REQUEST, OPTIONS));
+
+		assertThat(limiter.getLimit()).isEqualTo(9);
+		assertThat(limiter.getInFlight()).isZero();
+	}
+
+	@Test
+	void limitIsCutWhenLatencyRises() throws IOException {
+		final var limiter = createLimiter(createSettings(10, 10));
+		final var latencyMillis = new AtomicLong(10);
+		final var client = limiter.enrich((request, options) -> {
+			nanoTime.addAndGet(Duration.ofMillis(latencyMillis.get()).toNanos());
+			return respond(200);
+		});
+
+		// The first window sets the baseline
+		for (var i = 0; i < 10; i++) {
+			client.execute(REQUEST, OPTIONS);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(10);
+
+		// A window with a p99 latency beyond the tolerance cuts the limit
+		latencyMillis.set(50);
+		for (var i = 0; i < 10; i++) {
+			client.execute(REQUEST, OPTIONS);
+		}
+		assertThat(limiter.getLimit()).isEqualTo(9);
+	}
+
+	@Test
+	void limitIsNotCutBelowMin() {
+		final var limiter = createLimiter(createSettings(2, 100));
+
+		for (var i = 0; i < 20; i++) {
+			limiter.acquire();
+			limiter.release(1_000_000, true);
+		}
+
+		assertThat(limiter.getLimit()).isOne();
+	}
+
+	@Test
+	void acquireWhenLimitIsReached() {
+		final var limiter = createLimiter(createSettings(1, 100));
+
+		limiter.acquire();
+
+		assertThatExceptionOfType(RejectedExecutionException.class)
+			.isThrownBy(limiter::acquire)
+			.withMessage("Concurrency limit of 1 reached for integration someIntegration");
+		assertThat(meterRegistry.get("integration.concurrency.rejections").counter().count()).isOne();
+
+		// A released slot can be acquired again
+		limiter.release(1_000_000, false);
+		limiter.acquire();
+
+		assertThat(limiter.getInFlight()).isOne();
+	}
+
+	private AdaptiveConcurrencyLimiter createLimiter(final ConcurrencyLimit settings) {
+		return new AdaptiveConcurrencyLimiter(INTEGRATION_NAME, settings, meterRegistry, nanoTime::get);
+	}
+
+	private static ConcurrencyLimit createSettings(final int initialLimit, final int windowSize) {
+		return new ConcurrencyLimit(true, initialLimit, 1, 50, 0.9, 2.0, windowSize, Duration.ZERO);
+	}
+
+	private static Response respond(final int status) {
+		return Response.builder()
+			.status(status)
+			.request(REQUEST)
+			.build();
+	}
+}
@@ -1,26 +1,59 @@
 package se.sundsvall.invoicesender.integration.db;
 
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import se.sundsvall.invoicesender.api.model.ItemDto;
+import se.sundsvall.invoicesender.api.model.StatisticsDto;
 import se.sundsvall.invoicesender.integration.db.entity.BatchEntity;
+import se.sundsvall.invoicesender.integration.db.entity.BatchLeaseEntity;
+import se.sundsvall.invoicesender.integration.db.entity.BatchStatisticsEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemSendEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationEntity;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationStatus;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationType;
+import se.sundsvall.invoicesender.integration.db.entity.SentInvoiceEntity;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static se.sundsvall.invoicesender.TestDataFactory.createBatchEntity;
 import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+import static se.sundsvall.invoicesender.api.model.StatisticsGranularity.DAY;
+import static se.sundsvall.invoicesender.api.model.StatisticsGranularity.MONTH;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
+import static se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus.CLAIMED;
+import static se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus.COMPLETED;
+import static se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus.PENDING;
 
 @ExtendWith(MockitoExtension.class)
 class DbIntegrationTests {
@@ -31,6 +64,21 @@ class DbIntegrationTests {
 	@Mock
 	private ItemRepository itemRepositoryMock;
 
+	@Mock
+	private BatchLeaseRepository batchLeaseRepositoryMock;
+
+	@Mock
+	private ItemSendQueueRepository itemSendQueueRepositoryMock;
+
+	@Mock
+	private NotificationOutboxRepository notificationOutboxRepositoryMock;
+
+	@Mock
+	private SentInvoiceRepository sentInvoiceRepositoryMock;
+
+	@Mock
+	private BatchStatisticsRepository batchStatisticsRepositoryMock;
+
 	@InjectMocks
 	private DbIntegration dbIntegration;
 
@@ -87,4 +135,485 @@ class DbIntegrationTests {
 		verifyNoInteractions(itemRepositoryMock);
 	}
 
+	@Test
+	void getIncompleteBatches() {
+		final var startedAfter = LocalDateTime.now().minusDays(2);
+		final var batchEntities = List.of(createBatchEntity());
+		when(batchRepositoryMock.findIncomplete(startedAfter)).thenReturn(batchEntities);
+
+		final var result = dbIntegration.getIncompleteBatches(startedAfter);
+
+		assertThat(result).isEqualTo(batchEntities);
+		verify(batchRepositoryMock).findIncomplete(startedAfter);
+		verifyNoMoreInteractions(batchRepositoryMock);
+		verifyNoInteractions(itemRepositoryMock);
+	}
+
+	@Test
+	void getIncompleteBatch() {
+		final var startedAfter = LocalDateTime.now().minusDays(2);
+		final var latest = createBatchEntity().withId(2);
+		final var older = createBatchEntity().withId(1);
+		when(batchRepositoryMock.findIncompleteByMunicipalityIdAndBasename("2281", "someBasename", startedAfter)).thenReturn(List.of(latest, older));
+
+		final var result = dbIntegration.getIncompleteBatch("2281", "someBasename", startedAfter);
+
+		assertThat(result).containsSame(latest);
+		verify(batchRepositoryMock).findIncompleteByMunicipalityIdAndBasename("2281", "someBasename", startedAfter);
+		verifyNoMoreInteractions(batchRepositoryMock);
+		verifyNoInteractions(itemRepositoryMock);
+	}
+
+	@Test
+	void getIncompleteBatchWhenNoneExists() {
+		final var startedAfter = LocalDateTime.now().minusDays(2);
+		when(batchRepositoryMock.findIncompleteByMunicipalityIdAndBasename("2281", "someBasename", startedAfter)).thenReturn(List.of());
+
+		assertThat(dbIntegration.getIncompleteBatch("2281", "someBasename", startedAfter)).isEmpty();
+	}
+
+	@Test
+	void getBatch() {
+		final var batchEntity = createBatchEntity().withId(1);
+		when(batchRepositoryMock.findWithItemsByIdAndMunicipalityId(1, "2281")).thenReturn(Optional.of(batchEntity));
+
+		final var result = dbIntegration.getBatch("2281", 1);
+
+		assertThat(result).containsSame(batchEntity);
+		verify(batchRepositoryMock).findWithItemsByIdAndMunicipalityId(1, "2281");
+		verifyNoMoreInteractions(batchRepositoryMock);
+		verifyNoInteractions(itemRepositoryMock);
+	}
+
+	@Test
+	void existsBatch() {
+		when(batchRepositoryMock.existsByIdAndMunicipalityId(1, "2281")).thenReturn(true);
+
+		assertThat(dbIntegration.existsBatch("2281", 1)).isTrue();
+		verify(batchRepositoryMock).existsByIdAndMunicipalityId(1, "2281");
+		verifyNoMoreInteractions(batchRepositoryMock);
+	}
+
+	@Test
+	void getItems() {
+		final var items = List.of(new ItemDto(11, "someFilename", INVOICE, NOT_SENT, null, null, null, null));
+		when(itemRepositoryMock.findItems("2281", 1, Set.of(NOT_SENT), 10, Limit.of(20))).thenReturn(items);
+
+		final var result = dbIntegration.getItems("2281", 1, Set.of(NOT_SENT), 10, 20);
+
+		assertThat(result).isSameAs(items);
+		verify(itemRepositoryMock).findItems("2281", 1, Set.of(NOT_SENT), 10, Limit.of(20));
+		verifyNoMoreInteractions(itemRepositoryMock);
+		verifyNoInteractions(batchRepositoryMock);
+	}
+
+	@Test
+	void getItemsInAllStatuses() {
+		when(itemRepositoryMock.findItems("2281", 1, EnumSet.allOf(ItemStatus.class), 0, Limit.of(20))).thenReturn(List.of());
+
+		assertThat(dbIntegration.getItems("2281", 1, null, 0, 20)).isEmpty();
+		verify(itemRepositoryMock).findItems("2281", 1, EnumSet.allOf(ItemStatus.class), 0, Limit.of(20));
+	}
+
+	@Test
+	void streamItems() {
+		final var item1 = new ItemDto(1, "someFilename", INVOICE, SENT, null, null, null, null);
+		final var item2 = new ItemDto(2, "someOtherFilename", INVOICE, NOT_SENT, null, null, null, null);
+		final var closed = new ArrayList<Boolean>();
+		when(itemRepositoryMock.streamItems("2281", 1, EnumSet.allOf(ItemStatus.class)))
+			.thenReturn(Stream.of(item1, item2).onClose(() -> closed.add(true)));
+
+		final var result = new ArrayList<ItemDto>();
+		dbIntegration.streamItems("2281", 1, Set.of(), result::add);
+
+		assertThat(result).containsExactly(item1, item2);
+		assertThat(closed).containsExactly(true);
+		verify(itemRepositoryMock).streamItems("2281", 1, EnumSet.allOf(ItemStatus.class));
+		verifyNoMoreInteractions(itemRepositoryMock);
+	}
+
+	@Test
+	@SuppressWarnings("unchecked")
+	void persistBatchStatistics() {
+		final var batchEntity = createBatchEntity()
+			.withId(1)
+			.withDate(LocalDate.of(2024, 5, 17))
+			.withMunicipalityId("2281")
+			.withBatchPrefix("Faktura-pdf");
+		batchEntity.setItems(List.of(
+			createItemEntity(item -> item.setStatus(SENT)),
+			createItemEntity(item -> item.setStatus(SENT)),
+			createItemEntity(item -> item.setStatus(NOT_SENT)),
+			createItemEntity(item -> item.setStatus(IGNORED))));
+
+		dbIntegration.persistBatchStatistics(batchEntity);
+
+		final var order = inOrder(batchStatisticsRepositoryMock);
+		order.verify(batchStatisticsRepositoryMock).deleteByBatchId(1);
+		final var captor = ArgumentCaptor.forClass(List.class);
+		order.verify(batchStatisticsRepositoryMock).saveAll(captor.capture());
+		assertThat((List<BatchStatisticsEntity>) captor.getValue())
+			.extracting(BatchStatisticsEntity::getBatchId, BatchStatisticsEntity::getDate, BatchStatisticsEntity::getMunicipalityId,
+				BatchStatisticsEntity::getBatchPrefix, BatchStatisticsEntity::getStatus, BatchStatisticsEntity::getItemCount)
+			.containsExactlyInAnyOrder(
+				tuple(1, LocalDate.of(2024, 5, 17), "2281", "Faktura-pdf", SENT, 2L),
+				tuple(1, LocalDate.of(2024, 5, 17), "2281", "Faktura-pdf", NOT_SENT, 1L),
+				tuple(1, LocalDate.of(2024, 5, 17), "2281", "Faktura-pdf", IGNORED, 1L));
+		verifyNoMoreInteractions(batchStatisticsRepositoryMock);
+	}
+
+	@Test
+	void completeBatch() {
+		final var batchEntity = createBatchEntity().withId(1);
+		final var notification = new NotificationEntity().withType(NotificationType.SLACK);
+
+		dbIntegration.completeBatch(batchEntity, notification);
+
+		verify(batchRepositoryMock).save(batchEntity);
+		verify(batchStatisticsRepositoryMock).deleteByBatchId(1);
+		verify(batchStatisticsRepositoryMock).saveAll(any());
+		verify(notificationOutboxRepositoryMock).save(notification);
+	}
+
+	@Test
+	void completeBatchWithoutNotification() {
+		final var batchEntity = createBatchEntity().withId(1);
+
+		dbIntegration.completeBatch(batchEntity, null);
+
+		verify(batchRepositoryMock).save(batchEntity);
+		verify(batchStatisticsRepositoryMock).deleteByBatchId(1);
+		verifyNoInteractions(notificationOutboxRepositoryMock);
+	}
+
+	@Test
+	void persistBatchStatisticsWithoutDate() {
+		final var batchEntity = createBatchEntity()
+			.withId(1)
+			.withStartedAt(LocalDateTime.of(2024, 5, 17, 6, 0))
+			.withItems(List.of(createItemEntity(item -> item.setStatus(SENT))));
+
+		dbIntegration.persistBatchStatistics(batchEntity);
+
+		verify(batchStatisticsRepositoryMock).deleteByBatchId(1);
+		verify(batchStatisticsRepositoryMock).saveAll(argThat(statistics -> statistics instanceof List<?> list &&
+			list.size() == 1 &&
+			LocalDate.of(2024, 5, 17).equals(((BatchStatisticsEntity) list.getFirst()).getDate())));
+	}
+
+	@Test
+	void getStatisticsPerDay() {
+		final var from = LocalDate.of(2024, 5, 1);
+		final var to = LocalDate.of(2024, 6, 30);
+		final var statistics = List.of(new StatisticsDto(LocalDate.of(2024, 5, 17), "Faktura-pdf", SENT, 2));
+		when(batchStatisticsRepositoryMock.sumByDate("2281", from, to)).thenReturn(statistics);
+
+		assertThat(dbIntegration.getStatistics("2281", from, to, DAY)).isSameAs(statistics);
+		verify(batchStatisticsRepositoryMock).sumByDate("2281", from, to);
+		verifyNoMoreInteractions(batchStatisticsRepositoryMock);
+	}
+
+	@Test
+	void getStatisticsPerMonth() {
+		final var from = LocalDate.of(2024, 5, 1);
+		final var to = LocalDate.of(2024, 6, 30);
+		when(batchStatisticsRepositoryMock.sumByDate("2281", from, to)).thenReturn(List.of(
+			new StatisticsDto(LocalDate.of(2024, 5, 16), "Faktura-pdf", SENT, 2),
+			new StatisticsDto(LocalDate.of(2024, 5, 16), "Faktura-pdf", NOT_SENT, 1),
+			new StatisticsDto(LocalDate.of(2024, 5, 17), "Betalningspaminnelse-pdf", SENT, 4),
+			new StatisticsDto(LocalDate.of(2024, 5, 17), "Faktura-pdf", SENT, 3),
+			new StatisticsDto(LocalDate.of(2024, 6, 3), "Faktura-pdf", SENT, 5)));
+
+		final var result = dbIntegration.getStatistics("2281", from, to, MONTH);
+
+		assertThat(result).containsExactly(
+			new StatisticsDto(LocalDate.of(2024, 5, 1), "Betalningspaminnelse-pdf", SENT, 4),
+			new StatisticsDto(LocalDate.of(2024, 5, 1), "Faktura-pdf", NOT_SENT, 1),
+			new StatisticsDto(LocalDate.of(2024, 5, 1), "Faktura-pdf", SENT, 5),
+			new StatisticsDto(LocalDate.of(2024, 6, 1), "Faktura-pdf", SENT, 5));
+	}
+
+	@Test
+	void getBatchIdsWithDataStartedBefore() {
+		final var startedBefore = LocalDateTime.now();
+		when(batchRepositoryMock.findIdsWithDataStartedBefore(startedBefore, 5, Limit.of(10))).thenReturn(List.of(6, 7));
+
+		assertThat(dbIntegration.getBatchIdsWithDataStartedBefore(startedBefore, 5, 10)).containsExactly(6, 7);
+		verify(batchRepositoryMock).findIdsWithDataStartedBefore(startedBefore, 5, Limit.of(10));
+	}
+
+	@Test
+	void purgeBatchData() {
+		when(batchRepositoryMock.clearData(List.of(6, 7))).thenReturn(2);
+
+		assertThat(dbIntegration.purgeBatchData(List.of(6, 7))).isEqualTo(2);
+		verify(batchRepositoryMock).clearData(List.of(6, 7));
+		verifyNoMoreInteractions(batchRepositoryMock);
+	}
+
+	@Test
+	void countBatchesStartedBefore() {
+		final var startedBefore = LocalDateTime.now();
+		when(batchRepositoryMock.countByStartedAtBefore(startedBefore)).thenReturn(3L);
+
+		assertThat(dbIntegration.countBatchesStartedBefore(startedBefore)).isEqualTo(3);
+	}
+
+	@Test
+	void getBatchIdsStartedBefore() {
+		final var startedBefore = LocalDateTime.now();
+		when(batchRepositoryMock.findIdsStartedBefore(startedBefore, 0, Limit.of(500))).thenReturn(List.of(1));
+
+		assertThat(dbIntegration.getBatchIdsStartedBefore(startedBefore, 0, 500)).containsExactly(1);
+		verify(batchRepositoryMock).findIdsStartedBefore(startedBefore, 0, Limit.of(500));
+	}
+
+	@Test
+	void deleteItems() {
+		when(itemRepositoryMock.findIdsByBatchId(1, Limit.of(500))).thenReturn(List.of(11, 12));
+		when(itemRepositoryMock.deleteByIds(List.of(11, 12))).thenReturn(2);
+
+		assertThat(dbIntegration.deleteItems(1, 500)).isEqualTo(2);
+		verify(itemRepositoryMock).deleteByIds(List.of(11, 12));
+	}
+
+	@Test
+	void deleteItemsWhenNoneAreLeft() {
+		when(itemRepositoryMock.findIdsByBatchId(1, Limit.of(500))).thenReturn(List.of());
+
+		assertThat(dbIntegration.deleteItems(1, 500)).isZero();
+		verify(itemRepositoryMock).findIdsByBatchId(1, Limit.of(500));
+		verifyNoMoreInteractions(itemRepositoryMock);
+	}
+
+	@Test
+	void deleteBatch() {
+		dbIntegration.deleteBatch(1);
+
+		verify(itemSendQueueRepositoryMock).deleteByBatchId(1);
+		verify(batchRepositoryMock).deleteBatch(1);
+		verifyNoMoreInteractions(batchRepositoryMock, itemSendQueueRepositoryMock);
+	}
+
+	@Test
+	void acquireLeaseByTakeOver() {
+		final var date = LocalDate.now();
+		when(batchLeaseRepositoryMock.takeOver(eq("2281"), eq("Faktura-pdf"), eq(date), eq("someOwner"), any(LocalDateTime.class), any(LocalDateTime.class))).thenReturn(1);
+
+		assertThat(dbIntegration.acquireLease("2281", "Faktura-pdf", date, "someOwner", Duration.ofMinutes(5))).isTrue();
+
+		verify(batchLeaseRepositoryMock, never()).saveAndFlush(any());
+	}
+
+	@Test
+	void acquireLeaseByInsert() {
+		final var date = LocalDate.now();
+
+		assertThat(dbIntegration.acquireLease("2281", "Faktura-pdf", date, "someOwner", Duration.ofMinutes(5))).isTrue();
+
+		verify(batchLeaseRepositoryMock).existsByMunicipalityIdAndBatchPrefixAndDate("2281", "Faktura-pdf", date);
+		verify(batchLeaseRepositoryMock).saveAndFlush(any(BatchLeaseEntity.class));
+	}
+
+	@Test
+	void acquireLeaseHeldByOtherOwner() {
+		final var date = LocalDate.now();
+		when(batchLeaseRepositoryMock.existsByMunicipalityIdAndBatchPrefixAndDate("2281", "Faktura-pdf", date)).thenReturn(true);
+
+		assertThat(dbIntegration.acquireLease("2281", "Faktura-pdf", date, "someOwner", Duration.ofMinutes(5))).isFalse();
+
+		verify(batchLeaseRepositoryMock, never()).saveAndFlush(any());
+	}
+
+	@Test
+	void acquireLeaseWhenInsertConflicts() {
+		final var date = LocalDate.now();
+		when(batchLeaseRepositoryMock.saveAndFlush(any(BatchLeaseEntity.class))).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+		assertThat(dbIntegration.acquireLease("2281", "Faktura-pdf", date, "someOwner", Duration.ofMinutes(5))).isFalse();
+	}
+
+	@Test
+	void renewLease() {
+		final var date = LocalDate.now();
+		when(batchLeaseRepositoryMock.renew(eq("2281"), eq("Faktura-pdf"), eq(date), eq("someOwner"), any(LocalDateTime.class))).thenReturn(1, 0);
+
+		assertThat(dbIntegration.renewLease("2281", "Faktura-pdf", date, "someOwner", Duration.ofMinutes(5))).isTrue();
+		assertThat(dbIntegration.renewLease("2281", "Faktura-pdf", date, "someOwner", Duration.ofMinutes(5))).isFalse();
+	}
+
+	@Test
+	void completeLease() {
+		final var date = LocalDate.now();
+		when(batchLeaseRepositoryMock.complete(eq("2281"), eq("Faktura-pdf"), eq(date), eq("someOwner"), any(LocalDateTime.class))).thenReturn(1, 0);
+
+		assertThat(dbIntegration.completeLease("2281", "Faktura-pdf", date, "someOwner")).isTrue();
+		assertThat(dbIntegration.completeLease("2281", "Faktura-pdf", date, "someOwner")).isFalse();
+	}
+
+	@Test
+	void releaseLease() {
+		final var date = LocalDate.now();
+		when(batchLeaseRepositoryMock.release("2281", "Faktura-pdf", date, "someOwner")).thenReturn(1);
+
+		dbIntegration.releaseLease("2281", "Faktura-pdf", date, "someOwner");
+
+		verify(batchLeaseRepositoryMock).release("2281", "Faktura-pdf", date, "someOwner");
+		verifyNoMoreInteractions(batchLeaseRepositoryMock);
+	}
+
+	@Test
+	void releaseLeaseWhenCompleted() {
+		final var date = LocalDate.now();
+
+		dbIntegration.releaseLease("2281", "Faktura-pdf", date, "someOwner");
+
+		// The completed lease is kept as a marker, and only let to expire
+		verify(batchLeaseRepositoryMock).release("2281", "Faktura-pdf", date, "someOwner");
+		verify(batchLeaseRepositoryMock).expire(eq("2281"), eq("Faktura-pdf"), eq(date), eq("someOwner"), any(LocalDateTime.class));
+	}
+
+	@Test
+	void isLeaseCompleted() {
+		final var date = LocalDate.now();
+		when(batchLeaseRepositoryMock.existsByMunicipalityIdAndBatchPrefixAndDateAndCompletedAtIsNotNull("2281", "Faktura-pdf", date)).thenReturn(true);
+
+		assertThat(dbIntegration.isLeaseCompleted("2281", "Faktura-pdf", date)).isTrue();
+	}
+
+	@Test
+	void getExpiredLeases() {
+		final var leases = List.of(new BatchLeaseEntity().withId(1));
+		when(batchLeaseRepositoryMock.findByCompletedAtIsNullAndExpiresAtBefore(any(LocalDateTime.class))).thenReturn(leases);
+
+		assertThat(dbIntegration.getExpiredLeases()).isEqualTo(leases);
+	}
+
+	@Test
+	void enqueueSend() {
+		final var itemSend = new ItemSendEntity().withItemId(123);
+
+		dbIntegration.enqueueSend(itemSend);
+
+		verify(itemSendQueueRepositoryMock).save(itemSend);
+		assertThat(itemSend.getStatus()).isEqualTo(PENDING);
+		assertThat(itemSend.getCreatedAt()).isNotNull();
+	}
+
+	@Test
+	void enqueueSendWhenAlreadyQueued() {
+		final var itemSend = new ItemSendEntity().withItemId(123);
+		when(itemSendQueueRepositoryMock.findByItemId(123)).thenReturn(Optional.of(new ItemSendEntity().withId(1)));
+
+		dbIntegration.enqueueSend(itemSend);
+
+		verify(itemSendQueueRepositoryMock, never()).save(any());
+	}
+
+	@Test
+	void claimSends() {
+		final var itemSends = List.of(new ItemSendEntity().withId(1), new ItemSendEntity().withId(2));
+		when(itemSendQueueRepositoryMock.findClaimable(eq(PENDING), eq(CLAIMED), any(LocalDateTime.class), eq(Limit.of(10)))).thenReturn(itemSends);
+		when(itemSendQueueRepositoryMock.saveAll(itemSends)).thenReturn(itemSends);
+
+		final var result = dbIntegration.claimSends("someOwner", 10, Duration.ofMinutes(5));
+
+		assertThat(result).hasSize(2).allSatisfy(itemSend -> {
+			assertThat(itemSend.getStatus()).isEqualTo(CLAIMED);
+			assertThat(itemSend.getClaimedBy()).isEqualTo("someOwner");
+			assertThat(itemSend.getClaimedAt()).isNotNull();
+		});
+	}
+
+	@Test
+	void completeSend() {
+		when(itemSendQueueRepositoryMock.complete(1, "someOwner", SENT, CLAIMED, COMPLETED)).thenReturn(1);
+
+		assertThat(dbIntegration.completeSend(1, "someOwner", SENT)).isTrue();
+	}
+
+	@Test
+	void completeSendWhenClaimIsLost() {
+		when(itemSendQueueRepositoryMock.complete(1, "someOwner", SENT, CLAIMED, COMPLETED)).thenReturn(0);
+
+		assertThat(dbIntegration.completeSend(1, "someOwner", SENT)).isFalse();
+	}
+
+	@Test
+	void countIncompleteSends() {
+		when(itemSendQueueRepositoryMock.countByBatchIdAndStatusNot(123, COMPLETED)).thenReturn(2L);
+
+		assertThat(dbIntegration.countIncompleteSends(123)).isEqualTo(2L);
+	}
+
+	@Test
+	void getCompletedSends() {
+		final var itemSends = List.of(new ItemSendEntity().withId(1));
+		when(itemSendQueueRepositoryMock.findByBatchIdAndStatus(123, COMPLETED)).thenReturn(itemSends);
+
+		assertThat(dbIntegration.getCompletedSends(123)).isEqualTo(itemSends);
+	}
+
+	@Test
+	void deleteSends() {
+		dbIntegration.deleteSends(123);
+
+		verify(itemSendQueueRepositoryMock).deleteByBatchId(123);
+	}
+
+	@Test
+	void persistNotification() {
+		final var notification = new NotificationEntity().withType(NotificationType.SLACK);
+		when(notificationOutboxRepositoryMock.save(notification)).thenReturn(notification.withId(1));
+
+		assertThat(dbIntegration.persistNotification(notification)).isSameAs(notification);
+
+		verify(notificationOutboxRepositoryMock).save(notification);
+		verifyNoMoreInteractions(notificationOutboxRepositoryMock);
+	}
+
+	@Test
+	void claimNotifications() {
+		final var notifications = List.of(new NotificationEntity().withId(1), new NotificationEntity().withId(2));
+		when(notificationOutboxRepositoryMock.findDue(eq(NotificationStatus.PENDING), any(LocalDateTime.class), eq(Limit.of(20)))).thenReturn(notifications);
+		when(notificationOutboxRepositoryMock.saveAll(notifications)).thenReturn(notifications);
+
+		final var result = dbIntegration.claimNotifications(20, Duration.ofMinutes(5));
+
+		assertThat(result).hasSize(2).allSatisfy(notification -> assertThat(notification.getNextAttemptAt()).isAfter(LocalDateTime.now().plusMinutes(4)));
+	}
+
+	@Test
+	void isInvoiceSent() {
+		when(sentInvoiceRepositoryMock.existsByMunicipalityIdAndInvoiceNumberAndPaymentReference("2281", "123456", "7890")).thenReturn(true);
+
+		assertThat(dbIntegration.isInvoiceSent("2281", "123456", "7890")).isTrue();
+
+		verify(sentInvoiceRepositoryMock).existsByMunicipalityIdAndInvoiceNumberAndPaymentReference("2281", "123456", "7890");
+	}
+
+	@Test
+	void getSentInvoicesAfter() {
+		final var sentInvoices = List.of(new SentInvoiceEntity().withId(11), new SentInvoiceEntity().withId(12));
+		when(sentInvoiceRepositoryMock.findByIdGreaterThanOrderById(10, Limit.of(100))).thenReturn(sentInvoices);
+
+		assertThat(dbIntegration.getSentInvoicesAfter(10, 100)).isEqualTo(sentInvoices);
+	}
+
+	@Test
+	void recordSentInvoice() {
+		final var sentInvoice = new SentInvoiceEntity().withInvoiceNumber("123456");
+
+		assertThat(dbIntegration.recordSentInvoice(sentInvoice)).isTrue();
+
+		verify(sentInvoiceRepositoryMock).saveAndFlush(sentInvoice);
+	}
+
+	@Test
+	void recordSentInvoiceWhenAlreadyRecorded() {
+		final var sentInvoice = new SentInvoiceEntity().withInvoiceNumber("123456");
+		when(sentInvoiceRepositoryMock.saveAndFlush(sentInvoice)).thenThrow(new DataIntegrityViolationException("Duplicate entry"));
+
+		assertThat(dbIntegration.recordSentInvoice(sentInvoice)).isFalse();
+	}
 }
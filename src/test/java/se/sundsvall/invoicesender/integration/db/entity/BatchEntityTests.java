@@ -33,6 +33,7 @@ class BatchEntityTests {
 			.withId(12345)
 			.withBasename("someBasename")
 			.withMunicipalityId("2281")
+			.withBatchPrefix("Faktura-pdf")
 			.withStartedAt(now)
 			.withCompletedAt(now.plusSeconds(30L))
 			.withItems(List.of(new ItemEntity()))
@@ -42,6 +43,7 @@ class BatchEntityTests {
 			.withProcessingEnabled(true)
 			.withCompleted(true)
 			.withDate(date)
+			.withFileSize(1024L)
 			.withData(new byte[] {
 				1, 2, 3
 			})
@@ -52,6 +54,7 @@ class BatchEntityTests {
 		assertThat(batchEntity.getId()).isEqualTo(12345);
 		assertThat(batchEntity.getBasename()).isEqualTo("someBasename");
 		assertThat(batchEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(batchEntity.getBatchPrefix()).isEqualTo("Faktura-pdf");
 		assertThat(batchEntity.getStartedAt()).isEqualTo(now);
 		assertThat(batchEntity.getCompletedAt()).isEqualTo(now.plusSeconds(30L));
 		assertThat(batchEntity.getItems()).hasSize(1);
@@ -61,6 +64,7 @@ class BatchEntityTests {
 		assertThat(batchEntity.isProcessingEnabled()).isTrue();
 		assertThat(batchEntity.isCompleted()).isTrue();
 		assertThat(batchEntity.getDate()).isEqualTo(date);
+		assertThat(batchEntity.getFileSize()).isEqualTo(1024L);
 		assertThat(batchEntity.getData()).containsExactly(1, 2, 3);
 		assertThat(batchEntity.getArchivePath()).isEqualTo("someArchivePath");
 		assertThat(batchEntity.getLocalPath()).isEqualTo("someLocalPath");
@@ -78,6 +82,7 @@ class BatchEntityTests {
 		batchEntity.setId(12345);
 		batchEntity.setBasename("someBasename");
 		batchEntity.setMunicipalityId("2281");
+		batchEntity.setBatchPrefix("Faktura-pdf");
 		batchEntity.setStartedAt(now);
 		batchEntity.setCompletedAt(now.plusSeconds(30L));
 		batchEntity.setItems(List.of(new ItemEntity()));
@@ -87,6 +92,7 @@ class BatchEntityTests {
 		batchEntity.setDate(date);
 		batchEntity.setProcessingEnabled(true);
 		batchEntity.setCompleted(true);
+		batchEntity.setFileSize(1024L);
 		batchEntity.setData(new byte[] {
 			1, 2, 3
 		});
@@ -97,6 +103,7 @@ class BatchEntityTests {
 		assertThat(batchEntity.getId()).isEqualTo(12345);
 		assertThat(batchEntity.getBasename()).isEqualTo("someBasename");
 		assertThat(batchEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(batchEntity.getBatchPrefix()).isEqualTo("Faktura-pdf");
 		assertThat(batchEntity.getStartedAt()).isEqualTo(now);
 		assertThat(batchEntity.getCompletedAt()).isEqualTo(now.plusSeconds(30L));
 		assertThat(batchEntity.getItems()).hasSize(1);
@@ -106,6 +113,7 @@ class BatchEntityTests {
 		assertThat(batchEntity.getDate()).isEqualTo(date);
 		assertThat(batchEntity.isProcessingEnabled()).isTrue();
 		assertThat(batchEntity.isCompleted()).isTrue();
+		assertThat(batchEntity.getFileSize()).isEqualTo(1024L);
 		assertThat(batchEntity.getData()).containsExactly(1, 2, 3);
 		assertThat(batchEntity.getArchivePath()).isEqualTo("someArchivePath");
 		assertThat(batchEntity.getLocalPath()).isEqualTo("someLocalPath");
@@ -0,0 +1,104 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.ArgumentsProvider;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchLeaseEntityTests {
+
+	@Test
+	void testNoDirtOnCreatedBean() {
+		assertThat(new BatchLeaseEntity()).hasAllNullFieldsOrProperties();
+	}
+
+	@Test
+	void testBuilderPattern() {
+		var date = LocalDate.now();
+		var acquiredAt = LocalDateTime.now();
+		var expiresAt = acquiredAt.plusMinutes(5);
+		var completedAt = acquiredAt.plusMinutes(2);
+
+		var batchLeaseEntity = new BatchLeaseEntity()
+			.withId(12345)
+			.withMunicipalityId("2281")
+			.withBatchPrefix("Faktura-pdf")
+			.withDate(date)
+			.withOwner("someOwner")
+			.withAcquiredAt(acquiredAt)
+			.withExpiresAt(expiresAt)
+			.withCompletedAt(completedAt);
+
+		assertThat(batchLeaseEntity.getId()).isEqualTo(12345);
+		assertThat(batchLeaseEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(batchLeaseEntity.getBatchPrefix()).isEqualTo("Faktura-pdf");
+		assertThat(batchLeaseEntity.getDate()).isEqualTo(date);
+		assertThat(batchLeaseEntity.getOwner()).isEqualTo("someOwner");
+		assertThat(batchLeaseEntity.getAcquiredAt()).isEqualTo(acquiredAt);
+		assertThat(batchLeaseEntity.getExpiresAt()).isEqualTo(expiresAt);
+		assertThat(batchLeaseEntity.getCompletedAt()).isEqualTo(completedAt);
+	}
+
+	@Test
+	void testSettersAndGetters() {
+		var date = LocalDate.now();
+		var acquiredAt = LocalDateTime.now();
+		var expiresAt = acquiredAt.plusMinutes(5);
+		var completedAt = acquiredAt.plusMinutes(2);
+
+		var batchLeaseEntity = new BatchLeaseEntity();
+		batchLeaseEntity.setId(12345);
+		batchLeaseEntity.setMunicipalityId("2281");
+		batchLeaseEntity.setBatchPrefix("Faktura-pdf");
+		batchLeaseEntity.setDate(date);
+		batchLeaseEntity.setOwner("someOwner");
+		batchLeaseEntity.setAcquiredAt(acquiredAt);
+		batchLeaseEntity.setExpiresAt(expiresAt);
+		batchLeaseEntity.setCompletedAt(completedAt);
+
+		assertThat(batchLeaseEntity.getId()).isEqualTo(12345);
+		assertThat(batchLeaseEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(batchLeaseEntity.getBatchPrefix()).isEqualTo("Faktura-pdf");
+		assertThat(batchLeaseEntity.getDate()).isEqualTo(date);
+		assertThat(batchLeaseEntity.getOwner()).isEqualTo("someOwner");
+		assertThat(batchLeaseEntity.getAcquiredAt()).isEqualTo(acquiredAt);
+		assertThat(batchLeaseEntity.getExpiresAt()).isEqualTo(expiresAt);
+		assertThat(batchLeaseEntity.getCompletedAt()).isEqualTo(completedAt);
+	}
+
+	@ParameterizedTest
+	@ArgumentsSource(EqualsArgumentsProvider.class)
+	void testEquals(final Object first, final Object second, final boolean shouldEqual) {
+		if (shouldEqual) {
+			assertThat(first).isEqualTo(second);
+		} else {
+			assertThat(first).isNotEqualTo(second);
+		}
+	}
+
+	@Test
+	void testHashCode() {
+		assertThat(new BatchLeaseEntity()).hasSameHashCodeAs(BatchLeaseEntity.class);
+	}
+
+	private static class EqualsArgumentsProvider implements ArgumentsProvider {
+
+		@Override
+		public Stream<? extends Arguments> provideArguments(final ExtensionContext context) {
+
+			return Stream.of(
+				Arguments.of(new BatchLeaseEntity(), new BatchLeaseEntity(), false),
+				Arguments.of(new BatchLeaseEntity().withId(123), new BatchLeaseEntity().withId(123), true),
+				Arguments.of(new BatchLeaseEntity().withOwner("owner1"), new BatchLeaseEntity().withOwner("owner2"), false),
+				Arguments.of(new BatchLeaseEntity(), "someString", false),
+				Arguments.of(new BatchLeaseEntity().withId(321).withOwner("owner1"), new BatchLeaseEntity().withId(321).withOwner("owner2"), true));
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import java.time.LocalDate;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.ArgumentsProvider;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+
+class BatchStatisticsEntityTests {
+
+	@Test
+	void testNoDirtOnCreatedBean() {
+		assertThat(new BatchStatisticsEntity()).hasAllNullFieldsOrProperties();
+	}
+
+	@Test
+	void testBuilderPattern() {
+		var date = LocalDate.now();
+
+		var batchStatisticsEntity = new BatchStatisticsEntity()
+			.withId(1)
+			.withBatchId(2)
+			.withDate(date)
+			.withMunicipalityId("2281")
+			.withBatchPrefix("Faktura-pdf")
+			.withStatus(SENT)
+			.withItemCount(3L);
+
+		assertThat(batchStatisticsEntity.getId()).isEqualTo(1);
+		assertThat(batchStatisticsEntity.getBatchId()).isEqualTo(2);
+		assertThat(batchStatisticsEntity.getDate()).isEqualTo(date);
+		assertThat(batchStatisticsEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(batchStatisticsEntity.getBatchPrefix()).isEqualTo("Faktura-pdf");
+		assertThat(batchStatisticsEntity.getStatus()).isEqualTo(SENT);
+		assertThat(batchStatisticsEntity.getItemCount()).isEqualTo(3L);
+	}
+
+	@Test
+	void testSettersAndGetters() {
+		var date = LocalDate.now();
+
+		var batchStatisticsEntity = new BatchStatisticsEntity();
+		batchStatisticsEntity.setId(1);
+		batchStatisticsEntity.setBatchId(2);
+		batchStatisticsEntity.setDate(date);
+		batchStatisticsEntity.setMunicipalityId("2281");
+		batchStatisticsEntity.setBatchPrefix("Faktura-pdf");
+		batchStatisticsEntity.setStatus(SENT);
+		batchStatisticsEntity.setItemCount(3L);
+
+		assertThat(batchStatisticsEntity.getId()).isEqualTo(1);
+		assertThat(batchStatisticsEntity.getBatchId()).isEqualTo(2);
+		assertThat(batchStatisticsEntity.getDate()).isEqualTo(date);
+		assertThat(batchStatisticsEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(batchStatisticsEntity.getBatchPrefix()).isEqualTo("Faktura-pdf");
+		assertThat(batchStatisticsEntity.getStatus()).isEqualTo(SENT);
+		assertThat(batchStatisticsEntity.getItemCount()).isEqualTo(3L);
+	}
+
+	@ParameterizedTest
+	@ArgumentsSource(EqualsArgumentsProvider.class)
+	void testEquals(final Object first, final Object second, final boolean shouldEqual) {
+		if (shouldEqual) {
+			assertThat(first).isEqualTo(second);
+		} else {
+			assertThat(first).isNotEqualTo(second);
+		}
+	}
+
+	@Test
+	void testHashCode() {
+		assertThat(new BatchStatisticsEntity()).hasSameHashCodeAs(BatchStatisticsEntity.class);
+	}
+
+	private static class EqualsArgumentsProvider implements ArgumentsProvider {
+
+		@Override
+		public Stream<? extends Arguments> provideArguments(final ExtensionContext context) {
+
+			return Stream.of(
+				Arguments.of(new BatchStatisticsEntity(), new BatchStatisticsEntity(), false),
+				Arguments.of(new BatchStatisticsEntity().withId(123), new BatchStatisticsEntity().withId(123), true),
+				Arguments.of(new BatchStatisticsEntity().withBatchId(1), new BatchStatisticsEntity().withBatchId(2), false),
+				Arguments.of(new BatchStatisticsEntity(), "someString", false),
+				Arguments.of(new BatchStatisticsEntity().withId(321).withBatchId(1), new BatchStatisticsEntity().withId(321).withBatchId(2), true));
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package se.sundsvall.invoicesender.integration.db.entity;
 
+import java.math.BigDecimal;
+import java.time.LocalDate;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtensionContext;
@@ -7,6 +9,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.ArgumentsProvider;
 import org.junit.jupiter.params.provider.ArgumentsSource;
+import org.junit.jupiter.params.provider.CsvSource;
 import se.sundsvall.invoicesender.service.model.Metadata;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -31,6 +34,7 @@ class ItemEntityTests {
 			.withType(INVOICE)
 			.withMetadata(metadata)
 			.withRecipientLegalId("someRecipientLegalId")
+			.withRecipientLegalIdHash("someRecipientLegalIdHash")
 			.withRecipientPartyId("someRecipientPartyId");
 
 		assertThat(itemEntity.getId()).isEqualTo(12345);
@@ -39,6 +43,7 @@ class ItemEntityTests {
 		assertThat(itemEntity.getType()).isEqualTo(INVOICE);
 		assertThat(itemEntity.getMetadata()).isEqualTo(metadata);
 		assertThat(itemEntity.getRecipientLegalId()).isEqualTo("someRecipientLegalId");
+		assertThat(itemEntity.getRecipientLegalIdHash()).isEqualTo("someRecipientLegalIdHash");
 		assertThat(itemEntity.getRecipientPartyId()).isEqualTo("someRecipientPartyId");
 	}
 
@@ -52,6 +57,7 @@ class ItemEntityTests {
 		itemEntity.setStatus(NOT_SENT);
 		itemEntity.setType(INVOICE);
 		itemEntity.setRecipientLegalId("someRecipientLegalId");
+		itemEntity.setRecipientLegalIdHash("someRecipientLegalIdHash");
 		itemEntity.setRecipientPartyId("someRecipientPartyId");
 		itemEntity.setMetadata(metadata);
 
@@ -61,9 +67,53 @@ class ItemEntityTests {
 		assertThat(itemEntity.getType()).isEqualTo(INVOICE);
 		assertThat(itemEntity.getMetadata()).isEqualTo(metadata);
 		assertThat(itemEntity.getRecipientLegalId()).isEqualTo("someRecipientLegalId");
+		assertThat(itemEntity.getRecipientLegalIdHash()).isEqualTo("someRecipientLegalIdHash");
 		assertThat(itemEntity.getRecipientPartyId()).isEqualTo("someRecipientPartyId");
 	}
 
+	@Test
+	void testDerivedFields() {
+		var itemEntity = new ItemEntity()
+			.withMetadata(new Metadata()
+				.withInvoiceNumber("someInvoiceNumber")
+				.withDueDate("2021-01-31")
+				.withTotalAmount("123.45"));
+
+		assertThat(itemEntity.getInvoiceNumber()).isEqualTo("someInvoiceNumber");
+		assertThat(itemEntity.getDueDate()).isEqualTo(LocalDate.of(2021, 1, 31));
+		assertThat(itemEntity.getTotalAmount()).isEqualByComparingTo("123.45");
+
+		itemEntity.setMetadata(null);
+
+		assertThat(itemEntity.getInvoiceNumber()).isNull();
+		assertThat(itemEntity.getDueDate()).isNull();
+		assertThat(itemEntity.getTotalAmount()).isNull();
+	}
+
+	@ParameterizedTest
+	@CsvSource(value = {
+		"2021-01-31, 2021-01-31",
+		"' 2021-01-31 ', 2021-01-31",
+		"20210131, NULL",
+		"2021-02-30, NULL",
+		"NULL, NULL"
+	}, nullValues = "NULL")
+	void testParseDueDate(final String dueDate, final LocalDate expected) {
+		assertThat(ItemEntity.parseDueDate(dueDate)).isEqualTo(expected);
+	}
+
+	@ParameterizedTest
+	@CsvSource(value = {
+		"123.45, 123.45",
+		"' 100 ', 100",
+		"'123,45', NULL",
+		"abc, NULL",
+		"NULL, NULL"
+	}, nullValues = "NULL")
+	void testParseTotalAmount(final String totalAmount, final BigDecimal expected) {
+		assertThat(ItemEntity.parseTotalAmount(totalAmount)).isEqualTo(expected);
+	}
+
 	@ParameterizedTest
 	@ArgumentsSource(EqualsArgumentsProvider.class)
 	void testEquals(final Object first, final Object second, final boolean shouldEqual) {
@@ -0,0 +1,129 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.ArgumentsProvider;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+import se.sundsvall.invoicesender.service.model.Metadata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.QueuedSendStatus.COMPLETED;
+
+class ItemSendEntityTests {
+
+	@Test
+	void testNoDirtOnCreatedBean() {
+		assertThat(new ItemSendEntity()).hasAllNullFieldsOrProperties();
+	}
+
+	@Test
+	void testBuilderPattern() {
+		var metadata = new Metadata().withInvoiceNumber("someInvoiceNumber");
+		var content = new byte[] {
+			1, 2, 3
+		};
+		var claimedAt = LocalDateTime.now();
+		var createdAt = claimedAt.minusMinutes(1);
+
+		var itemSendEntity = new ItemSendEntity()
+			.withId(1)
+			.withBatchId(2)
+			.withItemId(3)
+			.withMunicipalityId("2281")
+			.withFilename("someFilename")
+			.withRecipientPartyId("somePartyId")
+			.withMetadata(metadata)
+			.withContent(content)
+			.withStatus(COMPLETED)
+			.withResult(SENT)
+			.withClaimedBy("someOwner")
+			.withClaimedAt(claimedAt)
+			.withCreatedAt(createdAt);
+
+		assertThat(itemSendEntity.getId()).isEqualTo(1);
+		assertThat(itemSendEntity.getBatchId()).isEqualTo(2);
+		assertThat(itemSendEntity.getItemId()).isEqualTo(3);
+		assertThat(itemSendEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(itemSendEntity.getFilename()).isEqualTo("someFilename");
+		assertThat(itemSendEntity.getRecipientPartyId()).isEqualTo("somePartyId");
+		assertThat(itemSendEntity.getMetadata()).isEqualTo(metadata);
+		assertThat(itemSendEntity.getContent()).isEqualTo(content);
+		assertThat(itemSendEntity.getStatus()).isEqualTo(COMPLETED);
+		assertThat(itemSendEntity.getResult()).isEqualTo(SENT);
+		assertThat(itemSendEntity.getClaimedBy()).isEqualTo("someOwner");
+		assertThat(itemSendEntity.getClaimedAt()).isEqualTo(claimedAt);
+		assertThat(itemSendEntity.getCreatedAt()).isEqualTo(createdAt);
+	}
+
+	@Test
+	void testSettersAndGetters() {
+		var metadata = new Metadata().withInvoiceNumber("someInvoiceNumber");
+		var content = new byte[] {
+			1, 2, 3
+		};
+		var claimedAt = LocalDateTime.now();
+		var createdAt = claimedAt.minusMinutes(1);
+
+		var itemSendEntity = new ItemSendEntity();
+		itemSendEntity.setId(1);
+		itemSendEntity.setBatchId(2);
+		itemSendEntity.setItemId(3);
+		itemSendEntity.setMunicipalityId("2281");
+		itemSendEntity.setFilename("someFilename");
+		itemSendEntity.setRecipientPartyId("somePartyId");
+		itemSendEntity.setMetadata(metadata);
+		itemSendEntity.setContent(content);
+		itemSendEntity.setStatus(COMPLETED);
+		itemSendEntity.setResult(SENT);
+		itemSendEntity.setClaimedBy("someOwner");
+		itemSendEntity.setClaimedAt(claimedAt);
+		itemSendEntity.setCreatedAt(createdAt);
+
+		assertThat(itemSendEntity.getId()).isEqualTo(1);
+		assertThat(itemSendEntity.getBatchId()).isEqualTo(2);
+		assertThat(itemSendEntity.getItemId()).isEqualTo(3);
+		assertThat(itemSendEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(itemSendEntity.getFilename()).isEqualTo("someFilename");
+		assertThat(itemSendEntity.getRecipientPartyId()).isEqualTo("somePartyId");
+		assertThat(itemSendEntity.getMetadata()).isEqualTo(metadata);
+		assertThat(itemSendEntity.getContent()).isEqualTo(content);
+		assertThat(itemSendEntity.getStatus()).isEqualTo(COMPLETED);
+		assertThat(itemSendEntity.getResult()).isEqualTo(SENT);
+		assertThat(itemSendEntity.getClaimedBy()).isEqualTo("someOwner");
+		assertThat(itemSendEntity.getClaimedAt()).isEqualTo(claimedAt);
+		assertThat(itemSendEntity.getCreatedAt()).isEqualTo(createdAt);
+	}
+	@ParameterizedTest
+	@ArgumentsSource(EqualsArgumentsProvider.class)
+	void testEquals(final Object first, final Object second, final boolean shouldEqual) {
+		if (shouldEqual) {
+			assertThat(first).isEqualTo(second);
+		} else {
+			assertThat(first).isNotEqualTo(second);
+		}
+	}
+
+	@Test
+	void testHashCode() {
+		assertThat(new ItemSendEntity()).hasSameHashCodeAs(ItemSendEntity.class);
+	}
+
+	private static class EqualsArgumentsProvider implements ArgumentsProvider {
+
+		@Override
+		public Stream<? extends Arguments> provideArguments(final ExtensionContext context) {
+
+			return Stream.of(
+				Arguments.of(new ItemSendEntity(), new ItemSendEntity(), false),
+				Arguments.of(new ItemSendEntity().withId(123), new ItemSendEntity().withId(123), true),
+				Arguments.of(new ItemSendEntity().withFilename("fileName1"), new ItemSendEntity().withFilename("fileName2"), false),
+				Arguments.of(new ItemSendEntity(), "someString", false),
+				Arguments.of(new ItemSendEntity().withId(321).withFilename("fileName1"), new ItemSendEntity().withId(321).withFilename("fileName2"), true));
+		}
+	}
+}
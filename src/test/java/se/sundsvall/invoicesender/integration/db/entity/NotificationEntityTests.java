@@ -0,0 +1,124 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.ArgumentsProvider;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationType.STATUS_REPORT;
+
+class NotificationEntityTests {
+
+	@Test
+	void testNoDirtOnCreatedBean() {
+		assertThat(new NotificationEntity()).hasAllNullFieldsOrPropertiesExcept("attempts");
+		assertThat(new NotificationEntity().getAttempts()).isZero();
+	}
+
+	@Test
+	void testBuilderPattern() {
+		var date = LocalDate.now();
+		var createdAt = LocalDateTime.now();
+		var nextAttemptAt = createdAt.plusMinutes(1);
+		var sentAt = createdAt.plusMinutes(2);
+
+		var notificationEntity = new NotificationEntity()
+			.withId(1)
+			.withMunicipalityId("2281")
+			.withType(STATUS_REPORT)
+			.withDate(date)
+			.withMessage("someMessage")
+			.withStatus(SENT)
+			.withAttempts(2)
+			.withNextAttemptAt(nextAttemptAt)
+			.withLastError("someError")
+			.withCreatedAt(createdAt)
+			.withSentAt(sentAt);
+
+		assertThat(notificationEntity.getId()).isEqualTo(1);
+		assertThat(notificationEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(notificationEntity.getType()).isEqualTo(STATUS_REPORT);
+		assertThat(notificationEntity.getDate()).isEqualTo(date);
+		assertThat(notificationEntity.getMessage()).isEqualTo("someMessage");
+		assertThat(notificationEntity.getStatus()).isEqualTo(SENT);
+		assertThat(notificationEntity.getAttempts()).isEqualTo(2);
+		assertThat(notificationEntity.getNextAttemptAt()).isEqualTo(nextAttemptAt);
+		assertThat(notificationEntity.getLastError()).isEqualTo("someError");
+		assertThat(notificationEntity.getCreatedAt()).isEqualTo(createdAt);
+		assertThat(notificationEntity.getSentAt()).isEqualTo(sentAt);
+	}
+
+	@Test
+	void testSettersAndGetters() {
+		var date = LocalDate.now();
+		var createdAt = LocalDateTime.now();
+		var nextAttemptAt = createdAt.plusMinutes(1);
+		var sentAt = createdAt.plusMinutes(2);
+
+		var notificationEntity = new NotificationEntity();
+		notificationEntity.setId(1);
+		notificationEntity.setMunicipalityId("2281");
+		notificationEntity.setType(STATUS_REPORT);
+		notificationEntity.setDate(date);
+		notificationEntity.setMessage("someMessage");
+		notificationEntity.setStatus(SENT);
+		notificationEntity.setAttempts(2);
+		notificationEntity.setNextAttemptAt(nextAttemptAt);
+		notificationEntity.setLastError("someError");
+		notificationEntity.setCreatedAt(createdAt);
+		notificationEntity.setSentAt(sentAt);
+
+		assertThat(notificationEntity.getId()).isEqualTo(1);
+		assertThat(notificationEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(notificationEntity.getType()).isEqualTo(STATUS_REPORT);
+		assertThat(notificationEntity.getDate()).isEqualTo(date);
+		assertThat(notificationEntity.getMessage()).isEqualTo("someMessage");
+		assertThat(notificationEntity.getStatus()).isEqualTo(SENT);
+		assertThat(notificationEntity.getAttempts()).isEqualTo(2);
+		assertThat(notificationEntity.getNextAttemptAt()).isEqualTo(nextAttemptAt);
+		assertThat(notificationEntity.getLastError()).isEqualTo("someError");
+		assertThat(notificationEntity.getCreatedAt()).isEqualTo(createdAt);
+		assertThat(notificationEntity.getSentAt()).isEqualTo(sentAt);
+	}
+
+	@Test
+	void testToStringExcludesMessage() {
+		assertThat(new NotificationEntity().withMessage("someMessage")).asString().doesNotContain("someMessage");
+	}
+
+	@ParameterizedTest
+	@ArgumentsSource(EqualsArgumentsProvider.class)
+	void testEquals(final Object first, final Object second, final boolean shouldEqual) {
+		if (shouldEqual) {
+			assertThat(first).isEqualTo(second);
+		} else {
+			assertThat(first).isNotEqualTo(second);
+		}
+	}
+
+	@Test
+	void testHashCode() {
+		assertThat(new NotificationEntity()).hasSameHashCodeAs(NotificationEntity.class);
+	}
+
+	private static class EqualsArgumentsProvider implements ArgumentsProvider {
+
+		@Override
+		public Stream<? extends Arguments> provideArguments(final ExtensionContext context) {
+
+			return Stream.of(
+				Arguments.of(new NotificationEntity(), new NotificationEntity(), false),
+				Arguments.of(new NotificationEntity().withId(123), new NotificationEntity().withId(123), true),
+				Arguments.of(new NotificationEntity().withMessage("message1"), new NotificationEntity().withMessage("message2"), false),
+				Arguments.of(new NotificationEntity(), "someString", false),
+				Arguments.of(new NotificationEntity().withId(321).withMessage("message1"), new NotificationEntity().withId(321).withMessage("message2"), true));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package se.sundsvall.invoicesender.integration.db.entity;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtensionContext;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.ArgumentsProvider;
+import org.junit.jupiter.params.provider.ArgumentsSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SentInvoiceEntityTests {
+
+	@Test
+	void testNoDirtOnCreatedBean() {
+		assertThat(new SentInvoiceEntity()).hasAllNullFieldsOrProperties();
+	}
+
+	@Test
+	void testBuilderPattern() {
+		var sentAt = LocalDateTime.now();
+
+		var sentInvoiceEntity = new SentInvoiceEntity()
+			.withId(1)
+			.withMunicipalityId("2281")
+			.withInvoiceNumber("123456")
+			.withPaymentReference("7890")
+			.withItemId(2)
+			.withFilename("someFilename.pdf")
+			.withSentAt(sentAt);
+
+		assertThat(sentInvoiceEntity.getId()).isEqualTo(1);
+		assertThat(sentInvoiceEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(sentInvoiceEntity.getInvoiceNumber()).isEqualTo("123456");
+		assertThat(sentInvoiceEntity.getPaymentReference()).isEqualTo("7890");
+		assertThat(sentInvoiceEntity.getItemId()).isEqualTo(2);
+		assertThat(sentInvoiceEntity.getFilename()).isEqualTo("someFilename.pdf");
+		assertThat(sentInvoiceEntity.getSentAt()).isEqualTo(sentAt);
+	}
+
+	@Test
+	void testSettersAndGetters() {
+		var sentAt = LocalDateTime.now();
+
+		var sentInvoiceEntity = new SentInvoiceEntity();
+		sentInvoiceEntity.setId(1);
+		sentInvoiceEntity.setMunicipalityId("2281");
+		sentInvoiceEntity.setInvoiceNumber("123456");
+		sentInvoiceEntity.setPaymentReference("7890");
+		sentInvoiceEntity.setItemId(2);
+		sentInvoiceEntity.setFilename("someFilename.pdf");
+		sentInvoiceEntity.setSentAt(sentAt);
+
+		assertThat(sentInvoiceEntity.getId()).isEqualTo(1);
+		assertThat(sentInvoiceEntity.getMunicipalityId()).isEqualTo("2281");
+		assertThat(sentInvoiceEntity.getInvoiceNumber()).isEqualTo("123456");
+		assertThat(sentInvoiceEntity.getPaymentReference()).isEqualTo("7890");
+		assertThat(sentInvoiceEntity.getItemId()).isEqualTo(2);
+		assertThat(sentInvoiceEntity.getFilename()).isEqualTo("someFilename.pdf");
+		assertThat(sentInvoiceEntity.getSentAt()).isEqualTo(sentAt);
+	}
+
+	@ParameterizedTest
+	@ArgumentsSource(EqualsArgumentsProvider.class)
+	void testEquals(final Object first, final Object second, final boolean shouldEqual) {
+		if (shouldEqual) {
+			assertThat(first).isEqualTo(second);
+		} else {
+			assertThat(first).isNotEqualTo(second);
+		}
+	}
+
+	@Test
+	void testHashCode() {
+		assertThat(new SentInvoiceEntity()).hasSameHashCodeAs(SentInvoiceEntity.class);
+	}
+
+	private static class EqualsArgumentsProvider implements ArgumentsProvider {
+
+		@Override
+		public Stream<? extends Arguments> provideArguments(final ExtensionContext context) {
+
+			return Stream.of(
+				Arguments.of(new SentInvoiceEntity(), new SentInvoiceEntity(), false),
+				Arguments.of(new SentInvoiceEntity().withId(123), new SentInvoiceEntity().withId(123), true),
+				Arguments.of(new SentInvoiceEntity().withInvoiceNumber("123"), new SentInvoiceEntity().withInvoiceNumber("456"), false),
+				Arguments.of(new SentInvoiceEntity(), "someString", false),
+				Arguments.of(new SentInvoiceEntity().withId(321).withInvoiceNumber("123"), new SentInvoiceEntity().withId(321).withInvoiceNumber("456"), true));
+		}
+	}
+}
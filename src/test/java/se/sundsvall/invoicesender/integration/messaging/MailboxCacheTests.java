@@ -0,0 +1,117 @@
+package se.sundsvall.invoicesender.integration.messaging;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MailboxCacheTests {
+
+	private final MutableClock clock = new MutableClock(Instant.parse("2024-01-01T06:00:00Z"));
+
+	@Test
+	void isUnreachableUntilExpired() {
+		final var cache = createMailboxCache(true, 10);
+
+		cache.putUnreachable("somePartyId");
+
+		assertThat(cache.isUnreachable("somePartyId")).isTrue();
+		assertThat(cache.isUnreachable("someOtherPartyId")).isFalse();
+
+		clock.instant = clock.instant.plus(Duration.ofDays(7));
+
+		// Expired recipients are evicted, so that a new mailbox is looked for
+		assertThat(cache.isUnreachable("somePartyId")).isFalse();
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	void remove() {
+		final var cache = createMailboxCache(true, 10);
+
+		cache.putUnreachable("somePartyId");
+		cache.remove("somePartyId");
+
+		assertThat(cache.isUnreachable("somePartyId")).isFalse();
+	}
+
+	@Test
+	void putUnreachableWhenFull() {
+		final var cache = createMailboxCache(true, 2);
+
+		cache.putUnreachable("partyId1");
+		cache.putUnreachable("partyId2");
+		cache.putUnreachable("partyId3");
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.isUnreachable("partyId3")).isFalse();
+
+		// Expired recipients make room for new ones
+		clock.instant = clock.instant.plus(Duration.ofDays(7));
+		cache.putUnreachable("partyId3");
+
+		assertThat(cache.size()).isEqualTo(1);
+		assertThat(cache.isUnreachable("partyId3")).isTrue();
+	}
+
+	@Test
+	void disabled() {
+		final var cache = createMailboxCache(false, 10);
+
+		cache.putUnreachable("somePartyId");
+
+		assertThat(cache.isUnreachable("somePartyId")).isFalse();
+		assertThat(cache.size()).isZero();
+	}
+
+	@Test
+	void nullPartyId() {
+		final var cache = createMailboxCache(true, 10);
+
+		cache.putUnreachable(null);
+		cache.remove(null);
+
+		assertThat(cache.isUnreachable(null)).isFalse();
+		assertThat(cache.size()).isZero();
+	}
+
+	private MailboxCache createMailboxCache(final boolean enabled, final int maxEntries) {
+		final var properties = mock(MessagingIntegrationProperties.class);
+		when(properties.mailboxCache()).thenReturn(new MessagingIntegrationProperties.MailboxCache(enabled, Duration.ofDays(7), maxEntries, null, 100));
+
+		final var cache = new MailboxCache(properties);
+		ReflectionTestUtils.setField(cache, "clock", clock);
+		return cache;
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private Instant instant;
+
+		private MutableClock(final Instant instant) {
+			this.instant = instant;
+		}
+
+		@Override
+		public ZoneOffset getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(final ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
@@ -28,6 +28,23 @@ class MessagingIntegrationPropertiesTest {
 			assertThat(oauth2.clientSecret()).isEqualTo("someClientSecret");
 			assertThat(oauth2.tokenUrl()).isEqualTo("http://something.com/token");
 		});
+		assertThat(properties.concurrencyLimit()).isNotNull().satisfies(concurrencyLimit -> {
+			assertThat(concurrencyLimit.enabled()).isTrue();
+			assertThat(concurrencyLimit.initialLimit()).isEqualTo(10);
+			assertThat(concurrencyLimit.minLimit()).isEqualTo(1);
+			assertThat(concurrencyLimit.maxLimit()).isEqualTo(50);
+			assertThat(concurrencyLimit.backoffRatio()).isEqualTo(0.9);
+			assertThat(concurrencyLimit.latencyTolerance()).isEqualTo(2.0);
+			assertThat(concurrencyLimit.windowSize()).isEqualTo(100);
+			assertThat(concurrencyLimit.maxWait()).isEqualTo(Duration.ofMinutes(1));
+		});
+		assertThat(properties.mailboxCache()).isNotNull().satisfies(mailboxCache -> {
+			assertThat(mailboxCache.enabled()).isTrue();
+			assertThat(mailboxCache.ttl()).isEqualTo(Duration.ofDays(7));
+			assertThat(mailboxCache.maxEntries()).isEqualTo(100000);
+			assertThat(mailboxCache.organizationNumber()).isEqualTo("5561234567");
+			assertThat(mailboxCache.checkChunkSize()).isEqualTo(100);
+		});
 		assertThat(properties.invoice()).isNotNull().satisfies(invoice -> {
 			assertThat(invoice.referencePrefix()).isEqualTo("Faktura #");
 			assertThat(invoice.subject()).isEqualTo("someSubject");
@@ -1,17 +1,20 @@
 package se.sundsvall.invoicesender.integration.messaging;
 
+import feign.RetryableException;
 import generated.se.sundsvall.messaging.DeliveryResult;
 import generated.se.sundsvall.messaging.DigitalInvoiceRequest;
-import generated.se.sundsvall.messaging.EmailRequest;
+import generated.se.sundsvall.messaging.EmailBatchRequest;
+import generated.se.sundsvall.messaging.Mailbox;
 import generated.se.sundsvall.messaging.MessageResult;
 import generated.se.sundsvall.messaging.MessageStatus;
 import generated.se.sundsvall.messaging.SlackRequest;
-import java.io.IOException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.Month;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Stream;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -26,7 +29,6 @@ import org.mockito.Captor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.core.io.ClassPathResource;
 import org.springframework.web.server.ResponseStatusException;
 import org.thymeleaf.ITemplateEngine;
 import org.thymeleaf.context.Context;
@@ -38,20 +40,28 @@ import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
 
 import static java.util.Collections.emptyList;
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.assertThatNoException;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
-import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.springframework.http.HttpStatus.BAD_GATEWAY;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.GATEWAY_TIMEOUT;
 import static org.springframework.http.HttpStatus.INTERNAL_SERVER_ERROR;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
 import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.ALREADY_SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT_RETRYABLE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.OTHER;
@@ -64,6 +74,7 @@ class MessagingIntegrationTests {
 	private static final String MUNICIPALITY_ID = "2281";
 	private static final String HTML_MESSAGE = "someHtmlMessage";
 	private static final String ENCODED_HTML_MESSAGE = "c29tZUh0bWxNZXNzYWdl";
+	private static final byte[] INVOICE_CONTENT = "someInvoiceContent".getBytes();
 
 	@Mock
 	private MessagingIntegrationProperties mockIntegrationProperties;
@@ -77,89 +88,182 @@ class MessagingIntegrationTests {
 	@Mock
 	private MessagingClient mockClient;
 
-	@Mock
-	private EmailRequest mockEmailRequest;
-
 	@Mock
 	private ITemplateEngine mockTemplateEngine;
 
 	@Mock
 	private MessagingMapper messagingMapper;
 
+	@Mock
+	private MailboxCache mailboxCacheMock;
+
 	@Captor
 	private ArgumentCaptor<Context> contextCaptor;
 
 	@InjectMocks
 	private MessagingIntegration messagingIntegration;
 
-	private String testFilePath;
-
-	@BeforeEach
-	void setUp() throws IOException {
-		testFilePath = new ClassPathResource("files").getFile().getAbsolutePath();
-	}
-
 	@Test
-	void testSendInvoiceSuccessful() throws IOException {
+	void testSendInvoiceSuccessful() {
 		final var invoice = createItemEntity(item -> item.setFilename("test.file"));
 
-		when(messagingMapper.toDigitalInvoiceRequest(invoice, testFilePath)).thenReturn(new DigitalInvoiceRequest());
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
 		when(mockClient.sendDigitalInvoice(any(String.class), any(DigitalInvoiceRequest.class)))
 			.thenReturn(new MessageResult()
 				.deliveries(List.of(new DeliveryResult()
 					.status(MessageStatus.SENT))));
 
-		final var result = messagingIntegration.sendInvoice(testFilePath, invoice, MUNICIPALITY_ID);
+		final var result = messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID);
 		assertThat(result).isEqualTo(SENT);
 
 		verify(mockClient).sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class));
 		verifyNoMoreInteractions(mockClient);
+		verifyNoInteractions(mailboxCacheMock);
 	}
 
 	@ParameterizedTest
 	@EnumSource(value = MessageStatus.class, mode = Mode.EXCLUDE, names = "SENT")
-	void testSendInvoiceFailed(MessageStatus resultStatus) throws IOException {
+	void testSendInvoiceFailed(MessageStatus resultStatus) {
 		final var invoice = createItemEntity(item -> item.setFilename("test.file"));
 
-		when(messagingMapper.toDigitalInvoiceRequest(invoice, testFilePath)).thenReturn(new DigitalInvoiceRequest());
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
 		when(mockClient.sendDigitalInvoice(any(String.class), any(DigitalInvoiceRequest.class)))
 			.thenReturn(new MessageResult()
 				.deliveries(List.of(new DeliveryResult()
 					.status(resultStatus))));
 
-		final var result = messagingIntegration.sendInvoice(testFilePath, invoice, MUNICIPALITY_ID);
+		final var result = messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID);
 		assertThat(result).isEqualTo(NOT_SENT);
 
 		verify(mockClient).sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class));
 		verifyNoMoreInteractions(mockClient);
 	}
 
+	@ParameterizedTest
+	@EnumSource(value = MessageStatus.class, names = {
+		"NOT_SENT", "NO_CONTACT_SETTINGS_FOUND", "NO_CONTACT_WANTED"
+	})
+	void testSendInvoiceToRecipientWithoutMailbox(MessageStatus resultStatus) {
+		final var invoice = createItemEntity(item -> item.setRecipientPartyId("somePartyId"));
+
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
+		when(mockClient.sendDigitalInvoice(any(String.class), any(DigitalInvoiceRequest.class)))
+			.thenReturn(new MessageResult()
+				.deliveries(List.of(new DeliveryResult()
+					.status(resultStatus))));
+
+		assertThat(messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID)).isEqualTo(NOT_SENT);
+
+		verify(mailboxCacheMock).putUnreachable("somePartyId");
+	}
+
+	@ParameterizedTest
+	@EnumSource(value = MessageStatus.class, names = {
+		"PENDING", "AWAITING_FEEDBACK", "FAILED"
+	})
+	void testSendInvoiceFailedIsNotCached(MessageStatus resultStatus) {
+		final var invoice = createItemEntity(item -> item.setRecipientPartyId("somePartyId"));
+
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
+		when(mockClient.sendDigitalInvoice(any(String.class), any(DigitalInvoiceRequest.class)))
+			.thenReturn(new MessageResult()
+				.deliveries(List.of(new DeliveryResult()
+					.status(resultStatus))));
+
+		assertThat(messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID)).isEqualTo(NOT_SENT);
+
+		verify(mailboxCacheMock, never()).putUnreachable(any());
+	}
+
+	@Test
+	void testHasUnreachableMailbox() {
+		when(mailboxCacheMock.isUnreachable("somePartyId")).thenReturn(true);
+
+		assertThat(messagingIntegration.hasUnreachableMailbox("somePartyId")).isTrue();
+	}
+
+	@Test
+	void testCheckMailboxes() {
+		when(mockIntegrationProperties.mailboxCache()).thenReturn(new MessagingIntegrationProperties.MailboxCache(true, Duration.ofDays(7), 100, "5561234567", 2));
+		when(mailboxCacheMock.isUnreachable(any())).thenAnswer(invocation -> "partyId3".equals(invocation.getArgument(0)));
+		when(mockClient.getMailboxes(MUNICIPALITY_ID, "5561234567", List.of("partyId1", "partyId2")))
+			.thenReturn(List.of(new Mailbox().partyId("partyId1").reachable(true), new Mailbox().partyId("partyId2").reachable(false)));
+		when(mockClient.getMailboxes(MUNICIPALITY_ID, "5561234567", List.of("partyId4")))
+			.thenReturn(List.of(new Mailbox().partyId("partyId4").reachable(false)));
+
+		// Duplicates and already cached recipients aren't checked
+		messagingIntegration.checkMailboxes(MUNICIPALITY_ID, List.of("partyId1", "partyId2", "partyId1", "partyId3", "partyId4"));
+
+		verify(mailboxCacheMock).putUnreachable("partyId2");
+		verify(mailboxCacheMock).putUnreachable("partyId4");
+		verify(mailboxCacheMock, never()).putUnreachable("partyId1");
+		verifyNoMoreInteractions(mockClient);
+	}
+
+	@Test
+	void testCheckMailboxesWhenExceptionIsThrown() {
+		when(mockIntegrationProperties.mailboxCache()).thenReturn(new MessagingIntegrationProperties.MailboxCache(true, Duration.ofDays(7), 100, "5561234567", 2));
+		when(mockClient.getMailboxes(eq(MUNICIPALITY_ID), eq("5561234567"), any()))
+			.thenThrow(new ResponseStatusException(INTERNAL_SERVER_ERROR));
+
+		messagingIntegration.checkMailboxes(MUNICIPALITY_ID, List.of("partyId1", "partyId2", "partyId3"));
+
+		// The remaining chunks aren't checked once a check has failed
+		verify(mockClient).getMailboxes(MUNICIPALITY_ID, "5561234567", List.of("partyId1", "partyId2"));
+		verify(mailboxCacheMock, never()).putUnreachable(any());
+	}
+
+	@Test
+	void testCheckMailboxesWithoutOrganizationNumber() {
+		when(mockIntegrationProperties.mailboxCache()).thenReturn(new MessagingIntegrationProperties.MailboxCache(true, Duration.ofDays(7), 100, null, 2));
+
+		messagingIntegration.checkMailboxes(MUNICIPALITY_ID, List.of("partyId1"));
+
+		verifyNoInteractions(mockClient, mailboxCacheMock);
+	}
+
+	@Test
+	void testEstimateMailboxCheckCalls() {
+		when(mockIntegrationProperties.mailboxCache()).thenReturn(new MessagingIntegrationProperties.MailboxCache(true, Duration.ofDays(7), 100, "5561234567", 2));
+
+		assertThat(messagingIntegration.estimateMailboxCheckCalls(0)).isZero();
+		assertThat(messagingIntegration.estimateMailboxCheckCalls(4)).isEqualTo(2);
+		assertThat(messagingIntegration.estimateMailboxCheckCalls(5)).isEqualTo(3);
+	}
+
 	@Test
-	void testSendInvoiceWhenExceptionIsThrown() throws IOException {
+	void testEstimateMailboxCheckCallsWithoutOrganizationNumber() {
+		when(mockIntegrationProperties.mailboxCache()).thenReturn(new MessagingIntegrationProperties.MailboxCache(true, Duration.ofDays(7), 100, null, 2));
+
+		assertThat(messagingIntegration.estimateMailboxCheckCalls(5)).isZero();
+	}
+
+	@Test
+	void testSendInvoiceWhenExceptionIsThrown() {
 		final var invoice = createItemEntity(item -> item.setFilename("test.file"));
 
-		when(messagingMapper.toDigitalInvoiceRequest(invoice, testFilePath)).thenReturn(new DigitalInvoiceRequest());
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
 		when(mockClient.sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class)))
 			.thenThrow(new ResponseStatusException(INTERNAL_SERVER_ERROR));
 
-		final var result = messagingIntegration.sendInvoice(testFilePath, invoice, MUNICIPALITY_ID);
+		final var result = messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID);
 
-		assertThat(result).isEqualTo(NOT_SENT);
+		assertThat(result).isEqualTo(NOT_SENT_RETRYABLE);
 
 		verify(mockClient).sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class));
 		verifyNoMoreInteractions(mockClient);
 	}
 
 	@Test
-	void testSendInvoiceWhenCertificateProblemIsThrown() throws IOException {
+	void testSendInvoiceWhenCertificateProblemIsThrown() {
 		final var invoice = createItemEntity(item -> item.setFilename("test.file"));
 		final var certificateException = Problem.valueOf(BAD_GATEWAY, "prefix [invalid_token_response] suffix");
 
-		when(messagingMapper.toDigitalInvoiceRequest(invoice, testFilePath)).thenReturn(new DigitalInvoiceRequest());
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
 		when(mockClient.sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class)))
 			.thenThrow(certificateException);
 
-		final var e = assertThrows(ThrowableProblem.class, () -> messagingIntegration.sendInvoice(testFilePath, invoice, MUNICIPALITY_ID));
+		final var e = assertThrows(ThrowableProblem.class, () -> messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID));
 
 		assertThat(e).isSameAs(certificateException);
 		verify(mockClient).sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class));
@@ -169,14 +273,30 @@ class MessagingIntegrationTests {
 	@ParameterizedTest
 	@ValueSource(strings = "non matching message")
 	@NullSource
-	void testSendInvoiceWhenOtherProblemIsThrown(String message) throws IOException {
+	void testSendInvoiceWhenOtherProblemIsThrown(String message) {
 		final var invoice = createItemEntity(item -> item.setFilename("test.file"));
 
-		when(messagingMapper.toDigitalInvoiceRequest(invoice, testFilePath)).thenReturn(new DigitalInvoiceRequest());
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
 		when(mockClient.sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class)))
 			.thenThrow(Problem.valueOf(BAD_GATEWAY, message));
 
-		final var result = messagingIntegration.sendInvoice(testFilePath, invoice, MUNICIPALITY_ID);
+		final var result = messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID);
+
+		assertThat(result).isEqualTo(NOT_SENT_RETRYABLE);
+
+		verify(mockClient).sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class));
+		verifyNoMoreInteractions(mockClient);
+	}
+
+	@Test
+	void testSendInvoiceWhenPermanentErrorIsThrown() {
+		final var invoice = createItemEntity(item -> item.setFilename("test.file"));
+
+		when(messagingMapper.toDigitalInvoiceRequest(invoice, INVOICE_CONTENT)).thenReturn(new DigitalInvoiceRequest());
+		when(mockClient.sendDigitalInvoice(eq(MUNICIPALITY_ID), any(DigitalInvoiceRequest.class)))
+			.thenThrow(Problem.valueOf(BAD_REQUEST, "Invalid recipient"));
+
+		final var result = messagingIntegration.sendInvoice(INVOICE_CONTENT, invoice, MUNICIPALITY_ID);
 
 		assertThat(result).isEqualTo(NOT_SENT);
 
@@ -184,129 +304,122 @@ class MessagingIntegrationTests {
 		verifyNoMoreInteractions(mockClient);
 	}
 
+	@ParameterizedTest
+	@MethodSource("isTransientArgumentProvider")
+	void testIsTransient(final Exception exception, final boolean expectedResult) {
+		assertThat(MessagingIntegration.isTransient(exception)).isEqualTo(expectedResult);
+	}
+
+	private static Stream<Arguments> isTransientArgumentProvider() {
+		return Stream.of(
+			Arguments.of(mock(RetryableException.class), true),
+			Arguments.of(mock(CallNotPermittedException.class), true),
+			Arguments.of(new RejectedExecutionException("Concurrency limit reached"), true),
+			Arguments.of(Problem.valueOf(BAD_GATEWAY, "Bad gateway"), true),
+			Arguments.of(Problem.valueOf(SERVICE_UNAVAILABLE, "Service unavailable"), true),
+			Arguments.of(Problem.valueOf(TOO_MANY_REQUESTS, "Too many requests"), true),
+			Arguments.of(new ResponseStatusException(GATEWAY_TIMEOUT), true),
+			Arguments.of(Problem.valueOf(BAD_REQUEST, "Bad request"), false),
+			Arguments.of(new ResponseStatusException(NOT_FOUND), false),
+			Arguments.of(new IllegalArgumentException("Invalid content"), false));
+	}
+
 	@Test
 	void testSendErrorReport() {
-		final var batchName = "batchName";
 		final var date = LocalDate.of(2025, Month.FEBRUARY, 28);
-		final var message = "message";
-		final var recipientEmailAddress = "Recipeint@test.se";
-		final var recipientEmailAddresses = List.of(recipientEmailAddress);
+		final var emailBatchRequest = new EmailBatchRequest();
 
 		when(mockIntegrationProperties.errorReport()).thenReturn(mockErrorReportProperties);
-		when(mockErrorReportProperties.recipientEmailAddresses()).thenReturn(recipientEmailAddresses);
-		when(mockTemplateEngine.process(eq(ERROR_TEMPLATE_NAME), any(Context.class))).thenReturn(HTML_MESSAGE);
-		when(messagingMapper.toErrorEmailRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(mockEmailRequest);
+		when(mockErrorReportProperties.recipientEmailAddresses()).thenReturn(List.of("Recipient@test.se", "Recipient2@test.se"));
+		when(messagingMapper.toErrorEmailBatchRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(emailBatchRequest);
 
-		messagingIntegration.sendErrorReport(date, MUNICIPALITY_ID, batchName, message);
+		messagingIntegration.sendErrorReport(MUNICIPALITY_ID, date, ENCODED_HTML_MESSAGE);
 
-		verify(mockEmailRequest).setEmailAddress(recipientEmailAddress);
-		verify(messagingMapper).toErrorEmailRequest(ENCODED_HTML_MESSAGE, date);
-		verify(mockClient).sendEmail(MUNICIPALITY_ID, mockEmailRequest);
-		verify(mockTemplateEngine).process(eq(ERROR_TEMPLATE_NAME), any(Context.class));
-		verifyNoMoreInteractions(mockClient, mockTemplateEngine);
+		verify(messagingMapper).toErrorEmailBatchRequest(ENCODED_HTML_MESSAGE, date);
+		verify(mockClient).sendEmailBatch(MUNICIPALITY_ID, emailBatchRequest);
+		verifyNoMoreInteractions(mockClient);
 	}
 
-	@ParameterizedTest
-	@MethodSource("sendReportArgumentProvider")
-	void testSendErrorReportWhenExcpetionIsThrown(List<String> recipientEmailAddresses, int expectedNumberOfCalls) {
-		final var batchName = "batchName";
+	@Test
+	void testSendErrorReportWhenExceptionIsThrown() {
 		final var date = LocalDate.of(2025, Month.FEBRUARY, 28);
-		final var message = "message";
+		final var emailBatchRequest = new EmailBatchRequest();
 
-		when(mockIntegrationProperties.errorReport()).thenReturn(mockErrorReportProperties);
-		when(mockErrorReportProperties.recipientEmailAddresses()).thenReturn(recipientEmailAddresses);
-		when(mockTemplateEngine.process(eq(ERROR_TEMPLATE_NAME), any(Context.class))).thenReturn(HTML_MESSAGE);
-		when(messagingMapper.toErrorEmailRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(mockEmailRequest);
-		when(mockClient.sendEmail(MUNICIPALITY_ID, mockEmailRequest)).thenThrow(new ResponseStatusException(INTERNAL_SERVER_ERROR));
+		when(messagingMapper.toErrorEmailBatchRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(emailBatchRequest);
+		when(mockClient.sendEmailBatch(MUNICIPALITY_ID, emailBatchRequest)).thenThrow(new ResponseStatusException(INTERNAL_SERVER_ERROR));
 
-		messagingIntegration.sendErrorReport(date, MUNICIPALITY_ID, batchName, message);
+		// Failures are left to the caller, so that the report can be retried
+		assertThrows(ResponseStatusException.class, () -> messagingIntegration.sendErrorReport(MUNICIPALITY_ID, date, ENCODED_HTML_MESSAGE));
 
-		recipientEmailAddresses.stream().forEach(recipientEmailAddress -> verify(mockEmailRequest).setEmailAddress(recipientEmailAddress));
-		verify(messagingMapper).toErrorEmailRequest(ENCODED_HTML_MESSAGE, date);
-		verify(mockClient, times(expectedNumberOfCalls)).sendEmail(MUNICIPALITY_ID, mockEmailRequest);
-		verify(mockTemplateEngine).process(eq(ERROR_TEMPLATE_NAME), any(Context.class));
-		verifyNoMoreInteractions(mockTemplateEngine, mockClient);
+		verify(mockClient).sendEmailBatch(MUNICIPALITY_ID, emailBatchRequest);
+		verifyNoMoreInteractions(mockClient);
 	}
 
 	@Test
 	void testSendStatusReport() {
 		final var date = LocalDate.of(2025, Month.FEBRUARY, 28);
-		final List<BatchEntity> batches = emptyList();
-		final var recipientEmailAddress = "Recipeint@test.se";
-		final List<String> recipientEmailAddresses = List.of(recipientEmailAddress);
+		final var emailBatchRequest = new EmailBatchRequest();
 
 		when(mockIntegrationProperties.statusReport()).thenReturn(mockStatusReportProperties);
-		when(mockStatusReportProperties.recipientEmailAddresses()).thenReturn(recipientEmailAddresses);
-
-		when(mockTemplateEngine.process(eq(STATUS_TEMPLATE_NAME), any(Context.class))).thenReturn(HTML_MESSAGE);
-		when(messagingMapper.toStatusEmailRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(mockEmailRequest);
+		when(mockStatusReportProperties.recipientEmailAddresses()).thenReturn(List.of("Recipient@test.se", "Recipient2@test.se"));
+		when(messagingMapper.toStatusEmailBatchRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(emailBatchRequest);
 
-		messagingIntegration.sendStatusReport(batches, date, MUNICIPALITY_ID);
+		messagingIntegration.sendStatusReport(MUNICIPALITY_ID, date, ENCODED_HTML_MESSAGE);
 
-		verify(mockEmailRequest).setEmailAddress(recipientEmailAddress);
-		verify(messagingMapper).toStatusEmailRequest(ENCODED_HTML_MESSAGE, date);
-		verify(mockClient).sendEmail(MUNICIPALITY_ID, mockEmailRequest);
-		verify(mockTemplateEngine).process(eq(STATUS_TEMPLATE_NAME), any(Context.class));
-		verifyNoMoreInteractions(mockClient, mockTemplateEngine);
+		verify(messagingMapper).toStatusEmailBatchRequest(ENCODED_HTML_MESSAGE, date);
+		verify(mockClient).sendEmailBatch(MUNICIPALITY_ID, emailBatchRequest);
+		verifyNoMoreInteractions(mockClient);
 	}
 
-	@ParameterizedTest
-	@MethodSource("sendReportArgumentProvider")
-	void testSendStatusReportWhenExceptionIsThrown(List<String> recipientEmailAddresses, int expectedNumberOfCalls) {
+	@Test
+	void testSendStatusReportWhenExceptionIsThrown() {
 		final var date = LocalDate.of(2025, Month.FEBRUARY, 28);
-		final List<BatchEntity> batches = emptyList();
+		final var emailBatchRequest = new EmailBatchRequest();
 
-		when(mockIntegrationProperties.statusReport()).thenReturn(mockStatusReportProperties);
-		when(mockStatusReportProperties.recipientEmailAddresses()).thenReturn(recipientEmailAddresses);
+		when(messagingMapper.toStatusEmailBatchRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(emailBatchRequest);
+		when(mockClient.sendEmailBatch(MUNICIPALITY_ID, emailBatchRequest)).thenThrow(new ResponseStatusException(INTERNAL_SERVER_ERROR));
 
-		when(mockTemplateEngine.process(eq(STATUS_TEMPLATE_NAME), any(Context.class))).thenReturn(HTML_MESSAGE);
-		when(messagingMapper.toStatusEmailRequest(ENCODED_HTML_MESSAGE, date)).thenReturn(mockEmailRequest);
-		when(mockClient.sendEmail(MUNICIPALITY_ID, mockEmailRequest)).thenThrow(new ResponseStatusException(INTERNAL_SERVER_ERROR));
-
-		messagingIntegration.sendStatusReport(batches, date, MUNICIPALITY_ID);
+		assertThrows(ResponseStatusException.class, () -> messagingIntegration.sendStatusReport(MUNICIPALITY_ID, date, ENCODED_HTML_MESSAGE));
 
-		recipientEmailAddresses.stream().forEach(recipientEmailAddress -> verify(mockEmailRequest).setEmailAddress(recipientEmailAddress));
-		verify(messagingMapper).toStatusEmailRequest(ENCODED_HTML_MESSAGE, date);
-		verify(mockClient, times(expectedNumberOfCalls)).sendEmail(MUNICIPALITY_ID, mockEmailRequest);
-		verify(mockTemplateEngine).process(eq(STATUS_TEMPLATE_NAME), any(Context.class));
-		verifyNoMoreInteractions(mockTemplateEngine, mockClient);
+		verify(mockClient).sendEmailBatch(MUNICIPALITY_ID, emailBatchRequest);
+		verifyNoMoreInteractions(mockClient);
 	}
 
-	private static Stream<Arguments> sendReportArgumentProvider() {
-		return Stream.of(
-			Arguments.of(List.of("Recipient@test.se"), 1),
-			Arguments.of(List.of("Recipient@test.se", "Recipient2@test.se"), 2));
+	@Test
+	void testGenerateStatusReportMessage() {
+		when(mockTemplateEngine.process(eq(STATUS_TEMPLATE_NAME), any(Context.class))).thenReturn(HTML_MESSAGE);
+
+		assertThat(messagingIntegration.generateStatusReportMessage(emptyList())).isEqualTo(ENCODED_HTML_MESSAGE);
+
+		verify(mockTemplateEngine).process(eq(STATUS_TEMPLATE_NAME), contextCaptor.capture());
+		assertThat(contextCaptor.getValue().getVariable("batches")).isEqualTo(emptyList());
 	}
 
 	@Test
 	void testSendSlackMessage() {
-		final var batch = new BatchEntity();
-		final var date = LocalDate.of(2025, Month.FEBRUARY, 28);
 		final var slackRequest = new SlackRequest()
 			.channel("Test-Channel")
 			.token("Test-Token")
 			.message("Clark Kent is a fraud");
 
-		when(messagingMapper.toSlackRequest(anyString())).thenReturn(slackRequest);
+		when(messagingMapper.toSlackRequest("Clark Kent is a fraud")).thenReturn(slackRequest);
 
-		messagingIntegration.sendSlackMessage(batch, date, MUNICIPALITY_ID);
+		messagingIntegration.sendSlackMessage(MUNICIPALITY_ID, "Clark Kent is a fraud");
 
 		verify(mockClient).sendSlackMessage(MUNICIPALITY_ID, slackRequest);
-		verify(messagingMapper).toSlackRequest(anyString());
+		verify(messagingMapper).toSlackRequest("Clark Kent is a fraud");
 		verifyNoMoreInteractions(mockClient, messagingMapper);
 	}
 
 	@Test
 	void testSendSlackMessageWhenExceptionIsThrown() {
-		final var batch = new BatchEntity();
-		final var date = LocalDate.of(2025, Month.FEBRUARY, 28);
 		final var slackRequest = new SlackRequest();
 
 		when(messagingMapper.toSlackRequest(anyString())).thenReturn(slackRequest);
 		when(mockClient.sendSlackMessage(MUNICIPALITY_ID, slackRequest))
 			.thenThrow(new ResponseStatusException(INTERNAL_SERVER_ERROR));
 
-		assertThatNoException().isThrownBy(() -> messagingIntegration.sendSlackMessage(batch, date, MUNICIPALITY_ID));
+		assertThrows(ResponseStatusException.class, () -> messagingIntegration.sendSlackMessage(MUNICIPALITY_ID, "message"));
 
 		verify(messagingMapper).toSlackRequest(anyString());
 		verify(mockClient).sendSlackMessage(MUNICIPALITY_ID, slackRequest);
@@ -357,6 +470,31 @@ class MessagingIntegrationTests {
 		assertThat(message).isEqualTo(expected);
 	}
 
+	@Test
+	void testGenerateSlackMessageWithAlreadySentInvoices() {
+		final var batch = new BatchEntity()
+			.withBasename("testBasename")
+			.withItems(List.of(
+				new ItemEntity().withType(INVOICE).withStatus(SENT),
+				new ItemEntity().withType(INVOICE).withStatus(ALREADY_SENT),
+				new ItemEntity().withType(INVOICE).withStatus(ALREADY_SENT),
+				new ItemEntity().withType(INVOICE).withStatus(NOT_SENT)))
+			.withSentItems(1)
+			.withProcessingEnabled(true);
+		final var date = LocalDate.of(2025, Month.FEBRUARY, 28);
+
+		final var message = messagingIntegration.generateSlackMessage(batch, date);
+
+		final var expected = """
+			Batch: testBasename
+			Date: 2025-02-28
+			Invoices sent digitally via Kivra: 1
+			Invoices sent via regular mail: 1
+			Invoices already sent in an earlier batch (skipped): 2
+			""";
+		assertThat(message).isEqualTo(expected);
+	}
+
 	@Test
 	void testGenerateSlackMessageWithProcessingDisabled() {
 		final var batch = new BatchEntity()
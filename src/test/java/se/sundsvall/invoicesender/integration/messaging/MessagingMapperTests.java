@@ -2,18 +2,16 @@ package se.sundsvall.invoicesender.integration.messaging;
 
 import generated.se.sundsvall.messaging.Details;
 import generated.se.sundsvall.messaging.DigitalInvoiceFile;
-import java.io.IOException;
-import java.nio.file.FileSystem;
-import java.nio.file.Paths;
+import generated.se.sundsvall.messaging.Party;
 import java.time.LocalDate;
+import java.util.Base64;
+import java.util.List;
 import java.util.UUID;
-import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import org.springframework.core.io.ClassPathResource;
 
 import static java.time.format.DateTimeFormatter.ISO_DATE;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -24,9 +22,6 @@ import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
 @ExtendWith(MockitoExtension.class)
 class MessagingMapperTests {
 
-	@Mock
-	private FileSystem mockFileSystem;
-
 	@Mock
 	private MessagingIntegrationProperties mockProperties;
 
@@ -42,23 +37,16 @@ class MessagingMapperTests {
 	@InjectMocks
 	private MessagingMapper mapper;
 
-	private String testFilePath;
-
-	@BeforeEach
-	void setUp() throws IOException {
-		testFilePath = new ClassPathResource("files").getFile().getAbsolutePath();
-	}
-
 	@Test
-	void toDigitalInvoiceRequest() throws IOException {
+	void toDigitalInvoiceRequest() {
 		final var invoice = createItemEntity(item -> item.setFilename("test.file"));
+		final var content = "someContent".getBytes();
 
 		when(mockProperties.invoice()).thenReturn(mockInvoiceProperties);
 		when(mockInvoiceProperties.subject()).thenReturn("someSubject");
 		when(mockInvoiceProperties.referencePrefix()).thenReturn("someReferencePrefix");
-		when(mockFileSystem.getPath(testFilePath)).thenReturn(Paths.get(testFilePath));
 
-		final var result = mapper.toDigitalInvoiceRequest(invoice, testFilePath);
+		final var result = mapper.toDigitalInvoiceRequest(invoice, content);
 
 		assertThat(result).isNotNull();
 		assertThat(result.getSubject()).isEqualTo("someSubject");
@@ -76,16 +64,15 @@ class MessagingMapperTests {
 		assertThat(result.getFiles()).hasSize(1).first().satisfies(file -> {
 			assertThat(file.getFilename()).isEqualTo(invoice.getFilename());
 			assertThat(file.getContentType()).isEqualTo(DigitalInvoiceFile.ContentTypeEnum.APPLICATION_PDF);
-			assertThat(file.getContent()).isBlank();
+			assertThat(file.getContent()).isEqualTo(Base64.getEncoder().encodeToString(content));
 		});
 
 		verify(mockInvoiceProperties).subject();
 		verify(mockInvoiceProperties).referencePrefix();
-		verify(mockFileSystem).getPath(testFilePath);
 	}
 
 	@Test
-	void toStatusEmailRequest() {
+	void toStatusEmailBatchRequest() {
 		final var date = LocalDate.now();
 		final var htmlMessage = "someStatusHtmlMessage";
 
@@ -93,8 +80,9 @@ class MessagingMapperTests {
 		when(mockStatusReportProperties.senderName()).thenReturn("someStatusSenderName");
 		when(mockStatusReportProperties.senderEmailAddress()).thenReturn("someStatusSenderEmailAddress");
 		when(mockStatusReportProperties.subjectPrefix()).thenReturn("someStatusSubjectPrefix");
+		when(mockStatusReportProperties.recipientEmailAddresses()).thenReturn(List.of("someRecipient@test.se", "someOtherRecipient@test.se"));
 
-		final var result = mapper.toStatusEmailRequest(htmlMessage, date);
+		final var result = mapper.toStatusEmailBatchRequest(htmlMessage, date);
 
 		assertThat(result).isNotNull();
 		assertThat(result.getSender()).satisfies(sender -> {
@@ -103,15 +91,16 @@ class MessagingMapperTests {
 		});
 		assertThat(result.getSubject()).isEqualTo("someStatusSubjectPrefix " + ISO_DATE.format(LocalDate.now()));
 		assertThat(result.getHtmlMessage()).isEqualTo(htmlMessage);
-		assertThat(result.getHeaders()).isNullOrEmpty();
+		assertThat(result.getParties()).extracting(Party::getEmailAddress).containsExactly("someRecipient@test.se", "someOtherRecipient@test.se");
 
 		verify(mockStatusReportProperties).senderName();
 		verify(mockStatusReportProperties).senderEmailAddress();
 		verify(mockStatusReportProperties).subjectPrefix();
+		verify(mockStatusReportProperties).recipientEmailAddresses();
 	}
 
 	@Test
-	void toErrorEmailRequest() {
+	void toErrorEmailBatchRequest() {
 		final var date = LocalDate.now();
 		final var htmlMessage = "someErrorHtmlMessage";
 
@@ -119,8 +108,9 @@ class MessagingMapperTests {
 		when(mockErrorReportProperties.senderName()).thenReturn("someErrorSenderName");
 		when(mockErrorReportProperties.senderEmailAddress()).thenReturn("someErrorSenderEmailAddress");
 		when(mockErrorReportProperties.subjectPrefix()).thenReturn("someErrorSubjectPrefix");
+		when(mockErrorReportProperties.recipientEmailAddresses()).thenReturn(List.of("someRecipient@test.se", "someOtherRecipient@test.se"));
 
-		final var result = mapper.toErrorEmailRequest(htmlMessage, date);
+		final var result = mapper.toErrorEmailBatchRequest(htmlMessage, date);
 
 		assertThat(result).isNotNull();
 		assertThat(result.getSender()).satisfies(sender -> {
@@ -129,11 +119,12 @@ class MessagingMapperTests {
 		});
 		assertThat(result.getSubject()).isEqualTo("someErrorSubjectPrefix " + ISO_DATE.format(LocalDate.now()));
 		assertThat(result.getHtmlMessage()).isEqualTo(htmlMessage);
-		assertThat(result.getHeaders()).isNullOrEmpty();
+		assertThat(result.getParties()).extracting(Party::getEmailAddress).containsExactly("someRecipient@test.se", "someOtherRecipient@test.se");
 
 		verify(mockErrorReportProperties).senderName();
 		verify(mockErrorReportProperties).senderEmailAddress();
 		verify(mockErrorReportProperties).subjectPrefix();
+		verify(mockErrorReportProperties).recipientEmailAddresses();
 	}
 
 	@Test
@@ -8,6 +8,8 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.NullSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
@@ -18,6 +20,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
@@ -50,7 +53,21 @@ class PartyIntegrationTests {
 	static Stream<Arguments> getPartyIdArgumentProvider() {
 		return Stream.of(
 			Arguments.of("5505158888", "195505158888"),
-			Arguments.of("0405158888", "200405158888"));
+			Arguments.of("0405158888", "200405158888"),
+			Arguments.of("550515-8888", "195505158888"));
+	}
+
+	@ParameterizedTest
+	@NullSource
+	@ValueSource(strings = {
+		"", "not-a-legal-id", "55051588", "195505158888"
+	})
+	void testGetPartyIdWithWrongNumberOfDigits(final String legalId) {
+		final var partyId = partyIntegration.getPartyId(legalId, "2281");
+
+		assertThat(partyId).isEmpty();
+
+		verifyNoInteractions(mockPartyClient);
 	}
 
 	@Test
@@ -0,0 +1,143 @@
+package se.sundsvall.invoicesender.integration.raindance;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import java.io.IOException;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Map;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+
+class BatchArchiveTests {
+
+	private static final Map<String, String> ENTRIES = Map.of(
+		"ArchiveIndex.xml", "<Index/>",
+		"Faktura_00000001_to_9001011234.pdf", "first invoice",
+		"Faktura_00000002_to_9101011234.pdf", "second invoice");
+
+	private FileSystem fileSystem;
+	private Path zipFile;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		fileSystem = Jimfs.newFileSystem(Configuration.unix());
+		zipFile = fileSystem.getPath("/batch.zip");
+
+		try (var out = new ZipArchiveOutputStream(Files.newOutputStream(zipFile))) {
+			for (var entry : ENTRIES.entrySet()) {
+				out.putArchiveEntry(new ZipArchiveEntry(entry.getKey()));
+				out.write(entry.getValue().getBytes(UTF_8));
+				out.closeArchiveEntry();
+			}
+		}
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		fileSystem.close();
+	}
+
+	@Test
+	void getEntryNames() throws IOException {
+		try (var archive = BatchArchive.open(zipFile)) {
+			assertThat(archive.getEntryNames()).containsExactlyInAnyOrderElementsOf(ENTRIES.keySet());
+		}
+	}
+
+	@Test
+	void read() throws IOException {
+		try (var archive = BatchArchive.open(zipFile)) {
+			assertThat(archive.read("Faktura_00000002_to_9101011234.pdf")).asString(UTF_8).isEqualTo("second invoice");
+		}
+	}
+
+	@Test
+	void readNonExistingEntry() throws IOException {
+		try (var archive = BatchArchive.open(zipFile)) {
+			assertThatExceptionOfType(NoSuchFileException.class)
+				.isThrownBy(() -> archive.read("non-existing.pdf"))
+				.withMessage("non-existing.pdf");
+		}
+	}
+
+	@Test
+	void getSize() throws IOException {
+		try (var archive = BatchArchive.open(zipFile)) {
+			assertThat(archive.getSize("Faktura_00000002_to_9101011234.pdf")).isEqualTo("second invoice".length());
+		}
+	}
+
+	@Test
+	void extract() throws IOException {
+		final var target = fileSystem.getPath("/ArchiveIndex.xml");
+
+		try (var archive = BatchArchive.open(zipFile)) {
+			archive.extract("ArchiveIndex.xml", target);
+		}
+
+		assertThat(target).hasContent("<Index/>");
+	}
+
+	@Test
+	void copyRawEntry() throws IOException {
+		final var copy = fileSystem.getPath("/copy.zip");
+
+		try (var archive = BatchArchive.open(zipFile);
+			var out = new ZipArchiveOutputStream(Files.newOutputStream(copy))) {
+			archive.copyRawEntry("Faktura_00000001_to_9001011234.pdf", out);
+		}
+
+		try (var archive = BatchArchive.open(copy)) {
+			assertThat(archive.getEntryNames()).containsExactly("Faktura_00000001_to_9001011234.pdf");
+			assertThat(archive.read("Faktura_00000001_to_9001011234.pdf")).asString(UTF_8).isEqualTo("first invoice");
+		}
+	}
+
+	@Test
+	void memorySegmentChannel() throws IOException {
+		final var arena = Arena.ofConfined();
+		final var channel = new BatchArchive.MemorySegmentChannel(MemorySegment.ofArray("0123456789".getBytes(UTF_8)), arena);
+		final var dst = ByteBuffer.allocate(4);
+
+		channel.position(6);
+
+		assertThat(channel.size()).isEqualTo(10);
+		assertThat(channel.read(dst)).isEqualTo(4);
+		assertThat(new String(dst.array(), UTF_8)).isEqualTo("6789");
+		assertThat(channel.read(dst.clear())).isEqualTo(-1);
+
+		channel.close();
+
+		assertThat(channel.isOpen()).isFalse();
+		assertThat(arena.scope().isAlive()).isFalse();
+		assertThatExceptionOfType(ClosedChannelException.class).isThrownBy(() -> channel.read(dst.clear()));
+	}
+
+	@Test
+	void openMemoryMapped(@TempDir final Path tempDir) throws IOException {
+		final var copy = Files.copy(zipFile, tempDir.resolve("batch.zip"));
+
+		try (var archive = BatchArchive.open(copy)) {
+			assertThat(archive.read("Faktura_00000001_to_9001011234.pdf")).asString(UTF_8).isEqualTo("first invoice");
+		}
+
+		// The mapping is released along with the archive
+		assertThatNoException().isThrownBy(() -> Files.delete(copy));
+	}
+}
@@ -0,0 +1,162 @@
+package se.sundsvall.invoicesender.integration.raindance;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class ShareListingCacheTests {
+
+	private static final List<RemoteBatchFile> FILES = List.of(
+		new RemoteBatchFile("Faktura-pdf-240101_123456.zip.7z", 1234),
+		new RemoteBatchFile("Betalningspaminnelse-pdf-240101_123456.zip.7z", 5678));
+
+	private final AtomicInteger loads = new AtomicInteger();
+
+	@Test
+	void getIsCachedUntilExpired() throws IOException {
+		final var clock = new MutableClock(Instant.parse("2024-01-01T06:00:00Z"));
+		final var cache = new ShareListingCache(Duration.ofSeconds(30), clock);
+
+		assertThat(cache.get("240101", this::load)).isEqualTo(FILES);
+		assertThat(cache.get("240101", this::load)).isEqualTo(FILES);
+		assertThat(loads).hasValue(1);
+
+		clock.instant = clock.instant.plusSeconds(30);
+
+		assertThat(cache.get("240101", this::load)).isEqualTo(FILES);
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	void getIsCachedPerKey() throws IOException {
+		final var cache = new ShareListingCache(Duration.ofSeconds(30));
+
+		cache.get("240101", this::load);
+		cache.get("240102", this::load);
+
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	void getSharesASingleLoad() throws Exception {
+		final var cache = new ShareListingCache(Duration.ofSeconds(30));
+		final var started = new CountDownLatch(1);
+		final var release = new CountDownLatch(1);
+
+		final var first = getAsync(cache, "240101", blockingLoad(started, release));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		final var second = getAsync(cache, "240101", this::load);
+
+		// Other keys are loaded while the first load is in flight
+		assertThat(cache.get("240102", this::load)).isEqualTo(FILES);
+		assertThat(second).isNotDone();
+
+		release.countDown();
+
+		assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo(FILES);
+		assertThat(second.get(5, TimeUnit.SECONDS)).isEqualTo(FILES);
+		// The blocked load and the load of the other key
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	void getWithCachingDisabled() throws IOException {
+		final var cache = new ShareListingCache(Duration.ZERO);
+
+		cache.get("240101", this::load);
+		cache.get("240101", this::load);
+
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	void invalidate() throws IOException {
+		final var cache = new ShareListingCache(Duration.ofSeconds(30));
+
+		cache.get("240101", this::load);
+		cache.invalidate();
+		cache.get("240101", this::load);
+
+		assertThat(loads).hasValue(2);
+	}
+
+	@Test
+	void getWhenLoaderFails() throws IOException {
+		final var cache = new ShareListingCache(Duration.ofSeconds(30));
+
+		assertThatExceptionOfType(IOException.class)
+			.isThrownBy(() -> cache.get("240101", () -> {
+				throw new IOException("Share unavailable");
+			}))
+			.withMessage("Share unavailable");
+
+		// Failures are not cached
+		assertThat(cache.get("240101", this::load)).isEqualTo(FILES);
+	}
+
+	private ShareListingCache.Loader blockingLoad(final CountDownLatch started, final CountDownLatch release) {
+		return () -> {
+			started.countDown();
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			return load();
+		};
+	}
+
+	private static CompletableFuture<List<RemoteBatchFile>> getAsync(final ShareListingCache cache, final String key, final ShareListingCache.Loader loader) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return cache.get(key, loader);
+			} catch (final IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}, command -> Thread.ofVirtual().start(command));
+	}
+
+	private List<RemoteBatchFile> load() {
+		loads.incrementAndGet();
+		return FILES;
+	}
+
+	private static final class MutableClock extends Clock {
+
+		private Instant instant;
+
+		private MutableClock(final Instant instant) {
+			this.instant = instant;
+		}
+
+		@Override
+		public ZoneOffset getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(final ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return instant;
+		}
+	}
+}
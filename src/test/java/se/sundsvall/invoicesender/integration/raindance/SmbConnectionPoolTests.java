@@ -0,0 +1,118 @@
+package se.sundsvall.invoicesender.integration.raindance;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ScheduledFuture;
+import jcifs.DialectVersion;
+import jcifs.config.PropertyConfiguration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.scheduling.TaskScheduler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class SmbConnectionPoolTests {
+
+	private static final String MUNICIPALITY_ID = "2281";
+
+	@Mock
+	private TaskScheduler taskSchedulerMock;
+
+	@Mock
+	private ScheduledFuture<?> scheduledFutureMock;
+
+	@Test
+	void healthCheckIsScheduled() {
+		final var meterRegistry = new SimpleMeterRegistry();
+		doReturn(scheduledFutureMock).when(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(Duration.ofMinutes(1)));
+
+		try (var pool = new SmbConnectionPool(MUNICIPALITY_ID, createEnvironment(Duration.ofMinutes(1)), taskSchedulerMock, meterRegistry)) {
+			assertThat(meterRegistry.get("raindance.smb.shares.connected").tag("municipalityId", MUNICIPALITY_ID).gauge().value()).isZero();
+			assertThat(meterRegistry.get("raindance.smb.shares.healthy").tag("municipalityId", MUNICIPALITY_ID).gauge().value()).isZero();
+			assertThat(meterRegistry.get("raindance.smb.health-checks").counters()).hasSize(2);
+			assertThat(meterRegistry.get("raindance.smb.reconnects").counter().count()).isZero();
+		}
+
+		verify(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(Duration.ofMinutes(1)));
+		verify(scheduledFutureMock).cancel(false);
+	}
+
+	@Test
+	void healthCheckIsDisabled() throws Exception {
+		try (var pool = new SmbConnectionPool(MUNICIPALITY_ID, createEnvironment(Duration.ZERO), taskSchedulerMock, new SimpleMeterRegistry())) {
+			try (var file = pool.resolve("smb://someHost:445/share/file.txt")) {
+				assertThat(file.getName()).isEqualTo("file.txt");
+				assertThat(file.getContext().getConfig().getMinimumVersion()).isEqualTo(DialectVersion.SMB300);
+				assertThat(file.getContext().getConfig().getMaximumVersion()).isEqualTo(DialectVersion.SMB311);
+			}
+		}
+
+		verifyNoInteractions(taskSchedulerMock);
+	}
+
+	@Test
+	void jcifsPropertiesPinSmb3ByDefault() throws Exception {
+		final var smb = new Binder(new MapConfigurationPropertySource(Map.of("smb.health-check-interval", "PT0S")))
+			.bindOrCreate("smb", RaindanceIntegrationProperties.RaindanceEnvironment.Smb.class);
+		final var environment = createEnvironment(smb);
+		final var jcifsDefaults = new PropertyConfiguration(new Properties());
+
+		assertThat(environment.jcifsProperties())
+			.containsEntry("jcifs.smb.client.minVersion", "SMB300")
+			.containsEntry("jcifs.smb.client.maxVersion", "SMB311")
+			.containsOnlyKeys("jcifs.smb.client.connTimeout", "jcifs.smb.client.responseTimeout", "jcifs.smb.client.minVersion", "jcifs.smb.client.maxVersion");
+
+		try (var pool = new SmbConnectionPool(MUNICIPALITY_ID, environment, taskSchedulerMock, new SimpleMeterRegistry());
+			var file = pool.resolve("smb://someHost:445/share/file.txt")) {
+			assertThat(file.getContext().getConfig().getMinimumVersion()).isEqualTo(DialectVersion.SMB300);
+			assertThat(file.getContext().getConfig().getMaximumVersion()).isEqualTo(DialectVersion.SMB311);
+			// The buffer sizes and socket timeout are left at their jcifs defaults
+			assertThat(file.getContext().getConfig().getSendBufferSize()).isEqualTo(jcifsDefaults.getSendBufferSize());
+			assertThat(file.getContext().getConfig().getSoTimeout()).isEqualTo(jcifsDefaults.getSoTimeout());
+		}
+	}
+
+	@Test
+	void checkHealthWhenIdle() throws Exception {
+		final var meterRegistry = new SimpleMeterRegistry();
+		final var environment = createEnvironment(new RaindanceIntegrationProperties.RaindanceEnvironment.Smb(DialectVersion.SMB300, DialectVersion.SMB311, null, null, null, Duration.ofMillis(1), Duration.ZERO));
+
+		try (var pool = new SmbConnectionPool(MUNICIPALITY_ID, environment, taskSchedulerMock, meterRegistry)) {
+			Thread.sleep(10);
+
+			pool.checkHealth();
+
+			// The shares aren't connected to while the pool is idle
+			assertThat(meterRegistry.get("raindance.smb.health-checks").counters()).allSatisfy(counter -> assertThat(counter.count()).isZero());
+			assertThat(meterRegistry.get("raindance.smb.shares.connected").tag("municipalityId", MUNICIPALITY_ID).gauge().value()).isZero();
+			assertThat(meterRegistry.get("raindance.smb.shares.healthy").tag("municipalityId", MUNICIPALITY_ID).gauge().value()).isZero();
+		}
+	}
+
+	private static RaindanceIntegrationProperties.RaindanceEnvironment createEnvironment(final Duration healthCheckInterval) {
+		return createEnvironment(new RaindanceIntegrationProperties.RaindanceEnvironment.Smb(DialectVersion.SMB300, DialectVersion.SMB311, 65535, 65535, 65535,
+			null, healthCheckInterval));
+	}
+
+	private static RaindanceIntegrationProperties.RaindanceEnvironment createEnvironment(final RaindanceIntegrationProperties.RaindanceEnvironment.Smb smb) {
+		return new RaindanceIntegrationProperties.RaindanceEnvironment("someHost", 445, "someDomain", "someUser", "somePassword", "share/incoming/",
+			List.of("Faktura"), List.of("Betalningspaminnelse"),
+			Map.of("Faktura-pdf", new RaindanceIntegrationProperties.RaindanceEnvironment.BatchSetup(
+				new RaindanceIntegrationProperties.RaindanceEnvironment.BatchSetup.Scheduling("-"), "return/", "share/archive/", true)),
+			Duration.ofSeconds(10), Duration.ofSeconds(15), Duration.ofSeconds(30), "/tmp/raindance", "", smb);
+	}
+}
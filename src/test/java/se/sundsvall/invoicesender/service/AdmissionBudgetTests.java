@@ -0,0 +1,151 @@
+package se.sundsvall.invoicesender.service;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class AdmissionBudgetTests {
+
+	@Test
+	void acquireAndRelease() throws InterruptedIOException {
+		final var budget = new AdmissionBudget(100);
+
+		try (var permit = budget.acquire(60)) {
+			assertThat(permit.getAmount()).isEqualTo(60);
+			assertThat(budget.getAvailable()).isEqualTo(40);
+		}
+
+		assertThat(budget.getAvailable()).isEqualTo(100);
+	}
+
+	@Test
+	void acquireMoreThanCapacity() throws InterruptedIOException {
+		final var budget = new AdmissionBudget(100);
+
+		try (var permit = budget.acquire(1000)) {
+			assertThat(permit.getAmount()).isEqualTo(100);
+			assertThat(budget.getAvailable()).isZero();
+		}
+
+		assertThat(budget.getAvailable()).isEqualTo(100);
+	}
+
+	@Test
+	void releaseIsIdempotent() throws InterruptedIOException {
+		final var budget = new AdmissionBudget(100);
+
+		final var permit = budget.acquire(60);
+		permit.close();
+		permit.close();
+
+		assertThat(budget.getAvailable()).isEqualTo(100);
+	}
+
+	@Test
+	void acquireWaitsForRelease() throws Exception {
+		final var budget = new AdmissionBudget(100);
+		final var first = budget.acquire(80);
+
+		final var second = CompletableFuture.supplyAsync(() -> {
+			try {
+				return budget.acquire(50);
+			} catch (final InterruptedIOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+
+		assertThatExceptionOfType(TimeoutException.class)
+			.isThrownBy(() -> second.get(100, TimeUnit.MILLISECONDS));
+
+		first.close();
+
+		try (var permit = second.get(5, TimeUnit.SECONDS)) {
+			assertThat(permit.getAmount()).isEqualTo(50);
+			assertThat(budget.getAvailable()).isEqualTo(50);
+		}
+	}
+
+	@Test
+	void tryAcquire() throws InterruptedIOException {
+		final var budget = new AdmissionBudget(100);
+
+		try (var first = budget.tryAcquire(80, Duration.ZERO)) {
+			assertThat(first).isNotNull();
+			assertThat(budget.tryAcquire(50, Duration.ofMillis(10))).isNull();
+		}
+
+		try (var second = budget.tryAcquire(50, Duration.ZERO)) {
+			assertThat(second).isNotNull();
+			assertThat(budget.getAvailable()).isEqualTo(50);
+		}
+	}
+
+	@Test
+	void acquireServesWaitersInOrder() throws Exception {
+		final var budget = new AdmissionBudget(100);
+		final var first = budget.acquire(80);
+
+		final var large = acquireAsync(budget, 60);
+		awaitQueued(budget, 1);
+		// The small request would fit right away, but waits behind the large one
+		final var small = acquireAsync(budget, 10);
+		awaitQueued(budget, 2);
+
+		assertThatExceptionOfType(TimeoutException.class)
+			.isThrownBy(() -> small.get(100, TimeUnit.MILLISECONDS));
+
+		first.close();
+
+		try (var largePermit = large.get(5, TimeUnit.SECONDS);
+			var smallPermit = small.get(5, TimeUnit.SECONDS)) {
+			assertThat(budget.getAvailable()).isEqualTo(30);
+			assertThat(budget.getQueued()).isZero();
+		}
+	}
+
+	@Test
+	void tryAcquireLeavesQueueOnTimeout() throws Exception {
+		final var budget = new AdmissionBudget(100);
+		final var first = budget.acquire(80);
+
+		final var large = CompletableFuture.supplyAsync(() -> {
+			try {
+				return budget.tryAcquire(60, Duration.ofMillis(200));
+			} catch (final InterruptedIOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		awaitQueued(budget, 1);
+		final var small = acquireAsync(budget, 10);
+
+		// Once the large request gives up, the small one is next in line
+		assertThat(large.get(5, TimeUnit.SECONDS)).isNull();
+		try (var smallPermit = small.get(5, TimeUnit.SECONDS)) {
+			assertThat(budget.getAvailable()).isEqualTo(10);
+		}
+		first.close();
+	}
+
+	private static CompletableFuture<AdmissionBudget.Permit> acquireAsync(final AdmissionBudget budget, final long bytes) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return budget.acquire(bytes);
+			} catch (final InterruptedIOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+	}
+
+	private static void awaitQueued(final AdmissionBudget budget, final int queued) throws InterruptedException {
+		for (var i = 0; i < 500 && budget.getQueued() < queued; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(budget.getQueued()).isEqualTo(queued);
+	}
+}
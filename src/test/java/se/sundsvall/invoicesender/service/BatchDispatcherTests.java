@@ -0,0 +1,144 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class BatchDispatcherTests {
+
+	private SimpleMeterRegistry meterRegistry;
+	private BatchDispatcher batchDispatcher;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		batchDispatcher = new BatchDispatcher(
+			new BatchProcessingProperties(1, DataSize.ofBytes(1000), DataSize.ofBytes(6000), 3, Duration.ZERO, true, Duration.ofDays(2), 2, Duration.ofSeconds(5)), meterRegistry);
+	}
+
+	@AfterEach
+	void tearDown() {
+		batchDispatcher.close();
+		MDC.clear();
+	}
+
+	@Test
+	void submit() {
+		final var thread = new AtomicReference<Thread>();
+
+		final var result = batchDispatcher.submit("2281", () -> {
+			thread.set(Thread.currentThread());
+			return "someResult";
+		}).join();
+
+		assertThat(result).isEqualTo("someResult");
+		assertThat(thread.get().isVirtual()).isTrue();
+		assertThat(meterRegistry.get("invoice-processor.batch.queued").tag("municipalityId", "2281").gauge().value()).isZero();
+		assertThat(meterRegistry.get("invoice-processor.batch.running").tag("municipalityId", "2281").gauge().value()).isZero();
+	}
+
+	@Test
+	void submitWhenBatchFails() {
+		final var future = batchDispatcher.submit("2281", () -> {
+			throw new IOException("someError");
+		});
+
+		assertThatExceptionOfType(CompletionException.class)
+			.isThrownBy(future::join)
+			.withCauseInstanceOf(IOException.class)
+			.withMessageContaining("someError");
+		// The permit is released
+		assertThat(batchDispatcher.submit("2281", () -> "someResult").join()).isEqualTo("someResult");
+	}
+
+	@Test
+	void submitIsBoundedPerMunicipality() throws Exception {
+		final var started = new CountDownLatch(1);
+		final var release = new CountDownLatch(1);
+
+		final var slowBatch = batchDispatcher.submit("2281", () -> {
+			started.countDown();
+			return release.await(5, TimeUnit.SECONDS);
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		// Another batch of the same municipality waits for the slow one, while other municipalities aren't held up
+		final var queuedBatch = batchDispatcher.submit("2281", () -> "queued");
+		assertThat(batchDispatcher.submit("2262", () -> "other").get(5, TimeUnit.SECONDS)).isEqualTo("other");
+		assertThat(queuedBatch).isNotDone();
+		assertThat(meterRegistry.get("invoice-processor.batch.running").tag("municipalityId", "2281").gauge().value()).isOne();
+		assertThat(meterRegistry.get("invoice-processor.batch.queued").tag("municipalityId", "2281").gauge().value()).isOne();
+
+		release.countDown();
+
+		assertThat(slowBatch.join()).isTrue();
+		assertThat(queuedBatch.join()).isEqualTo("queued");
+	}
+
+	@Test
+	void dispatchCarriesLoggingContext() throws Exception {
+		final var result = new CompletableFuture<String>();
+		MDC.put("someKey", "someValue");
+
+		batchDispatcher.dispatch(() -> result.complete(MDC.get("someKey")));
+
+		assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("someValue");
+	}
+
+	@Test
+	void execute() throws InterruptedException {
+		final var done = new CountDownLatch(1);
+
+		batchDispatcher.execute("2281", done::countDown);
+
+		assertThat(done.await(5, TimeUnit.SECONDS)).isTrue();
+		assertThat(meterRegistry.find("invoice-processor.batch.running").tag("municipalityId", "2281").gauge()).isNotNull();
+	}
+
+	@Test
+	void closeWaitsForBatchesInFlight() throws Exception {
+		final var started = new CountDownLatch(1);
+		final var batch = batchDispatcher.submit("2281", () -> {
+			started.countDown();
+			Thread.sleep(200);
+			return "someResult";
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		batchDispatcher.close();
+
+		assertThat(batch).isCompletedWithValue("someResult");
+	}
+
+	@Test
+	void closeInterruptsBatchesAfterGracePeriod() throws Exception {
+		final var dispatcher = new BatchDispatcher(
+			new BatchProcessingProperties(1, DataSize.ofBytes(1000), DataSize.ofBytes(6000), 3, Duration.ZERO, true, Duration.ofDays(2), 2, Duration.ofMillis(50)), meterRegistry);
+		final var started = new CountDownLatch(1);
+		final var batch = dispatcher.submit("2281", () -> {
+			started.countDown();
+			return new CountDownLatch(1).await(5, TimeUnit.SECONDS);
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		dispatcher.close();
+
+		assertThatExceptionOfType(ExecutionException.class)
+			.isThrownBy(() -> batch.get(5, TimeUnit.SECONDS))
+			.withCauseInstanceOf(InterruptedException.class);
+	}
+}
@@ -0,0 +1,240 @@
+package se.sundsvall.invoicesender.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.BatchLeaseEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BatchLeaseManagerTests {
+
+	private static final String MUNICIPALITY_ID = "2281";
+	private static final String BATCH_PREFIX = "Faktura-pdf";
+	private static final String OWNER = "someOwner";
+	private static final Duration LEASE_TTL = Duration.ofMinutes(5);
+	private static final Duration RENEW_INTERVAL = Duration.ofMinutes(1);
+
+	@Mock
+	private DbIntegration dbIntegrationMock;
+
+	@Mock
+	private TaskScheduler taskSchedulerMock;
+
+	@Mock
+	private ScheduledFuture<?> scheduledFutureMock;
+
+	@Test
+	void tryAcquireAndRelease() {
+		final var date = LocalDate.now();
+		final var batchLeaseManager = createBatchLeaseManager(true);
+		when(dbIntegrationMock.acquireLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL)).thenReturn(true);
+		doReturn(scheduledFutureMock).when(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(RENEW_INTERVAL));
+
+		final var lease = batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date);
+
+		assertThat(lease).isPresent();
+		// Leases are not re-entrant
+		assertThat(batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date)).isEmpty();
+
+		lease.get().close();
+
+		verify(scheduledFutureMock).cancel(false);
+		verify(dbIntegrationMock).releaseLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER);
+		assertThat(batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date)).isPresent();
+	}
+
+	@Test
+	void complete() {
+		final var date = LocalDate.now();
+		final var batchLeaseManager = createBatchLeaseManager(true);
+		when(dbIntegrationMock.acquireLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL)).thenReturn(true);
+		when(dbIntegrationMock.completeLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER)).thenReturn(true);
+		doReturn(scheduledFutureMock).when(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(RENEW_INTERVAL));
+
+		try (var lease = batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date).orElseThrow()) {
+			lease.complete();
+		}
+
+		verify(dbIntegrationMock).completeLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER);
+		verify(dbIntegrationMock).releaseLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER);
+	}
+
+	@Test
+	void isCompleted() {
+		final var date = LocalDate.now();
+		when(dbIntegrationMock.isLeaseCompleted(MUNICIPALITY_ID, BATCH_PREFIX, date)).thenReturn(true);
+
+		assertThat(createBatchLeaseManager(true).isCompleted(MUNICIPALITY_ID, BATCH_PREFIX, date)).isTrue();
+		assertThat(createBatchLeaseManager(false).isCompleted(MUNICIPALITY_ID, BATCH_PREFIX, date)).isFalse();
+	}
+
+	@Test
+	void tryAcquireWhenHeldByAnotherNode() {
+		final var date = LocalDate.now();
+		final var batchLeaseManager = createBatchLeaseManager(true);
+		when(dbIntegrationMock.acquireLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL)).thenReturn(false);
+
+		assertThat(batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date)).isEmpty();
+
+		verifyNoInteractions(taskSchedulerMock);
+	}
+
+	@Test
+	void tryAcquireWhenDatabaseFails() {
+		final var date = LocalDate.now();
+		final var batchLeaseManager = createBatchLeaseManager(true);
+		when(dbIntegrationMock.acquireLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL))
+			.thenThrow(new IllegalStateException("Database unavailable"))
+			.thenReturn(true);
+		doReturn(scheduledFutureMock).when(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(RENEW_INTERVAL));
+
+		assertThatExceptionOfType(IllegalStateException.class)
+			.isThrownBy(() -> batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date));
+
+		// The failed attempt must not leave the lease marked as held
+		assertThat(batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date)).isPresent();
+	}
+
+	@Test
+	void tryAcquireWhenDisabled() {
+		final var date = LocalDate.now();
+		final var batchLeaseManager = createBatchLeaseManager(false);
+
+		final var lease = batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date);
+
+		assertThat(lease).isPresent();
+		assertThat(batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date)).isEmpty();
+
+		lease.get().close();
+
+		assertThat(batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date)).isPresent();
+		verifyNoInteractions(dbIntegrationMock, taskSchedulerMock);
+	}
+
+	@Test
+	void renew() {
+		final var date = LocalDate.now();
+		final var key = new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, BATCH_PREFIX, date);
+		final var batchLeaseManager = createBatchLeaseManager(true);
+		when(dbIntegrationMock.acquireLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL)).thenReturn(true);
+		doReturn(scheduledFutureMock).when(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(RENEW_INTERVAL));
+		doThrow(new IllegalStateException("Database unavailable"))
+			.when(dbIntegrationMock).renewLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL);
+
+		batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date);
+		// Failures are logged, not thrown, so that the renewal is tried again
+		batchLeaseManager.renew(key);
+
+		verify(dbIntegrationMock).renewLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL);
+		// The lease isn't lost until it has expired
+		assertThatNoException().isThrownBy(() -> batchLeaseManager.checkHeld(key));
+	}
+
+	@Test
+	void renewWhenNotHeld() {
+		createBatchLeaseManager(true).renew(new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, BATCH_PREFIX, LocalDate.now()));
+
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void checkHeldWhenLost() {
+		final var date = LocalDate.now();
+		final var key = new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, BATCH_PREFIX, date);
+		final var batchLeaseManager = createBatchLeaseManager(true);
+		when(dbIntegrationMock.acquireLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL)).thenReturn(true);
+		when(dbIntegrationMock.renewLease(MUNICIPALITY_ID, BATCH_PREFIX, date, OWNER, LEASE_TTL)).thenReturn(true, false);
+		doReturn(scheduledFutureMock).when(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(RENEW_INTERVAL));
+
+		batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date);
+		batchLeaseManager.renew(key);
+
+		assertThatNoException().isThrownBy(() -> batchLeaseManager.checkHeld(key));
+
+		batchLeaseManager.renew(key);
+
+		assertThatExceptionOfType(IOException.class)
+			.isThrownBy(() -> batchLeaseManager.checkHeld(key))
+			.withMessageContaining("has been lost to another node");
+	}
+
+	@Test
+	void checkHeldWhenNotRenewedInTime() {
+		final var date = LocalDate.now();
+		final var key = new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, BATCH_PREFIX, date);
+		final var batchLeaseManager = new BatchLeaseManager(dbIntegrationMock, taskSchedulerMock,
+			new CoordinationProperties(true, OWNER, Duration.ofMillis(-1), RENEW_INTERVAL, Duration.ofMinutes(5), List.of()));
+		when(dbIntegrationMock.acquireLease(eq(MUNICIPALITY_ID), eq(BATCH_PREFIX), eq(date), eq(OWNER), any(Duration.class))).thenReturn(true);
+		doReturn(scheduledFutureMock).when(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(RENEW_INTERVAL));
+
+		batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date);
+
+		// The lease may have expired, and been taken over by another node
+		assertThatExceptionOfType(IOException.class)
+			.isThrownBy(() -> batchLeaseManager.checkHeld(key))
+			.withMessageContaining("could not be renewed in time");
+	}
+
+	@Test
+	void checkHeldWhenDisabled() {
+		final var date = LocalDate.now();
+		final var key = new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, BATCH_PREFIX, date);
+		final var batchLeaseManager = createBatchLeaseManager(false);
+
+		batchLeaseManager.tryAcquire(MUNICIPALITY_ID, BATCH_PREFIX, date);
+
+		assertThatNoException().isThrownBy(() -> batchLeaseManager.checkHeld(key));
+	}
+
+	@Test
+	void getExpiredLeases() {
+		final var date = LocalDate.now();
+		final var batchLeaseManager = createBatchLeaseManager(true);
+		when(dbIntegrationMock.getExpiredLeases()).thenReturn(List.of(new BatchLeaseEntity()
+			.withMunicipalityId(MUNICIPALITY_ID)
+			.withBatchPrefix(BATCH_PREFIX)
+			.withDate(date)));
+
+		assertThat(batchLeaseManager.getExpiredLeases()).containsExactly(new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, BATCH_PREFIX, date));
+	}
+
+	@Test
+	void getExpiredLeasesWhenDisabled() {
+		assertThat(createBatchLeaseManager(false).getExpiredLeases()).isEmpty();
+
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void defaultOwner() {
+		final var batchLeaseManager = new BatchLeaseManager(dbIntegrationMock, taskSchedulerMock,
+			new CoordinationProperties(true, "", LEASE_TTL, RENEW_INTERVAL, Duration.ofMinutes(5), List.of()));
+
+		assertThat(batchLeaseManager.getOwner()).isNotBlank();
+	}
+
+	private BatchLeaseManager createBatchLeaseManager(final boolean enabled) {
+		return new BatchLeaseManager(dbIntegrationMock, taskSchedulerMock,
+			new CoordinationProperties(enabled, OWNER, LEASE_TTL, RENEW_INTERVAL, Duration.ofMinutes(5), List.of()));
+	}
+}
@@ -0,0 +1,188 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatNoException;
+import static se.sundsvall.invoicesender.TestDataFactory.createBatchEntity;
+
+class FairShareSchedulerTests {
+
+	private static final FairShareScheduler.Flow BLOCKER = new FairShareScheduler.Flow("2281", "Blocker");
+	private static final FairShareScheduler.Flow LARGE = new FairShareScheduler.Flow("2281", "Faktura");
+	private static final FairShareScheduler.Flow SMALL = new FairShareScheduler.Flow("2262", "Faktura");
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void call() {
+		final var scheduler = createScheduler(true, 2, Map.of());
+
+		assertThat(scheduler.call(SMALL, () -> {
+			assertThat(meterRegistry.get("invoice-processor.fair-share.in-use").gauge().value()).isOne();
+			return "someResult";
+		})).isEqualTo("someResult");
+
+		assertThat(meterRegistry.get("invoice-processor.fair-share.in-use").gauge().value()).isZero();
+		assertThat(meterRegistry.get("invoice-processor.fair-share.queued").gauge().value()).isZero();
+	}
+
+	@Test
+	void callWhenDisabled() {
+		final var scheduler = createScheduler(false, 1, Map.of());
+
+		assertThat(scheduler.call(SMALL, scheduler::getInUse)).isZero();
+	}
+
+	@Test
+	void callSharesCapacityByWeight() throws Exception {
+		final var scheduler = createScheduler(true, 1, Map.of("2281", 2));
+		final var admitted = Collections.synchronizedList(new ArrayList<FairShareScheduler.Flow>());
+
+		final var release = block(scheduler);
+		final var futures = new ArrayList<CompletableFuture<Void>>();
+		for (var i = 0; i < 6; i++) {
+			futures.add(enqueue(scheduler, LARGE, admitted));
+		}
+		for (var i = 0; i < 6; i++) {
+			futures.add(enqueue(scheduler, SMALL, admitted));
+		}
+		release.countDown();
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+		// The flow with twice the weight is admitted twice as often, while both are waiting
+		assertThat(admitted.subList(0, 9)).containsExactly(LARGE, SMALL, LARGE, LARGE, SMALL, LARGE, LARGE, SMALL, LARGE);
+	}
+
+	@Test
+	void callSharesCapacityByWeightBetweenSequentialFlows() throws Exception {
+		final var scheduler = createScheduler(true, 1, Map.of("2281", 2));
+		final var admitted = Collections.synchronizedList(new ArrayList<FairShareScheduler.Flow>());
+
+		// Each flow has one call at a time, so it is idle between its calls
+		for (var i = 0; i < 4; i++) {
+			final var release = block(scheduler);
+			final var small = enqueue(scheduler, SMALL, admitted);
+			final var large = enqueue(scheduler, LARGE, admitted);
+			release.countDown();
+			CompletableFuture.allOf(small, large).get(5, TimeUnit.SECONDS);
+		}
+
+		// The flow with twice the weight goes first once the flows have used their shares, even though it is queued last
+		assertThat(admitted).containsExactly(SMALL, LARGE, LARGE, SMALL, LARGE, SMALL, LARGE, SMALL);
+	}
+
+	@Test
+	void callDoesNotStarveNewFlows() throws Exception {
+		final var scheduler = createScheduler(true, 1, Map.of());
+		final var admitted = Collections.synchronizedList(new ArrayList<FairShareScheduler.Flow>());
+
+		final var release = block(scheduler);
+		final var futures = new ArrayList<CompletableFuture<Void>>();
+		for (var i = 0; i < 10; i++) {
+			futures.add(enqueue(scheduler, LARGE, admitted));
+		}
+		futures.add(enqueue(scheduler, SMALL, admitted));
+		release.countDown();
+		CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+		assertThat(admitted.indexOf(SMALL)).isOne();
+	}
+
+	@Test
+	void callWhenInterrupted() throws Exception {
+		final var scheduler = createScheduler(true, 1, Map.of());
+		final var release = block(scheduler);
+		final var failure = new CompletableFuture<Throwable>();
+
+		final var thread = Thread.ofVirtual().start(() -> {
+			try {
+				scheduler.run(SMALL, () -> {});
+			} catch (final UncheckedIOException e) {
+				failure.complete(e);
+			}
+		});
+		awaitQueued(scheduler, 1);
+		thread.interrupt();
+
+		assertThat(failure.get(5, TimeUnit.SECONDS)).hasMessageContaining("Interrupted while waiting for downstream capacity");
+		assertThat(scheduler.getQueued()).isZero();
+		release.countDown();
+	}
+
+	@Test
+	void awaitStartJitter() {
+		final var scheduler = new FairShareScheduler(new FairShareProperties(true, 1, Map.of(), Map.of(), Duration.ofMillis(50)), meterRegistry);
+
+		assertThatNoException().isThrownBy(scheduler::awaitStartJitter);
+	}
+
+	@Test
+	void flowOf() {
+		final var batch = createBatchEntity()
+			.withMunicipalityId("2281")
+			.withBatchPrefix("Faktura");
+
+		assertThat(FairShareScheduler.Flow.of(batch)).isEqualTo(new FairShareScheduler.Flow("2281", "Faktura"));
+		assertThat(FairShareScheduler.Flow.of(batch.withBatchPrefix(null)).batchPrefix()).isEqualTo(batch.getBasename());
+	}
+
+	@Test
+	void weight() {
+		final var properties = new FairShareProperties(true, 1, Map.of("2281", 3), Map.of("Faktura", 2), Duration.ZERO);
+
+		assertThat(properties.weight("2281", "Faktura")).isEqualTo(6);
+		assertThat(properties.weight("2281", "Kopia")).isEqualTo(3);
+		assertThat(properties.weight("2262", null)).isOne();
+	}
+
+	private FairShareScheduler createScheduler(final boolean enabled, final int capacity, final Map<String, Integer> municipalityWeights) {
+		return new FairShareScheduler(new FairShareProperties(enabled, capacity, municipalityWeights, Map.of(), Duration.ZERO), meterRegistry);
+	}
+
+	/**
+	 * Takes all the capacity, until the returned latch is counted down.
+	 */
+	private static CountDownLatch block(final FairShareScheduler scheduler) throws InterruptedException {
+		final var started = new CountDownLatch(1);
+		final var release = new CountDownLatch(1);
+		Thread.ofVirtual().start(() -> scheduler.run(BLOCKER, () -> {
+			started.countDown();
+			try {
+				release.await();
+			} catch (final InterruptedException _) {
+				Thread.currentThread().interrupt();
+			}
+		}));
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+		return release;
+	}
+
+	/**
+	 * Queues a call of the flow, and waits until it is queued - so that the calls are tagged in order.
+	 */
+	private static CompletableFuture<Void> enqueue(final FairShareScheduler scheduler, final FairShareScheduler.Flow flow, final List<FairShareScheduler.Flow> admitted)
+		throws InterruptedException {
+		final var queued = scheduler.getQueued();
+		final var future = CompletableFuture.runAsync(() -> scheduler.run(flow, () -> admitted.add(flow)), command -> Thread.ofVirtual().start(command));
+		awaitQueued(scheduler, queued + 1);
+		return future;
+	}
+
+	private static void awaitQueued(final FairShareScheduler scheduler, final int queued) throws InterruptedException {
+		for (var i = 0; i < 500 && scheduler.getQueued() < queued; i++) {
+			Thread.sleep(10);
+		}
+		assertThat(scheduler.getQueued()).isEqualTo(queued);
+	}
+}
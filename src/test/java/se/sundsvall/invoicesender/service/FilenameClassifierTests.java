@@ -0,0 +1,143 @@
+package se.sundsvall.invoicesender.service;
+
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import se.sundsvall.invoicesender.integration.db.entity.ItemStatus;
+import se.sundsvall.invoicesender.integration.db.entity.ItemType;
+import se.sundsvall.invoicesender.integration.raindance.RaindanceIntegrationProperties.RaindanceEnvironment;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IN_PROGRESS;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemType.OTHER;
+
+class FilenameClassifierTests {
+
+	// The pattern that the tokenizer replaced
+	private static final Pattern RECIPIENT_PATTERN = Pattern.compile("\\w+_\\d+_to_(\\d+)\\.pdf$");
+	private static final List<String> PREFIXES = List.of("Faktura", "Fakturakopia", "Betalningspaminnelse", "");
+	private static final List<String> REMINDER_PREFIXES = List.of("Betalningspaminnelse");
+
+	private final FilenameClassifier classifier = new FilenameClassifier(List.of("Faktura", "Betalningspaminnelse"), REMINDER_PREFIXES);
+
+	@ParameterizedTest
+	@MethodSource("argumentsForClassify")
+	void classify(final String filename, final ItemType expectedType, final ItemStatus expectedStatus, final String expectedLegalId, final boolean expectedReminder) {
+		assertThat(classifier.classify(filename)).isEqualTo(new FilenameClassifier.Classification(expectedType, expectedStatus, expectedLegalId, expectedReminder));
+	}
+
+	static Stream<Arguments> argumentsForClassify() {
+		return Stream.of(
+			Arguments.of("Faktura_00000001_to_9001011234.pdf", INVOICE, IN_PROGRESS, "9001011234", false),
+			Arguments.of("Betalningspaminnelse_00000001_to_9001011234.pdf", INVOICE, IN_PROGRESS, "9001011234", true),
+			Arguments.of("Betalningspaminnelse_00000001_to_.pdf", INVOICE, IN_PROGRESS, null, true),
+			Arguments.of("Faktura_extra_00000001_to_9001011234.pdf", INVOICE, IN_PROGRESS, "9001011234", false),
+			Arguments.of("Faktura_00000001_to_9001011234.PDF", INVOICE, IN_PROGRESS, null, false),
+			Arguments.of("Faktura_00000001_to_.pdf", INVOICE, IN_PROGRESS, null, false),
+			Arguments.of("Faktura__to_9001011234.pdf", INVOICE, IN_PROGRESS, null, false),
+			Arguments.of("Faktura-x_00000001_to_9001011234.pdf", INVOICE, IN_PROGRESS, null, false),
+			Arguments.of("_00000001_to_9001011234.pdf", INVOICE, IGNORED, null, false),
+			Arguments.of("Fakt_00000001_to_9001011234.pdf", INVOICE, IGNORED, null, false),
+			Arguments.of("faktura_00000001_to_9001011234.pdf", INVOICE, IGNORED, null, false),
+			Arguments.of("Faktura_00000001_to_9001011234.jpeg", OTHER, IGNORED, null, false),
+			Arguments.of("Betalningspaminnelse_00000001_to_9001011234.jpeg", OTHER, IGNORED, null, false),
+			Arguments.of("pdf", OTHER, IGNORED, null, false),
+			Arguments.of("", OTHER, IGNORED, null, false));
+	}
+
+	@Test
+	void classifyWithoutPrefixes() {
+		final var classification = new FilenameClassifier(null).classify("anything_1_to_9001011234.pdf");
+
+		assertThat(classification).isEqualTo(new FilenameClassifier.Classification(INVOICE, IN_PROGRESS, "9001011234", false));
+	}
+
+	@Test
+	void classifyIgnoredReminder() {
+		final var classification = new FilenameClassifier(List.of("Faktura"), REMINDER_PREFIXES).classify("Betalningspaminnelse_1_to_9001011234.pdf");
+
+		assertThat(classification).isEqualTo(new FilenameClassifier.Classification(INVOICE, IGNORED, null, false));
+	}
+
+	@Test
+	void of() {
+		final var environment = mock(RaindanceEnvironment.class);
+		when(environment.invoiceFilenamePrefixes()).thenReturn(List.of("Faktura", "Betalningspaminnelse"));
+		when(environment.reminderFilenamePrefixes()).thenReturn(REMINDER_PREFIXES);
+
+		final var classifier = FilenameClassifier.of(environment);
+
+		assertThat(classifier.classify("Faktura_1_to_9001011234.pdf").status()).isEqualTo(IN_PROGRESS);
+		assertThat(classifier.classify("Faktura_1_to_9001011234.pdf").reminder()).isFalse();
+		assertThat(classifier.classify("Betalningspaminnelse_1_to_9001011234.pdf").reminder()).isTrue();
+		assertThat(classifier.classify("Kopia_1_to_9001011234.pdf").status()).isEqualTo(IGNORED);
+	}
+
+	@Test
+	void classifyMatchesPatternAndPrefixesForRandomFilenames() {
+		final var random = new Random(4711);
+
+		for (var i = 0; i < 10; i++) {
+			final var prefixes = PREFIXES.subList(0, random.nextInt(PREFIXES.size() + 1));
+			final var classifier = new FilenameClassifier(prefixes, REMINDER_PREFIXES);
+
+			for (var j = 0; j < 20_000; j++) {
+				final var filename = randomFilename(random);
+
+				assertThat(classifier.classify(filename)).as(filename).isEqualTo(classifyWithPatternAndPrefixes(filename, prefixes));
+			}
+		}
+	}
+
+	/**
+	 * The classification as it was done before the classifier.
+	 */
+	private static FilenameClassifier.Classification classifyWithPatternAndPrefixes(final String filename, final List<String> prefixes) {
+		if (!filename.toLowerCase().endsWith(".pdf")) {
+			return new FilenameClassifier.Classification(OTHER, IGNORED, null, false);
+		}
+		if (!prefixes.isEmpty() && prefixes.stream().noneMatch(filename::startsWith)) {
+			return new FilenameClassifier.Classification(INVOICE, IGNORED, null, false);
+		}
+		final var matcher = RECIPIENT_PATTERN.matcher(filename);
+		final var reminder = REMINDER_PREFIXES.stream().anyMatch(filename::startsWith);
+		return new FilenameClassifier.Classification(INVOICE, IN_PROGRESS, matcher.matches() ? matcher.group(1) : null, reminder);
+	}
+
+	/**
+	 * Generates filenames that mostly follow the naming convention, with random tokens left out or replaced.
+	 */
+	private static String randomFilename(final Random random) {
+		final var tokens = new String[] {
+			pick(random, "Faktura", "Fakturakopia", "Betalningspaminnelse", "Fakt", "faktura", "X-1", "", "Faktura_extra", "Å"),
+			pick(random, "_", "-", "", "__"),
+			pick(random, "00000001", "1", "", "a1"),
+			pick(random, "_to_", "_TO_", "_to", "to_", "_to__"),
+			pick(random, "9001011234", "1", "", "900101-1234", "90010112345678"),
+			pick(random, ".pdf", ".PDF", ".Pdf", ".pdf.7z", "pdf", ".jpeg", "")
+		};
+
+		final var filename = new StringBuilder();
+		for (final var token : tokens) {
+			// Leave out a token now and then
+			if (random.nextInt(20) != 0) {
+				filename.append(token);
+			}
+		}
+		return filename.toString();
+	}
+
+	private static String pick(final Random random, final String... values) {
+		// Favour the first value, which follows the naming convention
+		return random.nextBoolean() ? values[0] : values[random.nextInt(values.length)];
+	}
+}
@@ -1,13 +1,19 @@
 package se.sundsvall.invoicesender.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.io.IOException;
 import java.nio.file.FileSystem;
+import java.time.Duration;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.io.FileUtils;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,11 +21,16 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.stubbing.Answer;
 import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
+import se.sundsvall.dept44.problem.ThrowableProblem;
 import se.sundsvall.dept44.test.annotation.resource.Load;
 import se.sundsvall.dept44.test.extension.ResourceLoaderExtension;
+import se.sundsvall.invoicesender.api.model.BatchPlanDto;
+import se.sundsvall.invoicesender.api.model.DryRunDto;
 import se.sundsvall.invoicesender.integration.citizen.CitizenIntegration;
 import se.sundsvall.invoicesender.integration.db.DbIntegration;
 import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
@@ -30,29 +41,46 @@ import se.sundsvall.invoicesender.integration.party.LegalIdAndPartyId;
 import se.sundsvall.invoicesender.integration.party.PartyIntegration;
 import se.sundsvall.invoicesender.integration.raindance.RaindanceIntegration;
 import se.sundsvall.invoicesender.integration.raindance.RaindanceIntegrationProperties;
+import se.sundsvall.invoicesender.integration.raindance.RemoteBatchFile;
+import se.sundsvall.invoicesender.service.StageLatencies.Stage;
+import se.sundsvall.invoicesender.service.model.BatchPlan;
 
 import static java.util.Optional.ofNullable;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.assertj.core.api.Assertions.within;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.doNothing;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.lenient;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.BAD_REQUEST;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
 import static se.sundsvall.invoicesender.TestDataFactory.createBatchEntity;
 import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.ALREADY_SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IN_PROGRESS;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.METADATA_INCOMPLETE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT_RETRYABLE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_LEGAL_ID_FOUND;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_PARTY_ID_FOUND;
@@ -61,6 +89,7 @@ import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.UNHANDLED;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.OTHER;
+import static se.sundsvall.invoicesender.service.model.ItemPriority.MOST_URGENT_FIRST;
 
 @ExtendWith({
 	MockitoExtension.class, ResourceLoaderExtension.class
@@ -68,6 +97,7 @@ import static se.sundsvall.invoicesender.integration.db.entity.ItemType.OTHER;
 class InvoiceProcessorTests {
 
 	private static final String MUNICIPALITY_ID = "2281";
+	private static final FairShareScheduler.Flow FLOW = new FairShareScheduler.Flow(MUNICIPALITY_ID, "BatchName");
 
 	@Mock
 	private FileSystem mockFileSystem;
@@ -90,6 +120,42 @@ class InvoiceProcessorTests {
 	@Mock
 	private RaindanceIntegrationProperties.RaindanceEnvironment environmentMock;
 
+	@Mock
+	private ResourceGovernor resourceGovernorMock;
+
+	@Spy
+	private BatchProcessingProperties batchProcessingProperties = new BatchProcessingProperties(2, DataSize.ofMegabytes(1), DataSize.ofMegabytes(3), 3, Duration.ZERO, true, Duration.ofDays(2), 2, Duration.ofSeconds(5));
+
+	@Spy
+	private BatchDispatcher batchDispatcher = new BatchDispatcher(batchProcessingProperties, new SimpleMeterRegistry());
+
+	@Spy
+	private FairShareScheduler fairShareScheduler = new FairShareScheduler(new FairShareProperties(true, 16, Map.of(), Map.of(), Duration.ZERO), new SimpleMeterRegistry());
+
+	@Spy
+	private StageLatencies stageLatencies = new StageLatencies(new SimpleMeterRegistry());
+
+	@Mock
+	private BatchLeaseManager batchLeaseManagerMock;
+
+	@Mock
+	private SendQueue sendQueueMock;
+
+	@Mock
+	private NotificationOutbox notificationOutboxMock;
+
+	@Mock
+	private SentInvoiceIndex sentInvoiceIndexMock;
+
+	@Spy
+	private LegalIdHasher legalIdHasher = new LegalIdHasher(new LegalIdHashProperties("someSecret"));
+
+	@Spy
+	private SendRetryProperties sendRetryProperties = new SendRetryProperties(3, Duration.ZERO, Duration.ZERO, Duration.ofMinutes(1));
+
+	@Spy
+	private CoordinationProperties coordinationProperties = new CoordinationProperties(true, "someOwner", Duration.ofMinutes(5), Duration.ofMinutes(1), Duration.ZERO, List.of());
+
 	@InjectMocks
 	private InvoiceProcessor invoiceProcessor;
 
@@ -100,8 +166,10 @@ class InvoiceProcessorTests {
 	}
 
 	@BeforeEach
-	void setup() {
+	void setup() throws IOException {
 		lenient().when(propertiesMock.environments()).thenReturn(Map.of(MUNICIPALITY_ID, environmentMock));
+		lenient().when(resourceGovernorMock.admit(anyString(), anyLong())).thenReturn(new ResourceGovernor.Admission(false, List.of()));
+		lenient().when(batchLeaseManagerMock.tryAcquire(anyString(), anyString(), any())).thenReturn(Optional.of(() -> {}));
 	}
 
 	/**
@@ -109,11 +177,11 @@ class InvoiceProcessorTests {
 	 */
 	@Test
 	void markItems_1() {
-		final var invoiceFilenamePrefixes = Map.of("2281", List.of("faktura"));
-		ReflectionTestUtils.setField(invoiceProcessor, "invoiceFilenamePrefixes", invoiceFilenamePrefixes);
+		final var filenameClassifiers = Map.of("2281", new FilenameClassifier(List.of("faktura")));
+		ReflectionTestUtils.setField(invoiceProcessor, "filenameClassifiers", filenameClassifiers);
 		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("faktura123.pdf"));
 
-		invoiceProcessor.markItems(item, MUNICIPALITY_ID);
+		invoiceProcessor.markItems(item, invoiceProcessor.classify(item, MUNICIPALITY_ID));
 
 		assertThat(item.getType()).isEqualTo(INVOICE);
 		assertThat(item.getStatus()).isEqualTo(IN_PROGRESS);
@@ -124,11 +192,11 @@ class InvoiceProcessorTests {
 	 */
 	@Test
 	void markItems_2() {
-		final var invoiceFilenamePrefixes = Map.of(MUNICIPALITY_ID, List.of("faktura"));
-		ReflectionTestUtils.setField(invoiceProcessor, "invoiceFilenamePrefixes", invoiceFilenamePrefixes);
+		final var filenameClassifiers = Map.of(MUNICIPALITY_ID, new FilenameClassifier(List.of("faktura")));
+		ReflectionTestUtils.setField(invoiceProcessor, "filenameClassifiers", filenameClassifiers);
 		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("should-be-ignored.pdf"));
 
-		invoiceProcessor.markItems(item, MUNICIPALITY_ID);
+		invoiceProcessor.markItems(item, invoiceProcessor.classify(item, MUNICIPALITY_ID));
 
 		assertThat(item.getType()).isEqualTo(INVOICE);
 		assertThat(item.getStatus()).isEqualTo(IGNORED);
@@ -141,7 +209,7 @@ class InvoiceProcessorTests {
 	void markItems_3() {
 		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("should-be-ignored.jpeg"));
 
-		invoiceProcessor.markItems(item, MUNICIPALITY_ID);
+		invoiceProcessor.markItems(item, invoiceProcessor.classify(item, MUNICIPALITY_ID));
 
 		assertThat(item.getType()).isEqualTo(OTHER);
 		assertThat(item.getStatus()).isEqualTo(IGNORED);
@@ -253,6 +321,7 @@ class InvoiceProcessorTests {
 		invoiceProcessor.fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
 
 		assertThat(item.getRecipientLegalId()).isEqualTo("1234");
+		assertThat(item.getRecipientLegalIdHash()).isEqualTo(legalIdHasher.hash("1234"));
 		assertThat(item.getRecipientPartyId()).isEqualTo("5678");
 		assertThat(item.getStatus()).isEqualTo(RECIPIENT_PARTY_ID_FOUND);
 	}
@@ -274,37 +343,133 @@ class InvoiceProcessorTests {
 	 * Test scenario where invoice is sent.
 	 */
 	@Test
-	void sendDigitalInvoices_1() {
+	void sendDigitalInvoices_1() throws IOException {
 		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setRecipientPartyId("1234"));
 		final var localPath = "any/path/";
-		when(messagingIntegrationMock.sendInvoice(localPath, item, MUNICIPALITY_ID)).thenReturn(SENT);
+		final var content = "content".getBytes();
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		when(raindanceIntegration.readItem(localPath, item.getFilename())).thenReturn(content);
+		when(messagingIntegrationMock.sendInvoice(content, item, MUNICIPALITY_ID)).thenReturn(SENT);
 
 		invoiceProcessor.sendDigitalInvoices(item, localPath, MUNICIPALITY_ID);
 
 		assertThat(item.getStatus()).isEqualTo(SENT);
+		verify(sentInvoiceIndexMock).add(item, MUNICIPALITY_ID);
 	}
 
 	/**
 	 * Test scenario where invoice is not sent.
 	 */
 	@Test
-	void sendDigitalInvoices_2() {
+	void sendDigitalInvoices_2() throws IOException {
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setRecipientPartyId("1234"));
+		final var localPath = "any/path/";
+		final var content = "content".getBytes();
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		when(raindanceIntegration.readItem(localPath, item.getFilename())).thenReturn(content);
+		when(messagingIntegrationMock.sendInvoice(content, item, MUNICIPALITY_ID)).thenReturn(NOT_SENT);
+
+		invoiceProcessor.sendDigitalInvoices(item, localPath, MUNICIPALITY_ID);
+
+		assertThat(item.getStatus()).isEqualTo(NOT_SENT);
+		verify(sentInvoiceIndexMock, never()).add(any(), any());
+	}
+
+	/**
+	 * Test scenario where the invoice can't be read from the batch.
+	 */
+	@Test
+	void sendDigitalInvoices_3() throws IOException {
 		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setRecipientPartyId("1234"));
 		final var localPath = "any/path/";
-		when(messagingIntegrationMock.sendInvoice(localPath, item, MUNICIPALITY_ID)).thenReturn(NOT_SENT);
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		when(raindanceIntegration.readItem(localPath, item.getFilename())).thenThrow(new IOException("Unable to read"));
 
 		invoiceProcessor.sendDigitalInvoices(item, localPath, MUNICIPALITY_ID);
 
 		assertThat(item.getStatus()).isEqualTo(NOT_SENT);
+		verify(messagingIntegrationMock, never()).sendInvoice(any(), any(), any());
+	}
+
+	/**
+	 * Test scenario where the invoice has already been sent in an earlier batch.
+	 */
+	@Test
+	void sendDigitalInvoices_4() throws IOException {
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setRecipientPartyId("1234"));
+		final var localPath = "any/path/";
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		when(sentInvoiceIndexMock.isSent(item, MUNICIPALITY_ID)).thenReturn(true);
+
+		invoiceProcessor.sendDigitalInvoices(item, localPath, MUNICIPALITY_ID);
+
+		assertThat(item.getStatus()).isEqualTo(ALREADY_SENT);
+		verify(raindanceIntegration, never()).readItem(any(), any());
+		verify(messagingIntegrationMock, never()).sendInvoice(any(), any(), any());
+		verify(sentInvoiceIndexMock, never()).add(any(), any());
+	}
+
+	/**
+	 * Test scenario where the recipient is known to have no reachable digital mailbox.
+	 */
+	@Test
+	void sendDigitalInvoices_5() throws IOException {
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setRecipientPartyId("1234"));
+		final var localPath = "any/path/";
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		when(messagingIntegrationMock.hasUnreachableMailbox("1234")).thenReturn(true);
+
+		invoiceProcessor.sendDigitalInvoices(item, localPath, MUNICIPALITY_ID);
+
+		assertThat(item.getStatus()).isEqualTo(NOT_SENT);
+		verify(raindanceIntegration, never()).readItem(any(), any());
+		verify(messagingIntegrationMock, never()).sendInvoice(any(), any(), any());
+	}
+
+	/**
+	 * Test scenario where the recipient is known to have no reachable digital mailbox, and the invoice isn't published to
+	 * the send queue.
+	 */
+	@Test
+	void enqueueDigitalInvoice_unreachableMailbox() {
+		final var batch = createBatchEntity();
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setRecipientPartyId("1234"));
+		when(messagingIntegrationMock.hasUnreachableMailbox("1234")).thenReturn(true);
+
+		assertThat(invoiceProcessor.enqueueDigitalInvoice(batch, item, "any/path/", MUNICIPALITY_ID)).isFalse();
+
+		assertThat(item.getStatus()).isEqualTo(NOT_SENT);
+		verifyNoInteractions(sendQueueMock);
+	}
+
+	/**
+	 * Test scenario where the invoice has already been sent in an earlier batch, and isn't published to the send queue.
+	 */
+	@Test
+	void enqueueDigitalInvoice_alreadySent() {
+		final var batch = createBatchEntity();
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setRecipientPartyId("1234"));
+		when(sentInvoiceIndexMock.isSent(item, MUNICIPALITY_ID)).thenReturn(true);
+
+		assertThat(invoiceProcessor.enqueueDigitalInvoice(batch, item, "any/path/", MUNICIPALITY_ID)).isFalse();
+
+		assertThat(item.getStatus()).isEqualTo(ALREADY_SENT);
+		verifyNoInteractions(sendQueueMock);
 	}
 
 	@Test
 	void extractInvoiceRecipientLegalId_1() {
 		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("Faktura_00000001_to_9001011234.pdf"));
 
-		invoiceProcessor.extractInvoiceRecipientLegalId(item);
+		invoiceProcessor.extractInvoiceRecipientLegalId(item, invoiceProcessor.classify(item, MUNICIPALITY_ID));
 
 		assertThat(item.getRecipientLegalId()).isEqualTo("9001011234");
+		assertThat(item.getRecipientLegalIdHash()).isEqualTo(legalIdHasher.hash("9001011234"));
 		assertThat(item.getStatus()).isEqualTo(RECIPIENT_LEGAL_ID_FOUND);
 	}
 
@@ -312,7 +477,7 @@ class InvoiceProcessorTests {
 	void extractInvoiceRecipientLegalId_2() {
 		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("Faktura_00000001_to_.pdf"));
 
-		invoiceProcessor.extractInvoiceRecipientLegalId(item);
+		invoiceProcessor.extractInvoiceRecipientLegalId(item, invoiceProcessor.classify(item, MUNICIPALITY_ID));
 
 		assertThat(item.getStatus()).isEqualTo(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID);
 	}
@@ -324,16 +489,17 @@ class InvoiceProcessorTests {
 			createItemEntity(itemBeingModified -> itemBeingModified.setStatus(SENT)),
 			createItemEntity(itemBeingModified -> itemBeingModified.setStatus(IGNORED)));
 		batch.setItems(items);
-		doNothing().when(dbIntegrationMock).persistBatch(batch);
+		final var date = LocalDate.now();
 
-		invoiceProcessor.updateAndPersistBatch(batch);
+		invoiceProcessor.updateAndPersistBatch(batch, date, MUNICIPALITY_ID);
 
 		assertThat(batch.isCompleted()).isTrue();
 		assertThat(batch.getCompletedAt()).isCloseTo(LocalDateTime.now(), within(5, ChronoUnit.SECONDS));
 		assertThat(batch.getIgnoredItems()).isEqualTo(1);
 		assertThat(batch.getSentItems()).isEqualTo(1);
 
-		verify(dbIntegrationMock).persistBatch(batch);
+		verify(notificationOutboxMock).completeBatch(batch, date, MUNICIPALITY_ID);
+		verifyNoInteractions(dbIntegrationMock);
 	}
 
 	/**
@@ -346,13 +512,13 @@ class InvoiceProcessorTests {
 
 		runMethodCommonStubs(item, invoiceProcessorSpy);
 
-		doAnswer(updateItem(IGNORED)).when(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(IGNORED)).when(invoiceProcessorSpy).markItems(eq(item), any());
 
 		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
 
-		verify(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).markItems(eq(item), any());
 		verify(invoiceProcessorSpy, never()).extractItemMetadata(any(), any());
-		verify(invoiceProcessorSpy, never()).extractInvoiceRecipientLegalId(any());
+		verify(invoiceProcessorSpy, never()).extractInvoiceRecipientLegalId(any(), any());
 		verify(invoiceProcessorSpy, never()).validateLegalId(any());
 		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(any(), eq(MUNICIPALITY_ID));
 		verify(invoiceProcessorSpy, never()).fetchInvoiceRecipientPartyIds(any(), any());
@@ -369,14 +535,14 @@ class InvoiceProcessorTests {
 		final var invoiceProcessorSpy = spy(invoiceProcessor);
 		runMethodCommonStubs(item, invoiceProcessorSpy);
 
-		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
 		doAnswer(updateItem(METADATA_INCOMPLETE)).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
 
 		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
 
-		verify(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).markItems(eq(item), any());
 		verify(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		verify(invoiceProcessorSpy, never()).extractInvoiceRecipientLegalId(any());
+		verify(invoiceProcessorSpy, never()).extractInvoiceRecipientLegalId(any(), any());
 		verify(invoiceProcessorSpy, never()).validateLegalId(any());
 		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(any(), eq(MUNICIPALITY_ID));
 		verify(invoiceProcessorSpy, never()).fetchInvoiceRecipientPartyIds(any(), any());
@@ -394,15 +560,15 @@ class InvoiceProcessorTests {
 
 		runMethodCommonStubs(item, invoiceProcessorSpy);
 
-		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		doAnswer(updateItem(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 
 		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
 
-		verify(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).markItems(eq(item), any());
 		verify(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		verify(invoiceProcessorSpy, never()).validateLegalId(any());
 		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(any(), eq(MUNICIPALITY_ID));
 		verify(invoiceProcessorSpy, never()).fetchInvoiceRecipientPartyIds(any(), any());
@@ -420,16 +586,16 @@ class InvoiceProcessorTests {
 
 		runMethodCommonStubs(item, invoiceProcessorSpy);
 
-		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		doAnswer(updateItem(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID)).when(invoiceProcessorSpy).validateLegalId(item);
 
 		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
 
-		verify(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).markItems(eq(item), any());
 		verify(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		verify(invoiceProcessorSpy).validateLegalId(item);
 		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(any(), eq(MUNICIPALITY_ID));
 		verify(invoiceProcessorSpy, never()).fetchInvoiceRecipientPartyIds(any(), any());
@@ -447,18 +613,18 @@ class InvoiceProcessorTests {
 		final var invoiceProcessorSpy = spy(invoiceProcessor);
 		runMethodCommonStubs(item, invoiceProcessorSpy);
 
-		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).validateLegalId(item);
 		doAnswer(updateItem(RECIPIENT_PARTY_ID_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
 		doAnswer(updateItem(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID)).when(invoiceProcessorSpy).markProtectedIdentityItems(item, MUNICIPALITY_ID);
 
 		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
 
-		verify(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).markItems(eq(item), any());
 		verify(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		verify(invoiceProcessorSpy).validateLegalId(item);
 		verify(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(any(), any());
 		verify(invoiceProcessorSpy).markProtectedIdentityItems(item, MUNICIPALITY_ID);
@@ -475,17 +641,17 @@ class InvoiceProcessorTests {
 		final var invoiceProcessorSpy = spy(invoiceProcessor);
 		runMethodCommonStubs(item, invoiceProcessorSpy);
 
-		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).validateLegalId(item);
 		doAnswer(updateItem(RECIPIENT_PARTY_ID_NOT_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
 
 		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
 
-		verify(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).markItems(eq(item), any());
 		verify(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		verify(invoiceProcessorSpy).validateLegalId(item);
 		verify(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
 		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(item, MUNICIPALITY_ID);
@@ -502,9 +668,9 @@ class InvoiceProcessorTests {
 		final var invoiceProcessorSpy = spy(invoiceProcessor);
 		runMethodCommonStubs(item, invoiceProcessorSpy);
 
-		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).validateLegalId(item);
 		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).markProtectedIdentityItems(item, MUNICIPALITY_ID);
 		doAnswer(updateItem(RECIPIENT_PARTY_ID_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
@@ -512,16 +678,784 @@ class InvoiceProcessorTests {
 
 		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
 
-		verify(invoiceProcessorSpy).markItems(item, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).markItems(eq(item), any());
 		verify(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
-		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(item);
+		verify(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
 		verify(invoiceProcessorSpy).validateLegalId(item);
 		verify(invoiceProcessorSpy).markProtectedIdentityItems(item, MUNICIPALITY_ID);
 		verify(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
+		verify(messagingIntegrationMock).checkMailboxes(eq(MUNICIPALITY_ID), any());
+		verify(invoiceProcessorSpy).sendDigitalInvoices(item, "mocked-path", MUNICIPALITY_ID);
+		verify(dbIntegrationMock, times(2)).persistItem(item);
+	}
+
+	/**
+	 * Test the scenario where multiple batch files are ingested and processed in parallel
+	 */
+	@Test
+	void run_8() throws IOException {
+		final var date = LocalDate.now();
+		final var batchFile1 = new RemoteBatchFile("BatchName-240101_1.zip.7z", 1024);
+		final var batchFile2 = new RemoteBatchFile("BatchName-240101_2.zip.7z", 2048);
+		final var batch1 = createBatchEntity(batch -> batch.setProcessingEnabled(false)).withId(1).withBasename("BatchName-240101_1");
+		final var batch2 = createBatchEntity(batch -> batch.setProcessingEnabled(false)).withId(2).withBasename("BatchName-240101_2");
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile1, batchFile2));
+		when(raindanceIntegration.readBatch(date, "BatchName", MUNICIPALITY_ID, batchFile1, false)).thenReturn(batch1);
+		when(raindanceIntegration.readBatch(date, "BatchName", MUNICIPALITY_ID, batchFile2, false)).thenReturn(batch2);
+		when(dbIntegrationMock.persistBatches(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		invoiceProcessor.run(date, MUNICIPALITY_ID, "BatchName");
+
+		verify(raindanceIntegration).writeBatch(batch1);
+		verify(raindanceIntegration).writeBatch(batch2);
+		verify(raindanceIntegration).closeBatch(batch1);
+		verify(raindanceIntegration).closeBatch(batch2);
+		verify(notificationOutboxMock).sendStatusReport(List.of(batch1, batch2), date, MUNICIPALITY_ID);
+	}
+
+	/**
+	 * Test the scenario where one of multiple batch files fails to be read
+	 */
+	@Test
+	void run_9() throws IOException {
+		final var date = LocalDate.now();
+		final var batchFile1 = new RemoteBatchFile("BatchName-240101_1.zip.7z", 1024);
+		final var batchFile2 = new RemoteBatchFile("BatchName-240101_2.zip.7z", 2048);
+		final var batch1 = createBatchEntity(batch -> batch.setProcessingEnabled(false));
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile1, batchFile2));
+		when(raindanceIntegration.readBatch(date, "BatchName", MUNICIPALITY_ID, batchFile1, false)).thenReturn(batch1);
+		when(raindanceIntegration.readBatch(date, "BatchName", MUNICIPALITY_ID, batchFile2, false)).thenThrow(new IOException("Read failed"));
+		when(dbIntegrationMock.persistBatches(any())).thenAnswer(invocation -> invocation.getArgument(0));
+
+		assertThatExceptionOfType(IOException.class)
+			.isThrownBy(() -> invoiceProcessor.run(date, MUNICIPALITY_ID, "BatchName"))
+			.withMessage("Read failed");
+
+		verify(raindanceIntegration).writeBatch(batch1);
+		verify(notificationOutboxMock, never()).sendStatusReport(any(), any(), any());
+	}
+
+	/**
+	 * Test the scenario where an incomplete batch is resumed from its last checkpoint
+	 */
+	@Test
+	void run_10() throws IOException {
+		final var date = LocalDate.now();
+		final var batchFile = new RemoteBatchFile("BatchName-240101_1.zip.7z", 1024);
+		final var sentItem = createItemEntity(item -> item.setFilename("Faktura_00000001_to_9001011234.pdf")).withId(1).withStatus(SENT);
+		final var verifiedItem = createItemEntity(item -> item.setFilename("Faktura_00000002_to_9101011234.pdf")).withId(2)
+			.withType(INVOICE).withStatus(RECIPIENT_PARTY_ID_FOUND).withRecipientPartyId("somePartyId");
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setLocalPath("mocked-path")).withItems(List.of(sentItem, verifiedItem));
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessorSpy, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile));
+		when(dbIntegrationMock.getIncompleteBatch(eq(MUNICIPALITY_ID), eq("BatchName-240101_1"), any())).thenReturn(Optional.of(batch));
+		doReturn("mocked-string").when(invoiceProcessorSpy).mapXmlFileToString("mocked-path");
+		doReturn("mocked-string").when(invoiceProcessorSpy).removeItemFromArchiveIndex(any(), eq("mocked-string"), eq("mocked-path"));
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(verifiedItem, "mocked-string");
+		doAnswer(updateItem(SENT)).when(invoiceProcessorSpy).sendDigitalInvoices(verifiedItem, "mocked-path", MUNICIPALITY_ID);
+		doNothing().when(invoiceProcessorSpy).updateAndPersistBatch(batch, date, MUNICIPALITY_ID);
+
+		invoiceProcessorSpy.run(date, MUNICIPALITY_ID, "BatchName");
+
+		verify(raindanceIntegration, never()).readBatch(any(), any(), any(), any(), anyBoolean());
+		verify(raindanceIntegration).restoreBatch(batch);
+		verify(dbIntegrationMock).persistBatch(batch);
+		verify(invoiceProcessorSpy).removeItemFromArchiveIndex(sentItem, "mocked-string", "mocked-path");
+		verify(invoiceProcessorSpy, never()).markItems(any(), any());
+		verify(invoiceProcessorSpy, never()).fetchInvoiceRecipientPartyIds(any(), any());
+		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(any(), any());
+		verify(invoiceProcessorSpy, never()).sendDigitalInvoices(eq(sentItem), any(), any());
+		verify(invoiceProcessorSpy).sendDigitalInvoices(verifiedItem, "mocked-path", MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).removeItemFromArchiveIndex(verifiedItem, "mocked-string", "mocked-path");
+		verify(raindanceIntegration).writeBatch(batch);
+		verify(notificationOutboxMock).sendStatusReport(List.of(batch), date, MUNICIPALITY_ID);
+	}
+
+	@Test
+	void resumeIncompleteBatches() throws IOException {
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setProcessingEnabled(false))
+			.withMunicipalityId(MUNICIPALITY_ID)
+			.withDate(LocalDate.now())
+			.withFileSize(1024L);
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(dbIntegrationMock.getIncompleteBatches(any())).thenReturn(List.of(batch));
+
+		invoiceProcessor.resumeIncompleteBatches();
+
+		verify(notificationOutboxMock, timeout(5000)).sendStatusReport(List.of(batch), batch.getDate(), MUNICIPALITY_ID);
+		verify(resourceGovernorMock).admit(batch.getBasename(), 1024L);
+		verify(raindanceIntegration).restoreBatch(batch);
+		verify(raindanceIntegration).writeBatch(batch);
+		verify(raindanceIntegration).closeBatch(batch);
+	}
+
+	/**
+	 * Test the scenario where the invoice is published to the send queue, and sent by another node
+	 */
+	@Test
+	void run_12() throws IOException {
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("Faktura_00000001_to_9001011234.pdf")).withId(1);
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+		runMethodCommonStubs(item, invoiceProcessorSpy);
+
+		when(sendQueueMock.isEnabled()).thenReturn(true);
+		when(sendQueueMock.awaitResults(any())).thenReturn(Map.of(1, SENT));
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).validateLegalId(item);
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).markProtectedIdentityItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(RECIPIENT_PARTY_ID_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
+		doReturn(true).when(invoiceProcessorSpy).enqueueDigitalInvoice(any(), eq(item), eq("mocked-path"), eq(MUNICIPALITY_ID));
+
+		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
+
+		assertThat(item.getStatus()).isEqualTo(SENT);
+		verify(invoiceProcessorSpy, never()).sendDigitalInvoices(any(), any(), any());
+		verify(invoiceProcessorSpy).enqueueDigitalInvoice(any(), eq(item), eq("mocked-path"), eq(MUNICIPALITY_ID));
+		verify(invoiceProcessorSpy).removeItemFromArchiveIndex(item, "mocked-string", "mocked-path");
+		verify(dbIntegrationMock, times(2)).persistItem(item);
+		verify(sendQueueMock).purge(any());
+	}
+
+	/**
+	 * Test the scenario where the invoice fails with a transient error, and is sent when retried
+	 */
+	@Test
+	void run_13() throws IOException {
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("Faktura_00000001_to_9001011234.pdf"));
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+		runMethodCommonStubs(item, invoiceProcessorSpy);
+
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(item), any());
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(item, "mocked-string");
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(item), any());
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).validateLegalId(item);
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).markProtectedIdentityItems(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(RECIPIENT_PARTY_ID_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(item, MUNICIPALITY_ID);
+		doAnswer(updateItem(NOT_SENT_RETRYABLE)).doAnswer(updateItem(SENT)).when(invoiceProcessorSpy).sendDigitalInvoices(item, "mocked-path", MUNICIPALITY_ID);
+
+		invoiceProcessorSpy.run(LocalDate.now(), MUNICIPALITY_ID, "BatchName");
+
+		assertThat(item.getStatus()).isEqualTo(SENT);
+		verify(invoiceProcessorSpy, times(2)).sendDigitalInvoices(item, "mocked-path", MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy).retryDigitalInvoices(eq(List.of(item)), eq("mocked-string"), eq("mocked-path"), eq(MUNICIPALITY_ID), any());
+		verify(fairShareScheduler, times(5)).run(any(), any());
+		verify(invoiceProcessorSpy).removeItemFromArchiveIndex(item, "mocked-string", "mocked-path");
+		verify(dbIntegrationMock, times(3)).persistItem(item);
+	}
+
+	/**
+	 * Test the scenario where retried invoices keep failing with transient errors, until the max number of attempts
+	 */
+	@Test
+	void retryDigitalInvoices_1() throws IOException {
+		final var item = createItemEntity().withStatus(NOT_SENT_RETRYABLE);
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+		doAnswer(updateItem(NOT_SENT_RETRYABLE)).when(invoiceProcessorSpy).sendDigitalInvoices(item, "mocked-path", MUNICIPALITY_ID);
+
+		invoiceProcessorSpy.retryDigitalInvoices(List.of(item), "mocked-string", "mocked-path", MUNICIPALITY_ID, FLOW);
+
+		assertThat(item.getStatus()).isEqualTo(NOT_SENT);
+		verify(invoiceProcessorSpy, times(3)).sendDigitalInvoices(item, "mocked-path", MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy, never()).removeItemFromArchiveIndex(any(), any(), any());
+		verify(dbIntegrationMock).persistItem(item);
+	}
+
+	/**
+	 * Test the scenario where a retried invoice fails with a permanent error
+	 */
+	@Test
+	void retryDigitalInvoices_2() throws IOException {
+		final var item = createItemEntity().withStatus(NOT_SENT_RETRYABLE);
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+		doAnswer(updateItem(NOT_SENT)).when(invoiceProcessorSpy).sendDigitalInvoices(item, "mocked-path", MUNICIPALITY_ID);
+
+		invoiceProcessorSpy.retryDigitalInvoices(List.of(item), "mocked-string", "mocked-path", MUNICIPALITY_ID, FLOW);
+
+		assertThat(item.getStatus()).isEqualTo(NOT_SENT);
 		verify(invoiceProcessorSpy).sendDigitalInvoices(item, "mocked-path", MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy, never()).removeItemFromArchiveIndex(any(), any(), any());
+		verify(dbIntegrationMock).persistItem(item);
+	}
+
+	/**
+	 * Test the scenario where the retry deadline has passed before the first retry
+	 */
+	@Test
+	void retryDigitalInvoices_3() throws IOException {
+		final var item = createItemEntity().withStatus(NOT_SENT_RETRYABLE);
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+		doReturn(Duration.ofMinutes(1)).when(sendRetryProperties).initialBackoff();
+		doReturn(Duration.ofMinutes(1)).when(sendRetryProperties).maxBackoff();
+		doReturn(Duration.ofSeconds(30)).when(sendRetryProperties).deadline();
+
+		invoiceProcessorSpy.retryDigitalInvoices(List.of(item), "mocked-string", "mocked-path", MUNICIPALITY_ID, FLOW);
+
+		assertThat(item.getStatus()).isEqualTo(NOT_SENT);
+		verify(invoiceProcessorSpy, never()).sendDigitalInvoices(any(), any(), any());
 		verify(dbIntegrationMock).persistItem(item);
 	}
 
+	@Test
+	void sendRetryBackoff() {
+		final var properties = new SendRetryProperties(10, Duration.ofSeconds(5), Duration.ofMinutes(2), Duration.ofMinutes(15));
+
+		assertThat(properties.backoff(1)).isEqualTo(Duration.ofSeconds(5));
+		assertThat(properties.backoff(2)).isEqualTo(Duration.ofSeconds(10));
+		assertThat(properties.backoff(5)).isEqualTo(Duration.ofSeconds(80));
+		assertThat(properties.backoff(6)).isEqualTo(Duration.ofMinutes(2));
+		assertThat(properties.backoff(100)).isEqualTo(Duration.ofMinutes(2));
+	}
+
+	/**
+	 * Test scenario where the batches are already being processed by another node.
+	 */
+	@Test
+	void run_11() throws IOException {
+		final var date = LocalDate.now();
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(batchLeaseManagerMock.tryAcquire(MUNICIPALITY_ID, "BatchName", date)).thenReturn(Optional.empty());
+
+		invoiceProcessor.run(date, MUNICIPALITY_ID, "BatchName");
+
+		verifyNoInteractions(raindanceIntegration, notificationOutboxMock);
+	}
+
+	/**
+	 * Test scenario where the batches have already been processed by another node.
+	 */
+	@Test
+	void run_14() throws IOException {
+		final var date = LocalDate.now();
+		final var lease = mock(BatchLeaseManager.Lease.class);
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(batchLeaseManagerMock.tryAcquire(MUNICIPALITY_ID, "BatchName", date)).thenReturn(Optional.of(lease));
+		when(batchLeaseManagerMock.isCompleted(MUNICIPALITY_ID, "BatchName", date)).thenReturn(true);
+
+		invoiceProcessor.run(date, MUNICIPALITY_ID, "BatchName");
+
+		verify(lease, never()).complete();
+		verify(lease).close();
+		verifyNoInteractions(raindanceIntegration, notificationOutboxMock);
+	}
+
+	/**
+	 * Test scenario where the lease is marked as completed once the run has completed.
+	 */
+	@Test
+	void run_15() throws IOException {
+		final var date = LocalDate.now();
+		final var lease = mock(BatchLeaseManager.Lease.class);
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(batchLeaseManagerMock.tryAcquire(MUNICIPALITY_ID, "BatchName", date)).thenReturn(Optional.of(lease));
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of());
+
+		invoiceProcessor.run(date, MUNICIPALITY_ID, "BatchName");
+
+		final var inOrder = inOrder(notificationOutboxMock, lease);
+		inOrder.verify(notificationOutboxMock).sendStatusReport(List.of(), date, MUNICIPALITY_ID);
+		inOrder.verify(lease).complete();
+		inOrder.verify(lease).close();
+	}
+
+	/**
+	 * Test scenario where the lease is lost to another node during the run - nothing more is sent or written back.
+	 */
+	@Test
+	void run_16() throws IOException {
+		final var date = LocalDate.now();
+		final var batchFile = new RemoteBatchFile("BatchName-240101_1.zip.7z", 1024);
+		final var verifiedItem = createItemEntity(item -> item.setFilename("Faktura_00000002_to_9101011234.pdf")).withId(2)
+			.withType(INVOICE).withStatus(RECIPIENT_PARTY_ID_FOUND).withRecipientPartyId("somePartyId");
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setLocalPath("mocked-path")).withItems(List.of(verifiedItem));
+		final var lease = mock(BatchLeaseManager.Lease.class);
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessorSpy, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(batchLeaseManagerMock.tryAcquire(MUNICIPALITY_ID, "BatchName", date)).thenReturn(Optional.of(lease));
+		doThrow(new IOException("Lease has been lost to another node")).when(batchLeaseManagerMock).checkHeld(any());
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile));
+		when(dbIntegrationMock.getIncompleteBatch(eq(MUNICIPALITY_ID), eq("BatchName-240101_1"), any())).thenReturn(Optional.of(batch));
+		doReturn("mocked-string").when(invoiceProcessorSpy).mapXmlFileToString("mocked-path");
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(verifiedItem, "mocked-string");
+
+		assertThatExceptionOfType(IOException.class)
+			.isThrownBy(() -> invoiceProcessorSpy.run(date, MUNICIPALITY_ID, "BatchName"))
+			.withMessage("Lease has been lost to another node");
+
+		verify(invoiceProcessorSpy, never()).sendDigitalInvoices(any(), any(), any());
+		verify(raindanceIntegration, never()).writeBatch(any());
+		verify(notificationOutboxMock, never()).sendStatusReport(any(), any(), any());
+		verify(lease, never()).complete();
+		verify(lease).close();
+	}
+
+	@Test
+	void resumeIncompleteBatchesWhenLeasedByAnotherNode() {
+		final var batch = createBatchEntity()
+			.withMunicipalityId(MUNICIPALITY_ID)
+			.withBatchPrefix("BatchName")
+			.withDate(LocalDate.now());
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(dbIntegrationMock.getIncompleteBatches(any())).thenReturn(List.of(batch));
+		when(batchLeaseManagerMock.tryAcquire(MUNICIPALITY_ID, "BatchName", batch.getDate())).thenReturn(Optional.empty());
+
+		invoiceProcessor.resumeIncompleteBatches();
+
+		verify(batchLeaseManagerMock, timeout(5000)).tryAcquire(MUNICIPALITY_ID, "BatchName", batch.getDate());
+		verifyNoInteractions(raindanceIntegration, notificationOutboxMock);
+	}
+
+	@Test
+	void takeOverExpiredLeases() throws IOException {
+		final var date = LocalDate.now();
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setProcessingEnabled(false))
+			.withMunicipalityId(MUNICIPALITY_ID)
+			.withBatchPrefix("BatchName")
+			.withDate(date);
+		final var otherBatch = createBatchEntity()
+			.withId(2)
+			.withMunicipalityId(MUNICIPALITY_ID)
+			.withBatchPrefix("OtherBatchName")
+			.withDate(date);
+		final var lease = mock(BatchLeaseManager.Lease.class);
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(batchLeaseManagerMock.getExpiredLeases()).thenReturn(List.of(new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, "BatchName", date)));
+		when(batchLeaseManagerMock.tryAcquire(MUNICIPALITY_ID, "BatchName", date)).thenReturn(Optional.of(lease));
+		when(dbIntegrationMock.getIncompleteBatches(any())).thenReturn(List.of(batch, otherBatch));
+
+		invoiceProcessor.takeOverExpiredLeases();
+
+		verify(notificationOutboxMock, timeout(5000)).sendStatusReport(List.of(batch), date, MUNICIPALITY_ID);
+		verify(lease, timeout(5000)).close();
+		verify(raindanceIntegration).restoreBatch(batch);
+		verify(raindanceIntegration, never()).restoreBatch(otherBatch);
+	}
+
+	@Test
+	void takeOverExpiredLeasesWithoutIncompleteBatches() throws IOException {
+		final var date = LocalDate.now();
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(batchLeaseManagerMock.getExpiredLeases()).thenReturn(List.of(new BatchLeaseManager.LeaseKey(MUNICIPALITY_ID, "BatchName", date)));
+		when(dbIntegrationMock.getIncompleteBatches(any())).thenReturn(List.of());
+
+		invoiceProcessor.takeOverExpiredLeases();
+
+		// The node crashed before it persisted any batch - the batches are run from the start
+		verify(raindanceIntegration, timeout(5000)).listBatchFiles(date, "BatchName");
+		verify(notificationOutboxMock, timeout(5000)).sendStatusReport(List.of(), date, MUNICIPALITY_ID);
+		verify(raindanceIntegration, never()).restoreBatch(any());
+	}
+
+	@Test
+	void runDispatchesEachBatchSetup() throws IOException {
+		final var date = LocalDate.now();
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		when(raindanceIntegration.getBatchSetups()).thenReturn(Set.of("BatchName", "OtherBatchName"));
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+		doNothing().when(invoiceProcessorSpy).run(eq(date), eq(MUNICIPALITY_ID), anyString());
+
+		invoiceProcessorSpy.run(date, MUNICIPALITY_ID);
+
+		verify(batchDispatcher, times(2)).dispatch(any());
+		verify(invoiceProcessorSpy, timeout(5000)).run(date, MUNICIPALITY_ID, "BatchName");
+		verify(invoiceProcessorSpy, timeout(5000)).run(date, MUNICIPALITY_ID, "OtherBatchName");
+	}
+
+	@Test
+	void executeScheduledBatch() throws IOException {
+		final var date = LocalDate.now();
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+		doNothing().when(invoiceProcessorSpy).run(date, MUNICIPALITY_ID, "BatchName");
+
+		invoiceProcessorSpy.executeScheduledBatch(date, MUNICIPALITY_ID, "BatchName");
+
+		final var inOrder = inOrder(fairShareScheduler, invoiceProcessorSpy);
+		inOrder.verify(fairShareScheduler).awaitStartJitter();
+		inOrder.verify(invoiceProcessorSpy).run(date, MUNICIPALITY_ID, "BatchName");
+	}
+
+	@Test
+	void takeOverExpiredLeasesWhenNoneHaveExpired() {
+		invoiceProcessor.takeOverExpiredLeases();
+
+		verify(batchLeaseManagerMock).getExpiredLeases();
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void closeWaitsForBatchesBeforeClosingConnections() throws Exception {
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		final var started = new CountDownLatch(1);
+		final var finished = new AtomicBoolean();
+		batchDispatcher.dispatch(() -> {
+			started.countDown();
+			try {
+				Thread.sleep(200);
+			} catch (final InterruptedException _) {
+				Thread.currentThread().interrupt();
+			}
+			finished.set(true);
+		});
+		assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+		invoiceProcessor.close();
+
+		assertThat(finished).isTrue();
+		final var inOrder = inOrder(batchDispatcher, raindanceIntegration);
+		inOrder.verify(batchDispatcher).close();
+		inOrder.verify(raindanceIntegration).close();
+	}
+
+	@Test
+	void planBatch() {
+		// Items are equal by id, so give each its own
+		final var handled = createItemEntity(item -> item.setStatus(SENT)).withId(1);
+		final var resumed = createItemEntity(item -> item.setStatus(RECIPIENT_PARTY_ID_FOUND)).withId(2);
+		final var ignored = createItemEntity().withId(3);
+		final var invalidLegalId = createItemEntity(item -> item.setFilename("Faktura_00000001_to_1234.pdf")).withId(4);
+		final var lookup = createItemEntity(item -> item.setFilename("Faktura_00000001_to_9001011234.pdf")).withId(5);
+		final var batch = createBatchEntity().withItems(List.of(handled, resumed, ignored, invalidLegalId, lookup));
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(any(), eq("mocked-string"));
+		doAnswer(updateItem(OTHER, IGNORED)).when(invoiceProcessorSpy).markItems(eq(ignored), any());
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(invalidLegalId), any());
+		doAnswer(updateItem(INVOICE, IN_PROGRESS)).when(invoiceProcessorSpy).markItems(eq(lookup), any());
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(invalidLegalId), any());
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_FOUND)).when(invoiceProcessorSpy).extractInvoiceRecipientLegalId(eq(lookup), any());
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID)).when(invoiceProcessorSpy).validateLegalId(invalidLegalId);
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).validateLegalId(lookup);
+
+		final var plan = invoiceProcessorSpy.planBatch(batch, "mocked-string", MUNICIPALITY_ID);
+
+		assertThat(plan.batch()).isSameAs(batch);
+		assertThat(plan.skippedItems()).containsExactly(ignored, invalidLegalId);
+		assertThat(plan.recipientLookups()).containsExactly(lookup);
+		assertThat(plan.readyToSend()).containsExactly(resumed);
+		verify(invoiceProcessorSpy, never()).markItems(eq(handled), any());
+		verify(invoiceProcessorSpy, never()).markItems(eq(resumed), any());
+		verify(invoiceProcessorSpy, never()).fetchInvoiceRecipientPartyIds(any(), any());
+		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(any(), any());
+		verifyNoInteractions(partyIntegrationMock, citizenIntegrationMock, messagingIntegrationMock, dbIntegrationMock);
+	}
+
+	@Test
+	void planBatchMarksReminders() {
+		ReflectionTestUtils.setField(invoiceProcessor, "filenameClassifiers", Map.of(MUNICIPALITY_ID, new FilenameClassifier(List.of(), List.of("Betalningspaminnelse"))));
+		// Items are equal by id, so give each its own
+		final var invoice = createItemEntity(item -> item.setFilename("Faktura_00000001_to_9001011234.pdf")).withId(1);
+		final var reminder = createItemEntity(item -> item.setFilename("Betalningspaminnelse_00000002_to_9001011234.pdf")).withId(2);
+		final var resumedReminder = createItemEntity(item -> item.setFilename("Betalningspaminnelse_00000003_to_9001011234.pdf")).withId(3)
+			.withStatus(RECIPIENT_PARTY_ID_FOUND);
+		final var batch = createBatchEntity().withItems(List.of(invoice, reminder, resumedReminder));
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).extractItemMetadata(any(), eq("mocked-string"));
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).validateLegalId(any());
+
+		final var plan = invoiceProcessorSpy.planBatch(batch, "mocked-string", MUNICIPALITY_ID);
+
+		assertThat(plan.recipientLookups()).containsExactly(invoice, reminder);
+		assertThat(plan.readyToSend()).containsExactly(resumedReminder);
+		assertThat(invoice.getMetadata().isReminder()).isFalse();
+		assertThat(reminder.getMetadata().isReminder()).isTrue();
+		assertThat(resumedReminder.getMetadata().isReminder()).isTrue();
+		// The reminder is looked up and sent first
+		assertThat(plan.recipientLookups().stream().sorted(MOST_URGENT_FIRST).toList()).containsExactly(reminder, invoice);
+	}
+
+	@Test
+	void markReminderWithoutMetadata() {
+		final var item = createItemEntity().withMetadata(null);
+
+		invoiceProcessor.markReminder(item, new FilenameClassifier.Classification(INVOICE, IN_PROGRESS, null, true));
+
+		assertThat(item.getMetadata()).isNull();
+	}
+
+	@Test
+	void mapToBatchPlanDto() throws IOException {
+		final var skipped = createItemEntity(item -> item.setFilename("skipped.jpeg"));
+		final var lookup = createItemEntity(item -> item.setFilename("lookup.pdf"));
+		final var resumed = createItemEntity(item -> item.setFilename("resumed.pdf"));
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setLocalPath("mocked-path"))
+			.withBasename("BatchName-240101_1")
+			.withItems(List.of(skipped, lookup, resumed));
+		final var plan = new BatchPlan(batch, List.of(skipped), List.of(lookup), List.of(resumed));
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+
+		when(messagingIntegrationMock.estimateMailboxCheckCalls(2)).thenReturn(1);
+		when(raindanceIntegration.getItemSize("mocked-path", "lookup.pdf")).thenReturn(1000L);
+		when(raindanceIntegration.getItemSize("mocked-path", "resumed.pdf")).thenReturn(-1L);
+
+		final var dto = invoiceProcessor.mapToBatchPlanDto(plan, raindanceIntegration);
+
+		assertThat(dto.basename()).isEqualTo("BatchName-240101_1");
+		assertThat(dto.totalItems()).isEqualTo(3);
+		assertThat(dto.skippedItems()).isOne();
+		assertThat(dto.recipientLookups()).isOne();
+		assertThat(dto.readyToSend()).isOne();
+		assertThat(dto.remoteCalls()).isEqualTo(new BatchPlanDto.RemoteCalls(1, 1, 3));
+		assertThat(dto.bytesToSend()).isEqualTo(1000L);
+		assertThat(dto.items()).containsExactly(
+			new BatchPlanDto.PlannedItem("skipped.jpeg", BatchPlanDto.Action.SKIP),
+			new BatchPlanDto.PlannedItem("lookup.pdf", BatchPlanDto.Action.LOOK_UP_RECIPIENT),
+			new BatchPlanDto.PlannedItem("resumed.pdf", BatchPlanDto.Action.SEND));
+	}
+
+	@Test
+	void planWhenProcessingIsDisabled() throws IOException {
+		final var date = LocalDate.now();
+		final var batchFile = new RemoteBatchFile("BatchName-240101_1.zip.7z", 1024);
+		final var item = createItemEntity();
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setProcessingEnabled(false))
+			.withLocalPath("mocked-path")
+			.withItems(List.of(item));
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(raindanceIntegration.getBatchSetups()).thenReturn(Set.of("BatchName"));
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile));
+		when(raindanceIntegration.readBatch(date, "BatchName", MUNICIPALITY_ID, batchFile, false)).thenReturn(batch);
+
+		final var plans = invoiceProcessor.plan(date, MUNICIPALITY_ID);
+
+		assertThat(plans).hasSize(1).first().satisfies(plan -> {
+			assertThat(plan.processingEnabled()).isFalse();
+			assertThat(plan.skippedItems()).isOne();
+			assertThat(plan.recipientLookups()).isZero();
+			assertThat(plan.readyToSend()).isZero();
+		});
+		verify(raindanceIntegration).closeBatch(batch);
+		verify(raindanceIntegration, never()).writeBatch(any());
+		verifyNoInteractions(dbIntegrationMock, partyIntegrationMock, citizenIntegrationMock);
+	}
+
+	@Test
+	void dryRunWithLookups() throws IOException {
+		final var date = LocalDate.now();
+		final var batchFile = new RemoteBatchFile("BatchName-240101_1.zip.7z", 1024);
+		final var notFound = createItemEntity(item -> item.setFilename("Faktura_00000001_to_9001011234.pdf")).withId(1);
+		final var protectedIdentity = createItemEntity(item -> item.setFilename("Faktura_00000002_to_9001011234.pdf")).withId(2);
+		final var verified = createItemEntity(item -> item.setFilename("Faktura_00000003_to_9001011234.pdf")).withId(3);
+		final var batch = createBatchEntity().withLocalPath("mocked-path").withItems(List.of(notFound, protectedIdentity, verified));
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessorSpy, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(raindanceIntegration.getBatchSetups()).thenReturn(Set.of("BatchName"));
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile));
+		when(raindanceIntegration.readBatch(date, "BatchName", MUNICIPALITY_ID, batchFile, false)).thenReturn(batch);
+		doReturn("mocked-string").when(invoiceProcessorSpy).mapXmlFileToString("mocked-path");
+		doReturn(new BatchPlan(batch, List.of(), List.of(notFound, protectedIdentity, verified), List.of()))
+			.when(invoiceProcessorSpy).planBatch(batch, "mocked-string", MUNICIPALITY_ID);
+		doAnswer(updateItem(RECIPIENT_PARTY_ID_NOT_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(notFound, MUNICIPALITY_ID);
+		doAnswer(updateItem(RECIPIENT_PARTY_ID_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(protectedIdentity, MUNICIPALITY_ID);
+		doAnswer(updateItem(RECIPIENT_PARTY_ID_FOUND)).when(invoiceProcessorSpy).fetchInvoiceRecipientPartyIds(verified, MUNICIPALITY_ID);
+		doAnswer(updateItem(RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID)).when(invoiceProcessorSpy).markProtectedIdentityItems(protectedIdentity, MUNICIPALITY_ID);
+		doAnswer(doNotUpdate()).when(invoiceProcessorSpy).markProtectedIdentityItems(verified, MUNICIPALITY_ID);
+		when(messagingIntegrationMock.estimateMailboxCheckCalls(1)).thenReturn(1);
+		stageLatencies.record(Stage.SEND, Duration.ofMillis(200));
+
+		final var dryRuns = invoiceProcessorSpy.dryRun(date, MUNICIPALITY_ID, true);
+
+		assertThat(dryRuns).hasSize(1).first().satisfies(dryRun -> {
+			assertThat(dryRun.recipientsLookedUp()).isTrue();
+			assertThat(dryRun.plan().recipientLookups()).isEqualTo(3);
+			assertThat(dryRun.stages()).extracting(DryRunDto.Stage::name, DryRunDto.Stage::calls, DryRunDto.Stage::measured).containsExactly(
+				tuple("download", 1, true),
+				tuple("plan", 1, true),
+				tuple("party-lookup", 3, true),
+				tuple("citizen-lookup", 2, true),
+				tuple("mailbox-check", 1, false),
+				tuple("send", 1, false));
+			// Nothing has been recorded for the mailbox check
+			assertThat(dryRun.stages().get(4).durationMillis()).isNull();
+			assertThat(dryRun.stages().get(5).durationMillis()).isEqualTo(200L);
+			assertThat(dryRun.estimatedDurationMillis()).isGreaterThanOrEqualTo(200);
+		});
+		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(notFound, MUNICIPALITY_ID);
+		verify(invoiceProcessorSpy, never()).sendDigitalInvoices(any(), any(), any());
+		verify(messagingIntegrationMock, never()).checkMailboxes(any(), any());
+		verify(raindanceIntegration, never()).writeBatch(any());
+		verify(raindanceIntegration, never()).archiveOriginalBatch(any());
+		verify(raindanceIntegration).closeBatch(batch);
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void dryRunWithoutLookups() throws IOException {
+		final var date = LocalDate.now();
+		final var batchFile = new RemoteBatchFile("BatchName-240101_1.zip.7z", 1024);
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.setFilename("Faktura_00000001_to_9001011234.pdf"));
+		final var batch = createBatchEntity().withLocalPath("mocked-path").withItems(List.of(item));
+		final var invoiceProcessorSpy = spy(invoiceProcessor);
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessorSpy, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+
+		when(raindanceIntegration.getBatchSetups()).thenReturn(Set.of("BatchName"));
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile));
+		when(raindanceIntegration.readBatch(date, "BatchName", MUNICIPALITY_ID, batchFile, false)).thenReturn(batch);
+		doReturn("mocked-string").when(invoiceProcessorSpy).mapXmlFileToString("mocked-path");
+		doReturn(new BatchPlan(batch, List.of(), List.of(item), List.of()))
+			.when(invoiceProcessorSpy).planBatch(batch, "mocked-string", MUNICIPALITY_ID);
+		when(messagingIntegrationMock.estimateMailboxCheckCalls(1)).thenReturn(1);
+		stageLatencies.record(Stage.PARTY_LOOKUP, Duration.ofMillis(100));
+		stageLatencies.record(Stage.CITIZEN_LOOKUP, Duration.ofMillis(50));
+
+		final var dryRuns = invoiceProcessorSpy.dryRun(date, MUNICIPALITY_ID, false);
+
+		assertThat(dryRuns).hasSize(1).first().satisfies(dryRun -> {
+			assertThat(dryRun.recipientsLookedUp()).isFalse();
+			assertThat(dryRun.stages()).extracting(DryRunDto.Stage::name, DryRunDto.Stage::calls, DryRunDto.Stage::durationMillis).contains(
+				tuple("party-lookup", 1, 100L),
+				tuple("citizen-lookup", 1, 50L),
+				tuple("send", 1, null));
+		});
+		verify(invoiceProcessorSpy, never()).fetchInvoiceRecipientPartyIds(any(), any());
+		verify(invoiceProcessorSpy, never()).markProtectedIdentityItems(any(), any());
+		verifyNoInteractions(partyIntegrationMock, citizenIntegrationMock, dbIntegrationMock);
+	}
+
+	@Test
+	void replay() throws IOException {
+		final var date = LocalDate.of(2024, 1, 1);
+		final var notSent = createItemEntity(item -> item.setStatus(NOT_SENT)).withId(1);
+		final var sent = createItemEntity(item -> item.setStatus(SENT)).withId(2);
+		final var ignored = createItemEntity(item -> item.setStatus(IGNORED)).withId(3);
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setProcessingEnabled(false))
+			.withBatchPrefix("BatchName")
+			.withDate(date)
+			.withCompleted(true)
+			.withData(new byte[] {
+				1, 2, 3
+			})
+			.withItems(List.of(notSent, sent, ignored));
+
+		final var raindanceIntegration = mock(RaindanceIntegration.class);
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, raindanceIntegration));
+		when(dbIntegrationMock.getBatch(MUNICIPALITY_ID, 123)).thenReturn(Optional.of(batch));
+
+		invoiceProcessor.replay(MUNICIPALITY_ID, 123, null);
+
+		assertThat(notSent.getStatus()).isEqualTo(UNHANDLED);
+		assertThat(sent.getStatus()).isEqualTo(SENT);
+		assertThat(ignored.getStatus()).isEqualTo(IGNORED);
+		assertThat(batch.isCompleted()).isTrue();
+		verify(batchLeaseManagerMock).tryAcquire(MUNICIPALITY_ID, "BatchName", date);
+		verify(resourceGovernorMock).admit("someBasename", 3);
+		verify(dbIntegrationMock).persistItem(notSent);
+		verify(raindanceIntegration).rehydrateBatch(batch);
+		verify(raindanceIntegration, never()).restoreBatch(any());
+		verify(raindanceIntegration, never()).listBatchFiles(any(), any());
+		verify(raindanceIntegration).writeBatch(batch);
+		verify(raindanceIntegration, times(2)).closeBatch(batch);
+		verify(notificationOutboxMock).sendStatusReport(List.of(batch), date, MUNICIPALITY_ID);
+	}
+
+	@Test
+	void replayInSelectedStatuses() throws IOException {
+		final var notSent = createItemEntity(item -> item.setStatus(NOT_SENT)).withId(1);
+		final var partyIdNotFound = createItemEntity(item -> item.setStatus(RECIPIENT_PARTY_ID_NOT_FOUND)).withId(2);
+		final var batch = createBatchEntity(batchBeingModified -> batchBeingModified.setProcessingEnabled(false))
+			.withBatchPrefix("BatchName")
+			.withDate(LocalDate.now())
+			.withData(new byte[1])
+			.withItems(List.of(notSent, partyIdNotFound));
+
+		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", Map.of(MUNICIPALITY_ID, mock(RaindanceIntegration.class)));
+		when(dbIntegrationMock.getBatch(MUNICIPALITY_ID, 123)).thenReturn(Optional.of(batch));
+
+		invoiceProcessor.replay(MUNICIPALITY_ID, 123, Set.of(RECIPIENT_PARTY_ID_NOT_FOUND));
+
+		assertThat(notSent.getStatus()).isEqualTo(NOT_SENT);
+		assertThat(partyIdNotFound.getStatus()).isEqualTo(UNHANDLED);
+		verify(dbIntegrationMock).persistItem(partyIdNotFound);
+		verify(dbIntegrationMock, never()).persistItem(notSent);
+	}
+
+	@Test
+	void replaySentInvoices() {
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> invoiceProcessor.replay(MUNICIPALITY_ID, 123, Set.of(NOT_SENT, SENT)))
+			.satisfies(problem -> assertThat(problem.getStatus()).isEqualTo(BAD_REQUEST));
+
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void replayWhenBatchIsNotFound() {
+		when(dbIntegrationMock.getBatch(MUNICIPALITY_ID, 123)).thenReturn(Optional.empty());
+
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> invoiceProcessor.replay(MUNICIPALITY_ID, 123, Set.of()))
+			.satisfies(problem -> assertThat(problem.getStatus()).isEqualTo(NOT_FOUND));
+	}
+
+	@Test
+	void replayWithoutStoredData() {
+		final var batch = createBatchEntity().withData(null);
+		when(dbIntegrationMock.getBatch(MUNICIPALITY_ID, 123)).thenReturn(Optional.of(batch));
+
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> invoiceProcessor.replay(MUNICIPALITY_ID, 123, null))
+			.satisfies(problem -> assertThat(problem.getStatus()).isEqualTo(CONFLICT));
+
+		verifyNoInteractions(batchLeaseManagerMock);
+	}
+
+	@Test
+	void replayWhenBatchIsBeingProcessed() {
+		final var batch = createBatchEntity().withBatchPrefix("BatchName").withDate(LocalDate.now()).withData(new byte[1]);
+		when(dbIntegrationMock.getBatch(MUNICIPALITY_ID, 123)).thenReturn(Optional.of(batch));
+		when(batchLeaseManagerMock.tryAcquire(MUNICIPALITY_ID, "BatchName", batch.getDate())).thenReturn(Optional.empty());
+
+		assertThatExceptionOfType(ThrowableProblem.class)
+			.isThrownBy(() -> invoiceProcessor.replay(MUNICIPALITY_ID, 123, null))
+			.satisfies(problem -> assertThat(problem.getStatus()).isEqualTo(CONFLICT));
+
+		verify(dbIntegrationMock, never()).persistItem(any());
+		verifyNoInteractions(resourceGovernorMock);
+	}
+
 	/**
 	 * Some methods update the ItemType and ItemStatus of the item
 	 */
@@ -560,13 +1494,15 @@ class InvoiceProcessorTests {
 		final var raindanceIntegrations = Map.of(MUNICIPALITY_ID, raindanceIntegration);
 		ReflectionTestUtils.setField(invoiceProcessor, "raindanceIntegrations", raindanceIntegrations);
 
-		when(raindanceIntegration.readBatches(date, "BatchName", "2281")).thenReturn(batches);
+		final var batchFile = new RemoteBatchFile("BatchName-240101_123456.zip.7z", 1024);
+		when(raindanceIntegration.listBatchFiles(date, "BatchName")).thenReturn(List.of(batchFile));
+		when(raindanceIntegration.readBatch(date, "BatchName", "2281", batchFile, false)).thenReturn(batch);
 		doReturn("mocked-string").when(invoiceProcessor).mapXmlFileToString(anyString());
 		when(dbIntegrationMock.persistBatches(batches)).thenReturn(batches);
 		doNothing().when(raindanceIntegration).writeBatch(batch);
 		doNothing().when(raindanceIntegration).archiveOriginalBatch(batch);
-		doNothing().when(invoiceProcessor).updateAndPersistBatch(batch);
+		doNothing().when(invoiceProcessor).updateAndPersistBatch(batch, date, MUNICIPALITY_ID);
 		lenient().doReturn("mocked-string").when(invoiceProcessor).removeItemFromArchiveIndex(item, "mocked-string", "mocked-path");
-		doNothing().when(messagingIntegrationMock).sendStatusReport(batches, date, MUNICIPALITY_ID);
+		doNothing().when(notificationOutboxMock).sendStatusReport(batches, date, MUNICIPALITY_ID);
 	}
 }
@@ -0,0 +1,36 @@
+package se.sundsvall.invoicesender.service;
+
+import org.junit.jupiter.api.Test;
+import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LegalIdHasherTests {
+
+	private final LegalIdHasher legalIdHasher = new LegalIdHasher(new LegalIdHashProperties("someSecret"));
+
+	@Test
+	void hash() {
+		final var hash = legalIdHasher.hash("8701162383");
+
+		assertThat(hash).hasSize(64).matches("[0-9a-f]+");
+		assertThat(legalIdHasher.hash("198701162383")).isEqualTo(hash);
+		assertThat(new LegalIdHasher(new LegalIdHashProperties("someOtherSecret")).hash("8701162383")).isNotEqualTo(hash);
+		assertThat(legalIdHasher.hash(null)).isNull();
+	}
+
+	@Test
+	void setRecipientLegalId() {
+		final var item = new ItemEntity();
+
+		legalIdHasher.setRecipientLegalId(item, "8701162383");
+
+		assertThat(item.getRecipientLegalId()).isEqualTo("8701162383");
+		assertThat(item.getRecipientLegalIdHash()).isEqualTo(legalIdHasher.hash("8701162383"));
+
+		legalIdHasher.setRecipientLegalId(item, null);
+
+		assertThat(item.getRecipientLegalId()).isNull();
+		assertThat(item.getRecipientLegalIdHash()).isNull();
+	}
+}
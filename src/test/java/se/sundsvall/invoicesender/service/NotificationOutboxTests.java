@@ -0,0 +1,249 @@
+package se.sundsvall.invoicesender.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.web.server.ResponseStatusException;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.NotificationEntity;
+import se.sundsvall.invoicesender.integration.messaging.MessagingIntegration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.SERVICE_UNAVAILABLE;
+import static se.sundsvall.invoicesender.TestDataFactory.createBatchEntity;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationStatus.FAILED;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationStatus.PENDING;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationStatus.SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationType.SLACK;
+import static se.sundsvall.invoicesender.integration.db.entity.NotificationType.STATUS_REPORT;
+
+@ExtendWith(MockitoExtension.class)
+class NotificationOutboxTests {
+
+	private static final String MUNICIPALITY_ID = "2281";
+	private static final LocalDate DATE = LocalDate.of(2025, 2, 28);
+
+	@Mock
+	private DbIntegration dbIntegrationMock;
+
+	@Mock
+	private MessagingIntegration messagingIntegrationMock;
+
+	@Mock
+	private TaskScheduler taskSchedulerMock;
+
+	@Test
+	void dispatchIsScheduledWhenEnabled() {
+		createNotificationOutbox(true);
+
+		verify(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Duration.class));
+	}
+
+	@Test
+	void sendStatusReportWhenEnabled() {
+		final var outbox = createNotificationOutbox(true);
+		final var batches = List.of(createBatchEntity());
+		final var captor = ArgumentCaptor.forClass(NotificationEntity.class);
+		when(messagingIntegrationMock.generateStatusReportMessage(batches)).thenReturn("someReport");
+
+		outbox.sendStatusReport(batches, DATE, MUNICIPALITY_ID);
+
+		verify(dbIntegrationMock).persistNotification(captor.capture());
+		assertThat(captor.getValue()).satisfies(notification -> {
+			assertThat(notification.getType()).isEqualTo(STATUS_REPORT);
+			assertThat(notification.getMunicipalityId()).isEqualTo(MUNICIPALITY_ID);
+			assertThat(notification.getDate()).isEqualTo(DATE);
+			assertThat(notification.getMessage()).isEqualTo("someReport");
+			assertThat(notification.getStatus()).isEqualTo(PENDING);
+			assertThat(notification.getNextAttemptAt()).isNotNull();
+			assertThat(notification.getCreatedAt()).isNotNull();
+		});
+		verify(taskSchedulerMock).schedule(any(Runnable.class), any(Instant.class));
+		verify(messagingIntegrationMock, never()).sendStatusReport(any(), any(), any());
+	}
+
+	@Test
+	void sendErrorReportWhenDisabled() {
+		final var outbox = createNotificationOutbox(false);
+		when(messagingIntegrationMock.generateErrorReportMessage(MUNICIPALITY_ID, "someBatch", "someMessage")).thenReturn("someReport");
+
+		outbox.sendErrorReport(DATE, MUNICIPALITY_ID, "someBatch", "someMessage");
+
+		verify(messagingIntegrationMock).sendErrorReport(MUNICIPALITY_ID, DATE, "someReport");
+		verifyNoInteractions(dbIntegrationMock, taskSchedulerMock);
+	}
+
+	@Test
+	void sendSlackMessageWhenDisabledAndDeliveryFails() {
+		final var outbox = createNotificationOutbox(false);
+		doThrow(new ResponseStatusException(SERVICE_UNAVAILABLE)).when(messagingIntegrationMock).sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+
+		// Delivery failures must not propagate to the batch
+		outbox.sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+
+		verify(messagingIntegrationMock).sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+	}
+
+	@Test
+	void sendSlackMessageWhenPersistFails() {
+		final var outbox = createNotificationOutbox(true);
+		when(dbIntegrationMock.persistNotification(any())).thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+		outbox.sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+
+		verify(messagingIntegrationMock).sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+		verify(taskSchedulerMock, never()).schedule(any(Runnable.class), any(Instant.class));
+	}
+
+	@Test
+	void completeBatchWhenEnabled() {
+		final var outbox = createNotificationOutbox(true);
+		final var batch = createBatchEntity();
+		final var captor = ArgumentCaptor.forClass(NotificationEntity.class);
+		when(messagingIntegrationMock.generateSlackMessage(batch, DATE)).thenReturn("someMessage");
+
+		outbox.completeBatch(batch, DATE, MUNICIPALITY_ID);
+
+		verify(dbIntegrationMock).completeBatch(eq(batch), captor.capture());
+		assertThat(captor.getValue()).satisfies(notification -> {
+			assertThat(notification.getType()).isEqualTo(SLACK);
+			assertThat(notification.getMunicipalityId()).isEqualTo(MUNICIPALITY_ID);
+			assertThat(notification.getDate()).isEqualTo(DATE);
+			assertThat(notification.getMessage()).isEqualTo("someMessage");
+			assertThat(notification.getStatus()).isEqualTo(PENDING);
+		});
+		verify(dbIntegrationMock, never()).persistNotification(any());
+		verify(taskSchedulerMock).schedule(any(Runnable.class), any(Instant.class));
+		verify(messagingIntegrationMock, never()).sendSlackMessage(any(), any());
+	}
+
+	@Test
+	void completeBatchWhenDisabled() {
+		final var outbox = createNotificationOutbox(false);
+		final var batch = createBatchEntity();
+		when(messagingIntegrationMock.generateSlackMessage(batch, DATE)).thenReturn("someMessage");
+
+		outbox.completeBatch(batch, DATE, MUNICIPALITY_ID);
+
+		final var order = inOrder(dbIntegrationMock, messagingIntegrationMock);
+		order.verify(dbIntegrationMock).completeBatch(batch, null);
+		order.verify(messagingIntegrationMock).sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+		verifyNoInteractions(taskSchedulerMock);
+	}
+
+	@Test
+	void completeBatchWhenPersistFails() {
+		final var outbox = createNotificationOutbox(true);
+		final var batch = createBatchEntity();
+		when(messagingIntegrationMock.generateSlackMessage(batch, DATE)).thenReturn("someMessage");
+		doThrow(new DataAccessResourceFailureException("Database unavailable")).when(dbIntegrationMock).completeBatch(eq(batch), any());
+
+		// The batch must not be completed, nor notified, without the other
+		assertThatExceptionOfType(DataAccessResourceFailureException.class).isThrownBy(() -> outbox.completeBatch(batch, DATE, MUNICIPALITY_ID));
+
+		verify(messagingIntegrationMock, never()).sendSlackMessage(any(), any());
+		verifyNoInteractions(taskSchedulerMock);
+	}
+
+	@Test
+	void dispatch() {
+		final var outbox = createNotificationOutbox(true);
+		final var notification = createNotification(0);
+		when(dbIntegrationMock.claimNotifications(20, Duration.ofMinutes(5))).thenReturn(List.of(notification), List.of());
+
+		outbox.dispatch();
+
+		verify(messagingIntegrationMock).sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+		verify(dbIntegrationMock).persistNotification(notification);
+		assertThat(notification.getStatus()).isEqualTo(SENT);
+		assertThat(notification.getAttempts()).isOne();
+		assertThat(notification.getSentAt()).isNotNull();
+		assertThat(notification.getNextAttemptAt()).isNull();
+	}
+
+	@Test
+	void dispatchWhenDeliveryFails() {
+		final var outbox = createNotificationOutbox(true);
+		final var notification = createNotification(1);
+		when(dbIntegrationMock.claimNotifications(20, Duration.ofMinutes(5))).thenReturn(List.of(notification), List.of());
+		doThrow(new ResponseStatusException(SERVICE_UNAVAILABLE)).when(messagingIntegrationMock).sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+
+		outbox.dispatch();
+
+		verify(dbIntegrationMock).persistNotification(notification);
+		assertThat(notification.getStatus()).isEqualTo(PENDING);
+		assertThat(notification.getAttempts()).isEqualTo(2);
+		assertThat(notification.getLastError()).contains("SERVICE_UNAVAILABLE");
+		assertThat(notification.getNextAttemptAt()).isAfter(LocalDateTime.now().plusSeconds(50));
+	}
+
+	@Test
+	void dispatchWhenMaxAttemptsIsReached() {
+		final var outbox = createNotificationOutbox(true);
+		final var notification = createNotification(9);
+		when(dbIntegrationMock.claimNotifications(20, Duration.ofMinutes(5))).thenReturn(List.of(notification), List.of());
+		doThrow(new ResponseStatusException(SERVICE_UNAVAILABLE)).when(messagingIntegrationMock).sendSlackMessage(MUNICIPALITY_ID, "someMessage");
+
+		outbox.dispatch();
+
+		verify(dbIntegrationMock).persistNotification(notification);
+		assertThat(notification.getStatus()).isEqualTo(FAILED);
+		assertThat(notification.getAttempts()).isEqualTo(10);
+		assertThat(notification.getNextAttemptAt()).isNull();
+	}
+
+	@Test
+	void dispatchWhenClaimFails() {
+		final var outbox = createNotificationOutbox(true);
+		when(dbIntegrationMock.claimNotifications(anyInt(), any())).thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+		outbox.dispatch();
+
+		verify(messagingIntegrationMock, never()).sendSlackMessage(any(), any());
+	}
+
+	@Test
+	void backoff() {
+		final var outbox = createNotificationOutbox(false);
+
+		assertThat(outbox.backoff(1)).isEqualTo(Duration.ofSeconds(30));
+		assertThat(outbox.backoff(2)).isEqualTo(Duration.ofMinutes(1));
+		assertThat(outbox.backoff(3)).isEqualTo(Duration.ofMinutes(2));
+		assertThat(outbox.backoff(7)).isEqualTo(Duration.ofMinutes(30));
+		assertThat(outbox.backoff(100)).isEqualTo(Duration.ofMinutes(30));
+	}
+
+	private NotificationOutbox createNotificationOutbox(final boolean outboxEnabled) {
+		return new NotificationOutbox(dbIntegrationMock, messagingIntegrationMock, taskSchedulerMock,
+			new NotificationOutboxProperties(outboxEnabled, Duration.ofSeconds(10), 20, 10, Duration.ofSeconds(30), Duration.ofMinutes(30), Duration.ofMinutes(5)));
+	}
+
+	private static NotificationEntity createNotification(final int attempts) {
+		return new NotificationEntity()
+			.withId(1)
+			.withType(SLACK)
+			.withMunicipalityId(MUNICIPALITY_ID)
+			.withMessage("someMessage")
+			.withStatus(PENDING)
+			.withAttempts(attempts);
+	}
+}
@@ -0,0 +1,86 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ResourceGovernorTests {
+
+	private SimpleMeterRegistry meterRegistry;
+	private ResourceGovernor resourceGovernor;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		resourceGovernor = new ResourceGovernor(
+			new BatchProcessingProperties(2, DataSize.ofBytes(1000), DataSize.ofBytes(6000), 3, Duration.ZERO, true, Duration.ofDays(2), 2, Duration.ofSeconds(5)), meterRegistry);
+	}
+
+	@Test
+	void admitInMemory() throws InterruptedIOException {
+		try (var admission = resourceGovernor.admit("someBatch", 600)) {
+			assertThat(admission.streaming()).isFalse();
+			assertThat(meterRegistry.get("invoice-processor.admission.heap.in-use").gauge().value()).isEqualTo(600);
+			assertThat(meterRegistry.get("invoice-processor.admission.disk.in-use").gauge().value()).isEqualTo(1800);
+		}
+
+		assertThat(meterRegistry.get("invoice-processor.admission.heap.in-use").gauge().value()).isZero();
+		assertThat(meterRegistry.get("invoice-processor.admission.disk.in-use").gauge().value()).isZero();
+		assertThat(meterRegistry.get("invoice-processor.admission.admissions").tag("mode", "in-memory").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void admitStreamingWhenHeapBudgetIsExhausted() throws InterruptedIOException {
+		try (var first = resourceGovernor.admit("firstBatch", 600);
+			var second = resourceGovernor.admit("secondBatch", 600)) {
+			assertThat(first.streaming()).isFalse();
+			assertThat(second.streaming()).isTrue();
+			assertThat(meterRegistry.get("invoice-processor.admission.heap.in-use").gauge().value()).isEqualTo(600);
+			assertThat(meterRegistry.get("invoice-processor.admission.disk.in-use").gauge().value()).isEqualTo(3600);
+		}
+
+		assertThat(meterRegistry.get("invoice-processor.admission.admissions").tag("mode", "streaming").counter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void admitStreamingWhenLargerThanHeapBudget() throws InterruptedIOException {
+		try (var admission = resourceGovernor.admit("someBatch", 1500)) {
+			assertThat(admission.streaming()).isTrue();
+			assertThat(meterRegistry.get("invoice-processor.admission.heap.in-use").gauge().value()).isZero();
+		}
+	}
+
+	@Test
+	void queuedCountsBatchesWaitingForHeapBudget() throws Exception {
+		final var governor = new ResourceGovernor(
+			new BatchProcessingProperties(2, DataSize.ofBytes(1000), DataSize.ofBytes(6000), 3, Duration.ofSeconds(5), true, Duration.ofDays(2), 2, Duration.ofSeconds(5)), meterRegistry);
+		final var first = governor.admit("firstBatch", 600);
+
+		final var second = CompletableFuture.supplyAsync(() -> {
+			try {
+				return governor.admit("secondBatch", 600);
+			} catch (final InterruptedIOException e) {
+				throw new IllegalStateException(e);
+			}
+		});
+		for (var i = 0; i < 500 && governor.getQueued() == 0; i++) {
+			Thread.sleep(10);
+		}
+
+		assertThat(meterRegistry.get("invoice-processor.admission.queued").gauge().value()).isOne();
+
+		first.close();
+
+		try (var admission = second.get(5, TimeUnit.SECONDS)) {
+			assertThat(admission.streaming()).isFalse();
+		}
+		assertThat(meterRegistry.get("invoice-processor.admission.queued").gauge().value()).isZero();
+	}
+}
@@ -0,0 +1,112 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.scheduling.annotation.Scheduled;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.platform.commons.util.AnnotationUtils.findAnnotation;
+import static org.junit.platform.commons.util.ReflectionUtils.findMethod;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RetentionJobTests {
+
+	@Mock
+	private DbIntegration dbIntegrationMock;
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void verifyScheduledAnnotationCronExpression() {
+		var scheduledAnnotation = findMethod(RetentionJob.class, "run")
+			.flatMap(runMethod -> findAnnotation(runMethod, Scheduled.class))
+			.orElseThrow(() -> new IllegalStateException("Unable to find the 'run' method on the " + RetentionJob.class.getName() + " class"));
+
+		assertThat(scheduledAnnotation.cron()).isEqualTo("${invoice-processor.retention.cron-expression:-}");
+	}
+
+	@Test
+	void runWhenDisabled() {
+		createRetentionJob(false).run();
+
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void run() {
+		when(dbIntegrationMock.getBatchIdsWithDataStartedBefore(any(), eq(0), eq(10))).thenReturn(List.of(1, 2));
+		when(dbIntegrationMock.getBatchIdsWithDataStartedBefore(any(), eq(2), eq(10))).thenReturn(List.of());
+		when(dbIntegrationMock.purgeBatchData(List.of(1, 2))).thenReturn(2);
+		when(dbIntegrationMock.countBatchesStartedBefore(any())).thenReturn(2L);
+		when(dbIntegrationMock.getBatchIdsStartedBefore(any(), eq(0), eq(500))).thenReturn(List.of(1, 3));
+		when(dbIntegrationMock.getBatchIdsStartedBefore(any(), eq(3), eq(500))).thenReturn(List.of());
+		when(dbIntegrationMock.deleteItems(1, 500)).thenReturn(500, 20, 0);
+		when(dbIntegrationMock.deleteItems(3, 500)).thenReturn(0);
+
+		createRetentionJob(true).run();
+
+		final InOrder order = inOrder(dbIntegrationMock);
+		order.verify(dbIntegrationMock).purgeBatchData(List.of(1, 2));
+		order.verify(dbIntegrationMock).deleteBatch(1);
+		order.verify(dbIntegrationMock).deleteBatch(3);
+
+		assertThat(meterRegistry.get("invoice-processor.retention.purged").tag("kind", "batch-data").counter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get("invoice-processor.retention.purged").tag("kind", "items").counter().count()).isEqualTo(520);
+		assertThat(meterRegistry.get("invoice-processor.retention.purged").tag("kind", "batches").counter().count()).isEqualTo(2);
+		assertThat(meterRegistry.get("invoice-processor.retention.pending-batches").gauge().value()).isZero();
+		assertThat(meterRegistry.get("invoice-processor.retention.duration").timer().count()).isOne();
+	}
+
+	@Test
+	void runUsesTheRetentions() {
+		when(dbIntegrationMock.getBatchIdsWithDataStartedBefore(any(), anyInt(), anyInt())).thenReturn(List.of());
+		when(dbIntegrationMock.getBatchIdsStartedBefore(any(), anyInt(), anyInt())).thenReturn(List.of());
+
+		createRetentionJob(true).run();
+
+		final var now = LocalDateTime.now();
+		verify(dbIntegrationMock).getBatchIdsWithDataStartedBefore(argThat(startedBefore -> isCloseTo(startedBefore, now.minusDays(30))), eq(0), eq(10));
+		verify(dbIntegrationMock).countBatchesStartedBefore(argThat(startedBefore -> isCloseTo(startedBefore, now.minusDays(365))));
+	}
+
+	@Test
+	void runWhenDatabaseFails() {
+		when(dbIntegrationMock.getBatchIdsWithDataStartedBefore(any(), anyInt(), anyInt())).thenThrow(new DataAccessResourceFailureException("someError"));
+
+		final var retentionJob = createRetentionJob(true);
+		retentionJob.run();
+
+		assertThat(meterRegistry.get("invoice-processor.retention.duration").timer().count()).isOne();
+
+		// The next run isn't blocked by the failed one
+		retentionJob.run();
+
+		verify(dbIntegrationMock, times(2)).getBatchIdsWithDataStartedBefore(any(), anyInt(), anyInt());
+	}
+
+	private RetentionJob createRetentionJob(final boolean enabled) {
+		return new RetentionJob(dbIntegrationMock, new RetentionProperties(enabled, "-", Duration.ofDays(30), Duration.ofDays(365), 10, 500, Duration.ZERO), meterRegistry);
+	}
+
+	private static boolean isCloseTo(final LocalDateTime actual, final LocalDateTime expected) {
+		return Duration.between(actual, expected).abs().compareTo(Duration.ofMinutes(1)) < 0;
+	}
+}
@@ -0,0 +1,177 @@
+package se.sundsvall.invoicesender.service;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.scheduling.TaskScheduler;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.ItemEntity;
+import se.sundsvall.invoicesender.integration.db.entity.ItemSendEntity;
+import se.sundsvall.invoicesender.integration.messaging.MessagingIntegration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static se.sundsvall.invoicesender.TestDataFactory.createBatchEntity;
+import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
+
+@ExtendWith(MockitoExtension.class)
+class SendQueueTests {
+
+	private static final String OWNER = "someOwner";
+	private static final Duration CLAIM_TIMEOUT = Duration.ofMinutes(5);
+
+	@Mock
+	private DbIntegration dbIntegrationMock;
+
+	@Mock
+	private MessagingIntegration messagingIntegrationMock;
+
+	@Mock
+	private TaskScheduler taskSchedulerMock;
+
+	@Mock
+	private BatchLeaseManager batchLeaseManagerMock;
+
+	@BeforeEach
+	void setup() {
+		when(batchLeaseManagerMock.getOwner()).thenReturn(OWNER);
+	}
+
+	@Test
+	void drainIsScheduledWhenEnabled() {
+		final var sendQueue = createSendQueue(true, Duration.ofHours(1));
+
+		assertThat(sendQueue.isEnabled()).isTrue();
+		verify(taskSchedulerMock).scheduleWithFixedDelay(any(Runnable.class), any(Instant.class), eq(Duration.ofMillis(1)));
+	}
+
+	@Test
+	void drainIsNotScheduledWhenDisabled() {
+		final var sendQueue = createSendQueue(false, Duration.ofHours(1));
+
+		assertThat(sendQueue.isEnabled()).isFalse();
+		verifyNoInteractions(taskSchedulerMock);
+	}
+
+	@Test
+	void enqueue() {
+		final var sendQueue = createSendQueue(false, Duration.ofHours(1));
+		final var batch = createBatchEntity();
+		final var item = createItemEntity();
+		final var content = new byte[] {
+			1, 2, 3
+		};
+
+		sendQueue.enqueue(batch, item, content);
+
+		final var captor = ArgumentCaptor.forClass(ItemSendEntity.class);
+		verify(dbIntegrationMock).enqueueSend(captor.capture());
+		assertThat(captor.getValue()).satisfies(itemSend -> {
+			assertThat(itemSend.getBatchId()).isEqualTo(batch.getId());
+			assertThat(itemSend.getItemId()).isEqualTo(item.getId());
+			assertThat(itemSend.getMunicipalityId()).isEqualTo(batch.getMunicipalityId());
+			assertThat(itemSend.getFilename()).isEqualTo(item.getFilename());
+			assertThat(itemSend.getRecipientPartyId()).isEqualTo(item.getRecipientPartyId());
+			assertThat(itemSend.getMetadata()).isEqualTo(item.getMetadata());
+			assertThat(itemSend.getContent()).isEqualTo(content);
+		});
+	}
+
+	@Test
+	void drain() {
+		final var sendQueue = createSendQueue(true, Duration.ofHours(1));
+		final var first = createItemSend(1);
+		final var second = createItemSend(2);
+		when(dbIntegrationMock.claimSends(OWNER, 10, CLAIM_TIMEOUT)).thenReturn(List.of(first, second), List.of());
+		when(messagingIntegrationMock.sendInvoice(eq(first.getContent()), any(ItemEntity.class), eq("2281"))).thenReturn(SENT);
+		when(messagingIntegrationMock.sendInvoice(eq(second.getContent()), any(ItemEntity.class), eq("2281"))).thenThrow(new IllegalStateException("Invalid token"));
+		when(dbIntegrationMock.completeSend(1, OWNER, SENT)).thenReturn(true);
+		when(dbIntegrationMock.completeSend(2, OWNER, NOT_SENT)).thenReturn(true);
+
+		assertThat(sendQueue.drain()).isEqualTo(2);
+
+		verify(dbIntegrationMock).completeSend(1, OWNER, SENT);
+		verify(dbIntegrationMock).completeSend(2, OWNER, NOT_SENT);
+	}
+
+	@Test
+	void drainWhenClaimIsLost() {
+		final var sendQueue = createSendQueue(true, Duration.ofHours(1));
+		final var itemSend = createItemSend(1);
+		when(dbIntegrationMock.claimSends(OWNER, 10, CLAIM_TIMEOUT)).thenReturn(List.of(itemSend), List.of());
+		when(messagingIntegrationMock.sendInvoice(eq(itemSend.getContent()), any(ItemEntity.class), eq("2281"))).thenReturn(SENT);
+		when(dbIntegrationMock.completeSend(1, OWNER, SENT)).thenReturn(false);
+
+		// The claim was taken over by another node, which completes the send instead
+		assertThat(sendQueue.drain()).isOne();
+
+		verify(dbIntegrationMock).completeSend(1, OWNER, SENT);
+		verify(dbIntegrationMock, times(2)).claimSends(OWNER, 10, CLAIM_TIMEOUT);
+	}
+
+	@Test
+	void awaitResults() throws IOException {
+		final var sendQueue = createSendQueue(true, Duration.ofHours(1));
+		final var batch = createBatchEntity();
+		when(dbIntegrationMock.countIncompleteSends(batch.getId())).thenReturn(1L, 0L);
+		when(dbIntegrationMock.getCompletedSends(batch.getId())).thenReturn(List.of(
+			createItemSend(1).withItemId(10).withResult(SENT),
+			createItemSend(2).withItemId(20).withResult(NOT_SENT)));
+
+		assertThat(sendQueue.awaitResults(batch)).isEqualTo(Map.of(10, SENT, 20, NOT_SENT));
+
+		verify(dbIntegrationMock).claimSends(OWNER, 10, CLAIM_TIMEOUT);
+	}
+
+	@Test
+	void awaitResultsTimesOut() {
+		final var sendQueue = createSendQueue(true, Duration.ZERO);
+		final var batch = createBatchEntity();
+		when(dbIntegrationMock.countIncompleteSends(batch.getId())).thenReturn(1L);
+
+		assertThatExceptionOfType(IOException.class)
+			.isThrownBy(() -> sendQueue.awaitResults(batch))
+			.withMessage("Timed out waiting for queued sends of batch %s", batch.getBasename());
+	}
+
+	@Test
+	void purge() {
+		final var batch = createBatchEntity();
+
+		createSendQueue(true, Duration.ofHours(1)).purge(batch);
+
+		verify(dbIntegrationMock).deleteSends(batch.getId());
+	}
+
+	private SendQueue createSendQueue(final boolean enabled, final Duration resultTimeout) {
+		return new SendQueue(dbIntegrationMock, messagingIntegrationMock, taskSchedulerMock,
+			new SendQueueProperties(enabled, Duration.ofMillis(1), 10, CLAIM_TIMEOUT, resultTimeout), batchLeaseManagerMock);
+	}
+
+	private static ItemSendEntity createItemSend(final int id) {
+		return new ItemSendEntity()
+			.withId(id)
+			.withMunicipalityId("2281")
+			.withFilename("Faktura_0000000%d_to_9001011234.pdf".formatted(id))
+			.withRecipientPartyId("somePartyId")
+			.withContent(new byte[] {
+				(byte) id
+			});
+	}
+}
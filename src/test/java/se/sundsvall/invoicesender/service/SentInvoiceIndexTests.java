@@ -0,0 +1,173 @@
+package se.sundsvall.invoicesender.service;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import se.sundsvall.invoicesender.integration.db.DbIntegration;
+import se.sundsvall.invoicesender.integration.db.entity.SentInvoiceEntity;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+
+@ExtendWith(MockitoExtension.class)
+class SentInvoiceIndexTests {
+
+	private static final String MUNICIPALITY_ID = "2281";
+
+	@Mock
+	private DbIntegration dbIntegrationMock;
+
+	@Test
+	void isSentBeforeLoadGoesToDatabase() {
+		final var index = createSentInvoiceIndex(true, 10);
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.getMetadata().setPaymentReference("7890"));
+		when(dbIntegrationMock.isInvoiceSent(MUNICIPALITY_ID, "123", "7890")).thenReturn(true);
+
+		assertThat(index.isSent(item, MUNICIPALITY_ID)).isTrue();
+	}
+
+	@Test
+	void isSentAfterLoadSkipsDatabaseForUnsentInvoices() {
+		final var index = createSentInvoiceIndex(true, 10);
+		when(dbIntegrationMock.getSentInvoicesAfter(0, 10)).thenReturn(List.of());
+
+		index.load();
+
+		assertThat(index.isSent(createItemEntity(), MUNICIPALITY_ID)).isFalse();
+		verify(dbIntegrationMock, never()).isInvoiceSent(any(), any(), any());
+	}
+
+	@Test
+	void isSentAfterLoadChecksDatabaseForPossiblySentInvoices() {
+		final var index = createSentInvoiceIndex(true, 10);
+		when(dbIntegrationMock.getSentInvoicesAfter(0, 10)).thenReturn(List.of(createSentInvoice(1, "123", "")));
+		when(dbIntegrationMock.isInvoiceSent(MUNICIPALITY_ID, "123", "")).thenReturn(true);
+
+		index.load();
+
+		assertThat(index.isSent(createItemEntity(), MUNICIPALITY_ID)).isTrue();
+		// The payment reference is part of the fingerprint
+		assertThat(index.isSent(createItemEntity(itemBeingModified -> itemBeingModified.getMetadata().setPaymentReference("7890")), MUNICIPALITY_ID)).isFalse();
+	}
+
+	@Test
+	void isSentWithoutInvoiceNumber() {
+		final var index = createSentInvoiceIndex(true, 10);
+
+		assertThat(index.isSent(createItemEntity(itemBeingModified -> itemBeingModified.getMetadata().setInvoiceNumber(null)), MUNICIPALITY_ID)).isFalse();
+		assertThat(index.isSent(createItemEntity(itemBeingModified -> itemBeingModified.setMetadata(null)), MUNICIPALITY_ID)).isFalse();
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void isSentWhenDatabaseFails() {
+		final var index = createSentInvoiceIndex(true, 10);
+		when(dbIntegrationMock.isInvoiceSent(MUNICIPALITY_ID, "123", "")).thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+		assertThat(index.isSent(createItemEntity(), MUNICIPALITY_ID)).isFalse();
+	}
+
+	@Test
+	void isSentWhenDisabled() {
+		final var index = createSentInvoiceIndex(false, 10);
+
+		index.load();
+
+		assertThat(index.isSent(createItemEntity(), MUNICIPALITY_ID)).isFalse();
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	@Test
+	void refreshLoadsInChunks() {
+		final var index = createSentInvoiceIndex(true, 2);
+		when(dbIntegrationMock.getSentInvoicesAfter(0, 2)).thenReturn(List.of(createSentInvoice(1, "1", ""), createSentInvoice(2, "2", "")));
+		when(dbIntegrationMock.getSentInvoicesAfter(2, 2)).thenReturn(List.of(createSentInvoice(3, "3", "")));
+		when(dbIntegrationMock.getSentInvoicesAfter(3, 2)).thenReturn(List.of(createSentInvoice(5, "5", "")));
+
+		index.load();
+		// Only invoices recorded since the last refresh are loaded
+		index.refresh();
+
+		verify(dbIntegrationMock).getSentInvoicesAfter(0, 2);
+		verify(dbIntegrationMock).getSentInvoicesAfter(2, 2);
+		verify(dbIntegrationMock).getSentInvoicesAfter(3, 2);
+	}
+
+	@Test
+	void refreshWhenDatabaseFails() {
+		final var index = createSentInvoiceIndex(true, 10);
+		when(dbIntegrationMock.getSentInvoicesAfter(0, 10)).thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+		index.refresh();
+
+		// Lookups go to the database until the index has been loaded
+		index.isSent(createItemEntity(), MUNICIPALITY_ID);
+		verify(dbIntegrationMock).isInvoiceSent(MUNICIPALITY_ID, "123", "");
+	}
+
+	@Test
+	void add() {
+		final var index = createSentInvoiceIndex(true, 10);
+		final var item = createItemEntity(itemBeingModified -> itemBeingModified.withId(4).getMetadata().setPaymentReference("7890"));
+		final var sentInvoiceCaptor = ArgumentCaptor.forClass(SentInvoiceEntity.class);
+		when(dbIntegrationMock.getSentInvoicesAfter(anyInt(), anyInt())).thenReturn(List.of());
+		when(dbIntegrationMock.recordSentInvoice(sentInvoiceCaptor.capture())).thenReturn(true);
+
+		index.load();
+		index.add(item, MUNICIPALITY_ID);
+
+		assertThat(sentInvoiceCaptor.getValue()).satisfies(sentInvoice -> {
+			assertThat(sentInvoice.getMunicipalityId()).isEqualTo(MUNICIPALITY_ID);
+			assertThat(sentInvoice.getInvoiceNumber()).isEqualTo("123");
+			assertThat(sentInvoice.getPaymentReference()).isEqualTo("7890");
+			assertThat(sentInvoice.getItemId()).isEqualTo(4);
+			assertThat(sentInvoice.getFilename()).isEqualTo(item.getFilename());
+			assertThat(sentInvoice.getSentAt()).isNotNull();
+		});
+
+		// The invoice is in the filter right away, without a refresh
+		when(dbIntegrationMock.isInvoiceSent(MUNICIPALITY_ID, "123", "7890")).thenReturn(true);
+		assertThat(index.isSent(item, MUNICIPALITY_ID)).isTrue();
+	}
+
+	@Test
+	void addWhenDatabaseFails() {
+		final var index = createSentInvoiceIndex(true, 10);
+		when(dbIntegrationMock.recordSentInvoice(any())).thenThrow(new DataAccessResourceFailureException("Database unavailable"));
+
+		index.add(createItemEntity(), MUNICIPALITY_ID);
+
+		verify(dbIntegrationMock).recordSentInvoice(any());
+	}
+
+	@Test
+	void addWhenDisabled() {
+		final var index = createSentInvoiceIndex(false, 10);
+
+		index.add(createItemEntity(), MUNICIPALITY_ID);
+
+		verifyNoInteractions(dbIntegrationMock);
+	}
+
+	private SentInvoiceIndex createSentInvoiceIndex(final boolean enabled, final int loadChunkSize) {
+		return new SentInvoiceIndex(dbIntegrationMock, new SentInvoiceIndexProperties(enabled, 1000, 0.01, loadChunkSize));
+	}
+
+	private static SentInvoiceEntity createSentInvoice(final int id, final String invoiceNumber, final String paymentReference) {
+		return new SentInvoiceEntity()
+			.withId(id)
+			.withMunicipalityId(MUNICIPALITY_ID)
+			.withInvoiceNumber(invoiceNumber)
+			.withPaymentReference(paymentReference);
+	}
+}
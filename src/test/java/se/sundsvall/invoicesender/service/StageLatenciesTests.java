@@ -0,0 +1,50 @@
+package se.sundsvall.invoicesender.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import se.sundsvall.invoicesender.service.StageLatencies.Stage;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class StageLatenciesTests {
+
+	private SimpleMeterRegistry meterRegistry;
+	private StageLatencies stageLatencies;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		stageLatencies = new StageLatencies(meterRegistry);
+	}
+
+	@Test
+	void record() {
+		stageLatencies.record(Stage.DOWNLOAD, Duration.ofSeconds(2));
+		stageLatencies.record(Stage.SEND, () -> {});
+		final var result = stageLatencies.record(Stage.PLAN, () -> "result");
+
+		assertThat(result).isEqualTo("result");
+		assertThat(meterRegistry.get("invoice-processor.stage.duration").tag("stage", "download").timer().count()).isOne();
+		assertThat(meterRegistry.get("invoice-processor.stage.duration").tag("stage", "send").timer().count()).isOne();
+		assertThat(meterRegistry.get("invoice-processor.stage.duration").tag("stage", "plan").timer().count()).isOne();
+		assertThat(meterRegistry.get("invoice-processor.stage.duration").tag("stage", "party-lookup").timer().count()).isZero();
+	}
+
+	@Test
+	void project() {
+		stageLatencies.record(Stage.PARTY_LOOKUP, Duration.ofMillis(100));
+		stageLatencies.record(Stage.PARTY_LOOKUP, Duration.ofMillis(300));
+
+		// 10 calls, 4 at a time, make 3 rounds of the mean latency
+		assertThat(stageLatencies.project(Stage.PARTY_LOOKUP, 10, 4)).hasValue(Duration.ofMillis(600));
+		assertThat(stageLatencies.project(Stage.PARTY_LOOKUP, 10, 1)).hasValue(Duration.ofSeconds(2));
+	}
+
+	@Test
+	void projectWithoutRecordedLatencies() {
+		assertThat(stageLatencies.project(Stage.SEND, 10, 1)).isEmpty();
+		assertThat(stageLatencies.project(Stage.SEND, 0, 1)).hasValue(Duration.ZERO);
+	}
+}
@@ -0,0 +1,27 @@
+package se.sundsvall.invoicesender.service.model;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.TestDataFactory.createBatchEntity;
+import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+
+class BatchPlanTests {
+
+	@Test
+	void testConstructorAndGetters() {
+		final var batch = createBatchEntity();
+		final var skippedItem = createItemEntity();
+		final var lookupItem = createItemEntity();
+		final var readyItem = createItemEntity();
+
+		final var plan = new BatchPlan(batch, List.of(skippedItem), List.of(lookupItem), List.of(readyItem));
+
+		assertThat(plan.batch()).isSameAs(batch);
+		assertThat(plan.skippedItems()).containsExactly(skippedItem);
+		assertThat(plan.recipientLookups()).containsExactly(lookupItem);
+		assertThat(plan.readyToSend()).containsExactly(readyItem);
+		assertThat(plan.sendableItemCount()).isEqualTo(2);
+	}
+}
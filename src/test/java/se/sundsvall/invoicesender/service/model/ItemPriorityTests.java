@@ -0,0 +1,37 @@
+package se.sundsvall.invoicesender.service.model;
+
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+import static se.sundsvall.invoicesender.TestDataFactory.createMetadata;
+import static se.sundsvall.invoicesender.service.model.ItemPriority.MOST_URGENT_FIRST;
+
+class ItemPriorityTests {
+
+	@Test
+	void mostUrgentFirst() {
+		final var late = createItemEntity().withId(1).withMetadata(createMetadata().withDueDate("2024-03-31"));
+		final var withoutDueDate = createItemEntity().withId(2).withMetadata(createMetadata().withDueDate(null));
+		final var early = createItemEntity().withId(3).withMetadata(createMetadata().withDueDate("2024-02-29"));
+		final var lateReminder = createItemEntity().withId(4).withMetadata(createMetadata().withDueDate("2024-04-30").withReminder(true));
+		final var withoutMetadata = createItemEntity().withId(5).withMetadata(null);
+		final var alsoEarly = createItemEntity().withId(6).withMetadata(createMetadata().withDueDate("2024-02-29"));
+		final var earlyReminder = createItemEntity().withId(7).withMetadata(createMetadata().withDueDate("2024-01-31").withReminder(true));
+
+		final var items = List.of(late, withoutDueDate, early, lateReminder, withoutMetadata, alsoEarly, earlyReminder).stream()
+			.sorted(MOST_URGENT_FIRST)
+			.toList();
+
+		assertThat(items).containsExactly(earlyReminder, lateReminder, early, alsoEarly, late, withoutDueDate, withoutMetadata);
+	}
+
+	@Test
+	void mostUrgentFirstWithUnparsableDueDate() {
+		final var unparsable = createItemEntity().withId(1).withMetadata(createMetadata().withDueDate("someDate"));
+		final var parsable = createItemEntity().withId(2).withMetadata(createMetadata().withDueDate("2024-02-29"));
+
+		assertThat(List.of(unparsable, parsable).stream().sorted(MOST_URGENT_FIRST).toList()).containsExactly(parsable, unparsable);
+	}
+}
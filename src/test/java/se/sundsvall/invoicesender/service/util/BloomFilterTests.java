@@ -0,0 +1,64 @@
+package se.sundsvall.invoicesender.service.util;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+
+class BloomFilterTests {
+
+	@Test
+	void testSizing() {
+		var bloomFilter = new BloomFilter(1_000_000, 0.01);
+
+		// ~9.6 bits and 7 hashes per string for a 1% false positive probability
+		assertThat(bloomFilter.getBitCount()).isBetween(9_585_000L, 9_586_000L);
+		assertThat(bloomFilter.getHashCount()).isEqualTo(7);
+	}
+
+	@Test
+	void testNoFalseNegatives() {
+		var bloomFilter = new BloomFilter(10_000, 0.01);
+
+		IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("2281\u001f" + i + "\u001f" + (i * 7)));
+
+		assertThat(IntStream.range(0, 10_000)).allMatch(i -> bloomFilter.mightContain("2281\u001f" + i + "\u001f" + (i * 7)));
+	}
+
+	@Test
+	void testFalsePositiveProbability() {
+		var bloomFilter = new BloomFilter(10_000, 0.01);
+
+		IntStream.range(0, 10_000).forEach(i -> bloomFilter.put("invoice-" + i));
+
+		var falsePositives = IntStream.range(10_000, 110_000)
+			.filter(i -> bloomFilter.mightContain("invoice-" + i))
+			.count();
+		// Allow for some variance around the expected 1000
+		assertThat(falsePositives).isLessThan(1_500);
+	}
+
+	@Test
+	void testEmpty() {
+		var bloomFilter = new BloomFilter(100, 0.01);
+
+		assertThat(bloomFilter.mightContain("")).isFalse();
+		assertThat(bloomFilter.mightContain("someValue")).isFalse();
+	}
+
+	@Test
+	void testInvalidExpectedInsertions() {
+		assertThatIllegalArgumentException().isThrownBy(() -> new BloomFilter(0, 0.01));
+	}
+
+	@ParameterizedTest
+	@ValueSource(doubles = {
+		0.0, 1.0, -0.5
+	})
+	void testInvalidFalsePositiveProbability(final double falsePositiveProbability) {
+		assertThatIllegalArgumentException().isThrownBy(() -> new BloomFilter(100, falsePositiveProbability));
+	}
+}
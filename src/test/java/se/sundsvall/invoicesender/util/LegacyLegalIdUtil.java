@@ -0,0 +1,60 @@
+package se.sundsvall.invoicesender.util;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.stream.Stream;
+import org.apache.commons.validator.routines.checkdigit.CheckDigitException;
+import org.apache.commons.validator.routines.checkdigit.LuhnCheckDigit;
+
+/**
+ * The regular expression and date parsing based validation that {@link LegalIdValidator} replaced. Kept as the
+ * reference that the validator is checked and benchmarked against.
+ */
+final class LegacyLegalIdUtil {
+
+	private static final LuhnCheckDigit LUHN = new LuhnCheckDigit();
+	private static final DateTimeFormatter DATE_PART_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+	private LegacyLegalIdUtil() {}
+
+	static boolean isValidLegalId(final String legalId) {
+		var legalIdWithDigitsOnly = legalId.replaceAll("\\D", "");
+
+		if (legalIdWithDigitsOnly.length() != 10) {
+			return false;
+		}
+
+		return Stream.of("19", "20")
+			.map(centuryDigit -> centuryDigit + legalIdWithDigitsOnly)
+			.anyMatch(legalIdWithCenturyDigits -> validateLegalIdDatePart(legalIdWithCenturyDigits) && validateLegalIdCheckDigit(legalIdWithCenturyDigits));
+	}
+
+	static String normalize(final String legalId) {
+		final var legalIdWithDigitsOnly = legalId.replaceAll("\\D", "");
+		final var currentYear = LocalDate.now(ZoneId.systemDefault()).getYear();
+		final var birthYear = Integer.parseInt(legalIdWithDigitsOnly.substring(0, 2));
+
+		return (birthYear > currentYear % 100 ? "19" : "20").concat(legalIdWithDigitsOnly);
+	}
+
+	static boolean validateLegalIdDatePart(final String legalId) {
+		try {
+			DATE_PART_FORMAT.parse(legalId.substring(0, 8));
+
+			return true;
+		} catch (DateTimeParseException e) {
+			return false;
+		}
+	}
+
+	static boolean validateLegalIdCheckDigit(final String legalId) {
+		try {
+			var checkDigit = LUHN.calculate(legalId.substring(2, legalId.length() - 1));
+			return checkDigit.equals(legalId.substring(legalId.length() - 1));
+		} catch (CheckDigitException e) {
+			return false;
+		}
+	}
+}
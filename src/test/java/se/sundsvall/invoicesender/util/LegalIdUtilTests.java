@@ -1,18 +1,23 @@
 package se.sundsvall.invoicesender.util;
 
+import java.nio.charset.StandardCharsets;
 import java.util.stream.Stream;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
-import org.junit.jupiter.params.provider.EmptySource;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.jupiter.params.provider.NullSource;
 import org.junit.jupiter.params.provider.ValueSource;
 
 import static org.assertj.core.api.Assertions.assertThat;
-import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class LegalIdUtilTests {
 
+	private static final SecretKey KEY = new SecretKeySpec("someSecret".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+	private static final SecretKey OTHER_KEY = new SecretKeySpec("someOtherSecret".getBytes(StandardCharsets.UTF_8), "HmacSHA256");
+
 	@ParameterizedTest
 	@MethodSource("argumentsForIsValidLegalId")
 	void isValidLegalId(final String legalId, final boolean valid, final String description) {
@@ -31,56 +36,31 @@ class LegalIdUtilTests {
 		);
 	}
 
-	@ParameterizedTest
-	@ValueSource(strings = {
-		"1234567890", "1234567890123", "12345678901234567890", "1234567890123456789012345678901234567890"
-	})
-	void getBirthYear(final String legalId) {
+	@Test
+	void hashLegalId() {
+		var hash = LegalIdUtil.hashLegalId("8701162383", KEY);
 
-		var birthYear = LegalIdUtil.getBirthYear(legalId);
-		assertThat(birthYear).isEqualTo(12);
+		assertThat(hash).hasSize(64).matches("[0-9a-f]+");
+		assertThat(LegalIdUtil.hashLegalId("870116-2383", KEY)).isEqualTo(hash);
+		assertThat(LegalIdUtil.hashLegalId("198701162383", KEY)).isEqualTo(hash);
+		assertThat(LegalIdUtil.hashLegalId("8701162382", KEY)).isNotEqualTo(hash);
+		assertThat(LegalIdUtil.hashLegalId("8701162383", OTHER_KEY)).isNotEqualTo(hash);
 	}
 
-	@ParameterizedTest
-	@ValueSource(strings = {
-		"abc", "lol", "rofl"
-	})
-	void getBirthYear_NumberFormatException(final String legalId) {
-		assertThatThrownBy(() -> LegalIdUtil.getBirthYear(legalId))
-			.isInstanceOf(NumberFormatException.class)
-			.hasMessage("For input string: \"" + legalId.substring(0, 2) + "\"");
-	}
+	@Test
+	void hashLegalIdOfWrongLength() {
+		var hash = LegalIdUtil.hashLegalId("12345", KEY);
 
-	@ParameterizedTest
-	@NullSource
-	void getBirthYear_NullPointerException(final String legalId) {
-		assertThatThrownBy(() -> getBirthYear(legalId))
-			.isInstanceOf(NullPointerException.class)
-			.hasMessage("Cannot invoke \"String.substring(int, int)\" because \"legalIdWithDigitsOnly\" is null");
+		assertThat(hash).hasSize(64);
+		assertThat(LegalIdUtil.hashLegalId("12-3 45", KEY)).isEqualTo(hash);
 	}
 
 	@ParameterizedTest
-	@EmptySource
-	void getBirthYear_IllegalArgumentException(final String legalId) {
-		assertThatThrownBy(() -> getBirthYear(legalId))
-			.isInstanceOf(StringIndexOutOfBoundsException.class)
-			.hasMessage("Range [0, 2) out of bounds for length 0");
-	}
-
-	@ParameterizedTest
-	@MethodSource("guessLegalIdCenturyDigitsArgumentProvider")
-	void guessLegalIdCenturyDigits(final String given, final String expected) {
-		var result = LegalIdUtil.guessLegalIdCenturyDigits(given);
-		assertThat(result).isEqualTo(expected);
-	}
-
-	static Stream<Arguments> guessLegalIdCenturyDigitsArgumentProvider() {
-		return Stream.of(
-			Arguments.of("1234567890", "201234567890"),
-			Arguments.of("2234567890", "202234567890"),
-			Arguments.of("3234567890", "193234567890"),
-			Arguments.of("4234567890", "194234567890"),
-			Arguments.of("5234567890", "195234567890"),
-			Arguments.of("6234567890", "196234567890"));
+	@NullSource
+	@ValueSource(strings = {
+		"", "not-containing-digits"
+	})
+	void hashLegalIdWithoutDigits(final String legalId) {
+		assertThat(LegalIdUtil.hashLegalId(legalId, KEY)).isNull();
 	}
 }
@@ -0,0 +1,161 @@
+package se.sundsvall.invoicesender.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import se.sundsvall.invoicesender.util.LegalIdValidator.Reason;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class LegalIdValidatorTests {
+
+	private static final String SEPARATORS = "-+ /.aZ";
+
+	@ParameterizedTest
+	@MethodSource("argumentsForValidate")
+	void validate(final String legalId, final Reason expectedReason) {
+		assertThat(LegalIdValidator.validate(legalId)).isEqualTo(expectedReason);
+	}
+
+	static Stream<Arguments> argumentsForValidate() {
+		return Stream.of(
+			Arguments.of(null, Reason.MISSING),
+			Arguments.of("", Reason.MISSING),
+			Arguments.of("not-containing-digits", Reason.MISSING),
+			Arguments.of("12345", Reason.WRONG_LENGTH),
+			Arguments.of("12345671234567", Reason.WRONG_LENGTH),
+			Arguments.of("198701162383", Reason.WRONG_LENGTH),
+			Arguments.of("5513071770", Reason.INVALID_DATE),
+			Arguments.of("5500071770", Reason.INVALID_DATE),
+			Arguments.of("5501001770", Reason.INVALID_DATE),
+			Arguments.of("5501321770", Reason.INVALID_DATE),
+			Arguments.of("8701162382", Reason.INVALID_CHECK_DIGIT),
+			Arguments.of("8701162383", Reason.VALID),
+			Arguments.of("950211-2387", Reason.VALID),
+			Arguments.of(" 870116 - 2383 ", Reason.VALID));
+	}
+
+	@Test
+	void normalize() {
+		assertThat(LegalIdValidator.normalize("870116-2383")).isEqualTo("198701162383");
+		assertThat(LegalIdValidator.normalize("8701162382")).isNull();
+		assertThat(LegalIdValidator.normalize((String) null)).isNull();
+	}
+
+	@Test
+	void normalizeToBufferWhenInvalid() {
+		final var normalized = new char[LegalIdValidator.NORMALIZED_LENGTH];
+
+		assertThat(LegalIdValidator.normalize("5505158888", normalized)).isEqualTo(Reason.INVALID_CHECK_DIGIT);
+		assertThat(normalized).containsExactly("195505158888".toCharArray());
+
+		assertThat(LegalIdValidator.normalize("0413158888", normalized)).isEqualTo(Reason.INVALID_DATE);
+		assertThat(normalized).containsExactly("200413158888".toCharArray());
+	}
+
+	@Test
+	void normalizeToBufferLeavesBufferWhenWrongLength() {
+		final var normalized = "untouched!!!".toCharArray();
+
+		assertThat(LegalIdValidator.normalize("12345", normalized)).isEqualTo(Reason.WRONG_LENGTH);
+		assertThat(normalized).containsExactly("untouched!!!".toCharArray());
+	}
+
+	@Test
+	void centuryMatchesLegacyForEveryBirthYear() {
+		for (var year = 0; year < 100; year++) {
+			final var legalId = withCheckDigit("%02d0101123".formatted(year));
+
+			assertThat(LegalIdValidator.normalize(legalId)).as(legalId).isEqualTo(LegacyLegalIdUtil.normalize(legalId));
+		}
+	}
+
+	@Test
+	void validateMatchesLegacyForEveryMonthAndDay() {
+		for (var year : new int[] {
+			0, 4, 55, 99
+		}) {
+			for (var monthAndDay = 0; monthAndDay < 10_000; monthAndDay++) {
+				final var legalId = withCheckDigit("%02d%04d123".formatted(year, monthAndDay));
+
+				assertThat(LegalIdValidator.validate(legalId) == Reason.VALID).as(legalId).isEqualTo(LegacyLegalIdUtil.isValidLegalId(legalId));
+			}
+		}
+	}
+
+	@Test
+	void validateMatchesLegacyForRandomLegalIds() {
+		final var random = new Random(4711);
+
+		for (var i = 0; i < 200_000; i++) {
+			final var legalId = randomLegalId(random);
+			final var valid = LegacyLegalIdUtil.isValidLegalId(legalId);
+
+			assertThat(LegalIdValidator.validate(legalId) == Reason.VALID).as(legalId).isEqualTo(valid);
+			if (valid) {
+				assertThat(LegalIdValidator.normalize(legalId)).as(legalId).isEqualTo(LegacyLegalIdUtil.normalize(legalId));
+			}
+		}
+	}
+
+	@Test
+	void validateDoesNotAllocate() {
+		assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+		final var threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		assumeTrue(threadMXBean.isThreadAllocatedMemorySupported() && threadMXBean.isThreadAllocatedMemoryEnabled());
+
+		final var legalIds = new String[] {
+			"870116-2383", "8701162382", "5513071770", "12345"
+		};
+		final var normalized = new char[LegalIdValidator.NORMALIZED_LENGTH];
+		final var calls = 100_000;
+
+		final var before = threadMXBean.getCurrentThreadAllocatedBytes();
+		for (var i = 0; i < calls; i++) {
+			LegalIdValidator.normalize(legalIds[i % legalIds.length], normalized);
+		}
+		final var allocated = threadMXBean.getCurrentThreadAllocatedBytes() - before;
+
+		// Leave some room for the measurement itself, but far less than a single byte per call
+		assertThat(allocated).isLessThan(calls / 10);
+	}
+
+	/**
+	 * Generates a legal id that is likely to be close to valid: mostly ten digits with a correct check digit, sometimes
+	 * with a broken check digit, a digit too many or too few, and with separators sprinkled in.
+	 */
+	private static String randomLegalId(final Random random) {
+		final var digits = new StringBuilder();
+		digits.append("%02d%02d%02d%03d".formatted(random.nextInt(100), random.nextInt(14), random.nextInt(34), random.nextInt(1000)));
+		var legalId = random.nextInt(4) == 0 ? digits.append(random.nextInt(10)).toString() : withCheckDigit(digits.toString());
+
+		switch (random.nextInt(10)) {
+			case 0 -> legalId = legalId.substring(1);
+			case 1 -> legalId = legalId + random.nextInt(10);
+			case 2 -> legalId = (random.nextBoolean() ? "19" : "20") + legalId;
+			default -> {
+				// Keep the length
+			}
+		}
+
+		final var result = new StringBuilder(legalId);
+		for (var separators = random.nextInt(3); separators > 0; separators--) {
+			result.insert(random.nextInt(result.length() + 1), SEPARATORS.charAt(random.nextInt(SEPARATORS.length())));
+		}
+		return result.toString();
+	}
+
+	private static String withCheckDigit(final String nineDigits) {
+		var sum = 0;
+		for (var i = 0; i < nineDigits.length(); i++) {
+			var digit = (nineDigits.charAt(i) - '0') * (i % 2 == 0 ? 2 : 1);
+			sum += digit > 9 ? digit - 9 : digit;
+		}
+		return nineDigits + (10 - sum % 10) % 10;
+	}
+}
@@ -4,9 +4,11 @@ import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static se.sundsvall.invoicesender.TestDataFactory.createItemEntity;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.ALREADY_SENT;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.IGNORED;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.METADATA_INCOMPLETE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT;
+import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.NOT_SENT_RETRYABLE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_LEGAL_ID_NOT_FOUND_OR_INVALID;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.RECIPIENT_PARTY_ID_NOT_FOUND;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.SENT;
@@ -14,13 +16,17 @@ import static se.sundsvall.invoicesender.integration.db.entity.ItemStatus.UNHAND
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.INVOICE;
 import static se.sundsvall.invoicesender.integration.db.entity.ItemType.OTHER;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.INVOICE_COULD_NOT_BE_SENT;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.INVOICE_IS_ALREADY_SENT;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.INVOICE_SEND_IS_RETRYABLE;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_AN_INVOICE;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_A_PDF;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_HANDLED;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_IGNORED;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_IS_NOT_PROCESSABLE;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.ITEM_LACKS_METADATA;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.RECIPIENT_HAS_INVALID_LEGAL_ID;
 import static se.sundsvall.invoicesender.service.model.ItemPredicate.RECIPIENT_HAS_INVALID_PARTY_ID;
+import static se.sundsvall.invoicesender.service.model.ItemPredicate.UNSENT_ITEMS;
 
 class PredicateTests {
 
@@ -103,4 +109,25 @@ class PredicateTests {
 		assertThat(INVOICE_COULD_NOT_BE_SENT.test(invoiceSent)).isFalse();
 	}
 
+	@Test
+	void test_INVOICE_SEND_IS_RETRYABLE() {
+		var invoiceSendIsRetryable = createItemEntity(item -> item.setFilename(DUMMY_DOT_PDF)).withStatus(NOT_SENT_RETRYABLE);
+		var invoiceCouldNotBeSent = createItemEntity(item -> item.setFilename(DUMMY_DOT_PDF)).withStatus(NOT_SENT);
+
+		assertThat(INVOICE_SEND_IS_RETRYABLE.test(invoiceSendIsRetryable)).isTrue();
+		assertThat(INVOICE_SEND_IS_RETRYABLE.test(invoiceCouldNotBeSent)).isFalse();
+		assertThat(ITEM_IS_HANDLED.test(invoiceSendIsRetryable)).isFalse();
+	}
+
+	@Test
+	void test_INVOICE_IS_ALREADY_SENT() {
+		var invoiceIsAlreadySent = createItemEntity(item -> item.setFilename(DUMMY_DOT_PDF)).withStatus(ALREADY_SENT);
+		var invoiceIsSent = createItemEntity(item -> item.setFilename(DUMMY_DOT_PDF)).withStatus(SENT);
+
+		assertThat(INVOICE_IS_ALREADY_SENT.test(invoiceIsAlreadySent)).isTrue();
+		assertThat(INVOICE_IS_ALREADY_SENT.test(invoiceIsSent)).isFalse();
+		assertThat(ITEM_IS_HANDLED.test(invoiceIsAlreadySent)).isTrue();
+		assertThat(UNSENT_ITEMS.test(invoiceIsAlreadySent)).isFalse();
+	}
+
 }